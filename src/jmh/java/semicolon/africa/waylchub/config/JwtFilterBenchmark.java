@@ -0,0 +1,69 @@
+package semicolon.africa.waylchub.config;
+
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import semicolon.africa.waylchub.dto.userDTO.CustomUserDetails;
+import semicolon.africa.waylchub.service.userService.JwtServiceImpl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtAuthenticationFilter on an authenticated request: HMAC verify, claims
+ * parse and principal rebuild — the per-request cost every API call pays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtFilterBenchmark {
+
+    private JwtServiceImpl jwtService;
+    private JwtAuthenticationFilter filter;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtServiceImpl();
+        ReflectionTestUtils.setField(jwtService, "jwtSecret",
+                "benchmark-only-secret-benchmark-only-secret-0123456789");
+        ReflectionTestUtils.setField(jwtService, "accessTokenExpirationInSec", 3600L);
+        filter = new JwtAuthenticationFilter(jwtService);
+
+        token = jwtService.generateAccessToken(CustomUserDetails.builder()
+                .userId("64f1c0ffee0000000000abcd")
+                .username("shopper@example.com")
+                .firstName("Ada")
+                .lastName("Obi")
+                .phoneNumber("+2348000000000")
+                .verified(true)
+                .authorities(List.of(new SimpleGrantedAuthority("ROLE_USER")))
+                .build());
+    }
+
+    @Benchmark
+    public Object parseToken() {
+        return jwtService.parseToken(token).getBody();
+    }
+
+    @Benchmark
+    public Object filterAuthenticatedRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/cart");
+        request.addHeader("Authorization", "Bearer " + token);
+        FilterChain chain = new MockFilterChain();
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
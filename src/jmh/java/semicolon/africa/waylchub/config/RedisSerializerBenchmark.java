@@ -0,0 +1,94 @@
+package semicolon.africa.waylchub.config;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import semicolon.africa.waylchub.dto.productDto.RestPage;
+import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.model.product.ProductImage;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis value round-trips with the production serializer
+ * (CacheConfig.cacheValueSerializer): one productDetail entry and one
+ * productsList page. These run on every L2 hit and every cache fill.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisSerializerBenchmark {
+
+    @Param({"20", "48"})
+    private int pageSize;
+
+    private GenericJackson2JsonRedisSerializer serializer;
+    private Product product;
+    private RestPage<Product> page;
+    private byte[] productBytes;
+    private byte[] pageBytes;
+
+    @Setup
+    public void setUp() {
+        serializer = CacheConfig.cacheValueSerializer();
+        product = product(0);
+
+        List<Product> content = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            content.add(product(i));
+        }
+        page = new RestPage<>(new PageImpl<>(content, PageRequest.of(0, pageSize), 1_000));
+
+        productBytes = serializer.serialize(product);
+        pageBytes = serializer.serialize(page);
+    }
+
+    private static Product product(int i) {
+        return Product.builder()
+                .id(String.format("64f1c0ffee%014d", i))
+                .slug("classic-denim-jacket-" + i)
+                .name("Classic Denim Jacket " + i)
+                .description("Mid-weight denim with a relaxed fit, brass buttons and two chest pockets.")
+                .categorySlug("jackets")
+                .categoryName("Jackets")
+                .brandName("Levi's")
+                .categoryLineageIds(List.of("64f1c0ffee0000000000c001", "64f1c0ffee0000000000c002"))
+                .tags(Set.of("denim", "outerwear", "unisex"))
+                .basePrice(new BigDecimal("45000.00"))
+                .minPrice(new BigDecimal("45000.00"))
+                .maxPrice(new BigDecimal("52000.00"))
+                .totalStock(37)
+                .specifications(Map.of("Material", "100% cotton", "Fit", "Relaxed"))
+                .images(List.of(new ProductImage("https://res.cloudinary.com/demo/jacket-" + i + ".jpg", true, null)))
+                .createdAt(Instant.parse("2026-01-01T00:00:00Z"))
+                .updatedAt(Instant.parse("2026-02-01T00:00:00Z"))
+                .build();
+    }
+
+    @Benchmark
+    public byte[] serializeProduct() {
+        return serializer.serialize(product);
+    }
+
+    @Benchmark
+    public Object deserializeProduct() {
+        return serializer.deserialize(productBytes);
+    }
+
+    @Benchmark
+    public byte[] serializePage() {
+        return serializer.serialize(page);
+    }
+
+    @Benchmark
+    public Object deserializePage() {
+        return serializer.deserialize(pageBytes);
+    }
+}
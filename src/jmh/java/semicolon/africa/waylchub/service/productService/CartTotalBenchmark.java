@@ -0,0 +1,54 @@
+package semicolon.africa.waylchub.service.productService;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import semicolon.africa.waylchub.model.product.Cart;
+import semicolon.africa.waylchub.model.product.CartItem;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CartService.updateCartTotal on a full cart (MAX_CART_ITEMS = 50).
+ *
+ * Runs on every cart read and write, so it sits on the hot path of every
+ * product page that shows a cart badge. Prices carry two decimals like the
+ * real catalogue, so BigDecimal has to scale, not just add longs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartTotalBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int items;
+
+    private Cart cart;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<CartItem> cartItems = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            cartItems.add(CartItem.builder()
+                    .productId("p" + i)
+                    .variantId("v" + i)
+                    .quantity(1 + random.nextInt(5))
+                    .unitPrice(BigDecimal.valueOf(500 + random.nextInt(500_000), 2))
+                    .build());
+        }
+        cart = Cart.builder().items(cartItems).build();
+    }
+
+    @Benchmark
+    public void updateCartTotal(Blackhole bh) {
+        CartService.updateCartTotal(cart);
+        bh.consume(cart.getTotalAmount());
+    }
+}
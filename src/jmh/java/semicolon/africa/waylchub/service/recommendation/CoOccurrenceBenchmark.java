@@ -0,0 +1,128 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import org.openjdk.jmh.annotations.*;
+import semicolon.africa.waylchub.service.recommendation.CoOccurrenceMatrix.ItemRow;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The in-memory half of a CollaborativeFilteringService full rebuild, as it
+ * runs: interning a behaviour window into CoOccurrenceMatrix, scoring every
+ * product's full row and top-20 on a fork/join pool with the rows handed over
+ * partition by partition (forEachRowBatch), turning each row into the
+ * co-occurrence map a CoOccurrenceCounts document carries, and walking every
+ * user's items (forEachUser). Synthetic events with a Zipf-like product skew
+ * (a few hot items, a long tail). Mongo streaming and the bulk writes
+ * themselves are not included.
+ *
+ * Each iteration is one full job (SingleShotTime). Besides the run time,
+ * peakHeapMb reports the heap the job needed above the idle baseline: pool
+ * peaks are reset after a GC, so it is an upper bound on the working set.
+ *
+ *   ./mvnw -Pjmh test-compile exec:exec -Djmh.includes=CoOccurrence
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CoOccurrenceBenchmark {
+
+    /** Events in the window. */
+    @Param({"1000000", "5000000"})
+    private int events;
+
+    /** Average events per user. */
+    @Param({"10"})
+    private int eventsPerUser;
+
+    @Param({"50000"})
+    private int activeProducts;
+
+    private int[] eventUsers;
+    private int[] eventProducts;
+    private ForkJoinPool pool;
+    private long baselineHeap;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+        public double peakHeapMb;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int users = Math.max(1, events / eventsPerUser);
+        eventUsers = new int[events];
+        eventProducts = new int[events];
+        for (int e = 0; e < events; e++) {
+            eventUsers[e] = random.nextInt(users);
+            eventProducts[e] = skewed(random);
+        }
+        pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeaks() {
+        System.gc();
+        baselineHeap = 0;
+        for (MemoryPoolMXBean heapPool : heapPools()) {
+            heapPool.resetPeakUsage();
+            baselineHeap += heapPool.getUsage().getUsed();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private int skewed(Random random) {
+        // Log-uniform: floor(N^r) for uniform r picks product p (1 ≤ p < N) with probability
+        // ln(1 + 1/p) / ln N ≈ 1 / (p ln N) — a Zipf-like head with exponent 1. p = 0 is never drawn.
+        double r = random.nextDouble();
+        return (int) Math.min(activeProducts - 1, Math.floor(Math.pow(activeProducts, r)));
+    }
+
+    @Benchmark
+    public long buildAndScore(Heap heap) {
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix();
+        for (int e = 0; e < events; e++) {
+            // Fresh Strings per event, as the Mongo cursor decodes them
+            matrix.add("u" + eventUsers[e], "p" + eventProducts[e], e);
+        }
+
+        LongAdder written = new LongAdder();
+        matrix.forEachRowBatch(20, pool, rows -> {
+            for (ItemRow row : rows) {
+                // What writeRows builds per product before the bulk insert
+                Map<String, Long> co = new HashMap<>(row.neighbours().length * 4 / 3 + 1);
+                for (int i = 0; i < row.neighbours().length; i++) co.put(row.neighbours()[i], (long) row.counts()[i]);
+                written.add(co.size() + row.top().size());
+            }
+        });
+        matrix.forEachUser((userId, productIds, lastSeen) -> written.add(productIds.length));
+
+        long peak = 0;
+        for (MemoryPoolMXBean heapPool : heapPools()) peak += heapPool.getPeakUsage().getUsed();
+        heap.peakHeapMb = (peak - baselineHeap) / (1024.0 * 1024.0);
+        return written.sum();
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getType() == MemoryType.HEAP)
+                .toList();
+    }
+}
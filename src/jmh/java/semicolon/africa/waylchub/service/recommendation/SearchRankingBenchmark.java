@@ -0,0 +1,45 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SmartSearchService.reRankByPopularity without the popularity read: the
+ * merged strategy results (up to 3 × MAX_RESULTS_PER_STRATEGY IDs) sorted by
+ * score, with a realistic share of products that have no popularity row yet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchRankingBenchmark {
+
+    @Param({"10", "100", "300"})
+    private int candidates;
+
+    private List<String> productIds;
+    private Map<String, Double> scores;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        productIds = new ArrayList<>(candidates);
+        scores = new HashMap<>();
+        for (int i = 0; i < candidates; i++) {
+            String id = UUID.nameUUIDFromBytes(("product-" + i).getBytes()).toString();
+            productIds.add(id);
+            if (random.nextInt(4) != 0) {          // ~25% never scored
+                scores.put(id, random.nextDouble() * 1_000);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<String> rankByScore() {
+        return SmartSearchService.rankByScore(productIds, scores);
+    }
+}
@@ -1,5 +1,7 @@
 package semicolon.africa.waylchub.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -9,7 +11,8 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 @Configuration
 @EnableAsync
@@ -17,6 +20,13 @@ import java.util.concurrent.ThreadPoolExecutor;
 @EnableScheduling
 public class AsyncConfiguration {
 
+    // Overload behaviour per executor — see LoadSheddingPolicy
+    private final MeterRegistry meterRegistry;
+
+    public AsyncConfiguration(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     /**
      * @Primary fixes: "More than one TaskExecutor bean found..."
      * General purpose async executor for critical tasks like emails and stock restoration.
@@ -24,7 +34,9 @@ public class AsyncConfiguration {
      */
     @Primary
     @Bean(name = "asyncExecutor")
-    public Executor asyncExecutor() {
+    public Executor asyncExecutor(
+            @Value("${app.executors.async.overload:CALLER_RUNS}") LoadSheddingPolicy.Mode overload,
+            @Value("${app.executors.async.sample-rates:}") String sampleRates) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(10);
         executor.setMaxPoolSize(50);
@@ -33,7 +45,7 @@ public class AsyncConfiguration {
         executor.setKeepAliveSeconds(60);
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(30);
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setRejectedExecutionHandler(policy("async", overload, sampleRates));
         executor.initialize();
         return executor;
     }
@@ -42,18 +54,146 @@ public class AsyncConfiguration {
      * Dedicated thread pool for async behavior tracking.
      * Prevents a spike in tracking events from starving the main HTTP thread pool.
      * We do NOT wait for these on shutdown, as tracking is best-effort.
+     *
+     * A full pool sheds load instead of running tracking on the request thread
+     * (it used to be CallerRunsPolicy: a slow tracking store then slowed product
+     * pages down with it). By default cart adds are kept, wishlists sampled and
+     * views/searches dropped; purchases are essential and never dropped.
      */
     @Bean(name = "trackingExecutor")
-    public Executor trackingExecutor() {
+    public Executor trackingExecutor(
+            @Value("${app.executors.tracking.overload:SAMPLE}") LoadSheddingPolicy.Mode overload,
+            @Value("${app.executors.tracking.sample-rates:ADD_TO_CART:1.0,WISHLIST:0.5}") String sampleRates) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(20);
-        executor.setQueueCapacity(500); // Buffer before rejection — each item is a single DB write
+        executor.setQueueCapacity(500); // Buffer before rejection — each item only queues an event for BehaviorEventBuffer
         executor.setThreadNamePrefix("tracking-");
         executor.setKeepAliveSeconds(60);
         executor.setWaitForTasksToCompleteOnShutdown(false); // Let the server shut down quickly
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setRejectedExecutionHandler(policy("tracking", overload, sampleRates));
         executor.initialize();
         return executor;
     }
+
+    /**
+     * One thread for BehaviorEventBuffer's early drains (max-batch reached
+     * before the flush tick). No queue and a rejecting policy: when the thread
+     * is already draining the hand-off fails at once and the scheduled tick
+     * picks the buffer up, so a drain never runs on the thread that tracked
+     * the event.
+     */
+    @Bean(name = "trackingFlushExecutor")
+    public Executor trackingFlushExecutor() {
+        return singleFlusher("tracking-flush");
+    }
+
+    /**
+     * Same shape for AggregateSyncCoalescer's early flush: the dirty threshold
+     * is crossed on a checkout thread, which must not run the batch sync.
+     */
+    @Bean(name = "aggregateFlushExecutor")
+    public Executor aggregateFlushExecutor() {
+        return singleFlusher("aggregate-flush");
+    }
+
+    /**
+     * PersonalFeedService's background drain of stale feeds. Kicked off from
+     * the shared scheduler, so it must not fall back to that thread; a drain
+     * still running rejects the next one and the following tick retries.
+     */
+    @Bean(name = "feedRebuildExecutor")
+    public Executor feedRebuildExecutor() {
+        return singleFlusher("feed-rebuild");
+    }
+
+    /**
+     * Bounded pool for SmartSearchService's fallback strategies (text, category,
+     * brand), which run concurrently under a per-search deadline, and for the
+     * independent lookups of a product-page recommendation bundle.
+     * Kept apart from asyncExecutor so a slow Mongo cannot queue searches behind
+     * emails and stock restoration, or the other way round. A full pool rejects;
+     * the caller then runs the strategy on the request thread.
+     */
+    @Bean(name = "searchExecutor")
+    public Executor searchExecutor(
+            @Value("${app.executors.search.overload:ABORT}") LoadSheddingPolicy.Mode overload,
+            @Value("${app.executors.search.sample-rates:}") String sampleRates) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(32);
+        executor.setQueueCapacity(64);
+        executor.setThreadNamePrefix("search-");
+        executor.setKeepAliveSeconds(60);
+        executor.setWaitForTasksToCompleteOnShutdown(false); // Read-only; the request has its answer or gave up
+        executor.setRejectedExecutionHandler(policy("search", overload, sampleRates));
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs the offline recommendation jobs (CF, content similarity, ALS) that
+     * LockedJobRunner.submit hands off from @Scheduled methods and admin
+     * triggers, and the background index rebuilds the scheduler kicks off. A
+     * run takes seconds to minutes, so it must never fall back to the
+     * submitting thread the way asyncExecutor's CALLER_RUNS does — that would
+     * be the scheduler. A full pool rejects the run instead (counted in
+     * executor.rejected); callers release their in-flight flag and the next
+     * schedule tries again. The scoring itself happens on scoringPool; these
+     * threads mostly wait on it and on Mongo.
+     */
+    @Bean(name = "offlineJobExecutor")
+    public Executor offlineJobExecutor(
+            @Value("${app.executors.offline.overload:ABORT}") LoadSheddingPolicy.Mode overload) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4); // One per job (ShedLock keeps each to one run) plus one for the rebuilds
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(6);
+        executor.setThreadNamePrefix("offline-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(false); // Each job is re-run from scratch on its next schedule
+        executor.setRejectedExecutionHandler(policy("offline", overload, ""));
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * The one fork/join pool the offline recommendation jobs (CF rebuild,
+     * content similarity, ALS training) score on. Shared, so two jobs that
+     * overlap split these threads between them instead of each bringing a
+     * pool of its own and oversubscribing the CPU. Defaults to one thread per
+     * core but one, which is left for request threads; a non-positive
+     * parallelism means that default.
+     */
+    @Bean(name = "scoringPool", destroyMethod = "shutdownNow")
+    public ForkJoinPool scoringPool(@Value("${app.executors.scoring.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        return new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("scoring-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * One thread, no queue, ABORT: a hand-off while the thread is busy throws
+     * RejectedExecutionException at once, and the owner's scheduled tick picks
+     * the work up instead of the submitting thread.
+     */
+    private Executor singleFlusher(String name) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix(name + "-");
+        executor.setWaitForTasksToCompleteOnShutdown(true); // Owners flush what is left on shutdown
+        executor.setAwaitTerminationSeconds(10);
+        executor.setRejectedExecutionHandler(policy(name, LoadSheddingPolicy.Mode.ABORT, ""));
+        executor.initialize();
+        return executor;
+    }
+
+    private LoadSheddingPolicy policy(String executorName, LoadSheddingPolicy.Mode overload, String sampleRates) {
+        return new LoadSheddingPolicy(executorName, overload,
+                LoadSheddingPolicy.parseSampleRates(sampleRates), meterRegistry);
+    }
 }
\ No newline at end of file
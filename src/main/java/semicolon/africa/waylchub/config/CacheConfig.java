@@ -6,6 +6,7 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CachingConfigurer;
@@ -16,6 +17,9 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -23,6 +27,7 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Configuration
@@ -36,22 +41,24 @@ public class CacheConfig implements CachingConfigurer {
     public static final String SITE_CONFIG_CACHE         = "siteConfig";
     public static final String PRODUCTS_LIST_CACHE       = "productsList";
     public static final String PRODUCT_DETAIL_CACHE      = "productDetail";
+    public static final String RECOMMENDATION_CANDIDATES_CACHE = "recommendationCandidates";
+
+    // Caches that get a per-pod Caffeine L1 in front of Redis (see TwoLevelCacheManager)
+    private static final Set<String> L1_CACHES = Set.of(
+            PRODUCT_DETAIL_CACHE, PRODUCTS_LIST_CACHE, RECOMMENDATION_CANDIDATES_CACHE);
+
+    @Value("${app.cache.l1.max-weight:20000}")
+    private long l1MaxWeight;
+
+    @Value("${app.cache.l1.ttl-seconds:60}")
+    private long l1TtlSeconds;
+
+    private CacheInvalidationBroadcaster invalidationBroadcaster;
 
     @Bean
     public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
 
-        ObjectMapper objectMapper = new ObjectMapper()
-                .registerModule(new JavaTimeModule())
-                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
-                // WRAPPER_ARRAY: type id always comes first — no token-ordering conflict
-                // with Map<String,Object> or bare Object fields (e.g. Product.specifications)
-                .activateDefaultTyping(
-                        LaissezFaireSubTypeValidator.instance,
-                        ObjectMapper.DefaultTyping.NON_FINAL,
-                        JsonTypeInfo.As.WRAPPER_ARRAY);
-
-        GenericJackson2JsonRedisSerializer jsonSerializer =
-                new GenericJackson2JsonRedisSerializer(objectMapper);
+        GenericJackson2JsonRedisSerializer jsonSerializer = cacheValueSerializer();
 
         RedisCacheConfiguration base = RedisCacheConfiguration.defaultCacheConfig()
                 .prefixCacheNameWith("exploreaba:")
@@ -69,18 +76,63 @@ public class CacheConfig implements CachingConfigurer {
         cacheConfigs.put(SITE_CONFIG_CACHE,          base.entryTtl(Duration.ofHours(24)));
         cacheConfigs.put(PRODUCTS_LIST_CACHE,        base.entryTtl(Duration.ofHours(1)));
         cacheConfigs.put(PRODUCT_DETAIL_CACHE,       base.entryTtl(Duration.ofHours(1)));
+        // Product-page candidate IDs only, hydrated per request. Evicted per product when its
+        // similarity lists change; the TTL bounds drift of the popularity/ALS fallbacks
+        cacheConfigs.put(RECOMMENDATION_CANDIDATES_CACHE, base.entryTtl(Duration.ofHours(1)));
 
         RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(base.entryTtl(Duration.ofHours(1)))
                 .withInitialCacheConfigurations(cacheConfigs)
                 .build();
 
+        // Caffeine L1 in front of Redis for the hot product caches. Evictions
+        // are broadcast over Redis pub/sub so every pod drops its L1 copy.
+        TwoLevelCacheManager twoLevelCacheManager = new TwoLevelCacheManager(
+                redisCacheManager, L1_CACHES, l1MaxWeight, Duration.ofSeconds(l1TtlSeconds));
+
+        StringRedisTemplate pubSubTemplate = new StringRedisTemplate(connectionFactory);
+        invalidationBroadcaster = new CacheInvalidationBroadcaster(pubSubTemplate, twoLevelCacheManager);
+        twoLevelCacheManager.setBroadcaster(invalidationBroadcaster);
+
         // Wrap with LoggingCacheManager so every HIT, MISS, PUT, and EVICT
         // is logged without any changes to service code.
         // HIT  → INFO  (confirm Redis is serving traffic)
         // MISS → DEBUG (first-access; noisy at INFO — lower to DEBUG in prod if needed)
         // PUT  → INFO  (confirm entries are being written to Redis)
-        return new LoggingCacheManager(redisCacheManager);
+        return new LoggingCacheManager(twoLevelCacheManager);
+    }
+
+    /**
+     * Value serializer for every Redis cache. Static so RedisSerializerBenchmark
+     * measures exactly what production writes.
+     */
+    static GenericJackson2JsonRedisSerializer cacheValueSerializer() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                // WRAPPER_ARRAY: type id always comes first — no token-ordering conflict
+                // with Map<String,Object> or bare Object fields (e.g. Product.specifications)
+                .activateDefaultTyping(
+                        LaissezFaireSubTypeValidator.instance,
+                        ObjectMapper.DefaultTyping.NON_FINAL,
+                        JsonTypeInfo.As.WRAPPER_ARRAY);
+
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
+    }
+
+    /**
+     * Subscribes this pod to cross-pod L1 invalidations.
+     * Takes the CacheManager as a parameter only to guarantee it (and the
+     * broadcaster it creates) exists before the container starts listening.
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+            RedisConnectionFactory connectionFactory, CacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(invalidationBroadcaster,
+                new ChannelTopic(CacheInvalidationBroadcaster.CHANNEL));
+        return container;
     }
 
     @Override
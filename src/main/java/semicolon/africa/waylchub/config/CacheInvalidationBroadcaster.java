@@ -0,0 +1,91 @@
+package semicolon.africa.waylchub.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Cross-pod L1 invalidation over Redis pub/sub.
+ *
+ * Every evict/clear on a {@link TwoLevelCacheManager} cache is published on
+ * {@link #CHANNEL}. Every pod (including the sender) is subscribed; messages
+ * carrying this pod's own origin id are ignored because the local L1 was
+ * already invalidated synchronously.
+ *
+ * WIRE FORMAT (plain text, no Jackson — keeps the subscriber allocation-light):
+ *   {origin}|E|{cacheName}|{key}   → evict one key
+ *   {origin}|C|{cacheName}         → clear the whole cache
+ *
+ * The key is always the last field, so keys that contain '|' survive intact.
+ *
+ * FAILURE MODE:
+ *   Publishing is best-effort. If Redis is unreachable the write path must not
+ *   fail — the short L1 TTL bounds how long another pod can serve a stale copy.
+ */
+@Slf4j
+public class CacheInvalidationBroadcaster implements MessageListener {
+
+    public static final String CHANNEL = "exploreaba:cache-invalidation";
+
+    private static final String EVICT = "E";
+    private static final String CLEAR = "C";
+
+    private final StringRedisTemplate redisTemplate;
+    private final TwoLevelCacheManager cacheManager;
+    private final String origin = UUID.randomUUID().toString();
+
+    public CacheInvalidationBroadcaster(StringRedisTemplate redisTemplate,
+                                        TwoLevelCacheManager cacheManager) {
+        this.redisTemplate = redisTemplate;
+        this.cacheManager = cacheManager;
+    }
+
+    // =========================================================================
+    // PUBLISH
+    // =========================================================================
+
+    public void publishEvict(String cacheName, Object key) {
+        send(origin + "|" + EVICT + "|" + cacheName + "|" + key);
+    }
+
+    public void publishClear(String cacheName) {
+        send(origin + "|" + CLEAR + "|" + cacheName);
+    }
+
+    private void send(String payload) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, payload);
+        } catch (Exception e) {
+            log.warn("[Cache] Invalidation broadcast failed, other pods rely on L1 TTL: {}",
+                    e.getMessage());
+        }
+    }
+
+    // =========================================================================
+    // SUBSCRIBE
+    // =========================================================================
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = payload.split("\\|", 4);
+        if (parts.length < 3 || origin.equals(parts[0])) {
+            return;
+        }
+
+        String op = parts[1];
+        String cacheName = parts[2];
+
+        if (EVICT.equals(op) && parts.length == 4) {
+            cacheManager.evictLocal(cacheName, parts[3]);
+        } else if (CLEAR.equals(op)) {
+            cacheManager.clearLocal(cacheName);
+        } else {
+            log.debug("[Cache] Ignoring malformed invalidation message: {}", payload);
+        }
+    }
+}
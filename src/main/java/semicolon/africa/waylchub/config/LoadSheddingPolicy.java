@@ -0,0 +1,123 @@
+package semicolon.africa.waylchub.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * What an executor does with a task once its pool and queue are full.
+ *
+ * MODES (app.executors.{name}.overload):
+ *   CALLER_RUNS — the submitting thread runs it (work that must not be lost)
+ *   ABORT       — RejectedExecutionException; the caller has its own fallback
+ *   DROP        — discarded
+ *   SAMPLE      — the submitting thread runs it with the probability configured
+ *                 for its tag (app.executors.{name}.sample-rates, e.g.
+ *                 "ADD_TO_CART:1.0,WISHLIST:0.5"); unlisted tags are dropped
+ *
+ * ESSENTIAL TASKS:
+ *   A TaggedTask marked essential is never dropped: under DROP and SAMPLE it
+ *   runs on the submitting thread. Use it for work that is cheap to run there
+ *   and expensive to lose (a purchase event is one buffer append).
+ *
+ * METRICS:
+ *   executor.rejected{executor, tag, outcome=caller_runs|aborted|dropped}
+ */
+@Slf4j
+public final class LoadSheddingPolicy implements RejectedExecutionHandler {
+
+    public enum Mode { CALLER_RUNS, ABORT, DROP, SAMPLE }
+
+    /** A task that carries what the policy needs to decide about it. */
+    public record TaggedTask(String tag, boolean essential, Runnable work) implements Runnable {
+        @Override
+        public void run() {
+            work.run();
+        }
+    }
+
+    static final String UNTAGGED = "untagged";
+
+    private final String executorName;
+    private final Mode mode;
+    private final Map<String, Double> sampleRates;
+    private final MeterRegistry meterRegistry;
+
+    public LoadSheddingPolicy(String executorName, Mode mode, Map<String, Double> sampleRates,
+                              MeterRegistry meterRegistry) {
+        this.executorName = executorName;
+        this.mode = mode;
+        this.sampleRates = Map.copyOf(sampleRates);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /** Parses "TAG:rate,TAG:rate"; rates are clamped to [0, 1], blank means none. */
+    public static Map<String, Double> parseSampleRates(String spec) {
+        Map<String, Double> rates = new HashMap<>();
+        if (spec == null || spec.isBlank()) return rates;
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2 || parts[0].isBlank()) {
+                throw new IllegalArgumentException("Invalid sample rate '" + entry + "', expected TAG:rate");
+            }
+            double rate = Double.parseDouble(parts[1].trim());
+            rates.put(parts[0].trim(), Math.max(0.0, Math.min(1.0, rate)));
+        }
+        return rates;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        String tag = task instanceof TaggedTask t ? t.tag() : UNTAGGED;
+        boolean essential = task instanceof TaggedTask t && t.essential();
+
+        if (executor.isShutdown()) {
+            count(tag, "dropped");
+            return;
+        }
+        switch (mode) {
+            case CALLER_RUNS -> runOnCaller(task, tag);
+            case ABORT -> {
+                count(tag, "aborted");
+                throw new RejectedExecutionException("Executor " + executorName + " is saturated");
+            }
+            case DROP -> {
+                if (essential) runOnCaller(task, tag);
+                else drop(tag);
+            }
+            case SAMPLE -> {
+                double rate = sampleRates.getOrDefault(tag, 0.0);
+                if (essential || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate)) runOnCaller(task, tag);
+                else drop(tag);
+            }
+        }
+    }
+
+    Mode mode() {
+        return mode;
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    private void runOnCaller(Runnable task, String tag) {
+        count(tag, "caller_runs");
+        task.run();
+    }
+
+    private void drop(String tag) {
+        count(tag, "dropped");
+        log.debug("Executor {} saturated, dropped a {} task", executorName, tag);
+    }
+
+    private void count(String tag, String outcome) {
+        meterRegistry.counter("executor.rejected", "executor", executorName, "tag", tag, "outcome", outcome)
+                .increment();
+    }
+}
@@ -67,6 +67,7 @@ public class SecurityConfig {
                                 "/api/products/**",
                                 "/api/v1/config/cat-bar",
                                 "/api/v1/search**",
+                                "/api/v1/search/**",
                                 "/api/v1/recommendations/**",
                                 "/api/v1/track/**"
                         ).permitAll()
@@ -93,6 +94,7 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(List.of(allowedOrigins.split(",")));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Guest-ID", "X-Session-Id"));
+        configuration.setExposedHeaders(List.of("X-Search-Partial"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
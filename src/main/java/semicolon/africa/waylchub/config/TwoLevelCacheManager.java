@@ -0,0 +1,306 @@
+package semicolon.africa.waylchub.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.domain.Page;
+import semicolon.africa.waylchub.dto.productDto.ProductDetailResponse;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Layered {@link CacheManager}: a per-pod Caffeine L1 in front of the shared
+ * Redis L2 for the caches named in {@code l1CacheNames}.
+ *
+ * WHY:
+ *   Every PRODUCT_DETAIL_CACHE hit used to be a Redis round trip plus a Jackson
+ *   default-typing deserialization. Hot product pages are read thousands of
+ *   times between writes, so serving them from the heap turns a ~2–5ms network
+ *   call into a sub-millisecond map lookup.
+ *
+ * CONSISTENCY:
+ *   L2 (Redis) stays the source of truth shared by all pods. Every evict/clear
+ *   goes to L2 first, then the local L1, and is then broadcast through
+ *   {@link CacheInvalidationBroadcaster} so every other pod drops its L1 copy.
+ *   This covers both @CacheEvict and the manual evictions in
+ *   ProductService.evictProductCaches — both go through this manager.
+ *
+ *   The L1 TTL is deliberately short: if a pub/sub message is ever lost
+ *   (Redis failover, pod paused during GC), a stale entry self-heals within
+ *   one TTL instead of living for the full L2 TTL.
+ *
+ * SIZING:
+ *   L1 is bounded by weight, not entry count. A listing page holding 24
+ *   products is not the same cost as a single product, so entries are weighed
+ *   by the number of documents they carry (see {@link #weigh(Object)}).
+ *
+ * Caches NOT listed in {@code l1CacheNames} are returned from L2 unchanged.
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final CacheManager l2;
+    private final Set<String> l1CacheNames;
+    private final long l1MaxWeight;
+    private final Duration l1Ttl;
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    private CacheInvalidationBroadcaster broadcaster;
+
+    public TwoLevelCacheManager(CacheManager l2, Set<String> l1CacheNames,
+                                long l1MaxWeight, Duration l1Ttl) {
+        this.l2 = l2;
+        this.l1CacheNames = Set.copyOf(l1CacheNames);
+        this.l1MaxWeight = l1MaxWeight;
+        this.l1Ttl = l1Ttl;
+    }
+
+    /**
+     * Set after construction because the broadcaster needs the manager to apply
+     * remote invalidations, and the manager needs the broadcaster to publish them.
+     */
+    public void setBroadcaster(CacheInvalidationBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache remote = l2.getCache(name);
+        if (remote == null || !l1CacheNames.contains(name)) {
+            return remote;
+        }
+        return caches.computeIfAbsent(name, n -> new TwoLevelCache(remote, buildL1()));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return l2.getCacheNames();
+    }
+
+    // =========================================================================
+    // REMOTE INVALIDATION — called by CacheInvalidationBroadcaster
+    // =========================================================================
+
+    /** Drops a single key from the local L1 only. Never touches Redis. */
+    void evictLocal(String cacheName, Object key) {
+        TwoLevelCache cache = caches.get(cacheName);
+        if (cache != null) {
+            cache.l1.invalidate(key);
+            log.debug("[L1 EVICT] cache='{}' key='{}' (remote)", cacheName, key);
+        }
+    }
+
+    /** Drops every L1 entry of a cache. Never touches Redis. */
+    void clearLocal(String cacheName) {
+        TwoLevelCache cache = caches.get(cacheName);
+        if (cache != null) {
+            cache.l1.invalidateAll();
+            log.debug("[L1 CLEAR] cache='{}' (remote)", cacheName);
+        }
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> buildL1() {
+        return Caffeine.newBuilder()
+                .maximumWeight(l1MaxWeight)
+                .weigher((Object k, Object v) -> weigh(v))
+                .expireAfterWrite(l1Ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Rough cost of an entry, in "documents held". Exact byte sizes would need a
+     * serialization pass per put, which is the cost L1 exists to avoid.
+     */
+    static int weigh(Object value) {
+        if (value instanceof Page<?> page) {
+            return 1 + page.getNumberOfElements();
+        }
+        if (value instanceof ProductDetailResponse detail) {
+            return 1 + (detail.getVariants() != null ? detail.getVariants().size() : 0);
+        }
+        if (value instanceof Collection<?> collection) {
+            return 1 + collection.size();
+        }
+        return 1;
+    }
+
+    // =========================================================================
+    // Inner class — one instance per L1-enabled cache
+    // =========================================================================
+
+    class TwoLevelCache implements Cache {
+
+        private final Cache l2Cache;
+        private final com.github.benmanes.caffeine.cache.Cache<Object, Object> l1;
+        // sync=true loads in progress on this pod, by key
+        private final Map<Object, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+        TwoLevelCache(Cache l2Cache, com.github.benmanes.caffeine.cache.Cache<Object, Object> l1) {
+            this.l2Cache = l2Cache;
+            this.l1 = l1;
+        }
+
+        @Override
+        public String getName() {
+            return l2Cache.getName();
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return l2Cache.getNativeCache();
+        }
+
+        // -----------------------------------------------------------------
+        // GET — L1 first, then L2 (and promote to L1 on an L2 hit)
+        // -----------------------------------------------------------------
+
+        @Override
+        public ValueWrapper get(Object key) {
+            Object local = l1.getIfPresent(key);
+            if (local != null) {
+                return new SimpleValueWrapper(local);
+            }
+            ValueWrapper remote = l2Cache.get(key);
+            if (remote != null && remote.get() != null) {
+                l1.put(key, remote.get());
+            }
+            return remote;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(Object key, Class<T> type) {
+            Object local = l1.getIfPresent(key);
+            if (local != null && (type == null || type.isInstance(local))) {
+                return (T) local;
+            }
+            T remote = l2Cache.get(key, type);
+            if (remote != null) {
+                l1.put(key, remote);
+            }
+            return remote;
+        }
+
+        /**
+         * sync=true path. Concurrent misses on this pod share one L2 lookup (and
+         * at most one DB load) through an in-flight future. The load runs outside
+         * Caffeine's compute: l1.get(key, fn) would hold the map bin lock for the
+         * whole Redis read and DB query, blocking writes to unrelated keys.
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            Object local = l1.getIfPresent(key);
+            if (local != null) {
+                return (T) local;
+            }
+
+            CompletableFuture<Object> mine = new CompletableFuture<>();
+            CompletableFuture<Object> inFlight = loading.putIfAbsent(key, mine);
+            if (inFlight != null) {
+                return (T) await(inFlight);
+            }
+            try {
+                T value = l2Cache.get(key, valueLoader);
+                if (value != null) {
+                    l1.put(key, value);
+                }
+                mine.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                loading.remove(key, mine);
+            }
+        }
+
+        private Object await(CompletableFuture<Object> inFlight) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                if (e.getCause() instanceof Error cause) throw cause;
+                throw e;
+            }
+        }
+
+        // -----------------------------------------------------------------
+        // PUT — write-through to L2, then L1
+        // -----------------------------------------------------------------
+
+        @Override
+        public void put(Object key, Object value) {
+            l2Cache.put(key, value);
+            if (value != null) {
+                l1.put(key, value);
+            }
+        }
+
+        @Override
+        public ValueWrapper putIfAbsent(Object key, Object value) {
+            ValueWrapper existing = l2Cache.putIfAbsent(key, value);
+            Object current = existing != null ? existing.get() : value;
+            if (current != null) {
+                l1.put(key, current);
+            }
+            return existing;
+        }
+
+        // -----------------------------------------------------------------
+        // EVICT / CLEAR — L2, then L1, then tell every other pod
+        // -----------------------------------------------------------------
+
+        @Override
+        public void evict(Object key) {
+            l2Cache.evict(key);
+            l1.invalidate(key);
+            publishEvict(key);
+        }
+
+        @Override
+        public boolean evictIfPresent(Object key) {
+            boolean removed = l2Cache.evictIfPresent(key);
+            l1.invalidate(key);
+            publishEvict(key);
+            return removed;
+        }
+
+        @Override
+        public void clear() {
+            l2Cache.clear();
+            l1.invalidateAll();
+            publishClear();
+        }
+
+        @Override
+        public boolean invalidate() {
+            boolean invalidated = l2Cache.invalidate();
+            l1.invalidateAll();
+            publishClear();
+            return invalidated;
+        }
+
+        private void publishEvict(Object key) {
+            if (broadcaster != null) {
+                broadcaster.publishEvict(getName(), key);
+            }
+        }
+
+        private void publishClear() {
+            if (broadcaster != null) {
+                broadcaster.publishClear(getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package semicolon.africa.waylchub.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.*;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import semicolon.africa.waylchub.service.recommendation.AlsTrainingService;
+import semicolon.africa.waylchub.service.recommendation.CollaborativeFilteringService;
+import semicolon.africa.waylchub.service.recommendation.ContentSimilarityService;
+
+import java.util.Map;
+
+/**
+ * Admin-only recommendation maintenance.
+ *
+ * Base path: /api/admin/recommendations
+ */
+@RestController
+@RequestMapping("/api/admin/recommendations")
+@RequiredArgsConstructor
+@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+public class AdminRecommendationController {
+
+    private final CollaborativeFilteringService collaborativeFilteringService;
+    private final ContentSimilarityService contentSimilarityService;
+    private final AlsTrainingService alsTrainingService;
+
+    /**
+     * POST /api/admin/recommendations/cf/rebuild
+     *
+     * Queues a full collaborative-filtering rebuild and returns 202 at once.
+     * If a run already holds the lock on any pod, the rebuild is skipped —
+     * the logs say so.
+     */
+    @PostMapping("/cf/rebuild")
+    public ResponseEntity<Map<String, String>> rebuildCollaborativeFiltering() {
+        collaborativeFilteringService.rebuildAsync();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("status", "accepted"));
+    }
+
+    /**
+     * POST /api/admin/recommendations/content/rebuild
+     *
+     * Queues a CONTENT similarity rebuild (e.g. after a catalogue import) and
+     * returns 202 at once. Skipped if a run already holds the lock.
+     */
+    @PostMapping("/content/rebuild")
+    public ResponseEntity<Map<String, String>> rebuildContentSimilarity() {
+        contentSimilarityService.rebuildAsync();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("status", "accepted"));
+    }
+
+    /**
+     * POST /api/admin/recommendations/als/train
+     *
+     * Queues ALS training and evaluation, and returns 202 at once. recall@K
+     * of ALS and CF is logged and stored on the new model's als_models
+     * document. Skipped if a run already holds the lock.
+     */
+    @PostMapping("/als/train")
+    public ResponseEntity<Map<String, String>> trainFactorModel() {
+        alsTrainingService.trainAsync();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("status", "accepted"));
+    }
+}
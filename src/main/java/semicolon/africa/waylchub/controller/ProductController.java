@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.*;
 import semicolon.africa.waylchub.dto.productDto.*;
 import semicolon.africa.waylchub.model.product.Product;
 import semicolon.africa.waylchub.model.product.ProductVariant;
+import semicolon.africa.waylchub.service.productService.KeysetPagination;
 import semicolon.africa.waylchub.service.productService.ProductService;
 
 import java.util.List;
@@ -85,6 +86,22 @@ public class ProductController {
         return ResponseEntity.ok(productPage.map(this::mapToResponse));
     }
 
+    /**
+     * Cursor (keyset) mode of /filter for infinite scroll. Pass nextCursor from
+     * the previous response to continue; deep slices cost the same as the first.
+     */
+    @PostMapping("/filter/cursor")
+    public ResponseEntity<CursorPage<ProductResponse>> filterProductsByCursor(
+            @RequestBody ProductFilterRequest request,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "0") int size,   // 0 = KeysetPagination.DEFAULT_PAGE_SIZE
+            @RequestParam(defaultValue = "NEWEST") KeysetPagination.SortKey sort,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        return ResponseEntity.ok(productService
+                .filterProductsByCursor(request, sort, cursor, size, includeTotal)
+                .map(this::mapToResponse));
+    }
+
     @GetMapping("/details/{slug}")
     public ResponseEntity<Product> getBySlug(@PathVariable String slug) {
         return ResponseEntity.ok(productService.getProductBySlug(slug));
@@ -113,6 +130,20 @@ public class ProductController {
                 .map(this::mapToResponse));
     }
 
+    @GetMapping("/category/{slug}/cursor")
+    public ResponseEntity<CursorPage<ProductResponse>> getByCategoryCursor(
+            @PathVariable String slug,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "0") int size,   // 0 = KeysetPagination.DEFAULT_PAGE_SIZE
+            @RequestParam(defaultValue = "NEWEST") KeysetPagination.SortKey sort,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        ProductFilterRequest filter = new ProductFilterRequest();
+        filter.setCategorySlug(slug);
+        return ResponseEntity.ok(productService
+                .filterProductsByCursor(filter, sort, cursor, size, includeTotal)
+                .map(this::mapToResponse));
+    }
+
     /**
      * ✅ FIX: Added pagination — the original returned ALL products from MongoDB
      * into memory in one query. With thousands of products this will OOM or time out.
@@ -6,13 +6,18 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import semicolon.africa.waylchub.dto.productDto.CursorPage;
 import semicolon.africa.waylchub.dto.productDto.ProductFilterRequest;
 import semicolon.africa.waylchub.dto.productDto.ProductResponse;
 import semicolon.africa.waylchub.dto.recommendation.RecommendationResponse;
+import semicolon.africa.waylchub.dto.recommendation.SearchPage;
+import semicolon.africa.waylchub.dto.recommendation.SearchSuggestion;
 import semicolon.africa.waylchub.dto.recommendation.TrackEventRequest;
 import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.service.productService.KeysetPagination;
 import semicolon.africa.waylchub.service.recommendation.BehaviorTrackingService;
 import semicolon.africa.waylchub.service.recommendation.RecommendationService;
+import semicolon.africa.waylchub.service.recommendation.SearchSuggestIndex;
 import semicolon.africa.waylchub.service.recommendation.SmartSearchService;
 
 import java.security.Principal;
@@ -25,12 +30,17 @@ import java.util.List;
  *
  * SEARCH:
  *   GET  /search?q=jeans&page=0&size=24   → smart multi-strategy search
+ *   GET  /search/cursor?q=jeans&size=24&cursor=…  → same, cursor mode for infinite scroll
+ *   GET  /search/suggest?q=jea&limit=8  → typeahead, served from memory
+ *
+ *   A keyword search that had to leave a slow strategy out says so: the
+ *   X-Search-Partial: true header on /search, "partial": true on /search/cursor.
  *
  * RECOMMENDATIONS:
  *   GET  /products/{id}/recommendations   → product page carousels
  *   GET  /recommendations/for-you         → personalized homepage feed
- *   GET  /recommendations/trending        → globally popular
- *   GET  /recommendations/trending/category/{slug} → popular in category
+ *   GET  /recommendations/trending        → hottest right now (live counters)
+ *   GET  /recommendations/trending/category/{slug} → hottest in category
  *
  * BEHAVIOR TRACKING (fire-and-forget — all return 204):
  *   POST /track/view
@@ -51,6 +61,9 @@ public class RecommendationController {
     private final SmartSearchService searchService;
     private final RecommendationService recommendationService;
     private final BehaviorTrackingService trackingService;
+    private final SearchSuggestIndex suggestIndex;
+
+    private static final String PARTIAL_RESULTS_HEADER = "X-Search-Partial";
 
     // =========================================================================
     // SMART SEARCH
@@ -72,14 +85,58 @@ public class RecommendationController {
         if (minPrice != null) filter.setMinPrice(java.math.BigDecimal.valueOf(minPrice));
         if (maxPrice != null) filter.setMaxPrice(java.math.BigDecimal.valueOf(maxPrice));
 
-        Page<Product> results = searchService.search(q, filter, PageRequest.of(page, size));
+        SearchPage<Product> results = searchService.search(q, filter, PageRequest.of(page, size));
 
         if (q != null && !q.isBlank()) {
             String userId = principal != null ? principal.getName() : null;
             trackingService.trackSearch(userId, sessionId, q, null);
         }
 
-        return ResponseEntity.ok(results.map(this::mapToResponse));  // ← was mapToResponse(results)
+        return ResponseEntity.ok()
+                .header(PARTIAL_RESULTS_HEADER, String.valueOf(results.isPartial()))
+                .body(results.map(this::mapToResponse));  // ← was mapToResponse(results)
+    }
+
+    @GetMapping("/search/cursor")
+    public ResponseEntity<CursorPage<ProductResponse>> searchByCursor(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false)    String cursor,
+            @RequestParam(defaultValue = "0")  int size,   // 0 = KeysetPagination.DEFAULT_PAGE_SIZE
+            @RequestParam(defaultValue = "NEWEST") KeysetPagination.SortKey sort,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(required = false)    String category,
+            @RequestParam(required = false)    Double minPrice,
+            @RequestParam(required = false)    Double maxPrice,
+            Principal principal,
+            @RequestHeader(value = "X-Session-Id", required = false) String sessionId) {
+
+        ProductFilterRequest filter = new ProductFilterRequest();
+        filter.setCategorySlug(category);
+        if (minPrice != null) filter.setMinPrice(java.math.BigDecimal.valueOf(minPrice));
+        if (maxPrice != null) filter.setMaxPrice(java.math.BigDecimal.valueOf(maxPrice));
+
+        CursorPage<Product> results =
+                searchService.searchByCursor(q, filter, sort, cursor, size, includeTotal);
+
+        // Track only the first slice — scrolling is not a new search
+        if (q != null && !q.isBlank() && (cursor == null || cursor.isBlank())) {
+            String userId = principal != null ? principal.getName() : null;
+            trackingService.trackSearch(userId, sessionId, q, null);
+        }
+
+        return ResponseEntity.ok(results.map(this::mapToResponse));
+    }
+
+    /**
+     * Typeahead. Not tracked — partial keystrokes are not searches; the search
+     * the user finally submits is tracked by /search.
+     */
+    @GetMapping("/search/suggest")
+    public ResponseEntity<List<SearchSuggestion>> suggest(
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "8") int limit) {
+
+        return ResponseEntity.ok(suggestIndex.suggest(q, limit));
     }
 
     // =========================================================================
@@ -125,7 +182,7 @@ public class RecommendationController {
     public ResponseEntity<List<Product>> getTrending(
             @RequestParam(defaultValue = "10") int limit) {
 
-        List<Product> trending = recommendationService.getGloballyPopular(java.util.Set.of(), limit);
+        List<Product> trending = recommendationService.getTrending(limit);
         return ResponseEntity.ok(trending);
     }
 
@@ -134,7 +191,7 @@ public class RecommendationController {
             @PathVariable String slug,
             @RequestParam(defaultValue = "10") int limit) {
 
-        List<Product> trending = recommendationService.getPopularInCategory(slug, java.util.Set.of(), limit);
+        List<Product> trending = recommendationService.getTrendingInCategory(slug, limit);
         return ResponseEntity.ok(trending);
     }
 
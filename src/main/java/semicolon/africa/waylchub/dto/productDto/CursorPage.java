@@ -0,0 +1,50 @@
+package semicolon.africa.waylchub.dto.productDto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One slice of a keyset-paginated (cursor) listing — the infinite-scroll
+ * counterpart of {@link RestPage}.
+ *
+ * nextCursor is opaque to the client: send it back unchanged to get the next
+ * slice. It is null on the last slice.
+ *
+ * totalElements is only filled when the client asks for it (includeTotal=true)
+ * and is capped for large result sets; totalExact tells the client whether it
+ * may render "1,234 results" or should render "1,000+ results".
+ *
+ * partial is only set by keyword search: true when a search strategy missed its
+ * deadline and the slice was ranked from the strategies that answered in time.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasNext;
+    private int size;
+    private Long totalElements;
+    private Boolean totalExact;
+    private Boolean partial;
+
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+        return CursorPage.<R>builder()
+                .content(content.stream().<R>map(mapper).toList())
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .size(size)
+                .totalElements(totalElements)
+                .totalExact(totalExact)
+                .partial(partial)
+                .build();
+    }
+}
@@ -28,7 +28,7 @@ public class VariantRequest {
     // Optional compare-at price
     private BigDecimal compareAtPrice;
 
-    // Inventory for this specific variant
+    // Physical on-hand inventory for this variant, units held by open checkouts included
     private Integer stockQuantity;
 
     /**
@@ -0,0 +1,32 @@
+package semicolon.africa.waylchub.dto.recommendation;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The product IDs behind one product page's recommendation lists, best first.
+ * This is what gets cached; the cards are hydrated per request.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPageCandidates {
+
+    private List<String> similarIds;
+
+    private List<String> alsoBoughtIds;
+
+    private List<String> alsoViewedIds;
+
+    // Mutable lists: the candidates are cached, and Redis' default typing cannot rebuild List.of()
+    public static ProductPageCandidates empty() {
+        return ProductPageCandidates.builder()
+                .similarIds(new ArrayList<>())
+                .alsoBoughtIds(new ArrayList<>())
+                .alsoViewedIds(new ArrayList<>())
+                .build();
+    }
+}
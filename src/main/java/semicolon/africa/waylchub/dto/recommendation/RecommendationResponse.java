@@ -3,6 +3,7 @@ package semicolon.africa.waylchub.dto.recommendation;
 import lombok.*;
 import semicolon.africa.waylchub.model.product.Product;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Data
@@ -20,11 +21,12 @@ public class RecommendationResponse {
     /** "Customers Also Viewed" — collaborative filtering (CO_VIEW) */
     private List<Product> customersAlsoViewed;
 
+    // Mutable lists: the response is cached, and Redis' default typing cannot rebuild List.of()
     public static RecommendationResponse empty() {
         return RecommendationResponse.builder()
-                .similarProducts(List.of())
-                .customersAlsoBought(List.of())
-                .customersAlsoViewed(List.of())
+                .similarProducts(new ArrayList<>())
+                .customersAlsoBought(new ArrayList<>())
+                .customersAlsoViewed(new ArrayList<>())
                 .build();
     }
 }
\ No newline at end of file
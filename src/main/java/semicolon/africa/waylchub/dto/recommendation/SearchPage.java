@@ -0,0 +1,40 @@
+package semicolon.africa.waylchub.dto.recommendation;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A page of search results that knows whether it is complete.
+ *
+ * partial is true when a fallback search strategy missed its deadline and the
+ * page was merged from the strategies that answered in time. Pages are
+ * serialised VIA_DTO (see WebConfig), so the flag cannot travel in the body —
+ * RecommendationController sends it as the X-Search-Partial header.
+ */
+public class SearchPage<T> extends PageImpl<T> {
+
+    private final boolean partial;
+
+    public SearchPage(List<T> content, Pageable pageable, long total, boolean partial) {
+        super(content, pageable, total);
+        this.partial = partial;
+    }
+
+    public SearchPage(Page<T> page, boolean partial) {
+        this(page.getContent(), page.getPageable(), page.getTotalElements(), partial);
+    }
+
+    public boolean isPartial() {
+        return partial;
+    }
+
+    @Override
+    public <U> SearchPage<U> map(Function<? super T, ? extends U> converter) {
+        return new SearchPage<>(getContent().stream().<U>map(converter).toList(),
+                getPageable(), getTotalElements(), partial);
+    }
+}
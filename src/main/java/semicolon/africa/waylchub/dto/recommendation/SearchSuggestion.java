@@ -0,0 +1,14 @@
+package semicolon.africa.waylchub.dto.recommendation;
+
+/**
+ * One typeahead row from GET /api/v1/search/suggest.
+ * slug is set for PRODUCT and CATEGORY so the frontend can link straight to
+ * the page; BRAND and QUERY rows submit text as a search.
+ */
+public record SearchSuggestion(
+        String text,
+        Type type,
+        String slug
+) {
+    public enum Type { PRODUCT, BRAND, CATEGORY, QUERY }
+}
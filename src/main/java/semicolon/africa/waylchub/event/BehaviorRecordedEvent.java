@@ -0,0 +1,19 @@
+package semicolon.africa.waylchub.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+
+/**
+ * Fired by BehaviorTrackingService after a behaviour event is stored.
+ *
+ * Primary listener marks the shopper's "For You" feed stale so it is rebuilt
+ * in the background (PersonalFeedService).
+ */
+@Getter
+@AllArgsConstructor
+public class BehaviorRecordedEvent {
+    private final String userId;      // null for anonymous shoppers
+    private final String sessionId;
+    private final BehaviorEventType eventType;
+}
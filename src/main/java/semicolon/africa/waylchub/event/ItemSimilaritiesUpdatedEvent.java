@@ -0,0 +1,27 @@
+package semicolon.africa.waylchub.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * Fired by CollaborativeFilteringService after a run wrote new item_similarities.
+ *
+ * Feeds built from the old lists are refreshed lazily on their next read, and
+ * the cached product-page bundles of the rewritten products are evicted.
+ */
+@Getter
+@AllArgsConstructor
+public class ItemSimilaritiesUpdatedEvent {
+    private final long listsWritten;
+    private final Set<String> sourceProductIds;   // null after a full rebuild — any list may have changed
+
+    public static ItemSimilaritiesUpdatedEvent all(long listsWritten) {
+        return new ItemSimilaritiesUpdatedEvent(listsWritten, null);
+    }
+
+    public boolean isFullRebuild() {
+        return sourceProductIds == null;
+    }
+}
@@ -0,0 +1,31 @@
+package semicolon.africa.waylchub.event;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import semicolon.africa.waylchub.service.recommendation.PersonalFeedService;
+import semicolon.africa.waylchub.service.recommendation.RecommendationService;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RecommendationFeedEventListener {
+
+    private final PersonalFeedService feedService;
+    private final RecommendationService recommendationService;
+
+    /** Tracking is async and outside any transaction — handle straight away. */
+    @EventListener
+    public void handleBehaviorRecorded(BehaviorRecordedEvent event) {
+        feedService.markStale(event.getUserId(), event.getSessionId());
+    }
+
+    @EventListener
+    public void handleSimilaritiesUpdated(ItemSimilaritiesUpdatedEvent event) {
+        log.debug("{} similarity list(s) rewritten, invalidating feeds and product-page candidates",
+                event.getListsWritten());
+        feedService.similaritiesChanged();
+        recommendationService.evictProductPageCandidates(event.getSourceProductIds());
+    }
+}
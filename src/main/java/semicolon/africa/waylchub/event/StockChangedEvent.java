@@ -1,7 +1,7 @@
 package semicolon.africa.waylchub.event;
 
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+import lombok.AllArgsConstructor;
 
 /**
  * ✅ CRITICAL FIX #2: Event-driven parent aggregate updates
@@ -19,17 +19,30 @@ import lombok.RequiredArgsConstructor;
  * 6. User's order fails even though stock was successfully reduced!
  *
  * NEW FLOW (FIXED):
- * 1. User A buys variant → reduceStockAtomic() succeeds
- * 2. Publish StockChangedEvent (non-blocking)
+ * 1. User A checks out → ProductService.reduceStockBatch() takes every cart line
+ *    in one guarded bulkWrite (reduceStockAtomic() is its single-variant form)
+ * 2. Publish one StockChangedEvent per product (non-blocking)
  * 3. Order completes immediately ✓
- * 4. Async listener processes event in background
- * 5. Parent stats update eventually (1-2 seconds)
- * 6. If update fails due to concurrency, retry or skip (order already succeeded)
+ * 4. Product.totalStock moves by $inc in the same transaction as the variant
+ * 5. Listener marks the product dirty in AggregateSyncCoalescer; dirty products
+ *    get caches evicted (and prices recomputed, if a price changed) in one batch
+ * 6. If the update fails, it is parked in FailedAggregateSync (order already succeeded)
  */
 @Getter
-@RequiredArgsConstructor
+@AllArgsConstructor
 public class StockChangedEvent {
     private final String productId;
     private final String variantId;
     private final int quantityChanged; // negative for reductions, positive for additions
+
+    /**
+     * Product.totalStock has already moved by $inc when this fires. Only when a
+     * variant price changed (or a variant came or went) do minPrice / maxPrice
+     * need a variant read.
+     */
+    private final boolean priceChanged;
+
+    public StockChangedEvent(String productId, String variantId, int quantityChanged) {
+        this(productId, variantId, quantityChanged, false);
+    }
 }
\ No newline at end of file
@@ -3,9 +3,24 @@ package semicolon.africa.waylchub.exception;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import java.util.List;
+
 @ResponseStatus(HttpStatus.BAD_REQUEST)
 public class InsufficientStockException extends RuntimeException {
+
+    /** Variants that could not be supplied, when the thrower knows them. */
+    private final List<String> variantIds;
+
     public InsufficientStockException(String message) {
+        this(message, List.of());
+    }
+
+    public InsufficientStockException(String message, List<String> variantIds) {
         super(message);
+        this.variantIds = List.copyOf(variantIds);
+    }
+
+    public List<String> getVariantIds() {
+        return variantIds;
     }
 }
@@ -72,6 +72,9 @@ public class Order {
     private String trackingUrl;
     private String appliedPromoCode;
 
+    // Checkout stock hold (see StockReservation). Null on orders placed before reservations.
+    private String reservationId;
+
 
     @Version
     private Long version;
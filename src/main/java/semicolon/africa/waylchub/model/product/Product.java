@@ -27,7 +27,18 @@ import java.util.*;
         @CompoundIndex(name = "lineage_ids_price", def = "{'categoryLineageIds': 1, 'minPrice': 1}"),
 
         // For smart search brand-matching strategy
-        @CompoundIndex(name = "brand_active", def = "{'brandName': 1, 'isActive': 1}")
+        @CompoundIndex(name = "brand_active", def = "{'brandName': 1, 'isActive': 1}"),
+
+        // Keyset (cursor) pagination — see KeysetPagination. Sort field + _id tie-break
+        // lets MongoDB seek straight to the next slice with no SORT stage or skip walk.
+        // Category pages:
+        @CompoundIndex(name = "lineage_active_price_id",   def = "{'categoryLineageIds': 1, 'isActive': 1, 'minPrice': 1, '_id': 1}"),
+        @CompoundIndex(name = "lineage_active_created_id", def = "{'categoryLineageIds': 1, 'isActive': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "lineage_active_sold_id",    def = "{'categoryLineageIds': 1, 'isActive': 1, 'soldCount': -1, '_id': -1}"),
+        // Unscoped listings (homepage, "all products"):
+        @CompoundIndex(name = "active_price_id",   def = "{'isActive': 1, 'minPrice': 1, '_id': 1}"),
+        @CompoundIndex(name = "active_created_id", def = "{'isActive': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "active_sold_id",    def = "{'isActive': 1, 'soldCount': -1, '_id': -1}")
 
 
 })
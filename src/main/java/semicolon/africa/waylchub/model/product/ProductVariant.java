@@ -69,9 +69,17 @@ public class ProductVariant {
     private BigDecimal originalPrice;   // safe backup used only by campaign engine
     // ─────────────────────────────────────────────────────────────────────────
 
+    /**
+     * Units available to sell right now. Checkout holds move units out of here
+     * into reservedQuantity (see StockReservation), so everything that asks
+     * "can I buy N?" reads this field — through availableToSell().
+     */
     @Min(value = 0, message = "Stock cannot be negative")
     private Integer stockQuantity;
 
+    /** Units held by unpaid checkouts. Physical on-hand = stockQuantity + reservedQuantity. */
+    private Integer reservedQuantity;
+
     private Integer lowStockThreshold = 5;
     private boolean manageStock = true;
 
@@ -101,4 +109,8 @@ public class ProductVariant {
      */
     @Version
     private Long version;
+
+    public int availableToSell() {
+        return stockQuantity != null ? Math.max(0, stockQuantity) : 0;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package semicolon.africa.waylchub.model.product;
+
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A time-bounded hold on stock for one checkout.
+ *
+ * LIFECYCLE:
+ *   HELD      → units moved from ProductVariant.stockQuantity (available to sell)
+ *               into ProductVariant.reservedQuantity; expiresAt is set.
+ *   COMMITTED → payment confirmed; the held units leave reservedQuantity for good.
+ *   RELEASED  → order cancelled while still HELD; units returned to stockQuantity.
+ *   EXPIRED   → hold ran past expiresAt; StockReservationExpiryJob returned the
+ *               units to stockQuantity without touching the order.
+ *
+ *   Every transition is a single findAndModify guarded on status = HELD, so a
+ *   payment webhook and the expiry job racing on the same hold cannot both win.
+ *
+ * CLEANUP:
+ *   purgeAt is only set once the reservation reaches a terminal state. The TTL
+ *   index never removes a HELD document, so an unexpired hold cannot vanish
+ *   before its units are given back.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "stock_reservations")
+@CompoundIndex(name = "status_expires_idx", def = "{'status': 1, 'expiresAt': 1}")
+public class StockReservation {
+
+    @Id
+    private String id;
+
+    @Builder.Default
+    private List<Line> lines = new ArrayList<>();
+
+    private Status status;
+
+    private Instant expiresAt;
+
+    private Instant committedAt;
+
+    @Indexed(expireAfterSeconds = 0)
+    private Instant purgeAt;
+
+    @CreatedDate
+    private Instant createdAt;
+
+    public enum Status { HELD, COMMITTED, RELEASED, EXPIRED }
+
+    @Getter
+    @Setter
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Line {
+        private String variantId;
+        private String productId;
+        private int quantity;
+    }
+}
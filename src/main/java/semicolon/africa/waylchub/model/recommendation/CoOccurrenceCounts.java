@@ -0,0 +1,38 @@
+package semicolon.africa.waylchub.model.recommendation;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarityType;
+
+import java.util.Map;
+
+/**
+ * Incremental collaborative-filtering state: one product's cosine inputs for
+ * one signal, maintained with $inc as users enter and leave the window.
+ *
+ *   users  — distinct users who touched the product in the window
+ *   co     — neighbour productId → users who touched both
+ *
+ * ItemSimilarity is derived from these; an entry that drops to zero simply
+ * stops scoring and is cleaned up by the next full rebuild.
+ */
+@Document(collection = "cf_item_counts")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CoOccurrenceCounts {
+
+    @Id
+    private String id;            // "<type>:<productId>"
+
+    private SimilarityType type;
+    private String productId;
+    private long users;
+    private Map<String, Long> co;
+
+    public static String idOf(SimilarityType type, String productId) {
+        return type.name() + ":" + productId;
+    }
+}
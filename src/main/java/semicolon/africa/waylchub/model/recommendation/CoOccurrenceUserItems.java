@@ -0,0 +1,49 @@
+package semicolon.africa.waylchub.model.recommendation;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarityType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Incremental collaborative-filtering state: the distinct products one user
+ * touched inside a signal's window, and when each was last touched.
+ *
+ * An incremental run adds products from new events and retracts those whose
+ * lastSeen has slid out of the window; the difference between the old and new
+ * list is exactly the user's contribution to move in CoOccurrenceCounts.
+ *
+ * INDEX: (type, items.lastSeen) finds the users with something expiring.
+ */
+@Document(collection = "cf_user_items")
+@CompoundIndex(def = "{'type': 1, 'items.lastSeen': 1}", name = "idx_type_item_last_seen")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CoOccurrenceUserItems {
+
+    @Id
+    private String id;            // "<type>:<userId>"
+
+    private SimilarityType type;
+    private String userId;
+    private List<SeenItem> items;
+
+    public static String idOf(SimilarityType type, String userId) {
+        return type.name() + ":" + userId;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SeenItem {
+        private String productId;
+        private LocalDateTime lastSeen;
+    }
+}
@@ -0,0 +1,31 @@
+package semicolon.africa.waylchub.model.recommendation;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * How far the collaborative-filtering state for one signal (one
+ * SimilarityType) has been brought.
+ *
+ * Every behaviour event with timestamp <= processedUpTo is reflected in
+ * CoOccurrenceCounts. dirty is set while a run is writing and cleared when it
+ * finishes; a run that finds it set (a crash mid-write) rebuilds from scratch
+ * rather than apply deltas on top of a half-written state.
+ */
+@Document(collection = "cf_watermarks")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CoOccurrenceWatermark {
+
+    @Id
+    private String id;            // SimilarityType name
+
+    private LocalDateTime processedUpTo;
+    private LocalDateTime lastFullRebuildAt;
+    private boolean dirty;
+}
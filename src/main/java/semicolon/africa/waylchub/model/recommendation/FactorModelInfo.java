@@ -0,0 +1,43 @@
+package semicolon.africa.waylchub.model.recommendation;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * One trained implicit-feedback ALS model (AlsTrainingService). The item
+ * factors themselves live in ItemFactorChunk documents with the same modelId.
+ *
+ * complete is set only after every chunk is written, so a pod never loads a
+ * half-written model. The offline evaluation of the run is kept alongside:
+ * recall@evaluationK of ALS and of item-item CF trained on the same window,
+ * scored against the held-out window.
+ */
+@Document(collection = "als_models")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FactorModelInfo {
+
+    @Id
+    private String id;            // trainedAt as epoch millis
+
+    private LocalDateTime trainedAt;
+    private int factors;
+    private double regularization;
+    private double alpha;
+    private int users;
+    private int items;
+    private long interactions;
+    private int chunks;
+    private boolean complete;
+
+    // Offline evaluation; evaluatedUsers = 0 when it was skipped
+    private int evaluationK;
+    private int evaluatedUsers;
+    private double alsRecall;
+    private double cfRecall;
+}
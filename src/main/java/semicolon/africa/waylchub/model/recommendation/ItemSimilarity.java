@@ -13,7 +13,7 @@ import java.util.List;
  * Pre-computed item-item similarity store.
  *
  * For each product, we store the N most similar products, ranked by score.
- * This is computed by RecommendationScheduler every hour from UserBehaviorLogs.
+ * This is computed by CollaborativeFilteringService from UserBehaviorLogs.
  *
  * WHY PRE-COMPUTE vs. ON-THE-FLY:
  *   On-the-fly collaborative filtering at query time requires scanning
@@ -23,7 +23,7 @@ import java.util.List;
  *   Pre-computing converts a hard O(n²) problem into a simple O(1) lookup:
  *   "give me the 10 most similar products to X" → single findById.
  *
- * The tradeoff is staleness (up to 1 hour lag), which is perfectly acceptable
+ * The tradeoff is staleness (one incremental interval), which is perfectly acceptable
  * for an e-commerce recommendation feature.
  *
  * INDEX: compound unique on (sourceProductId, type) so we can have separate
@@ -58,7 +58,7 @@ public class ItemSimilarity {
         CO_VIEW,       // "customers who viewed this also viewed"
         CO_PURCHASE,   // "customers who bought this also bought"
         CO_CART,       // "customers who carted this also carted"
-        CONTENT        // content-based: same category/brand/tag overlap score
+        CONTENT        // content-based: Jaccard of category lineage/brand/tags (ContentSimilarityService)
     }
 
     @Data
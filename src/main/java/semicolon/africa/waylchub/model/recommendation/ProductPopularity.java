@@ -21,8 +21,9 @@ import java.time.LocalDateTime;
  *
  * SCORING FORMULA:
  *   popularityScore = (views_24h * 1) + (carts_24h * 5) + (purchases_24h * 10)
- *                    + (views_7d * 0.5) + (purchases_7d * 3)
- *   This gives a recency-weighted "heat" score.
+ *                    + (wishlists_24h * 3) + (carts_7d * 2) + (purchases_7d * 4)
+ *   This gives a recency-weighted "heat" score. Computed and written by one
+ *   aggregation pipeline ($merge) — see RecommendationScheduler#popularityPipeline.
  *
  * INDEX STRATEGY:
  *   - (categoryId, popularityScore DESC) → "trending in category X"
@@ -63,6 +64,13 @@ public class ProductPopularity {
      */
     private double popularityScore;
 
+    /**
+     * Weighted events in the live trending window at the last refresh — a
+     * durable snapshot of LiveTrendingService's counters.
+     */
+    private double trendingScore;
+    private LocalDateTime trendingAt;
+
     @LastModifiedDate
     private LocalDateTime lastRefreshed;
 }
\ No newline at end of file
@@ -29,6 +29,8 @@ import java.time.LocalDateTime;
         @CompoundIndex(def = "{'userId': 1, 'eventType': 1, 'timestamp': -1}", name = "idx_user_event_time"),
         @CompoundIndex(def = "{'productId': 1, 'eventType': 1, 'timestamp': -1}", name = "idx_product_event_time"),
         @CompoundIndex(def = "{'sessionId': 1, 'timestamp': -1}", name = "idx_session_time"),
+        // Window scans by event type: popularity refresh and collaborative filtering
+        @CompoundIndex(def = "{'eventType': 1, 'timestamp': -1}", name = "idx_event_time"),
         // Composite index for collaborative filtering query: "find all users who also interacted with productId"
         @CompoundIndex(def = "{'productId': 1, 'userId': 1, 'eventType': 1}", name = "idx_product_user_event")
 })
@@ -0,0 +1,14 @@
+package semicolon.africa.waylchub.repository.productRepository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import semicolon.africa.waylchub.model.product.StockReservation;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface StockReservationRepository extends MongoRepository<StockReservation, String> {
+
+    List<StockReservation> findByStatusAndExpiresAtBefore(
+            StockReservation.Status status, Instant cutoff, Pageable pageable);
+}
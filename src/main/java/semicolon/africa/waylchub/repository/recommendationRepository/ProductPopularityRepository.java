@@ -4,6 +4,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import semicolon.africa.waylchub.model.recommendation.ProductPopularity;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ProductPopularityRepository extends MongoRepository<ProductPopularity, String> {
@@ -11,6 +12,9 @@ public interface ProductPopularityRepository extends MongoRepository<ProductPopu
     /** Top trending products in a specific category. */
     List<ProductPopularity> findByCategoryIdOrderByPopularityScoreDesc(String categoryId, Pageable pageable);
 
+    /** Top trending products across a category and its sub-categories. */
+    List<ProductPopularity> findByCategoryIdInOrderByPopularityScoreDesc(Collection<String> categoryIds, Pageable pageable);
+
     /** Top trending products for a specific brand. */
     List<ProductPopularity> findByBrandIdOrderByPopularityScoreDesc(String brandId, Pageable pageable);
 
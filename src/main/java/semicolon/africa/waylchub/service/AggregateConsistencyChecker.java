@@ -0,0 +1,235 @@
+package semicolon.africa.waylchub.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.model.product.ProductVariant;
+import semicolon.africa.waylchub.service.productService.ProductService;
+import semicolon.africa.waylchub.service.recommendation.LockedJobRunner;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Safety net for the incremental Product aggregates.
+ *
+ * WHY:
+ *   totalStock is maintained by $inc next to every variant stock write. Inside a
+ *   transaction (checkout, admin variant edits) both writes commit together, but
+ *   non-transactional callers apply them back to back, and a crash in between —
+ *   or a manual edit straight in the database — leaves drift that nothing else
+ *   would ever correct.
+ *
+ * HOW IT WORKS:
+ *   Products are streamed in batches of BATCH_SIZE. For each batch one $group over
+ *   product_variants yields the true totalStock (manageStock variants only) and
+ *   the variant prices; min / max are taken in Java because prices are stored as
+ *   strings and $min would compare them lexicographically. Products with no
+ *   variants expect totalStock 0 and min = max = basePrice, as in
+ *   ProductService.recomputeAggregates.
+ *
+ * REPAIR:
+ *   A drifted product is re-checked (fresh product read, then fresh $group) before
+ *   anything is written, so a checkout caught between its variant and product
+ *   $inc is not mistaken for drift. The repair is a compare-and-set on the
+ *   totalStock value just read: if a concurrent $inc lands first the write
+ *   misses and the next run looks again.
+ *
+ * SCHEDULING:
+ *   The scheduled tick only submits the scan to offlineJobExecutor through
+ *   LockedJobRunner: a full-catalogue stream must not hold one of the four
+ *   shared @Scheduled threads the sub-second flushers run on. A full pool
+ *   skips the run; the next tick retries. Runs on one pod at a time (ShedLock).
+ */
+@Slf4j
+@Service
+public class AggregateConsistencyChecker {
+
+    private static final int BATCH_SIZE = 500;
+    private static final String LOCK_NAME = "aggregateConsistencyCheck";
+    private static final Duration LOCK_AT_MOST_FOR = Duration.ofMinutes(50);
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductService productService;
+    private final LockedJobRunner jobs;
+    private final Counter driftCounter;
+    private final Counter repairedCounter;
+
+    public AggregateConsistencyChecker(MongoTemplate mongoTemplate,
+                                       ProductService productService,
+                                       LockedJobRunner jobs,
+                                       MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.productService = productService;
+        this.jobs = jobs;
+        this.driftCounter = meterRegistry.counter("aggregate.consistency.drift");
+        this.repairedCounter = meterRegistry.counter("aggregate.consistency.repaired");
+    }
+
+    @Scheduled(fixedDelayString = "${app.aggregate-sync.consistency-check-interval:PT1H}",
+            initialDelayString = "PT5M")
+    public void scheduledCheck() {
+        jobs.submit(this::checkAndRepair);
+    }
+
+    /**
+     * Full scan now, under the lock. Returns the number of products repaired;
+     * 0 as well when another run holds the lock and this one was skipped.
+     */
+    public int checkAndRepair() {
+        AtomicInteger repaired = new AtomicInteger();
+        jobs.run(LOCK_NAME, LOCK_AT_MOST_FOR, "Aggregate consistency check", () -> repaired.set(scan()));
+        return repaired.get();
+    }
+
+    private int scan() {
+        Query query = new Query().with(Sort.by("id"));
+        query.fields().include("id", "basePrice", "totalStock", "minPrice", "maxPrice");
+
+        int scanned = 0;
+        int repaired = 0;
+        List<Product> batch = new ArrayList<>(BATCH_SIZE);
+
+        try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+            Iterator<Product> it = products.iterator();
+            while (it.hasNext()) {
+                batch.add(it.next());
+                if (batch.size() == BATCH_SIZE || !it.hasNext()) {
+                    scanned += batch.size();
+                    repaired += checkBatch(batch);
+                    batch.clear();
+                }
+            }
+        }
+
+        if (repaired > 0) {
+            log.warn("Aggregate consistency check: repaired {} of {} product(s)", repaired, scanned);
+        } else {
+            log.info("Aggregate consistency check: {} product(s) consistent", scanned);
+        }
+        return repaired;
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    private int checkBatch(List<Product> products) {
+        Map<String, Expected> expected = expectedFor(products);
+
+        List<String> drifted = products.stream()
+                .filter(p -> expected.get(p.getId()).differsFrom(p))
+                .map(Product::getId)
+                .toList();
+        if (drifted.isEmpty()) return 0;
+
+        driftCounter.increment(drifted.size());
+        return confirmAndRepair(drifted);
+    }
+
+    private int confirmAndRepair(List<String> productIds) {
+        // Product first, variants second: a checkout landing between the two reads
+        // also moves the product, so the CAS below misses. Only a checkout whose
+        // product $inc is still in flight at CAS time slips through, and the next
+        // run corrects that.
+        Query productQuery = new Query(Criteria.where("id").in(productIds));
+        productQuery.fields().include("id", "basePrice", "totalStock", "minPrice", "maxPrice");
+        List<Product> current = mongoTemplate.find(productQuery, Product.class);
+        Map<String, Expected> expected = expectedFor(current);
+
+        Set<String> repairedIds = new LinkedHashSet<>();
+        for (Product product : current) {
+            Expected exp = expected.get(product.getId());
+            if (!exp.differsFrom(product)) continue;
+
+            Query cas = new Query(Criteria.where("id").is(product.getId())
+                    .and("totalStock").is(product.getTotalStock()));
+            Update fix = new Update()
+                    .set("totalStock", exp.totalStock())
+                    .set("minPrice", exp.minPrice())
+                    .set("maxPrice", exp.maxPrice());
+
+            if (mongoTemplate.updateFirst(cas, fix, Product.class).getModifiedCount() > 0) {
+                log.warn("Repaired aggregates for product {}: totalStock {} → {}, minPrice {} → {}, maxPrice {} → {}",
+                        product.getId(),
+                        product.getTotalStock(), exp.totalStock(),
+                        product.getMinPrice(), exp.minPrice(),
+                        product.getMaxPrice(), exp.maxPrice());
+                repairedIds.add(product.getId());
+            }
+        }
+
+        if (!repairedIds.isEmpty()) {
+            repairedCounter.increment(repairedIds.size());
+            // Aggregates are fixed in place; this only evicts the stale cached copies
+            productService.refreshAggregates(repairedIds, Set.of());
+        }
+        return repairedIds.size();
+    }
+
+    private Map<String, Expected> expectedFor(List<Product> products) {
+        List<String> ids = products.stream().map(Product::getId).toList();
+
+        TypedAggregation<ProductVariant> aggregation = Aggregation.newAggregation(ProductVariant.class,
+                Aggregation.match(Criteria.where("productId").in(ids)),
+                Aggregation.group("productId")
+                        .sum(ConditionalOperators.when(Criteria.where("manageStock").is(true))
+                                .thenValueOf(ConditionalOperators.ifNull("stockQuantity").then(0))
+                                .otherwise(0))
+                        .as("totalStock")
+                        .push("price").as("prices"));
+
+        Map<String, Document> grouped = new HashMap<>();
+        mongoTemplate.aggregate(aggregation, Document.class)
+                .forEach(doc -> grouped.put(doc.get("_id").toString(), doc));
+
+        Map<String, Expected> expected = new HashMap<>();
+        for (Product product : products) {
+            Document row = grouped.get(product.getId());
+            if (row == null) {
+                BigDecimal base = product.getBasePrice() != null ? product.getBasePrice() : BigDecimal.ZERO;
+                expected.put(product.getId(), new Expected(0, base, base));
+                continue;
+            }
+
+            List<BigDecimal> prices = new ArrayList<>();
+            for (Object raw : row.getList("prices", Object.class, List.of())) {
+                if (raw != null) prices.add(new BigDecimal(raw.toString()));
+            }
+            int totalStock = ((Number) row.get("totalStock")).intValue();
+            BigDecimal min = prices.stream().min(BigDecimal::compareTo).orElse(BigDecimal.ZERO);
+            BigDecimal max = prices.stream().max(BigDecimal::compareTo).orElse(BigDecimal.ZERO);
+            expected.put(product.getId(), new Expected(totalStock, min, max));
+        }
+        return expected;
+    }
+
+    private record Expected(int totalStock, BigDecimal minPrice, BigDecimal maxPrice) {
+
+        boolean differsFrom(Product product) {
+            return product.getTotalStock() == null
+                    || product.getTotalStock() != totalStock
+                    || !samePrice(product.getMinPrice(), minPrice)
+                    || !samePrice(product.getMaxPrice(), maxPrice);
+        }
+
+        private static boolean samePrice(BigDecimal stored, BigDecimal expected) {
+            return stored != null && stored.compareTo(expected) == 0;
+        }
+    }
+}
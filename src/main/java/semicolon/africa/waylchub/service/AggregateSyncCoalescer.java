@@ -0,0 +1,224 @@
+package semicolon.africa.waylchub.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import semicolon.africa.waylchub.model.event.FailedAggregateSync;
+import semicolon.africa.waylchub.repository.event.FailedAggregateSyncRepository;
+import semicolon.africa.waylchub.service.productService.ProductService;
+import semicolon.africa.waylchub.service.productService.ProductService.AggregateSyncResult;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces StockChangedEvents into batched aggregate syncs.
+ *
+ * WHY:
+ *   Every paid order fires one StockChangedEvent per line item, and each used to
+ *   trigger its own updateParentAggregates: a variant read, a product write, cache
+ *   evictions and generation bumps. During a flash sale the same hot product is
+ *   recomputed hundreds of times a second, and every one of those recomputes
+ *   yields the same result as the last.
+ *
+ * HOW IT WORKS:
+ *   markDirty() only records the productId (and whether a price changed) in a
+ *   concurrent map — duplicates collapse for free. Every
+ *   app.aggregate-sync.flush-interval-ms the map is drained and the batch goes to
+ *   ProductService.refreshAggregates: totalStock already moved by $inc with the
+ *   variant, so only price-changed products read variants, in one query and one
+ *   unordered bulk write; everything else just has its caches evicted. If the map
+ *   grows past app.aggregate-sync.max-batch before the next tick, a drain is kicked
+ *   off early on aggregateFlushExecutor so it never grows without bound. That
+ *   executor has one thread and rejects rather than queue or run on the caller,
+ *   so the checkout thread that crossed the threshold never runs the sync.
+ *
+ *   A product marked dirty while its batch is in flight is simply re-added and
+ *   synced on the next flush, so the last write always wins.
+ *
+ * FAILURES:
+ *   Anything refreshAggregates could not write becomes a FailedAggregateSync and
+ *   is picked up by AggregateSyncScheduler (a full recompute), same as before.
+ *
+ * METRICS:
+ *   aggregate.sync.queue.depth         — products waiting for the next flush
+ *   aggregate.sync.events              — StockChangedEvents received
+ *   aggregate.sync.recomputed          — products actually synced
+ *   aggregate.sync.coalescing.ratio    — events / synced (higher = more saved)
+ *   aggregate.sync.failures            — products handed to FailedAggregateSync
+ *   aggregate.sync.flush               — flush duration
+ */
+@Slf4j
+@Service
+public class AggregateSyncCoalescer {
+
+    private final ProductService productService;
+    private final FailedAggregateSyncRepository failedSyncRepository;
+    private final Executor flushExecutor;
+    private final int maxBatch;
+
+    // productId → price changed since the last flush
+    private final Map<String, Boolean> dirtyProducts = new ConcurrentHashMap<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong productsRecomputed = new AtomicLong();
+
+    private final Counter eventsCounter;
+    private final Counter recomputedCounter;
+    private final Counter failureCounter;
+    private final Timer flushTimer;
+
+    public AggregateSyncCoalescer(
+            ProductService productService,
+            FailedAggregateSyncRepository failedSyncRepository,
+            @Qualifier("aggregateFlushExecutor") Executor flushExecutor,
+            MeterRegistry meterRegistry,
+            @Value("${app.aggregate-sync.max-batch:500}") int maxBatch) {
+        this.productService = productService;
+        this.failedSyncRepository = failedSyncRepository;
+        this.flushExecutor = flushExecutor;
+        this.maxBatch = Math.max(1, maxBatch);
+
+        Gauge.builder("aggregate.sync.queue.depth", dirtyProducts, Map::size)
+                .description("Products waiting for aggregate sync")
+                .register(meterRegistry);
+        Gauge.builder("aggregate.sync.coalescing.ratio", this, AggregateSyncCoalescer::coalescingRatio)
+                .description("StockChangedEvents received per product synced")
+                .register(meterRegistry);
+        this.eventsCounter     = meterRegistry.counter("aggregate.sync.events");
+        this.recomputedCounter = meterRegistry.counter("aggregate.sync.recomputed");
+        this.failureCounter    = meterRegistry.counter("aggregate.sync.failures");
+        this.flushTimer        = meterRegistry.timer("aggregate.sync.flush");
+    }
+
+    // =========================================================================
+    // ENQUEUE — called from StockChangeEventListener
+    // =========================================================================
+
+    public void markDirty(String productId, boolean priceChanged) {
+        if (productId == null) return;
+
+        eventsReceived.incrementAndGet();
+        eventsCounter.increment();
+        dirtyProducts.merge(productId, priceChanged, Boolean::logicalOr);
+
+        if (dirtyProducts.size() >= maxBatch && !draining.get()) {
+            try {
+                flushExecutor.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // The flusher is busy draining; it or the scheduled tick picks the map up
+                log.debug("Early aggregate flush rejected, deferring to scheduled flush");
+            }
+        }
+    }
+
+    // =========================================================================
+    // FLUSH
+    // =========================================================================
+
+    @Scheduled(fixedDelayString = "${app.aggregate-sync.flush-interval-ms:250}")
+    public void flush() {
+        // One drain at a time per pod: a scheduled tick and an early size-triggered
+        // drain would otherwise split the same burst into two half-sized batches.
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Map<String, Boolean> batch;
+            while (!(batch = drainBatch()).isEmpty()) {
+                Map<String, Boolean> current = batch;
+                flushTimer.record(() -> sync(current));
+            }
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (!dirtyProducts.isEmpty()) {
+            log.info("Flushing {} pending aggregate sync(s) before shutdown", dirtyProducts.size());
+            flush();
+        }
+    }
+
+    private Map<String, Boolean> drainBatch() {
+        Map<String, Boolean> batch = new LinkedHashMap<>();
+        Iterator<String> it = dirtyProducts.keySet().iterator();
+        while (it.hasNext() && batch.size() < maxBatch) {
+            String productId = it.next();
+            // remove() before sync: a concurrent markDirty re-adds the id and
+            // it is synced again next round, reading the newer variant state.
+            Boolean priceChanged = dirtyProducts.remove(productId);
+            if (priceChanged != null) {
+                batch.put(productId, priceChanged);
+            }
+        }
+        return batch;
+    }
+
+    private void sync(Map<String, Boolean> batch) {
+        Set<String> priceChanged = new HashSet<>();
+        batch.forEach((id, changed) -> { if (changed) priceChanged.add(id); });
+
+        AggregateSyncResult result;
+        try {
+            result = productService.refreshAggregates(batch.keySet(), priceChanged);
+        } catch (Exception e) {
+            log.error("Aggregate sync failed for a batch of {} product(s): {}",
+                    batch.size(), e.getMessage());
+            batch.keySet().forEach(id -> saveFailedSync(id, e.getClass().getSimpleName(), e.getMessage()));
+            return;
+        }
+
+        productsRecomputed.addAndGet(result.updated().size());
+        recomputedCounter.increment(result.updated().size());
+
+        if (!result.missing().isEmpty()) {
+            log.debug("Skipped aggregate sync for {} deleted product(s): {}",
+                    result.missing().size(), result.missing());
+        }
+        result.failed().forEach((id, error) -> {
+            log.error("CRITICAL: Failed to update parent aggregates for product {}: {}", id, error);
+            saveFailedSync(id, "BulkWriteError", error);
+        });
+    }
+
+    private void saveFailedSync(String productId, String reason, String errorMessage) {
+        failureCounter.increment();
+        try {
+            failedSyncRepository.save(FailedAggregateSync.builder()
+                    .productId(productId)
+                    .reason(reason)
+                    .errorMessage(errorMessage)
+                    .resolved(false)
+                    .attemptCount(0)
+                    .build());
+        } catch (Exception e) {
+            // Mongo is likely down as a whole — put it back so the next flush retries
+            log.error("Could not record failed aggregate sync for product {}: {}", productId, e.getMessage());
+            dirtyProducts.merge(productId, true, Boolean::logicalOr);
+        }
+    }
+
+    double coalescingRatio() {
+        long recomputed = productsRecomputed.get();
+        return recomputed == 0 ? 0.0 : (double) eventsReceived.get() / recomputed;
+    }
+
+    int pendingCount() {
+        return dirtyProducts.size();
+    }
+}
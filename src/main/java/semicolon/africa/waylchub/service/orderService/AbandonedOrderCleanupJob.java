@@ -27,6 +27,12 @@ import java.util.Map;
  * WHY ROUTE THROUGH OrderService:
  *   State-machine validation + audit history + single OrderCancelledEvent
  *   publish (which triggers async stock restoration).
+ *
+ * STOCK:
+ *   This job no longer decides when stock comes back on sale. The checkout's
+ *   StockReservation lapses after app.stock-reservation.hold and
+ *   StockReservationExpiryJob returns the units long before the 30-minute mark;
+ *   cancelling here only closes the order and finds nothing left to restore.
  */
 @Slf4j
 @Component
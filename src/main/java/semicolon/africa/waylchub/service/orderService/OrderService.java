@@ -22,9 +22,11 @@ import semicolon.africa.waylchub.exception.ResourceNotFoundException;
 import semicolon.africa.waylchub.model.order.*;
 import semicolon.africa.waylchub.model.product.Product;
 import semicolon.africa.waylchub.model.product.ProductVariant;
+import semicolon.africa.waylchub.model.product.StockReservation;
 import semicolon.africa.waylchub.repository.orderRepository.OrderRepository;
 import semicolon.africa.waylchub.repository.productRepository.ProductVariantRepository;
 import semicolon.africa.waylchub.service.productService.ProductService;
+import semicolon.africa.waylchub.service.productService.StockReservationService;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -42,6 +44,7 @@ public class OrderService {
     private final OrderRepository orderRepository;
     private final ProductVariantRepository variantRepository;
     private final ProductService productService;
+    private final StockReservationService reservationService;
     private final ApplicationEventPublisher eventPublisher;
 
     @Value("${app.tax.vat-rate:0.075}")
@@ -88,9 +91,33 @@ public class OrderService {
         Map<String, Product> productMap = products.stream()
                 .collect(Collectors.toMap(Product::getId, p -> p));
 
-        // Validate BEFORE reducing
+        // Validate BEFORE reserving
         validateStockAvailability(consolidatedItems, variantMap, productMap);
 
+        // Hold the whole cart for app.stock-reservation.hold. Units come back on
+        // sale automatically if payment never arrives — no cancel round trip.
+        StockReservation reservation;
+        try {
+            reservation = reservationService.reserve(consolidatedItems.entrySet().stream()
+                    .map(e -> StockReservation.Line.builder()
+                            .variantId(e.getKey())
+                            .productId(variantMap.get(e.getKey()).getProductId())
+                            .quantity(e.getValue())
+                            .build())
+                    .toList());
+        } catch (DataIntegrityViolationException | OptimisticLockingFailureException e) {
+            // 🛑 STOP! Do not wrap this in InsufficientStockException.
+            // Throw it raw so @Retryable can catch it and retry the transaction.
+            throw e;
+        } catch (RuntimeException e) {
+            // Only catch OTHER runtime errors (like actual business logic failures)
+            log.error("Stock reservation failed during checkout for {}", request.getCustomerEmail(), e);
+            throw new InsufficientStockException(
+                    "Stock changed during checkout for: " + describeFailedLine(e, variantMap, productMap),
+                    e instanceof InsufficientStockException stock ? stock.getVariantIds() : List.of()
+            );
+        }
+
         List<OrderItem> orderItems = new ArrayList<>();
         BigDecimal itemSubTotal = BigDecimal.ZERO;
 
@@ -102,21 +129,6 @@ public class OrderService {
             Product parentProduct = productMap.get(variant.getProductId());
 
 
-            try {
-                productService.reduceStockAtomic(variant.getId(), quantity);
-            } catch (DataIntegrityViolationException | OptimisticLockingFailureException e) {
-                // 🛑 STOP! Do not wrap this in InsufficientStockException.
-                // Throw it raw so @Retryable can catch it and retry the transaction.
-                throw e;
-            } catch (RuntimeException e) {
-                // Only catch OTHER runtime errors (like actual business logic failures)
-                log.error("Unexpected stock reduction failure for variant {}", variantId, e);
-                throw new InsufficientStockException(
-                        "Stock changed during checkout for: " + parentProduct.getName()
-                );
-            }
-
-
             BigDecimal unitPrice = variant.getPrice() != null ?
                     variant.getPrice() : BigDecimal.ZERO;
             BigDecimal lineTotal = unitPrice.multiply(BigDecimal.valueOf(quantity))
@@ -170,6 +182,7 @@ public class OrderService {
                 .billingAddress(request.getBillingAddress())
                 .orderNotes(request.getOrderNotes())
                 .appliedPromoCode(request.getAppliedPromoCode())
+                .reservationId(reservation.getId())
                 .build();
 
         addStatusHistory(order, OrderStatus.PENDING_PAYMENT,
@@ -213,12 +226,13 @@ public class OrderService {
                 continue;
             }
 
-            // Check stock (only for physical products that manage stock)
+            // Check stock (only for physical products that manage stock).
+            // Units held by other unpaid checkouts are not for sale.
             if (variant.isManageStock()) {
-                Integer currentStock = variant.getStockQuantity();
-                if (currentStock == null || currentStock < requestedQty) {
+                int available = variant.availableToSell();
+                if (available < requestedQty) {
                     unavailableProducts.add(product.getName() +
-                            " (only " + (currentStock != null ? currentStock : 0) + " left)");
+                            " (only " + available + " left)");
                 }
             }
         }
@@ -230,6 +244,21 @@ public class OrderService {
         }
     }
 
+    private String describeFailedLine(RuntimeException e,
+                                      Map<String, ProductVariant> variantMap,
+                                      Map<String, Product> productMap) {
+        // The batch stock write reports exactly which line it stopped at
+        if (e instanceof InsufficientStockException stock && !stock.getVariantIds().isEmpty()) {
+            return stock.getVariantIds().stream()
+                    .map(variantMap::get)
+                    .filter(Objects::nonNull)
+                    .map(v -> productMap.containsKey(v.getProductId())
+                            ? productMap.get(v.getProductId()).getName() : v.getSku())
+                    .collect(Collectors.joining(", "));
+        }
+        return "one or more items";
+    }
+
     public Page<Order> getAllOrders(Pageable pageable) {
         return orderRepository.findAll(pageable);
     }
@@ -262,9 +291,11 @@ public class OrderService {
 
         Order savedOrder = orderRepository.save(order);
 
+        // An unpaid hold is released right here; only sold units need restoring
+        List<OrderItem> itemsToRestore = reservationService.releaseForCancellation(savedOrder);
 
         eventPublisher.publishEvent(
-                new OrderCancelledEvent(savedOrder.getId(), savedOrder.getItems())
+                new OrderCancelledEvent(savedOrder.getId(), itemsToRestore)
         );
 
         log.info("Order {} cancelled. Stock restoration event published.",
@@ -307,10 +338,19 @@ public class OrderService {
         addStatusHistory(order, OrderStatus.PROCESSING,
                 "Payment confirmed. Ref: " + transactionReference);
 
-        // 4. Save the single instance
+        // 4. Turn the stock hold into a sale. Payment is already taken, so a lapsed
+        //    hold that can no longer be re-taken is flagged, never rejected.
+        if (!reservationService.commit(order.getReservationId())) {
+            log.error("Order {} paid after its stock hold lapsed and stock ran out — needs manual review",
+                    order.getOrderNumber());
+            addStatusHistory(order, OrderStatus.PROCESSING,
+                    "Stock hold expired before payment and stock is no longer available — review before fulfilment");
+        }
+
+        // 5. Save the single instance
         orderRepository.save(order);
 
-        // 5. Fire event AFTER save (which triggers the @TransactionalEventListener)
+        // 6. Fire event AFTER save (which triggers the @TransactionalEventListener)
         eventPublisher.publishEvent(new OrderPaidEvent(order, transactionReference));
 
         log.info("Successfully processed payment for order: {} with Ref: {}", orderId, transactionReference);
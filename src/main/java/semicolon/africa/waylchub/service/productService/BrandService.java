@@ -19,6 +19,7 @@ public class BrandService {
 
     private final BrandRepository brandRepository;
     private final ProductRepository productRepository;
+    private final CatalogTermDictionary termDictionary;
 
     /* ─── READ ─── */
 
@@ -53,7 +54,9 @@ public class BrandService {
         brand.setLogoUrl(req.getLogoUrl());
         brand.setWebsite(req.getWebsite());
 
-        return brandRepository.save(brand);
+        Brand saved = brandRepository.save(brand);
+        termDictionary.invalidate();
+        return saved;
     }
 
     /* ─── UPDATE ─── */
@@ -76,7 +79,9 @@ public class BrandService {
         brand.setWebsite(req.getWebsite());
         // Slug is intentionally immutable after creation (products reference it)
 
-        return brandRepository.save(brand);
+        Brand saved = brandRepository.save(brand);
+        termDictionary.invalidate();
+        return saved;
     }
 
     /* ─── DELETE ─── */
@@ -98,6 +103,7 @@ public class BrandService {
         }
 
         brandRepository.delete(brand);
+        termDictionary.invalidate();
     }
 
     /* ─── STATS (used by BrandManager UI) ─── */
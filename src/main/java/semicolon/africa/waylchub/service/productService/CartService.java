@@ -76,9 +76,10 @@ public class CartService {
         ProductVariant variant = variantRepository.findById(variantId)
                 .orElseThrow(() -> new ResourceNotFoundException("Variant no longer exists: " + variantId));
 
-        if (variant.isManageStock() && variant.getStockQuantity() < quantity) {
+        // availableToSell excludes units held by other shoppers' unpaid checkouts
+        if (variant.isManageStock() && variant.availableToSell() < quantity) {
             throw new InsufficientStockException(
-                    "Only " + variant.getStockQuantity() + " items available in stock");
+                    "Only " + variant.availableToSell() + " items available in stock");
         }
 
         // Always refresh price from DB — never trust the stale cart price
@@ -142,8 +143,8 @@ public class CartService {
 
                     ProductVariant variant = variantRepository.findById(existing.getVariantId()).orElse(null);
                     if (variant != null && variant.isManageStock()) {
-                        if (newQuantity > variant.getStockQuantity()) {
-                            newQuantity = variant.getStockQuantity();
+                        if (newQuantity > variant.availableToSell()) {
+                            newQuantity = variant.availableToSell();
                         }
                     }
                     existing.setQuantity(newQuantity);
@@ -208,9 +209,9 @@ public class CartService {
             CartItem existingItem = existingItemOpt.get();
             int newQuantity = existingItem.getQuantity() + request.getQuantity();
 
-            if (variant.isManageStock() && variant.getStockQuantity() < newQuantity) {
+            if (variant.isManageStock() && variant.availableToSell() < newQuantity) {
                 throw new InsufficientStockException(
-                        "Cannot add more. Max available is " + variant.getStockQuantity());
+                        "Cannot add more. Max available is " + variant.availableToSell());
             }
 
             existingItem.setQuantity(newQuantity);
@@ -218,9 +219,9 @@ public class CartService {
             existingItem.setSubTotal(variant.getPrice().multiply(BigDecimal.valueOf(newQuantity)));
 
         } else {
-            if (variant.isManageStock() && variant.getStockQuantity() < request.getQuantity()) {
+            if (variant.isManageStock() && variant.availableToSell() < request.getQuantity()) {
                 throw new InsufficientStockException(
-                        "Only " + variant.getStockQuantity() + " items left in stock");
+                        "Only " + variant.availableToSell() + " items left in stock");
             }
 
             String imageUrl = (variant.getImages() != null && !variant.getImages().isEmpty())
@@ -247,7 +248,8 @@ public class CartService {
         }
     }
 
-    private void updateCartTotal(Cart cart) {
+    /** Package-private and static so CartTotalBenchmark can drive it without a Spring context. */
+    static void updateCartTotal(Cart cart) {
         BigDecimal total = cart.getItems().stream()
                 .map(item -> item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
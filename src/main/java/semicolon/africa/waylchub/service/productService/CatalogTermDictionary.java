@@ -0,0 +1,273 @@
+package semicolon.africa.waylchub.service.productService;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import semicolon.africa.waylchub.model.product.Brand;
+import semicolon.africa.waylchub.model.product.Category;
+import semicolon.africa.waylchub.repository.productRepository.CategoryRepository;
+import semicolon.africa.waylchub.service.recommendation.SearchTokenizer;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable in-memory dictionary of category and brand terms, shared by search,
+ * filtering and recommendations.
+ *
+ * WHY:
+ *   Every search term of 3+ characters cost a categoryRepository.findBySlug plus
+ *   an unanchored name regex over categories, and the brand strategy ran
+ *   unanchored brandName regexes over the whole products collection — none of
+ *   which an index can serve. Categories and brands are a few hundred documents
+ *   that change a few times a week; holding them in memory turns all of that
+ *   into hash lookups.
+ *
+ * WHAT IT MAPS:
+ *   category slug → category (id, name, slug, self + descendant IDs)
+ *   category token (from name and slug, SearchTokenizer-normalised) → category IDs
+ *   brand token (from name) → brand names as stored on Product.brandName, so the
+ *   brand strategy is an equality / $in served by the brand_active index
+ *
+ * FRESHNESS:
+ *   CategoryService and BrandService call invalidate() on every write. The
+ *   snapshot is dropped after commit, the drop is broadcast on CHANNEL to every
+ *   other pod, and the next lookup reloads (two small queries). A scheduled
+ *   invalidation covers writes that bypass the services.
+ *
+ * MISSES:
+ *   A slug that is not in the snapshot falls back to categoryRepository, so a
+ *   category created a moment ago on another pod is never reported missing.
+ */
+@Slf4j
+@Component
+public class CatalogTermDictionary implements MessageListener {
+
+    public static final String CHANNEL = "exploreaba:catalog-terms";
+
+    // Same thresholds the regex strategies used
+    static final int MIN_CATEGORY_TERM_LENGTH = 3;
+    static final int MIN_BRAND_TERM_LENGTH = 2;
+
+    private final MongoTemplate mongoTemplate;
+    private final CategoryRepository categoryRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final Object loadLock = new Object();
+    private final AtomicLong invalidations = new AtomicLong();
+    private volatile Terms terms;   // null → reload on next read
+
+    public CatalogTermDictionary(MongoTemplate mongoTemplate,
+                                 CategoryRepository categoryRepository,
+                                 StringRedisTemplate redisTemplate,
+                                 RedisMessageListenerContainer listenerContainer) {
+        this.mongoTemplate = mongoTemplate;
+        this.categoryRepository = categoryRepository;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @PostConstruct
+    void registerListener() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    // =========================================================================
+    // LOOKUPS
+    // =========================================================================
+
+    /** Category ID for a slug, or empty if no such category exists. */
+    public Optional<String> categoryIdForSlug(String slug) {
+        if (slug == null) return Optional.empty();
+        CategoryTerm category = terms().categoriesBySlug().get(slug);
+        if (category != null) return Optional.of(category.id());
+        return categoryRepository.findBySlug(slug).map(Category::getId);
+    }
+
+    /**
+     * The category and every category below it, for queries on fields that hold
+     * only the leaf category (ProductPopularity.categoryId). Empty if unknown.
+     */
+    public Set<String> categoryAndDescendantIds(String slug) {
+        if (slug == null) return Set.of();
+        CategoryTerm category = terms().categoriesBySlug().get(slug);
+        if (category != null) return category.descendantIds();
+        return categoryIdForSlug(slug).map(Set::of).orElse(Set.of());
+    }
+
+    /** Categories whose slug equals, or whose name or slug contains, one of the query terms. */
+    public Set<String> categoryIdsMatching(Collection<String> queryTerms) {
+        Terms t = terms();
+        Set<String> ids = new LinkedHashSet<>();
+        for (String term : queryTerms) {
+            if (term == null || term.length() < MIN_CATEGORY_TERM_LENGTH) continue;
+
+            CategoryTerm bySlug = t.categoriesBySlug().get(term);
+            if (bySlug != null) ids.add(bySlug.id());
+            for (String token : SearchTokenizer.tokenize(term)) {
+                ids.addAll(t.categoryIdsByToken().getOrDefault(token, Set.of()));
+            }
+        }
+        return ids;
+    }
+
+    /** Product.brandName values of brands whose name contains one of the query terms. */
+    public Set<String> brandNamesMatching(Collection<String> queryTerms) {
+        Terms t = terms();
+        Set<String> names = new LinkedHashSet<>();
+        for (String term : queryTerms) {
+            if (term == null || term.length() < MIN_BRAND_TERM_LENGTH) continue;
+            for (String token : SearchTokenizer.tokenize(term)) {
+                names.addAll(t.brandNamesByToken().getOrDefault(token, Set.of()));
+            }
+        }
+        return names;
+    }
+
+    // =========================================================================
+    // INVALIDATION
+    // =========================================================================
+
+    /**
+     * Drop the snapshot on every pod. Inside a transaction this waits for the
+     * commit, so no pod reloads the pre-commit state.
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateEverywhere();
+                }
+            });
+        } else {
+            invalidateEverywhere();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalog.terms.refresh-interval:PT30M}",
+            initialDelayString = "${app.catalog.terms.refresh-interval:PT30M}")
+    public void scheduledRefresh() {
+        dropSnapshot();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        dropSnapshot();
+    }
+
+    private void dropSnapshot() {
+        invalidations.incrementAndGet();
+        terms = null;
+    }
+
+    private void invalidateEverywhere() {
+        dropSnapshot();
+        try {
+            redisTemplate.convertAndSend(CHANNEL, "invalidate");
+        } catch (Exception e) {
+            log.warn("[CatalogTerms] Broadcast failed, other pods catch up at the next refresh: {}",
+                    e.getMessage());
+        }
+    }
+
+    // =========================================================================
+    // LOAD
+    // =========================================================================
+
+    private Terms terms() {
+        Terms t = terms;
+        if (t != null) return t;
+        synchronized (loadLock) {
+            t = terms;
+            if (t != null) return t;
+
+            long seen = invalidations.get();
+            Terms loaded = load();
+            // An invalidation during the load means it may have read pre-write data:
+            // serve it to this caller, but let the next read load again
+            if (invalidations.get() == seen) terms = loaded;
+            return loaded;
+        }
+    }
+
+    private Terms load() {
+        long start = System.currentTimeMillis();
+
+        // Projections keep the parent @DBRef from being resolved per category
+        Query categoryQuery = new Query();
+        categoryQuery.fields().include("id", "name", "slug", "lineage");
+        List<Category> categories = mongoTemplate.find(categoryQuery, Category.class);
+
+        Query brandQuery = new Query();
+        brandQuery.fields().include("id", "name", "slug");
+        List<Brand> brands = mongoTemplate.find(brandQuery, Brand.class);
+
+        Terms built = build(categories, brands);
+        log.info("[CatalogTerms] Loaded {} categories / {} brands in {}ms",
+                categories.size(), brands.size(), System.currentTimeMillis() - start);
+        return built;
+    }
+
+    static Terms build(List<Category> categories, List<Brand> brands) {
+        // lineage is ",root,parent," — every ancestor gains this category as a descendant
+        Map<String, Set<String>> descendants = new HashMap<>();
+        for (Category c : categories) {
+            descendants.computeIfAbsent(c.getId(), id -> new HashSet<>()).add(c.getId());
+            if (c.getLineage() == null) continue;
+            for (String ancestorId : c.getLineage().split(",")) {
+                if (!ancestorId.isBlank()) {
+                    descendants.computeIfAbsent(ancestorId, id -> new HashSet<>()).add(c.getId());
+                }
+            }
+        }
+
+        Map<String, CategoryTerm> bySlug = new HashMap<>();
+        Map<String, Set<String>> categoryIdsByToken = new HashMap<>();
+        for (Category c : categories) {
+            if (c.getSlug() != null) {
+                bySlug.put(c.getSlug(), new CategoryTerm(c.getId(), c.getName(), c.getSlug(),
+                        Set.copyOf(descendants.get(c.getId()))));
+            }
+            Set<String> tokens = new HashSet<>(SearchTokenizer.tokenize(c.getName()));
+            tokens.addAll(SearchTokenizer.tokenize(c.getSlug()));
+            tokens.forEach(token -> categoryIdsByToken.computeIfAbsent(token, k -> new HashSet<>()).add(c.getId()));
+        }
+
+        Map<String, Set<String>> brandNamesByToken = new HashMap<>();
+        for (Brand b : brands) {
+            if (b.getName() == null) continue;
+            SearchTokenizer.tokenize(b.getName()).forEach(token ->
+                    brandNamesByToken.computeIfAbsent(token, k -> new HashSet<>()).add(b.getName()));
+        }
+
+        return new Terms(Map.copyOf(bySlug), freeze(categoryIdsByToken), freeze(brandNamesByToken));
+    }
+
+    private static Map<String, Set<String>> freeze(Map<String, Set<String>> map) {
+        Map<String, Set<String>> frozen = new HashMap<>();
+        map.forEach((k, v) -> frozen.put(k, Set.copyOf(v)));
+        return Map.copyOf(frozen);
+    }
+
+    // =========================================================================
+    // SNAPSHOT
+    // =========================================================================
+
+    record CategoryTerm(String id, String name, String slug, Set<String> descendantIds) {}
+
+    record Terms(Map<String, CategoryTerm> categoriesBySlug,
+                 Map<String, Set<String>> categoryIdsByToken,
+                 Map<String, Set<String>> brandNamesByToken) {}
+}
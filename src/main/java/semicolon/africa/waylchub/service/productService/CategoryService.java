@@ -19,9 +19,10 @@ import java.util.stream.Collectors;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final CatalogTermDictionary termDictionary;
 
     // =========================================================================
-    // WRITES — evict both caches on any structural change
+    // WRITES — evict both caches and the term dictionary on any structural change
     // =========================================================================
 
     @Transactional
@@ -55,7 +56,9 @@ public class CategoryService {
             cat.setLineage(",");
         }
 
-        return categoryRepository.save(cat);
+        Category saved = categoryRepository.save(cat);
+        termDictionary.invalidate();
+        return saved;
     }
 
     @Transactional
@@ -99,7 +102,9 @@ public class CategoryService {
             }
         }
 
-        return categoryRepository.save(cat);
+        Category saved = categoryRepository.save(cat);
+        termDictionary.invalidate();
+        return saved;
     }
 
     @Transactional
@@ -117,6 +122,7 @@ public class CategoryService {
         }
 
         categoryRepository.delete(cat);
+        termDictionary.invalidate();
     }
 
     // =========================================================================
@@ -0,0 +1,209 @@
+package semicolon.africa.waylchub.service.productService;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import semicolon.africa.waylchub.dto.productDto.CursorPage;
+import semicolon.africa.waylchub.model.product.Product;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Keyset (seek) pagination for product listings.
+ *
+ * WHY:
+ *   query.with(pageable) is skip/limit — MongoDB still walks every skipped
+ *   document, so page 200 of a big category costs 200× page 1. A keyset query
+ *   instead says "give me the next N after (lastSortValue, lastId)", which is a
+ *   single index seek no matter how deep the client has scrolled.
+ *
+ * CURSOR FORMAT (base64url, opaque to clients):
+ *   v1|k|{SortKey}|{lastValue}|{lastId}   → keyset position (DB-backed listings)
+ *   v1|o|{offset}                         → rank offset (in-memory ranked lists,
+ *                                           e.g. SmartSearchService keyword search)
+ *
+ *   The sort key travels inside the cursor so a client cannot page through one
+ *   ordering with a cursor minted for another.
+ *
+ * TIE-BREAK:
+ *   _id is always the secondary sort, in the same direction as the primary, so
+ *   products sharing a price never repeat or vanish between slices. The
+ *   compound indexes on Product (lineage_active_*_id, active_*_id) serve these
+ *   sorts without an in-memory SORT stage.
+ */
+public final class KeysetPagination {
+
+    public static final int DEFAULT_PAGE_SIZE = 24;
+    public static final int MAX_PAGE_SIZE     = 100;
+
+    /** Counts stop at this many documents; beyond it the total is reported as a lower bound. */
+    public static final int TOTAL_COUNT_CAP = 10_000;
+
+    private static final String VERSION    = "v1";
+    private static final String KEYSET     = "k";
+    private static final String OFFSET     = "o";
+    private static final String NULL_VALUE = "~";
+
+    public enum SortKey {
+        PRICE_ASC ("minPrice",  Sort.Direction.ASC),
+        PRICE_DESC("minPrice",  Sort.Direction.DESC),
+        NEWEST    ("createdAt", Sort.Direction.DESC),
+        POPULAR   ("soldCount", Sort.Direction.DESC);
+
+        private final String field;
+        private final Sort.Direction direction;
+
+        SortKey(String field, Sort.Direction direction) {
+            this.field = field;
+            this.direction = direction;
+        }
+
+        public String field() {
+            return field;
+        }
+
+        public Sort toSort() {
+            return Sort.by(direction, field).and(Sort.by(direction, "id"));
+        }
+    }
+
+    private KeysetPagination() {}
+
+    // =========================================================================
+    // KEYSET — DB-backed listings
+    // =========================================================================
+
+    /**
+     * Adds the seek predicate (when a cursor is given), the index-aligned sort,
+     * and a limit of size + 1 — the extra row tells us whether another slice exists.
+     */
+    public static void apply(Query query, SortKey sort, String cursor, int size) {
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = decode(cursor);
+            if (parts.length != 5 || !KEYSET.equals(parts[1])) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            if (!sort.name().equals(parts[2])) {
+                throw new IllegalArgumentException("Cursor was issued for sort " + parts[2]);
+            }
+            Object lastValue = NULL_VALUE.equals(parts[3]) ? null : parseValue(sort, parts[3]);
+            query.addCriteria(seekCriteria(sort, lastValue, parts[4]));
+        }
+        query.with(sort.toSort());
+        query.limit(size + 1);
+    }
+
+    /** Trims the look-ahead row and mints the cursor for the next slice. */
+    public static CursorPage<Product> slice(List<Product> fetched, SortKey sort, int size) {
+        boolean hasNext = fetched.size() > size;
+        List<Product> content = hasNext ? fetched.subList(0, size) : fetched;
+        String nextCursor = hasNext ? encodeKeyset(sort, content.get(content.size() - 1)) : null;
+
+        return CursorPage.<Product>builder()
+                .content(content)
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .size(size)
+                .build();
+    }
+
+    private static Criteria seekCriteria(SortKey sort, Object lastValue, String lastId) {
+        String field = sort.field;
+        boolean asc = sort.direction.isAscending();
+
+        // MongoDB orders null before every value. Ascending: nulls come first,
+        // so after a null we continue with the remaining nulls, then all values.
+        // Descending: nulls come last, so after a value we may still owe the nulls.
+        if (lastValue == null) {
+            Criteria sameNull = new Criteria().andOperator(
+                    Criteria.where(field).is(null),
+                    asc ? Criteria.where("id").gt(lastId) : Criteria.where("id").lt(lastId));
+            return asc
+                    ? new Criteria().orOperator(sameNull, Criteria.where(field).ne(null))
+                    : sameNull;
+        }
+
+        Criteria beyond = asc ? Criteria.where(field).gt(lastValue) : Criteria.where(field).lt(lastValue);
+        Criteria tie = new Criteria().andOperator(
+                Criteria.where(field).is(lastValue),
+                asc ? Criteria.where("id").gt(lastId) : Criteria.where("id").lt(lastId));
+
+        return asc
+                ? new Criteria().orOperator(beyond, tie)
+                : new Criteria().orOperator(beyond, tie, Criteria.where(field).is(null));
+    }
+
+    private static String encodeKeyset(SortKey sort, Product last) {
+        Object value = switch (sort) {
+            case PRICE_ASC, PRICE_DESC -> last.getMinPrice() != null ? last.getMinPrice().toPlainString() : null;
+            case NEWEST  -> last.getCreatedAt() != null ? last.getCreatedAt().toEpochMilli() : null;
+            case POPULAR -> last.getSoldCount();
+        };
+        return encode(String.join("|", VERSION, KEYSET, sort.name(),
+                value != null ? value.toString() : NULL_VALUE, last.getId()));
+    }
+
+    private static Object parseValue(SortKey sort, String raw) {
+        try {
+            return switch (sort) {
+                case PRICE_ASC, PRICE_DESC -> new BigDecimal(raw);
+                case NEWEST  -> Instant.ofEpochMilli(Long.parseLong(raw));
+                case POPULAR -> Long.parseLong(raw);
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    // =========================================================================
+    // OFFSET — in-memory ranked lists (already materialized, so no skip cost)
+    // =========================================================================
+
+    public static String encodeOffset(int offset) {
+        return encode(String.join("|", VERSION, OFFSET, Integer.toString(offset)));
+    }
+
+    public static int decodeOffset(String cursor) {
+        if (cursor == null || cursor.isBlank()) return 0;
+        String[] parts = decode(cursor);
+        if (parts.length != 3 || !OFFSET.equals(parts[1])) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        try {
+            return Math.max(0, Integer.parseInt(parts[2]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    // =========================================================================
+    // HELPERS
+    // =========================================================================
+
+    public static int clampSize(int size) {
+        if (size <= 0) return DEFAULT_PAGE_SIZE;
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length < 3 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package semicolon.africa.waylchub.service.productService;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import semicolon.africa.waylchub.model.product.Category;
+import semicolon.africa.waylchub.repository.productRepository.CategoryRepository;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generation counters for PRODUCTS_LIST_CACHE — versioned keys instead of
+ * allEntries clears.
+ *
+ * HOW IT WORKS:
+ *   Every filterProducts cache key starts with a generation number:
+ *     - category-scoped listings use the generation of that category slug
+ *     - unscoped listings (homepage, keyword-only search) use the global generation
+ *
+ *   A product write bumps the global generation plus the generation of every
+ *   category in the product's lineage. Pages of untouched categories keep their
+ *   keys and stay warm; pages of touched categories are simply never read again
+ *   and age out under the PRODUCTS_LIST_CACHE TTL. No keyspace SCAN, no clear
+ *   broadcast to every pod.
+ *
+ * STORAGE:
+ *   Counters live in Redis (INCR) so all pods agree on the current generation.
+ *   Each pod mirrors them in a short-lived local cache so resolving a cache key
+ *   does not cost a Redis round trip per listing request. A bump on this pod is
+ *   visible here immediately; other pods pick it up within
+ *   app.cache.list-generation.ttl-seconds.
+ *
+ * FAILURE MODE:
+ *   If Redis is unreachable, counters fall back to a local-only AtomicLong so
+ *   writes on this pod still invalidate this pod's L1 entries. Once Redis is
+ *   back, this pod reads max(Redis, fallback), so a generation never moves
+ *   backwards to one whose pages were cached before the outage's writes.
+ */
+@Slf4j
+@Component
+public class ProductListCacheGenerations {
+
+    static final String GLOBAL_SCOPE = "global";
+    private static final String KEY_PREFIX = "exploreaba:productsList:gen:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final CategoryRepository categoryRepository;
+
+    private final Cache<String, Long> localGenerations;
+    // Highest generation this pod has read or made per scope — the counter while Redis is down
+    private final Map<String, AtomicLong> fallbackGenerations = new ConcurrentHashMap<>();
+
+    // Category id → slug. Lineage ids are stored on products, listing filters use slugs.
+    private final Cache<String, String> categorySlugs = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    public ProductListCacheGenerations(
+            StringRedisTemplate redisTemplate,
+            CategoryRepository categoryRepository,
+            @Value("${app.cache.list-generation.ttl-seconds:5}") long generationTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.categoryRepository = categoryRepository;
+        this.localGenerations = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofSeconds(generationTtlSeconds))
+                .build();
+    }
+
+    // =========================================================================
+    // READ — used from the filterProducts @Cacheable key
+    // =========================================================================
+
+    /**
+     * Cache-key prefix for a listing. Referenced from SpEL as
+     * {@code @productListCacheGenerations.keyPrefix(#filter.categorySlug)}.
+     */
+    public String keyPrefix(String categorySlug) {
+        String scope = scopeFor(categorySlug);
+        return scope + "@" + current(scope);
+    }
+
+    long current(String scope) {
+        return localGenerations.get(scope, this::readGeneration);
+    }
+
+    // =========================================================================
+    // WRITE — called by every product write path
+    // =========================================================================
+
+    /**
+     * Bumps the global generation and every category in the given lineage.
+     * Pass the lineage of the product being written (and its previous lineage
+     * too, if the product moved category).
+     *
+     * Inside a transaction the bump is deferred to afterCommit: a read racing
+     * the write must not cache pre-commit data under the new generation.
+     */
+    public void bumpForLineage(Collection<String> categoryLineageIds) {
+        List<String> lineage = categoryLineageIds != null ? new ArrayList<>(categoryLineageIds) : List.of();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyBump(lineage);
+                }
+            });
+        } else {
+            applyBump(lineage);
+        }
+    }
+
+    private void applyBump(List<String> categoryLineageIds) {
+        Set<String> scopes = new LinkedHashSet<>();
+        scopes.add(GLOBAL_SCOPE);
+        for (String slug : resolveSlugs(categoryLineageIds)) {
+            scopes.add(scopeFor(slug));
+        }
+        scopes.forEach(this::bump);
+    }
+
+    private void bump(String scope) {
+        long next;
+        try {
+            Long incremented = redisTemplate.opsForValue().increment(KEY_PREFIX + scope);
+            next = incremented != null ? aheadOfFallback(scope, incremented) : bumpFallback(scope);
+        } catch (Exception e) {
+            log.warn("[Cache] Generation bump for '{}' fell back to local counter: {}",
+                    scope, e.getMessage());
+            next = bumpFallback(scope);
+        }
+        localGenerations.put(scope, next);
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    /**
+     * Redis's counter, but never below the local fallback: bumps made while Redis
+     * was down must not be undone when it comes back with its older value.
+     */
+    private long readGeneration(String scope) {
+        try {
+            String value = redisTemplate.opsForValue().get(KEY_PREFIX + scope);
+            return remember(scope, value != null ? Long.parseLong(value) : 0L);
+        } catch (Exception e) {
+            log.warn("[Cache] Generation read for '{}' fell back to local counter: {}",
+                    scope, e.getMessage());
+            return fallback(scope).get();
+        }
+    }
+
+    /** Max of the value and the highest generation this pod has seen for the scope. */
+    private long remember(String scope, long generation) {
+        return fallback(scope).accumulateAndGet(generation, Math::max);
+    }
+
+    private long bumpFallback(String scope) {
+        // Stay ahead of whatever was last seen so a fallback bump still changes the key
+        return fallback(scope).incrementAndGet();
+    }
+
+    /** A Redis INCR that lands at or below a fallback bump must still move the key. */
+    private long aheadOfFallback(String scope, long incremented) {
+        return fallback(scope).updateAndGet(v -> v < incremented ? incremented : v + 1);
+    }
+
+    private AtomicLong fallback(String scope) {
+        return fallbackGenerations.computeIfAbsent(scope, s -> new AtomicLong());
+    }
+
+    private List<String> resolveSlugs(Collection<String> categoryIds) {
+        List<String> slugs = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : categoryIds) {
+            if (id == null) continue;
+            String slug = categorySlugs.getIfPresent(id);
+            if (slug != null) slugs.add(slug);
+            else missing.add(id);
+        }
+        if (!missing.isEmpty()) {
+            for (Category category : categoryRepository.findAllById(missing)) {
+                if (category.getSlug() == null) continue;
+                categorySlugs.put(category.getId(), category.getSlug());
+                slugs.add(category.getSlug());
+            }
+        }
+        return slugs;
+    }
+
+    private static String scopeFor(String categorySlug) {
+        return categorySlug == null ? GLOBAL_SCOPE : "cat:" + categorySlug;
+    }
+}
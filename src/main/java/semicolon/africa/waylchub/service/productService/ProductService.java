@@ -7,17 +7,23 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.BulkOperationException;
 import org.springframework.data.mongodb.core.*;
 import org.springframework.data.mongodb.core.query.*;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import semicolon.africa.waylchub.dto.productDto.*;
 import semicolon.africa.waylchub.event.StockChangedEvent;
+import semicolon.africa.waylchub.exception.InsufficientStockException;
 import semicolon.africa.waylchub.exception.ResourceNotFoundException;
 import semicolon.africa.waylchub.model.product.*;
 import semicolon.africa.waylchub.repository.productRepository.*;
 import semicolon.africa.waylchub.service.campaign.CampaignService;
+import semicolon.africa.waylchub.service.recommendation.ProductSearchIndex;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -40,6 +46,10 @@ public class ProductService {
     private final CampaignService campaignService;
     private final ApplicationEventPublisher eventPublisher;
     private final org.springframework.cache.CacheManager cacheManager;
+    private final ProductListCacheGenerations listCacheGenerations;
+    private final ProductSearchIndex searchIndex;
+    private final CatalogTermDictionary termDictionary;
+    private final PlatformTransactionManager transactionManager;
 
     // =========================================================================
     // READS
@@ -79,7 +89,8 @@ public class ProductService {
             value     = PRODUCTS_LIST_CACHE,
             condition = "#pageable.paged",
             unless    = "#result.content.size() == 0",
-            key       = "(#filter.keyword       ?: '') + '_'"
+            key       = "@productListCacheGenerations.keyPrefix(#filter.categorySlug) + '_'"
+                    + "+ (#filter.keyword       ?: '') + '_'"
                     + "+ (#filter.categorySlug  ?: '') + '_'"
                     + "+ (#filter.minPrice      ?: '') + '_'"
                     + "+ (#filter.maxPrice      ?: '') + '_'"
@@ -95,9 +106,9 @@ public class ProductService {
         }
 
         if (filter.getCategorySlug() != null) {
-            Category category = categoryRepository.findBySlug(filter.getCategorySlug())
+            String categoryId = termDictionary.categoryIdForSlug(filter.getCategorySlug())
                     .orElseThrow(() -> new ResourceNotFoundException("Category not found"));
-            query.addCriteria(Criteria.where("categoryLineageIds").in(category.getId()));
+            query.addCriteria(Criteria.where("categoryLineageIds").in(categoryId));
         }
 
         if (filter.getMinPrice() != null)
@@ -120,6 +131,60 @@ public class ProductService {
         );
     }
 
+    /**
+     * Keyset (cursor) variant of {@link #filterProducts} for infinite scroll.
+     * Cost is one index seek per slice regardless of depth; the total count is
+     * only computed when asked for, and capped (see KeysetPagination).
+     */
+    public CursorPage<Product> filterProductsByCursor(ProductFilterRequest filter,
+                                                      KeysetPagination.SortKey sort,
+                                                      String cursor, int size,
+                                                      boolean includeTotal) {
+        int pageSize = KeysetPagination.clampSize(size);
+        Query query = new Query();
+
+        if (filter.getKeyword() != null && !filter.getKeyword().isBlank()) {
+            query.addCriteria(TextCriteria.forDefaultLanguage().matching(filter.getKeyword()));
+        }
+
+        if (filter.getCategorySlug() != null) {
+            String categoryId = termDictionary.categoryIdForSlug(filter.getCategorySlug())
+                    .orElseThrow(() -> new ResourceNotFoundException("Category not found"));
+            query.addCriteria(Criteria.where("categoryLineageIds").in(categoryId));
+        }
+
+        if (filter.getMinPrice() != null)
+            query.addCriteria(Criteria.where("minPrice").gte(filter.getMinPrice()));
+        if (filter.getMaxPrice() != null)
+            query.addCriteria(Criteria.where("maxPrice").lte(filter.getMaxPrice()));
+
+        query.addCriteria(Criteria.where("isActive").is(true));
+
+        // Count BEFORE the seek predicate is added — the total is for the whole filter
+        Long total = null;
+        Boolean totalExact = null;
+        if (includeTotal) {
+            long capped = mongoTemplate.count(
+                    Query.of(query).limit(KeysetPagination.TOTAL_COUNT_CAP + 1), Product.class);
+            totalExact = capped <= KeysetPagination.TOTAL_COUNT_CAP;
+            total = Math.min(capped, KeysetPagination.TOTAL_COUNT_CAP);
+        }
+
+        query.fields().include(
+                "name", "slug", "brandName", "categoryName", "categorySlug",
+                "minPrice", "maxPrice", "basePrice", "totalStock", "discount",
+                "compareAtPrice", "averageRating", "reviewCount", "images", "isActive",
+                sort.field()
+        );
+        KeysetPagination.apply(query, sort, cursor, pageSize);
+
+        CursorPage<Product> page = KeysetPagination.slice(
+                mongoTemplate.find(query, Product.class), sort, pageSize);
+        page.setTotalElements(total);
+        page.setTotalExact(totalExact);
+        return page;
+    }
+
     @Cacheable(value = PRODUCT_DETAIL_CACHE, key = "#productId", sync = true)
     public ProductDetailResponse getProductDetails(String productId) {
         Product product = productRepository.findById(productId)
@@ -142,7 +207,6 @@ public class ProductService {
 
     @Transactional
     @Caching(evict = {
-            @CacheEvict(value = PRODUCTS_LIST_CACHE,  allEntries = true),
             @CacheEvict(value = PRODUCT_DETAIL_CACHE, key = "#request.id ?: 'none'"),
             @CacheEvict(value = PRODUCT_DETAIL_CACHE, key = "'byId_' + (#request.id ?: 'none')"),
             @CacheEvict(value = PRODUCT_DETAIL_CACHE, key = "'slug_' + (#request.slug ?: 'none')")
@@ -154,6 +218,8 @@ public class ProductService {
                 : new Product();
 
         String oldSlug = product.getSlug();
+        List<String> oldLineageIds = product.getCategoryLineageIds() != null
+                ? new ArrayList<>(product.getCategoryLineageIds()) : List.of();
 
         product.setName(request.getName());
         product.setSlug(request.getSlug());
@@ -224,12 +290,24 @@ public class ProductService {
             }
         }
 
+        // Moving category: pages of the old lineage must drop the product too.
+        // The new lineage is bumped by updateParentAggregates below.
+        if (!oldLineageIds.isEmpty() && !oldLineageIds.equals(saved.getCategoryLineageIds())) {
+            listCacheGenerations.bumpForLineage(oldLineageIds);
+        }
+
         updateParentAggregates(saved.getId());
         return saved;
     }
 
+    /**
+     * Creates or edits a variant. request.stockQuantity is the physical on-hand
+     * count; units held by open checkouts (reservedQuantity) are already out of
+     * stockQuantity, so the available count stored is on-hand minus held. An
+     * on-hand count below what is held is rejected — the holds could not be
+     * honoured, and a later expiry would put back units that do not exist.
+     */
     @Transactional
-    @CacheEvict(value = PRODUCTS_LIST_CACHE, allEntries = true)
     public ProductVariant saveVariant(VariantRequest request) {
         Product product = productRepository.findById(request.getProductId())
                 .orElseThrow(() -> new ResourceNotFoundException("Parent product not found"));
@@ -249,13 +327,24 @@ public class ProductService {
                 .orElseThrow(() -> new ResourceNotFoundException("Variant not found"))
                 : new ProductVariant();
 
-        Integer oldStock = variant.getStockQuantity();
+        // What this variant contributed to Product.totalStock before the edit
+        int oldCounted = variant.isManageStock() && variant.getStockQuantity() != null
+                ? variant.getStockQuantity() : 0;
+        BigDecimal oldPrice = variant.getPrice();
+
+        int reserved = variant.getReservedQuantity() != null ? variant.getReservedQuantity() : 0;
+        Integer onHand = request.getStockQuantity();
+        if (onHand != null && onHand < reserved) {
+            throw new IllegalArgumentException("Stock cannot be set to " + onHand + ": "
+                    + reserved + " unit(s) are held by open checkouts.");
+        }
+        Integer available = onHand != null ? onHand - reserved : null;
 
         variant.setProductId(product.getId());
         variant.setSku(request.getSku());
         variant.setPrice(request.getPrice());
         variant.setCompareAtPrice(request.getCompareAtPrice());
-        variant.setStockQuantity(request.getStockQuantity());
+        variant.setStockQuantity(available);
         variant.setAttributes(request.getAttributes());
         variant.setImages(request.getImages());
         variant.setManageStock(true);
@@ -272,16 +361,20 @@ public class ProductService {
         ProductVariant saved = variantRepository.save(variant);
 
         evictProductCaches(product);
+        listCacheGenerations.bumpForLineage(product.getCategoryLineageIds());
+
+        int stockChange = (available != null ? available : 0) - oldCounted;
+        incrementTotalStock(product.getId(), stockChange);
 
-        int stockChange = (request.getStockQuantity() != null ? request.getStockQuantity() : 0)
-                - (oldStock != null ? oldStock : 0);
-        eventPublisher.publishEvent(new StockChangedEvent(product.getId(), saved.getId(), stockChange));
+        boolean priceChanged = isNewVariant || oldPrice == null || saved.getPrice() == null
+                || oldPrice.compareTo(saved.getPrice()) != 0;
+        eventPublisher.publishEvent(new StockChangedEvent(
+                product.getId(), saved.getId(), stockChange, priceChanged));
 
         return saved;
     }
 
     @Transactional
-    @CacheEvict(value = PRODUCTS_LIST_CACHE, allEntries = true)
     public void deleteProduct(String productId) {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found: " + productId));
@@ -291,10 +384,10 @@ public class ProductService {
         productRepository.deleteById(productId);
 
         evictProductCaches(product);
+        listCacheGenerations.bumpForLineage(product.getCategoryLineageIds());
     }
 
     @Transactional
-    @CacheEvict(value = PRODUCTS_LIST_CACHE, allEntries = true)
     public void deleteVariant(String variantId) {
         ProductVariant variant = variantRepository.findById(variantId)
                 .orElseThrow(() -> new ResourceNotFoundException("Variant not found"));
@@ -306,13 +399,16 @@ public class ProductService {
         variantRepository.delete(variant);
 
         evictProductCaches(product);
+        listCacheGenerations.bumpForLineage(product.getCategoryLineageIds());
 
-        int stock = variant.getStockQuantity() != null ? variant.getStockQuantity() : 0;
-        eventPublisher.publishEvent(new StockChangedEvent(productId, variantId, -stock));
+        int stock = variant.isManageStock() && variant.getStockQuantity() != null
+                ? variant.getStockQuantity() : 0;
+        incrementTotalStock(productId, -stock);
+        // The removed variant may have held the min or max price
+        eventPublisher.publishEvent(new StockChangedEvent(productId, variantId, -stock, true));
     }
 
     @Transactional
-    @CacheEvict(value = PRODUCTS_LIST_CACHE, allEntries = true)
     public void addReview(String productId, int starRating) {
         Product p = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
@@ -324,10 +420,10 @@ public class ProductService {
         productRepository.save(p);
 
         evictProductCaches(p);
+        listCacheGenerations.bumpForLineage(p.getCategoryLineageIds());
     }
 
     @Transactional
-    @CacheEvict(value = PRODUCTS_LIST_CACHE, allEntries = true)
     public void applyDiscount(String productId, BigDecimal newBasePrice) {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
@@ -342,51 +438,309 @@ public class ProductService {
         updateParentAggregates(productId);
     }
 
+    /**
+     * Single-variant form of reduceStockBatch, for callers that hold a variant
+     * id rather than a cart line (checkout itself goes through the batch).
+     * Unmanaged variants are left alone; a short variant throws
+     * InsufficientStockException.
+     */
     public void reduceStockAtomic(String variantId, int quantity) {
         ProductVariant variant = variantRepository.findById(variantId)
                 .orElseThrow(() -> new ResourceNotFoundException("Variant not found"));
         if (!variant.isManageStock()) return;
 
-        Query query = new Query(
-                Criteria.where("id").is(variantId)
-                        .and("stockQuantity").gte(quantity));
-        Update update = new Update().inc("stockQuantity", -quantity);
-        var result = mongoTemplate.updateFirst(query, update, ProductVariant.class);
-
-        if (result.getModifiedCount() == 0) {
-            throw new RuntimeException("Insufficient stock for variant: " + variantId);
-        }
-        eventPublisher.publishEvent(new StockChangedEvent(
-                variant.getProductId(), variantId, -quantity));
+        reduceStockBatch(List.of(StockReservation.Line.builder()
+                .variantId(variantId)
+                .productId(variant.getProductId())
+                .quantity(quantity)
+                .build()), false);
     }
 
     public void addStockAtomic(String variantId, String productId, int quantity) {
         Query query = new Query(Criteria.where("id").is(variantId));
         Update update = new Update().inc("stockQuantity", quantity);
-        var result = mongoTemplate.updateFirst(query, update, ProductVariant.class);
+        ProductVariant variant = mongoTemplate.findAndModify(query, update, ProductVariant.class);
 
-        if (result.getModifiedCount() == 0) {
+        if (variant == null) {
             throw new ResourceNotFoundException(
                     "Variant not found or stock update failed: " + variantId);
         }
+        if (variant.isManageStock()) {
+            incrementTotalStock(productId, quantity);
+        }
         eventPublisher.publishEvent(new StockChangedEvent(productId, variantId, quantity));
     }
 
+    /**
+     * Multi-line counterpart of reduceStockAtomic: the whole cart in one ordered
+     * bulkWrite instead of a read plus a conditional update per line.
+     *
+     * HOW A SHORT LINE IS DETECTED:
+     *   Each line is an updateOne guarded on {_id, stockQuantity >= q}; a line that
+     *   is short, or whose variant was deleted, simply matches nothing. If the
+     *   matched count falls below the number of lines, the cart is rolled back and
+     *   the variants are re-read (committed state, outside any transaction) to
+     *   name the lines that are short or missing. Checkout never writes a variant
+     *   document it did not find.
+     *
+     * ROLLBACK:
+     *   A multi-line cart runs in a Mongo transaction — the caller's when there
+     *   is one (createOrder), otherwise its own — so a failed cart takes nothing:
+     *   its own transaction is rolled back here, the caller's is marked
+     *   rollback-only and rolled back when the exception reaches it. A single
+     *   line outside a transaction runs without one, so a rush on one variant
+     *   does not turn into transaction write conflicts.
+     *
+     * Lines must be merged per variant and limited to manageStock variants; they
+     * are applied in the order given, so pass them sorted by variantId to keep
+     * concurrent checkouts touching documents in the same order. hold=true also
+     * parks the units in reservedQuantity (StockReservationService).
+     *
+     * Publishes one StockChangedEvent per product.
+     */
+    public void reduceStockBatch(List<StockReservation.Line> lines, boolean hold) {
+        if (lines.isEmpty()) return;
+
+        // A single line needs no transaction of its own: it either matched or took nothing
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(lines.size() > 1
+                ? TransactionDefinition.PROPAGATION_REQUIRED
+                : TransactionDefinition.PROPAGATION_SUPPORTS);
+        Boolean taken = transaction.execute(status -> {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, ProductVariant.class);
+            for (StockReservation.Line line : lines) {
+                Update update = new Update().inc("stockQuantity", -line.getQuantity());
+                if (hold) {
+                    update.inc("reservedQuantity", line.getQuantity());
+                }
+                bulk.updateOne(new Query(Criteria.where("id").is(line.getVariantId())
+                        .and("stockQuantity").gte(line.getQuantity())), update);
+            }
+            if (bulk.execute().getMatchedCount() < lines.size()) {
+                status.setRollbackOnly();
+                return false;
+            }
+            incrementTotalStock(lines, -1);
+            publishStockChanges(lines, -1);
+            return true;
+        });
+        if (Boolean.TRUE.equals(taken)) return;
+
+        List<String> failedVariantIds = shortVariantIds(lines);
+        throw new InsufficientStockException(
+                "Insufficient stock for variant: " + String.join(", ", failedVariantIds), failedVariantIds);
+    }
+
+    /**
+     * Inverse of reduceStockBatch, unguarded: puts the units back into
+     * stockQuantity (and out of reservedQuantity when they were held) in one
+     * unordered bulk. Publishes one StockChangedEvent per product.
+     */
+    public void addStockBatch(List<StockReservation.Line> lines, boolean held) {
+        if (lines.isEmpty()) return;
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductVariant.class);
+        for (StockReservation.Line line : lines) {
+            Update update = new Update().inc("stockQuantity", line.getQuantity());
+            if (held) {
+                update.inc("reservedQuantity", -line.getQuantity());
+            }
+            bulk.updateOne(new Query(Criteria.where("id").is(line.getVariantId())), update);
+        }
+        bulk.execute();
+        incrementTotalStock(lines, 1);
+        publishStockChanges(lines, 1);
+    }
+
     // =========================================================================
     // AGGREGATE HELPERS
     // =========================================================================
 
+    /**
+     * Full recompute of totalStock / minPrice / maxPrice for one product from its
+     * variants. Used by admin write paths and AggregateSyncScheduler; stock moves
+     * never need it — totalStock is kept by $inc alongside the variant write.
+     */
     public void updateParentAggregates(String productId) {
-        List<ProductVariant> variants = variantRepository.findByProductId(productId);
+        AggregateSyncResult result = recomputeAggregates(List.of(productId));
+        if (result.missing().contains(productId)) {
+            throw new ResourceNotFoundException(
+                    "Product not found during aggregate update: " + productId);
+        }
+        if (result.failed().containsKey(productId)) {
+            throw new IllegalStateException("Aggregate update failed for product "
+                    + productId + ": " + result.failed().get(productId));
+        }
+    }
+
+    /**
+     * Batch aggregate recomputation: one product read, one variant read and one
+     * unordered bulk write for the whole batch, however many products it holds.
+     *
+     * Never throws for per-product problems — the caller decides what to do with
+     * missing (deleted) and failed IDs. An infrastructure failure (e.g. MongoDB
+     * unreachable) propagates so the caller can treat the whole batch as failed.
+     */
+    public AggregateSyncResult recomputeAggregates(Collection<String> productIds) {
+        return syncAggregates(productIds, Set.copyOf(productIds), true);
+    }
+
+    /**
+     * Post-write sync for StockChangedEvents (see AggregateSyncCoalescer).
+     *
+     * totalStock is already correct — it moved by $inc with the variant — so
+     * only products in priceChangedIds read their variants and get minPrice /
+     * maxPrice rewritten. Every product in the batch has its caches evicted.
+     */
+    public AggregateSyncResult refreshAggregates(Collection<String> productIds, Set<String> priceChangedIds) {
+        return syncAggregates(productIds, priceChangedIds, false);
+    }
+
+    /**
+     * Product-level twin of a variant stock $inc. Runs inside the caller's
+     * transaction when there is one (createOrder, saveVariant, deleteVariant), so
+     * both documents commit together; outside a transaction the two single-document
+     * writes are applied back to back and AggregateConsistencyChecker repairs any
+     * drift left by a crash in between.
+     */
+    private void incrementTotalStock(String productId, int delta) {
+        if (delta == 0) return;
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("id").is(productId)),
+                new Update().inc("totalStock", delta),
+                Product.class);
+    }
+
+    /** Batch form of incrementTotalStock: one $inc per product, one round trip. */
+    private void incrementTotalStock(List<StockReservation.Line> lines, int sign) {
+        Map<String, Integer> byProduct = sumByProduct(lines);
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        byProduct.forEach((productId, qty) -> bulk.updateOne(
+                new Query(Criteria.where("id").is(productId)),
+                new Update().inc("totalStock", sign * qty)));
+        bulk.execute();
+    }
+
+    /**
+     * Variants of a failed reduceStockBatch that are missing or have fewer units
+     * than their line asks for, read from committed state (any transaction is
+     * suspended, so the cart's own rolled-back writes are not seen). Falls back
+     * to every line when a concurrent restock already covers them all.
+     */
+    private List<String> shortVariantIds(List<StockReservation.Line> lines) {
+        TransactionTemplate outside = new TransactionTemplate(transactionManager);
+        outside.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+        Map<String, Integer> stock = outside.execute(status -> {
+            Query query = new Query(Criteria.where("id").in(
+                    lines.stream().map(StockReservation.Line::getVariantId).toList()));
+            query.fields().include("stockQuantity");
+            Map<String, Integer> byId = new HashMap<>();
+            mongoTemplate.find(query, ProductVariant.class)
+                    .forEach(v -> byId.put(v.getId(), v.getStockQuantity() != null ? v.getStockQuantity() : 0));
+            return byId;
+        });
+
+        List<String> failed = lines.stream()
+                .filter(l -> stock == null || !stock.containsKey(l.getVariantId())
+                        || stock.get(l.getVariantId()) < l.getQuantity())
+                .map(StockReservation.Line::getVariantId)
+                .toList();
+        return failed.isEmpty() ? lines.stream().map(StockReservation.Line::getVariantId).toList() : failed;
+    }
+
+    /** One event per product; variantId is only set when a single variant moved. */
+    private void publishStockChanges(List<StockReservation.Line> lines, int sign) {
+        Map<String, List<StockReservation.Line>> byProduct = lines.stream()
+                .collect(Collectors.groupingBy(StockReservation.Line::getProductId,
+                        LinkedHashMap::new, Collectors.toList()));
+        byProduct.forEach((productId, productLines) -> eventPublisher.publishEvent(new StockChangedEvent(
+                productId,
+                productLines.size() == 1 ? productLines.get(0).getVariantId() : null,
+                sign * productLines.stream().mapToInt(StockReservation.Line::getQuantity).sum())));
+    }
+
+    private static Map<String, Integer> sumByProduct(List<StockReservation.Line> lines) {
+        Map<String, Integer> byProduct = new LinkedHashMap<>();
+        lines.forEach(l -> byProduct.merge(l.getProductId(), l.getQuantity(), Integer::sum));
+        return byProduct;
+    }
+
+    private AggregateSyncResult syncAggregates(Collection<String> productIds,
+                                               Set<String> recomputeIds,
+                                               boolean includeStock) {
+        if (productIds.isEmpty()) {
+            return new AggregateSyncResult(Set.of(), Set.of(), Map.of());
+        }
 
+        Map<String, Product> products = new LinkedHashMap<>();
+        productRepository.findAllById(productIds).forEach(p -> products.put(p.getId(), p));
+
+        Set<String> missing = new HashSet<>(productIds);
+        missing.removeAll(products.keySet());
+
+        if (products.isEmpty()) {
+            return new AggregateSyncResult(Set.of(), missing, Map.of());
+        }
+
+        List<String> order = products.keySet().stream()
+                .filter(recomputeIds::contains)
+                .toList();
+
+        Map<String, String> failed = new HashMap<>();
+        if (!order.isEmpty()) {
+            Query variantQuery = new Query(Criteria.where("productId").in(order));
+            variantQuery.fields().include("productId", "price", "stockQuantity", "manageStock");
+            Map<String, List<ProductVariant>> variantsByProduct = mongoTemplate
+                    .find(variantQuery, ProductVariant.class).stream()
+                    .collect(Collectors.groupingBy(ProductVariant::getProductId));
+
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+            for (String productId : order) {
+                bulk.updateOne(new Query(Criteria.where("id").is(productId)),
+                        aggregateUpdate(products.get(productId),
+                                variantsByProduct.getOrDefault(productId, List.of()), includeStock));
+            }
+            try {
+                bulk.execute();
+            } catch (BulkOperationException e) {
+                e.getErrors().forEach(err -> failed.put(order.get(err.getIndex()), err.getMessage()));
+            }
+        }
+
+        Set<String> updated = new LinkedHashSet<>(products.keySet());
+        updated.removeAll(failed.keySet());
+
+        Set<String> touchedLineage = new HashSet<>();
+        for (String productId : updated) {
+            Product product = products.get(productId);
+            evictProductCaches(product);
+            if (product.getCategoryLineageIds() != null) {
+                touchedLineage.addAll(product.getCategoryLineageIds());
+            }
+        }
+        try {
+            // Only listings of these products' categories (and unscoped ones) go cold;
+            // every other category keeps its cached pages. One bump set per batch.
+            if (!updated.isEmpty()) {
+                listCacheGenerations.bumpForLineage(touchedLineage);
+            }
+        } catch (Exception e) {
+            log.warn("[Cache] Generation bump failed on '{}' for {} product(s): {}",
+                    PRODUCTS_LIST_CACHE, updated.size(), e.getMessage());
+        }
+
+        return new AggregateSyncResult(updated, missing, failed);
+    }
+
+    /** Outcome of {@link #recomputeAggregates}: updated, deleted-in-the-meantime, and failed (id → error). */
+    public record AggregateSyncResult(Set<String> updated, Set<String> missing, Map<String, String> failed) {}
+
+    private Update aggregateUpdate(Product product, List<ProductVariant> variants, boolean includeStock) {
         final BigDecimal newMin;
         final BigDecimal newMax;
         final int newTotalStock;
 
         if (variants.isEmpty()) {
-            Product product = productRepository.findById(productId)
-                    .orElseThrow(() -> new ResourceNotFoundException(
-                            "Product not found during aggregate update: " + productId));
             BigDecimal base = product.getBasePrice() != null
                     ? product.getBasePrice() : BigDecimal.ZERO;
             newMin = base;
@@ -409,21 +763,10 @@ public class ProductService {
                     .orElse(BigDecimal.ZERO);
         }
 
-        Query query = new Query(Criteria.where("id").is(productId));
         Update update = new Update()
-                .set("totalStock", newTotalStock)
                 .set("minPrice", newMin)
                 .set("maxPrice", newMax);
-        mongoTemplate.updateFirst(query, update, Product.class);
-
-        evictProductCaches(productId);
-        try {
-            Optional.ofNullable(cacheManager.getCache(PRODUCTS_LIST_CACHE))
-                    .ifPresent(org.springframework.cache.Cache::clear);
-        } catch (Exception e) {
-            log.warn("[Cache] Manual clear failed on '{}': {}",
-                    PRODUCTS_LIST_CACHE, e.getMessage());
-        }
+        return includeStock ? update.set("totalStock", newTotalStock) : update;
     }
 
     // =========================================================================
@@ -441,13 +784,13 @@ public class ProductService {
      * migration or partial save) would otherwise evict the literal key "slug_null",
      * which is a nonsensical entry that pollutes cache monitoring.
      *
-     * Two overloads:
-     *   evictProductCaches(Product)  — use when the entity is already in memory;
-     *                                  avoids a redundant DB read.
-     *   evictProductCaches(String)   — use when only the productId is available;
-     *                                  fetches the product to obtain the slug.
+     * Takes the entity rather than an id: every caller already has the product
+     * in memory (recomputeAggregates loads the whole batch once), so a second
+     * findById just to learn the slug is never needed.
      */
     private void evictProductCaches(Product product) {
+        // Every product write funnels through here — the search index follows it
+        searchIndex.markDirty(product.getId());
         try {
             Optional.ofNullable(cacheManager.getCache(PRODUCT_DETAIL_CACHE))
                     .ifPresent(c -> {
@@ -463,19 +806,6 @@ public class ProductService {
         }
     }
 
-    private void evictProductCaches(String productId) {
-        try {
-            Product product = productRepository.findById(productId)
-                    .orElseThrow(() -> new ResourceNotFoundException(
-                            "Product not found: " + productId));
-            evictProductCaches(product);
-        } catch (ResourceNotFoundException e) {
-            throw e; // re-throw domain exceptions, don't swallow them
-        } catch (Exception e) {
-            log.warn("[Cache] Manual evict failed for productId '{}': {}",
-                    productId, e.getMessage());
-        }
-    }
 
     // =========================================================================
     // PRIVATE HELPERS
@@ -0,0 +1,56 @@
+package semicolon.africa.waylchub.service.productService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import semicolon.africa.waylchub.model.product.StockReservation;
+
+import java.util.List;
+
+/**
+ * Gives expired checkout holds back to available stock.
+ *
+ * The order itself is left alone — it stays PENDING_PAYMENT until the customer
+ * pays (StockReservationService.commit re-takes the units) or
+ * AbandonedOrderCleanupJob cancels it (nothing left to restore by then).
+ *
+ * No ShedLock: each release is guarded on status = HELD, so pods sweeping the
+ * same hold at the same time cannot release it twice, and a lock would only
+ * delay stock coming back on sale.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockReservationExpiryJob {
+
+    private final StockReservationService reservationService;
+
+    @Scheduled(fixedDelayString = "${app.stock-reservation.sweep-interval:PT30S}", initialDelayString = "PT30S")
+    public void releaseExpiredHolds() {
+        int released = 0;
+        int releasedThisRound;
+        List<String> expired;
+        do {
+            expired = reservationService.findExpiredHolds();
+            releasedThisRound = 0;
+            for (String reservationId : expired) {
+                try {
+                    if (reservationService.release(reservationId, StockReservation.Status.EXPIRED)) {
+                        releasedThisRound++;
+                    }
+                } catch (Exception e) {
+                    // Usually a write conflict with a live checkout — the next sweep retries
+                    log.warn("Could not release expired reservation {}: {}", reservationId, e.getMessage());
+                }
+            }
+            released += releasedThisRound;
+            // Keep draining only while full batches clear; a stuck hold must not spin the loop
+        } while (expired.size() == StockReservationService.EXPIRY_BATCH_SIZE
+                && releasedThisRound == expired.size());
+
+        if (released > 0) {
+            log.info("Released {} expired stock reservation(s)", released);
+        }
+    }
+}
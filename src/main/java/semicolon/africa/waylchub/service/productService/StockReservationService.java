@@ -0,0 +1,266 @@
+package semicolon.africa.waylchub.service.productService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import semicolon.africa.waylchub.model.order.Order;
+import semicolon.africa.waylchub.model.order.OrderItem;
+import semicolon.africa.waylchub.model.product.ProductVariant;
+import semicolon.africa.waylchub.model.product.StockReservation;
+import semicolon.africa.waylchub.model.product.StockReservation.Line;
+import semicolon.africa.waylchub.model.product.StockReservation.Status;
+import semicolon.africa.waylchub.repository.productRepository.StockReservationRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Time-bounded stock holds for checkout.
+ *
+ * WHY:
+ *   createOrder used to decrement stock for good, and only AbandonedOrderCleanupJob
+ *   gave it back — 30+ minutes later, through a cancel and a restore event. During
+ *   a drop, hot items looked sold out for half an hour because of carts nobody
+ *   was going to pay for.
+ *
+ * COUNTERS (per variant):
+ *   stockQuantity    — available to sell; what every stock check reads
+ *   reservedQuantity — held by unpaid checkouts
+ *
+ *   reserve : stockQuantity -= q, reservedQuantity += q   (guarded on stockQuantity >= q)
+ *   commit  :                     reservedQuantity -= q
+ *   release : stockQuantity += q, reservedQuantity -= q   (cancel or expiry)
+ *
+ *   Product.totalStock follows stockQuantity, so listings stop showing held
+ *   units immediately and show them again the moment a hold lapses.
+ *
+ * ATOMICITY:
+ *   Counter moves go through ProductService.reduceStockBatch / addStockBatch — one
+ *   bulkWrite for the whole cart. Inside createOrder / processSuccessfulPayment /
+ *   cancelOrder they join the caller's Mongo transaction. reserve, release and
+ *   releaseForCancellation are @Transactional themselves, so the counter move
+ *   and the reservation document land together for a caller without one too.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockReservationService {
+
+    static final int EXPIRY_BATCH_SIZE = 200;
+
+    private final MongoTemplate mongoTemplate;
+    private final StockReservationRepository reservationRepository;
+    private final ProductService productService;
+
+    @Value("${app.stock-reservation.hold:PT15M}")
+    private Duration holdDuration;
+
+    @Value("${app.stock-reservation.retention:P7D}")
+    private Duration retention;
+
+    // =========================================================================
+    // RESERVE
+    // =========================================================================
+
+    /**
+     * Holds every line of a cart, or none of them.
+     *
+     * Lines for variants that do not manage stock are dropped — there is nothing
+     * to hold. Throws InsufficientStockException naming the variants that
+     * could not be held — short or deleted (getVariantIds); nothing is held then.
+     *
+     * Transactional so the hold and the reservation document commit together:
+     * a failed save must not leave units parked in reservedQuantity with no
+     * reservation to release them. createOrder's transaction is joined.
+     */
+    @Transactional
+    public StockReservation reserve(Collection<Line> requested) {
+        List<Line> lines = managedLines(requested);
+
+        StockReservation reservation = StockReservation.builder()
+                .lines(lines)
+                .status(Status.HELD)
+                .expiresAt(Instant.now().plus(holdDuration))
+                .build();
+
+        productService.reduceStockBatch(lines, true);
+        return reservationRepository.save(reservation);
+    }
+
+    // =========================================================================
+    // COMMIT — payment confirmed
+    // =========================================================================
+
+    /**
+     * Turns a hold into a sale. Idempotent: a duplicate webhook finds the
+     * reservation already COMMITTED and returns true.
+     *
+     * If the hold already lapsed (payment arrived after expiresAt), the units
+     * are taken again from available stock. Returns false only when that is no
+     * longer possible — the caller must not reject a payment that was taken, so
+     * it records the shortfall instead.
+     */
+    public boolean commit(String reservationId) {
+        if (reservationId == null) return true;   // order predates reservations
+
+        StockReservation held = transition(reservationId, Set.of(Status.HELD), Status.COMMITTED);
+        if (held != null) {
+            clearReserved(held.getLines());
+            return true;
+        }
+
+        StockReservation current = reservationRepository.findById(reservationId).orElse(null);
+        if (current == null) {
+            log.warn("Reservation {} not found at commit — treating as committed", reservationId);
+            return true;
+        }
+        if (current.getStatus() == Status.COMMITTED) {
+            return true;
+        }
+
+        // Lapsed hold — take the units again before recording the sale. Check first:
+        // inside the payment transaction a short line would abort the whole
+        // transaction, not just this step. If stock is taken between the check and
+        // the write, the exception fails the webhook and the provider's retry lands
+        // in the check.
+        if (!allAvailable(current.getLines())) {
+            log.error("Reservation {} lapsed ({}) and stock is gone", reservationId, current.getStatus());
+            return false;
+        }
+        productService.reduceStockBatch(current.getLines(), false);
+        if (transition(reservationId, Set.of(Status.EXPIRED, Status.RELEASED), Status.COMMITTED) == null) {
+            // Someone else committed it in between — give back what we just took
+            productService.addStockBatch(current.getLines(), false);
+        }
+        return true;
+    }
+
+    // =========================================================================
+    // RELEASE — cancel or expiry
+    // =========================================================================
+
+    /**
+     * Returns a HELD reservation's units to available stock. Returns false if the
+     * reservation was not HELD (already committed, released or expired).
+     *
+     * The status flip and the stock return must land together, so this runs in
+     * a transaction — but @Transactional only applies to calls through the
+     * Spring proxy (StockReservationExpiryJob). Callers inside this class must
+     * already be in one, as releaseForCancellation is.
+     */
+    @Transactional
+    public boolean release(String reservationId, Status target) {
+        StockReservation held = transition(reservationId, Set.of(Status.HELD), target);
+        if (held == null) return false;
+
+        productService.addStockBatch(held.getLines(), true);
+        return true;
+    }
+
+    /**
+     * Frees the order's stock on cancellation and returns the items that still
+     * need restoring through OrderCancelledEvent:
+     *   HELD                → released right here; nothing left to restore
+     *   EXPIRED / RELEASED  → units already back on sale; nothing to restore
+     *   COMMITTED / legacy  → units were sold; restore every item
+     *
+     * Transactional itself, because its call to release() does not pass the
+     * proxy; inside cancelOrder it joins that transaction.
+     */
+    @Transactional
+    public List<OrderItem> releaseForCancellation(Order order) {
+        String reservationId = order.getReservationId();
+        if (reservationId == null) {
+            return order.getItems();
+        }
+        if (release(reservationId, Status.RELEASED)) {
+            return List.of();
+        }
+        return reservationRepository.findById(reservationId)
+                .filter(r -> r.getStatus() == Status.COMMITTED)
+                .map(r -> order.getItems())
+                .orElse(List.of());
+    }
+
+    /** IDs of holds past their expiry, oldest first. Used by StockReservationExpiryJob. */
+    public List<String> findExpiredHolds() {
+        return reservationRepository.findByStatusAndExpiresAtBefore(
+                        Status.HELD, Instant.now(), PageRequest.of(0, EXPIRY_BATCH_SIZE))
+                .stream()
+                .map(StockReservation::getId)
+                .toList();
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    private List<Line> managedLines(Collection<Line> requested) {
+        Map<String, Line> byVariant = new TreeMap<>();   // fixed order: fewer write conflicts
+        for (Line line : requested) {
+            if (line.getQuantity() <= 0) continue;
+            byVariant.merge(line.getVariantId(), line, (a, b) -> Line.builder()
+                    .variantId(a.getVariantId())
+                    .productId(a.getProductId())
+                    .quantity(a.getQuantity() + b.getQuantity())
+                    .build());
+        }
+        if (byVariant.isEmpty()) return List.of();
+
+        Query managed = new Query(Criteria.where("id").in(byVariant.keySet()).and("manageStock").is(true));
+        managed.fields().include("id");
+        Set<String> managedIds = mongoTemplate.find(managed, ProductVariant.class).stream()
+                .map(ProductVariant::getId)
+                .collect(Collectors.toSet());
+
+        return byVariant.values().stream()
+                .filter(l -> managedIds.contains(l.getVariantId()))
+                .toList();
+    }
+
+    private boolean allAvailable(List<Line> lines) {
+        if (lines.isEmpty()) return true;
+        Query query = new Query(Criteria.where("id").in(lines.stream().map(Line::getVariantId).toList()));
+        query.fields().include("id", "stockQuantity");
+        Map<String, Integer> available = mongoTemplate.find(query, ProductVariant.class).stream()
+                .collect(Collectors.toMap(ProductVariant::getId, ProductVariant::availableToSell));
+        return lines.stream().allMatch(l -> available.getOrDefault(l.getVariantId(), 0) >= l.getQuantity());
+    }
+
+    /** The sale is final: held units leave reservedQuantity, one bulk for the cart. */
+    private void clearReserved(List<Line> lines) {
+        if (lines.isEmpty()) return;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductVariant.class);
+        lines.forEach(line -> bulk.updateOne(
+                new Query(Criteria.where("id").is(line.getVariantId())),
+                new Update().inc("reservedQuantity", -line.getQuantity())));
+        bulk.execute();
+    }
+
+    private StockReservation transition(String reservationId, Set<Status> from, Status to) {
+        Instant now = Instant.now();
+        Update update = new Update().set("status", to);
+        if (to == Status.COMMITTED) {
+            update.set("committedAt", now);
+        }
+        // Terminal state from here on — let the TTL index clean it up later
+        update.set("purgeAt", now.plus(retention));
+
+        return mongoTemplate.findAndModify(
+                new Query(Criteria.where("id").is(reservationId).and("status").in(from)),
+                update,
+                FindAndModifyOptions.options().returnNew(false),
+                StockReservation.class);
+    }
+}
@@ -0,0 +1,338 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import semicolon.africa.waylchub.model.recommendation.FactorModelInfo;
+import semicolon.africa.waylchub.model.recommendation.ItemFactorChunk;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarEntry;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Offline training of the implicit-feedback ALS model (ImplicitAls) that
+ * FactorModelService serves for "For You" and "similar" requests.
+ *
+ * DATA:
+ *   One cursor over app.recommendation.als.window of logged-in behaviour:
+ *   VIEW (1), ADD_TO_CART (5) and PURCHASE (10), the UserBehaviorLog weights,
+ *   summed per (user, product). Unlike the co-occurrence lists, a product
+ *   with a handful of shoppers still gets factors from everything those
+ *   shoppers did, which is what helps the long tail.
+ *
+ * EVALUATION (when app.recommendation.als.holdout is positive):
+ *   The same cursor also fills a second model with only the events before
+ *   now − holdout, and CO_PURCHASE / CO_VIEW co-occurrence matrices from the
+ *   same events (the CF output, scored ×2 / ×1 like PersonalFeedService). For
+ *   up to MAX_EVALUATION_USERS shoppers with new products in the held-out
+ *   window, recall@K = hits / min(K, held-out products) is averaged for both.
+ *   CF is scored from every training product of the shopper, not only the
+ *   feed's five most recent views — a generous baseline.
+ *
+ * PERSISTENCE:
+ *   FactorModelInfo (complete = false), then the product factors as
+ *   ItemFactorChunk documents of CHUNK_SIZE products in packed float32, then
+ *   complete = true and older models are removed. User factors are not
+ *   stored: serving folds the shopper in from their current behaviour, the
+ *   same solve training does, so it is never a day stale.
+ *
+ * SCHEDULE:
+ *   Every app.recommendation.als.train-interval, or on demand from
+ *   AdminRecommendationController, through LockedJobRunner: a run takes
+ *   minutes and must not hold up the @Scheduled flushes. Both models train
+ *   on the shared scoringPool, so a run that overlaps a CF or content
+ *   rebuild shares its threads instead of adding its own.
+ *
+ * METRICS:
+ *   recommendation.als.train            — run duration
+ *   recommendation.als.recall{model}    — last recall@K, model = als | cf
+ */
+@Slf4j
+@Service
+public class AlsTrainingService {
+
+    static final String LOCK_NAME = "alsTraining";
+
+    static final List<BehaviorEventType> TRAINING_EVENTS =
+            List.of(BehaviorEventType.VIEW, BehaviorEventType.ADD_TO_CART, BehaviorEventType.PURCHASE);
+
+    // Products per ItemFactorChunk: ~1.3 MB of float32 at k = 32, well under the 16 MB document limit
+    static final int CHUNK_SIZE = 10_000;
+
+    private static final int MAX_EVALUATION_USERS = 5_000;
+    // Neighbours per product for the CF baseline, as CollaborativeFilteringService keeps
+    private static final int CF_TOP_N = 20;
+
+    private static final int CURSOR_BATCH = 10_000;
+    private static final Duration LOCK_AT_MOST_FOR = Duration.ofHours(3);
+    private static final long SEED = 0x5eed_a15L;
+
+    private final MongoTemplate mongoTemplate;
+    private final LockedJobRunner jobs;
+    private final FactorModelService factorModelService;
+    private final ForkJoinPool scoringPool;
+    private final Duration window;
+    private final Duration holdout;
+    private final ImplicitAls.Params params;
+    private final int evaluationK;
+
+    private final Timer trainTimer;
+    private final AtomicReference<FactorModelInfo> lastEvaluated = new AtomicReference<>();
+
+    /** recall@K of both models, averaged over the evaluated shoppers. */
+    record Evaluation(int users, double alsRecall, double cfRecall) {
+        static final Evaluation SKIPPED = new Evaluation(0, 0, 0);
+    }
+
+    public AlsTrainingService(MongoTemplate mongoTemplate,
+                              LockedJobRunner jobs,
+                              FactorModelService factorModelService,
+                              @Qualifier("scoringPool") ForkJoinPool scoringPool,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.recommendation.als.window:P90D}") Duration window,
+                              @Value("${app.recommendation.als.holdout:P7D}") Duration holdout,
+                              @Value("${app.recommendation.als.factors:32}") int factors,
+                              @Value("${app.recommendation.als.iterations:10}") int iterations,
+                              @Value("${app.recommendation.als.regularization:1.0}") double regularization,
+                              @Value("${app.recommendation.als.alpha:20}") double alpha,
+                              @Value("${app.recommendation.als.evaluation-k:20}") int evaluationK) {
+        this.mongoTemplate = mongoTemplate;
+        this.jobs = jobs;
+        this.factorModelService = factorModelService;
+        this.scoringPool = scoringPool;
+        this.window = window;
+        this.holdout = holdout;
+        this.params = new ImplicitAls.Params(factors, iterations, regularization, alpha, SEED);
+        this.evaluationK = Math.max(1, evaluationK);
+
+        this.trainTimer = meterRegistry.timer("recommendation.als.train");
+        Gauge.builder("recommendation.als.recall", lastEvaluated, r -> r.get() == null ? Double.NaN : r.get().getAlsRecall())
+                .tag("model", "als")
+                .description("recall@K of the last ALS model on its held-out window")
+                .register(meterRegistry);
+        Gauge.builder("recommendation.als.recall", lastEvaluated, r -> r.get() == null ? Double.NaN : r.get().getCfRecall())
+                .tag("model", "cf")
+                .description("recall@K of item-item CF on the same held-out window")
+                .register(meterRegistry);
+    }
+
+    // =========================================================================
+    // ENTRY POINTS
+    // =========================================================================
+
+    /** Daily, and from the admin endpoint: queues training and returns. */
+    @Scheduled(fixedDelayString = "${app.recommendation.als.train-interval:P1D}",
+            initialDelayString = "${app.recommendation.als.initial-delay:PT15M}")
+    public void trainAsync() {
+        jobs.submit(this::train);
+    }
+
+    /** Train now. False when another pod holds the lock and this run was skipped. */
+    public boolean train() {
+        return jobs.run(LOCK_NAME, LOCK_AT_MOST_FOR, "[ALS] Training", () -> trainTimer.record(this::trainAndPersist));
+    }
+
+    // =========================================================================
+    // TRAINING
+    // =========================================================================
+
+    private void trainAndPersist() {
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = holdout.isZero() || holdout.isNegative() ? null : now.minus(holdout);
+
+        ImplicitAls full = new ImplicitAls();
+        ImplicitAls before = cutoff == null ? null : new ImplicitAls();
+        CoOccurrenceMatrix purchases = cutoff == null ? null : new CoOccurrenceMatrix();
+        CoOccurrenceMatrix views = cutoff == null ? null : new CoOccurrenceMatrix();
+        Map<String, Set<String>> heldOut = new HashMap<>();
+
+        Query q = new Query(Criteria.where("userId").ne(null)
+                .and("eventType").in(TRAINING_EVENTS)
+                .and("timestamp").gte(now.minus(window)).lte(now));
+        q.fields().include("userId").include("productId").include("eventType").include("timestamp");
+        q.cursorBatchSize(CURSOR_BATCH);
+        try (Stream<UserBehaviorLog> events = mongoTemplate.stream(q, UserBehaviorLog.class)) {
+            events.forEach(e -> {
+                if (e.getProductId() == null || e.getTimestamp() == null) return;
+                float weight = UserBehaviorLog.eventWeight(e.getEventType());
+                full.add(e.getUserId(), e.getProductId(), weight);
+                if (cutoff == null) return;
+                if (e.getTimestamp().isBefore(cutoff)) {
+                    before.add(e.getUserId(), e.getProductId(), weight);
+                    (e.getEventType() == BehaviorEventType.PURCHASE ? purchases : views)
+                            .add(e.getUserId(), e.getProductId());
+                } else {
+                    heldOut.computeIfAbsent(e.getUserId(), u -> new HashSet<>()).add(e.getProductId());
+                }
+            });
+        }
+        if (full.userCount() == 0) {
+            log.info("[ALS] No behaviour in the last {}, nothing to train", window);
+            return;
+        }
+
+        Evaluation evaluation = Evaluation.SKIPPED;
+        if (before != null && before.userCount() > 0) {
+            long evaluating = System.currentTimeMillis();
+            evaluation = evaluate(before, purchases, views, heldOut, scoringPool);
+            log.info("[ALS] recall@{} on {} shoppers: ALS {} vs CF {} ({}ms)", evaluationK, evaluation.users(),
+                    String.format("%.4f", evaluation.alsRecall()), String.format("%.4f", evaluation.cfRecall()),
+                    System.currentTimeMillis() - evaluating);
+        }
+
+        long training = System.currentTimeMillis();
+        ImplicitAls.Factors factors = full.train(params, scoringPool);
+        log.info("[ALS] Trained {} users × {} products ({} events, {} pairs) in {}ms",
+                full.userCount(), full.itemCount(), full.eventCount(), full.interactionCount(),
+                System.currentTimeMillis() - training);
+
+        FactorModelInfo info = persist(factors, full, evaluation, now);
+        if (evaluation.users() > 0) lastEvaluated.set(info);
+
+        factorModelService.refresh();
+        log.info("[ALS] Run completed in {}ms", System.currentTimeMillis() - start);
+    }
+
+    /** recall@K of ALS and CF trained before the cutoff, on the products each shopper first touched after it. */
+    private Evaluation evaluate(ImplicitAls before, CoOccurrenceMatrix purchases, CoOccurrenceMatrix views,
+                                Map<String, Set<String>> heldOut, ForkJoinPool pool) {
+        ImplicitAls.Factors factors = before.train(params, pool);
+        ItemFactors model = new ItemFactors(factors.k(), params.regularization(), params.alpha(),
+                factors.itemIds(), factors.itemFactors());
+        Map<String, List<SimilarEntry>> coPurchase = purchases.topSimilar(CF_TOP_N, pool);
+        Map<String, List<SimilarEntry>> coView = views.topSimilar(CF_TOP_N, pool);
+
+        // Shoppers known before the cutoff with something new after it, in a stable order
+        List<String> users = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> e : heldOut.entrySet()) {
+            if (before.userOf(e.getKey()) < 0) continue;
+            e.getValue().removeAll(before.interactionsOf(e.getKey()).keySet());
+            if (!e.getValue().isEmpty()) users.add(e.getKey());
+        }
+        if (users.isEmpty()) return Evaluation.SKIPPED;
+        Collections.sort(users);
+        if (users.size() > MAX_EVALUATION_USERS) {
+            Collections.shuffle(users, new Random(SEED));
+            users = users.subList(0, MAX_EVALUATION_USERS);
+        }
+
+        List<String> sample = users;
+        double[] sums = pool.submit(() -> sample.parallelStream().map(userId -> {
+            Set<String> seen = before.interactionsOf(userId).keySet();
+            Set<String> truth = heldOut.get(userId);
+            int denominator = Math.min(evaluationK, truth.size());
+            List<String> als = model.recommend(factors.userVector(before.userOf(userId)), evaluationK, seen);
+            List<String> cf = cfRecommend(seen, coPurchase, coView);
+            return new double[]{hits(als, truth) / (double) denominator, hits(cf, truth) / (double) denominator};
+        }).reduce(new double[2], (a, b) -> new double[]{a[0] + b[0], a[1] + b[1]})).join();
+
+        return new Evaluation(sample.size(), sums[0] / sample.size(), sums[1] / sample.size());
+    }
+
+    /** The CF feed score: Σ CO_PURCHASE × 2 + CO_VIEW × 1 over the shopper's products. */
+    private List<String> cfRecommend(Set<String> seen, Map<String, List<SimilarEntry>> coPurchase,
+                                     Map<String, List<SimilarEntry>> coView) {
+        Map<String, Double> scores = new HashMap<>();
+        for (String productId : seen) {
+            coPurchase.getOrDefault(productId, List.of())
+                    .forEach(e -> scores.merge(e.getProductId(), e.getScore() * 2.0, Double::sum));
+            coView.getOrDefault(productId, List.of())
+                    .forEach(e -> scores.merge(e.getProductId(), e.getScore(), Double::sum));
+        }
+        return scores.entrySet().stream()
+                .filter(e -> !seen.contains(e.getKey()))
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(evaluationK)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    // =========================================================================
+    // PERSISTENCE
+    // =========================================================================
+
+    private FactorModelInfo persist(ImplicitAls.Factors factors, ImplicitAls data, Evaluation evaluation,
+                                    LocalDateTime trainedAt) {
+        String modelId = String.valueOf(trainedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        int k = factors.k();
+        String[] productIds = factors.itemIds();
+        int chunks = (productIds.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+        FactorModelInfo info = FactorModelInfo.builder()
+                .id(modelId)
+                .trainedAt(trainedAt)
+                .factors(k)
+                .regularization(params.regularization())
+                .alpha(params.alpha())
+                .users(factors.userIds().length)
+                .items(productIds.length)
+                .interactions(data.interactionCount())
+                .chunks(chunks)
+                .complete(false)
+                .evaluationK(evaluationK)
+                .evaluatedUsers(evaluation.users())
+                .alsRecall(evaluation.alsRecall())
+                .cfRecall(evaluation.cfRecall())
+                .build();
+        mongoTemplate.save(info);
+
+        for (int seq = 0; seq < chunks; seq++) {
+            int from = seq * CHUNK_SIZE;
+            int to = Math.min(productIds.length, from + CHUNK_SIZE);
+            mongoTemplate.insert(ItemFactorChunk.builder()
+                    .id(modelId + ":" + seq)
+                    .modelId(modelId)
+                    .seq(seq)
+                    .productIds(new ArrayList<>(Arrays.asList(productIds).subList(from, to)))
+                    .factors(pack(factors.itemFactors(), from * k, (to - from) * k))
+                    .build());
+        }
+
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(modelId)),
+                new Update().set("complete", true), FactorModelInfo.class);
+        info.setComplete(true);
+
+        // Pods still serving an older model keep it in memory until they load this one
+        mongoTemplate.remove(new Query(Criteria.where("_id").ne(modelId)), FactorModelInfo.class);
+        mongoTemplate.remove(new Query(Criteria.where("modelId").ne(modelId)), ItemFactorChunk.class);
+        log.info("[ALS] Model {} stored: {} products in {} chunks", modelId, productIds.length, chunks);
+        return info;
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    /** count floats from offset as little-endian float32 bytes — the ItemFactorChunk layout. */
+    static byte[] pack(float[] values, int offset, int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(count * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(values, offset, count);
+        return buffer.array();
+    }
+
+    private static int hits(List<String> recommended, Set<String> truth) {
+        int hits = 0;
+        for (String productId : recommended) {
+            if (truth.contains(productId)) hits++;
+        }
+        return hits;
+    }
+}
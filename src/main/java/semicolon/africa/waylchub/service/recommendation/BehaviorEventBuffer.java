@@ -0,0 +1,406 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.DBRef;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import semicolon.africa.waylchub.event.BehaviorRecordedEvent;
+import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buffers behaviour events from BehaviorTrackingService and writes them in
+ * batches.
+ *
+ * WHY:
+ *   Every tracked event used to be its own findById (which also resolved the
+ *   product's category and brand DBRefs) and its own insert — thousands of
+ *   single-document round trips a second while shoppers browse.
+ *
+ * HOW IT WORKS:
+ *   offer() appends to a lock-free queue bounded by app.tracking.buffer.capacity
+ *   and returns. Every app.tracking.buffer.flush-interval, or as soon as
+ *   max-batch events are waiting (early drain on trackingFlushExecutor, whose
+ *   single thread rejects rather than queue or run on the caller), the queue
+ *   is drained in batches of max-batch:
+ *     1. product metadata (category id, slug, brand id) comes from a Caffeine
+ *        cache, and the misses from one $in read of the raw product documents
+ *        — the DBRef ids are read as stored, never resolved;
+ *     2. the batch is one unordered insertMany;
+ *     3. stored events are counted in LiveTrendingService, and one
+ *        BehaviorRecordedEvent per shopper and event type marks their feed stale.
+ *
+ * OVERLOAD AND FAILURES:
+ *   A full buffer drops the new event. PURCHASE events are the exception —
+ *   they may run past capacity by up to app.tracking.buffer.purchase-overflow,
+ *   and a failed write puts them back for the next flush tick; everything else
+ *   in a failed write is dropped. Once the overflow is used up too (a long
+ *   Mongo outage) purchases are dropped as well, counted and logged as errors,
+ *   rather than growing the queue without bound. Ids are set
+ *   before the first attempt, so a retry of a write the server applied anyway
+ *   (a timeout) meets E11000 on _id and counts as stored — never a second
+ *   purchase. Events whose product
+ *   no longer exists are skipped, as before (a SEARCH keeps its query and
+ *   loses only the product). If the metadata read itself fails the events
+ *   are stored without it.
+ *
+ * METRICS:
+ *   tracking.buffer.depth              — events waiting for a flush
+ *   tracking.buffer.overflow           — of those, purchases held past capacity
+ *   tracking.purchases.requeued        — purchases put back after a failed write
+ *   tracking.flush                     — duration of one batch (enrich + write)
+ *   tracking.events.written            — events stored
+ *   tracking.events.dropped{reason}    — buffer_full | write_failed | unknown_product
+ *                                        | purchase_overflow
+ */
+@Slf4j
+@Service
+public class BehaviorEventBuffer {
+
+    // Enrichment needs only these; the category and brand DBRefs stay unresolved
+    static final String[] METADATA_FIELDS = {"categorySlug", "category", "brand"};
+
+    private final MongoTemplate mongoTemplate;
+    private final LiveTrendingService liveTrending;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Executor flushExecutor;
+    private final int capacity;
+    // Hard bound for purchases, which alone may run past capacity
+    private final int purchaseLimit;
+    private final int maxBatch;
+
+    private final Queue<UserBehaviorLog> queue = new ConcurrentLinkedQueue<>();
+    // Tracked separately: ConcurrentLinkedQueue.size() walks the whole queue
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    private final Cache<String, ProductMeta> metadata;
+
+    private final Timer flushTimer;
+    private final Counter written;
+    private final Counter droppedFull;
+    private final Counter droppedWriteFailed;
+    private final Counter droppedUnknownProduct;
+    private final Counter droppedPurchaseOverflow;
+    private final Counter purchasesRequeued;
+
+    /** What an event copies from its product. */
+    record ProductMeta(String categoryId, String categorySlug, String brandId) {}
+
+    public BehaviorEventBuffer(MongoTemplate mongoTemplate,
+                               LiveTrendingService liveTrending,
+                               ApplicationEventPublisher eventPublisher,
+                               @Qualifier("trackingFlushExecutor") Executor flushExecutor,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.tracking.buffer.capacity:20000}") int capacity,
+                               @Value("${app.tracking.buffer.purchase-overflow:5000}") int purchaseOverflow,
+                               @Value("${app.tracking.buffer.max-batch:1000}") int maxBatch,
+                               @Value("${app.tracking.metadata.max-size:50000}") long metadataMaxSize,
+                               @Value("${app.tracking.metadata.ttl:PT10M}") Duration metadataTtl) {
+        this.mongoTemplate = mongoTemplate;
+        this.liveTrending = liveTrending;
+        this.eventPublisher = eventPublisher;
+        this.flushExecutor = flushExecutor;
+        this.capacity = Math.max(1, capacity);
+        this.purchaseLimit = this.capacity + Math.max(0, purchaseOverflow);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.metadata = Caffeine.newBuilder()
+                .maximumSize(metadataMaxSize)
+                .expireAfterWrite(metadataTtl)
+                .build();
+
+        Gauge.builder("tracking.buffer.depth", depth, AtomicInteger::get)
+                .description("Behaviour events waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("tracking.buffer.overflow", depth, d -> Math.max(0, d.get() - this.capacity))
+                .description("Purchase events held past the buffer capacity")
+                .register(meterRegistry);
+        this.flushTimer            = meterRegistry.timer("tracking.flush");
+        this.written               = meterRegistry.counter("tracking.events.written");
+        this.droppedFull           = meterRegistry.counter("tracking.events.dropped", "reason", "buffer_full");
+        this.droppedWriteFailed    = meterRegistry.counter("tracking.events.dropped", "reason", "write_failed");
+        this.droppedUnknownProduct = meterRegistry.counter("tracking.events.dropped", "reason", "unknown_product");
+        this.droppedPurchaseOverflow = meterRegistry.counter("tracking.events.dropped", "reason", "purchase_overflow");
+        this.purchasesRequeued     = meterRegistry.counter("tracking.purchases.requeued");
+    }
+
+    // =========================================================================
+    // ENQUEUE — called from BehaviorTrackingService
+    // =========================================================================
+
+    /**
+     * Queues an event without its product metadata (filled in at flush).
+     * False when the buffer was full and the event was dropped.
+     */
+    public boolean offer(UserBehaviorLog event) {
+        boolean purchase = event.getEventType() == BehaviorEventType.PURCHASE;
+        if (!reserveSlot(purchase)) {
+            if (purchase) {
+                droppedPurchaseOverflow.increment();
+                log.error("Tracking buffer past its purchase overflow ({} events), dropped a purchase event", purchaseLimit);
+            } else {
+                droppedFull.increment();
+            }
+            return false;
+        }
+        queue.offer(event);
+
+        if (depth.get() >= maxBatch && !draining.get()) {
+            try {
+                flushExecutor.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // The flusher is busy draining; it or the scheduled tick picks these up
+                log.debug("Early tracking flush rejected, deferring to scheduled flush");
+            }
+        }
+        return true;
+    }
+
+    // =========================================================================
+    // FLUSH
+    // =========================================================================
+
+    @Scheduled(fixedDelayString = "${app.tracking.buffer.flush-interval:PT0.5S}")
+    public void flush() {
+        // One drain at a time per pod, so bursts go out in full batches
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<UserBehaviorLog> batch;
+            while (!(batch = drainBatch()).isEmpty()) {
+                List<UserBehaviorLog> current = batch;
+                // A failed write re-queued its purchases: wait for the next tick, don't spin on them
+                if (!flushTimer.record(() -> write(current))) break;
+            }
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (depth.get() > 0) {
+            log.info("Flushing {} buffered behaviour event(s) before shutdown", depth.get());
+            flush();
+        }
+    }
+
+    int pendingCount() {
+        return depth.get();
+    }
+
+    private List<UserBehaviorLog> drainBatch() {
+        List<UserBehaviorLog> batch = new ArrayList<>(Math.min(maxBatch, Math.max(1, depth.get())));
+        UserBehaviorLog event;
+        while (batch.size() < maxBatch && (event = queue.poll()) != null) {
+            batch.add(event);
+        }
+        depth.addAndGet(-batch.size());
+        return batch;
+    }
+
+    /**
+     * False when any event failed to write — the whole batch, or the purchases
+     * that were re-queued — so the caller waits for the next tick to retry.
+     */
+    private boolean write(List<UserBehaviorLog> batch) {
+        List<UserBehaviorLog> events = enrich(batch);
+        if (events.isEmpty()) return true;
+
+        // Ids are fixed before the first attempt: a retry of a batch the server
+        // applied after all (e.g. a timeout) hits E11000 instead of duplicating it
+        for (UserBehaviorLog event : events) {
+            if (event.getId() == null) event.setId(new ObjectId().toHexString());
+        }
+
+        int stored;
+        int requeued = 0;
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserBehaviorLog.class)
+                    .insert(events)
+                    .execute();
+            stored = events.size();
+        } catch (BulkOperationException e) {
+            // Unordered: everything but the failed documents was written;
+            // a duplicate _id means an earlier attempt already stored the event
+            Set<Integer> failed = new HashSet<>();
+            e.getErrors().stream()
+                    .filter(err -> !isDuplicateId(err))
+                    .forEach(err -> failed.add(err.getIndex()));
+            List<UserBehaviorLog> ok = new ArrayList<>(events.size());
+            List<UserBehaviorLog> lost = new ArrayList<>(failed.size());
+            for (int i = 0; i < events.size(); i++) (failed.contains(i) ? lost : ok).add(events.get(i));
+            if (!lost.isEmpty()) {
+                log.warn("{} of {} behaviour event(s) failed to write: {}", lost.size(), events.size(), e.getMessage());
+                requeued = requeueOrDrop(lost);
+            }
+            events = ok;
+            stored = ok.size();
+        } catch (Exception e) {
+            log.warn("Behaviour batch of {} event(s) failed to write: {}", events.size(), e.getMessage());
+            requeueOrDrop(events);
+            return false;
+        }
+
+        written.increment(stored);
+        List<BehaviorRecordedEvent> announced = new ArrayList<>();
+        Set<String> actors = new HashSet<>();
+        for (UserBehaviorLog event : events) {
+            if (event.getEventType() == BehaviorEventType.SEARCH) continue;
+            liveTrending.record(event.getProductId(), event.getCategoryId(), event.getEventType());
+            if (actors.add(event.getUserId() + "|" + event.getSessionId() + "|" + event.getEventType())) {
+                announced.add(new BehaviorRecordedEvent(event.getUserId(), event.getSessionId(), event.getEventType()));
+            }
+        }
+        announced.forEach(eventPublisher::publishEvent);
+        // Re-queued purchases wait for the next tick instead of coming back in this drain
+        return requeued == 0;
+    }
+
+    /**
+     * Fills product metadata; drops events whose product is gone (a SEARCH
+     * keeps its query). If the lookup itself fails, events are kept without it.
+     */
+    private List<UserBehaviorLog> enrich(List<UserBehaviorLog> batch) {
+        Map<String, ProductMeta> known = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (UserBehaviorLog event : batch) {
+            String productId = event.getProductId();
+            if (productId == null || known.containsKey(productId)) continue;
+            ProductMeta meta = metadata.getIfPresent(productId);
+            if (meta != null) known.put(productId, meta);
+            else missing.add(productId);
+        }
+
+        boolean lookupFailed = false;
+        if (!missing.isEmpty()) {
+            try {
+                Query q = new Query(Criteria.where("_id").in(objectIds(missing)));
+                q.fields().include(METADATA_FIELDS);
+                for (Document doc : mongoTemplate.find(q, Document.class, mongoTemplate.getCollectionName(Product.class))) {
+                    Object rawId = doc.get("_id");
+                    String id = rawId instanceof ObjectId oid ? oid.toHexString() : String.valueOf(rawId);
+                    ProductMeta meta = new ProductMeta(refId(doc.get("category")), doc.getString("categorySlug"),
+                            refId(doc.get("brand")));
+                    metadata.put(id, meta);
+                    known.put(id, meta);
+                }
+            } catch (Exception e) {
+                // Metadata is denormalised convenience; the event itself still matters
+                log.warn("Product metadata lookup failed for {} product(s), storing events without it: {}",
+                        missing.size(), e.getMessage());
+                lookupFailed = true;
+            }
+        }
+
+        List<UserBehaviorLog> events = new ArrayList<>(batch.size());
+        for (UserBehaviorLog event : batch) {
+            if (event.getProductId() == null && event.getEventType() != BehaviorEventType.SEARCH) {
+                droppedUnknownProduct.increment();
+                continue;
+            }
+            if (event.getProductId() != null) {
+                ProductMeta meta = known.get(event.getProductId());
+                if (meta != null) {
+                    event.setCategoryId(meta.categoryId());
+                    event.setCategorySlug(meta.categorySlug());
+                    event.setBrandId(meta.brandId());
+                } else if (lookupFailed) {
+                    // stored as-is
+                } else if (event.getEventType() == BehaviorEventType.SEARCH) {
+                    event.setProductId(null);
+                } else {
+                    droppedUnknownProduct.increment();
+                    continue;
+                }
+            }
+            events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * Re-queues purchases (keeping their id, so a retry is idempotent) while
+     * the purchase overflow allows, and drops the rest.
+     */
+    private int requeueOrDrop(List<UserBehaviorLog> events) {
+        int requeued = 0;
+        int overflowed = 0;
+        for (UserBehaviorLog event : events) {
+            if (event.getEventType() != BehaviorEventType.PURCHASE) {
+                droppedWriteFailed.increment();
+            } else if (reserveSlot(true)) {
+                queue.offer(event);
+                requeued++;
+            } else {
+                overflowed++;
+            }
+        }
+        purchasesRequeued.increment(requeued);
+        droppedPurchaseOverflow.increment(overflowed);
+        if (requeued > 0) log.warn("Re-queued {} purchase event(s) for the next flush", requeued);
+        if (overflowed > 0) {
+            log.error("Tracking buffer past its purchase overflow ({} events), dropped {} failed purchase event(s)",
+                    purchaseLimit, overflowed);
+        }
+        return requeued;
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    /** Counts one more queued event, unless that would pass the bound for its kind. */
+    private boolean reserveSlot(boolean purchase) {
+        if (depth.incrementAndGet() > (purchase ? purchaseLimit : capacity)) {
+            depth.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isDuplicateId(BulkWriteError error) {
+        return error.getCode() == 11000 && error.getMessage() != null && error.getMessage().contains("_id_");
+    }
+
+    /** Product ids as stored: ObjectId when they look like one, otherwise the string. */
+    private static List<Object> objectIds(Collection<String> ids) {
+        List<Object> out = new ArrayList<>(ids.size());
+        for (String id : ids) out.add(ObjectId.isValid(id) ? new ObjectId(id) : id);
+        return out;
+    }
+
+    /** The id inside a DBRef field as a hex string; null when the field is missing. */
+    private static String refId(Object field) {
+        if (!(field instanceof DBRef ref) || ref.getId() == null) return null;
+        return ref.getId() instanceof ObjectId oid ? oid.toHexString() : ref.getId().toString();
+    }
+}
@@ -1,202 +1,189 @@
 package semicolon.africa.waylchub.service.recommendation;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import semicolon.africa.waylchub.config.LoadSheddingPolicy.TaggedTask;
 import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog;
 import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
 import semicolon.africa.waylchub.repository.recommendationRepository.UserBehaviorRepository;
-import semicolon.africa.waylchub.model.product.Product;
-import semicolon.africa.waylchub.repository.productRepository.ProductRepository;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Async, fire-and-forget behavioral event ingestion.
  *
- * DESIGN PRINCIPLE: Every method in this class is @Async.
- * The caller (controller) writes to the HTTP response immediately and this
- * service processes in a background thread pool. A 5ms tracking call NEVER
- * adds latency to a product page load.
+ * DESIGN PRINCIPLE: Every track method only submits its work to the
+ * trackingExecutor. The caller (controller) writes to the HTTP response
+ * immediately and this service processes in a background thread pool. A 5ms
+ * tracking call NEVER adds latency to a product page load.
  *
- * THREAD POOL: Configure a dedicated thread pool in AsyncConfig
- * so tracking threads cannot starve the main application pool.
+ * THREAD POOL: a dedicated pool (AsyncConfiguration.trackingExecutor) so
+ * tracking threads cannot starve the main application pool. Work is
+ * submitted as a TaggedTask carrying its event type: when the pool is full,
+ * LoadSheddingPolicy drops or samples by type instead of running tracking on
+ * the request thread. Purchases are never dropped.
  *
  * ERROR HANDLING: Tracking failures are caught and logged but never
  * surfaced to the user. A failed view event should not crash a product page.
  *
+ * WRITES: events are handed to BehaviorEventBuffer, which adds the product's
+ * category and brand from one batched lookup and stores them with one
+ * unordered insertMany per batch. After each write, stored VIEW / ADD_TO_CART
+ * / WISHLIST / PURCHASE events are counted in LiveTrendingService and
+ * announced as BehaviorRecordedEvents, so trending moves within seconds and
+ * the shopper's "For You" feed is rebuilt.
+ *
  * DEDUPLICATION: We skip duplicate VIEW events within a 30-minute window
  * for the same (userId/sessionId, productId) pair to avoid inflating view
- * counts from page refreshes.
+ * counts from page refreshes. ViewDeduplicator answers from memory (and
+ * optionally Redis across pods) — no database read per view.
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class BehaviorTrackingService {
 
     private final UserBehaviorRepository behaviorRepository;
-    private final ProductRepository productRepository;
+    private final BehaviorEventBuffer eventBuffer;
+    private final ViewDeduplicator viewDeduplicator;
+    private final Executor trackingExecutor;
 
     // TTL: Views expire after 90 days. Purchases never expire (null expiresAt).
     private static final int VIEW_TTL_DAYS     = 90;
     private static final int SEARCH_TTL_DAYS   = 30;
-    private static final int DEDUP_WINDOW_MINS = 30;
+
+    public BehaviorTrackingService(UserBehaviorRepository behaviorRepository,
+                                   BehaviorEventBuffer eventBuffer,
+                                   ViewDeduplicator viewDeduplicator,
+                                   @Qualifier("trackingExecutor") Executor trackingExecutor) {
+        this.behaviorRepository = behaviorRepository;
+        this.eventBuffer = eventBuffer;
+        this.viewDeduplicator = viewDeduplicator;
+        this.trackingExecutor = trackingExecutor;
+    }
 
     // =========================================================================
     // TRACK EVENTS (all async — do not block the HTTP request)
     // =========================================================================
 
-    @Async("trackingExecutor")
     public void trackView(String userId, String sessionId, String productId) {
-        try {
-            // Skip duplicate views within the dedup window
-            if (isDuplicateEvent(userId, sessionId, productId, BehaviorEventType.VIEW, DEDUP_WINDOW_MINS)) {
-                return;
-            }
-
-            Product product = productRepository.findById(productId).orElse(null);
-            if (product == null) return; // product was deleted, ignore
-
-            UserBehaviorLog log = UserBehaviorLog.builder()
-                    .userId(userId)
-                    .sessionId(sessionId)
-                    .productId(productId)
-                    .categoryId(product.getCategory() != null ? product.getCategory().getId() : null)
-                    .categorySlug(product.getCategorySlug())
-                    .brandId(product.getBrand() != null ? product.getBrand().getId() : null)
-                    .eventType(BehaviorEventType.VIEW)
-                    .timestamp(LocalDateTime.now())
-                    .expiresAt(LocalDateTime.now().plusDays(VIEW_TTL_DAYS))
-                    .build();
-
-            behaviorRepository.save(log);
+        LocalDateTime now = LocalDateTime.now();
+        submit(BehaviorEventType.VIEW, () -> {
+            try {
+                // Skip duplicate views within the dedup window
+                if (viewDeduplicator.isDuplicate(userId, sessionId, productId, BehaviorEventType.VIEW)) {
+                    return;
+                }
 
-        } catch (Exception e) {
-            // NEVER throw from tracking methods — a failed track must not affect UX
-            log.warn("Failed to track VIEW for product {}: {}", productId, e.getMessage());
-        }
+                eventBuffer.offer(UserBehaviorLog.builder()
+                        .userId(userId)
+                        .sessionId(sessionId)
+                        .productId(productId)
+                        .eventType(BehaviorEventType.VIEW)
+                        .timestamp(now)
+                        .expiresAt(now.plusDays(VIEW_TTL_DAYS))
+                        .build());
+
+            } catch (Exception e) {
+                // NEVER throw from tracking methods — a failed track must not affect UX
+                log.warn("Failed to track VIEW for product {}: {}", productId, e.getMessage());
+            }
+        });
     }
 
-    @Async("trackingExecutor")
     public void trackSearch(String userId, String sessionId, String query, String clickedProductId) {
-        try {
-            if (query == null || query.isBlank()) return;
-
-            UserBehaviorLog.UserBehaviorLogBuilder builder = UserBehaviorLog.builder()
-                    .userId(userId)
-                    .sessionId(sessionId)
-                    .eventType(BehaviorEventType.SEARCH)
-                    .searchQuery(query.toLowerCase().trim())
-                    .timestamp(LocalDateTime.now())
-                    .expiresAt(LocalDateTime.now().plusDays(SEARCH_TTL_DAYS));
-
-            // If user clicked a product from search results, record product affinity too
-            if (clickedProductId != null) {
-                Product product = productRepository.findById(clickedProductId).orElse(null);
-                if (product != null) {
-                    builder.productId(clickedProductId)
-                            .categoryId(product.getCategory() != null ? product.getCategory().getId() : null)
-                            .categorySlug(product.getCategorySlug())
-                            .brandId(product.getBrand() != null ? product.getBrand().getId() : null);
-                }
+        if (query == null || query.isBlank()) return;
+        LocalDateTime now = LocalDateTime.now();
+        submit(BehaviorEventType.SEARCH, () -> {
+            try {
+                // If user clicked a product from search results, record product affinity too
+                // (dropped at flush if the product no longer exists)
+                eventBuffer.offer(UserBehaviorLog.builder()
+                        .userId(userId)
+                        .sessionId(sessionId)
+                        .productId(clickedProductId)
+                        .eventType(BehaviorEventType.SEARCH)
+                        .searchQuery(query.toLowerCase().trim())
+                        .timestamp(now)
+                        .expiresAt(now.plusDays(SEARCH_TTL_DAYS))
+                        .build());
+
+            } catch (Exception e) {
+                log.warn("Failed to track SEARCH '{}': {}", query, e.getMessage());
             }
-
-            behaviorRepository.save(builder.build());
-
-        } catch (Exception e) {
-            log.warn("Failed to track SEARCH '{}': {}", query, e.getMessage());
-        }
+        });
     }
 
-    @Async("trackingExecutor")
     public void trackCartAdd(String userId, String sessionId, String productId, String variantId) {
-        try {
-            Product product = productRepository.findById(productId).orElse(null);
-            if (product == null) return;
-
-            UserBehaviorLog log = UserBehaviorLog.builder()
-                    .userId(userId)
-                    .sessionId(sessionId)
-                    .productId(productId)
-                    .variantId(variantId)
-                    .categoryId(product.getCategory() != null ? product.getCategory().getId() : null)
-                    .categorySlug(product.getCategorySlug())
-                    .brandId(product.getBrand() != null ? product.getBrand().getId() : null)
-                    .eventType(BehaviorEventType.ADD_TO_CART)
-                    .timestamp(LocalDateTime.now())
-                    .expiresAt(LocalDateTime.now().plusDays(VIEW_TTL_DAYS))
-                    .build();
-
-            behaviorRepository.save(log);
-
-        } catch (Exception e) {
-            log.warn("Failed to track ADD_TO_CART for product {}: {}", productId, e.getMessage());
-        }
+        LocalDateTime now = LocalDateTime.now();
+        submit(BehaviorEventType.ADD_TO_CART, () -> {
+            try {
+                eventBuffer.offer(UserBehaviorLog.builder()
+                        .userId(userId)
+                        .sessionId(sessionId)
+                        .productId(productId)
+                        .variantId(variantId)
+                        .eventType(BehaviorEventType.ADD_TO_CART)
+                        .timestamp(now)
+                        .expiresAt(now.plusDays(VIEW_TTL_DAYS))
+                        .build());
+
+            } catch (Exception e) {
+                log.warn("Failed to track ADD_TO_CART for product {}: {}", productId, e.getMessage());
+            }
+        });
     }
 
-    @Async("trackingExecutor")
     public void trackWishlist(String userId, String sessionId, String productId) {
-        try {
-            Product product = productRepository.findById(productId).orElse(null);
-            if (product == null) return;
-
-            UserBehaviorLog log = UserBehaviorLog.builder()
-                    .userId(userId)
-                    .sessionId(sessionId)
-                    .productId(productId)
-                    .categoryId(product.getCategory() != null ? product.getCategory().getId() : null)
-                    .categorySlug(product.getCategorySlug())
-                    .brandId(product.getBrand() != null ? product.getBrand().getId() : null)
-                    .eventType(BehaviorEventType.WISHLIST)
-                    .timestamp(LocalDateTime.now())
-                    .expiresAt(LocalDateTime.now().plusDays(VIEW_TTL_DAYS))
-                    .build();
-
-            behaviorRepository.save(log);
+        LocalDateTime now = LocalDateTime.now();
+        submit(BehaviorEventType.WISHLIST, () -> {
+            try {
+                eventBuffer.offer(UserBehaviorLog.builder()
+                        .userId(userId)
+                        .sessionId(sessionId)
+                        .productId(productId)
+                        .eventType(BehaviorEventType.WISHLIST)
+                        .timestamp(now)
+                        .expiresAt(now.plusDays(VIEW_TTL_DAYS))
+                        .build());
 
-        } catch (Exception e) {
-            log.warn("Failed to track WISHLIST for product {}: {}", productId, e.getMessage());
-        }
+            } catch (Exception e) {
+                log.warn("Failed to track WISHLIST for product {}: {}", productId, e.getMessage());
+            }
+        });
     }
 
     /**
      * Called by OrderService after successful payment.
      * PURCHASE events have null expiresAt — they are never deleted.
      * These are the highest-quality signal for collaborative filtering.
+     * Neither the executor nor the buffer ever drops them.
      */
-    @Async("trackingExecutor")
     public void trackPurchases(String userId, String sessionId,
                                List<String> productIds, List<Double> amounts) {
-        try {
-            for (int i = 0; i < productIds.size(); i++) {
-                String productId = productIds.get(i);
-                Double amount = (amounts != null && i < amounts.size()) ? amounts.get(i) : null;
-
-                Product product = productRepository.findById(productId).orElse(null);
-                if (product == null) continue;
-
-                UserBehaviorLog log = UserBehaviorLog.builder()
-                        .userId(userId)
-                        .sessionId(sessionId)
-                        .productId(productId)
-                        .categoryId(product.getCategory() != null ? product.getCategory().getId() : null)
-                        .categorySlug(product.getCategorySlug())
-                        .brandId(product.getBrand() != null ? product.getBrand().getId() : null)
-                        .eventType(BehaviorEventType.PURCHASE)
-                        .purchaseAmount(amount)
-                        .timestamp(LocalDateTime.now())
-                        .expiresAt(null) // NEVER expire purchase events
-                        .build();
-
-                behaviorRepository.save(log);
+        LocalDateTime now = LocalDateTime.now();
+        submit(BehaviorEventType.PURCHASE, () -> {
+            try {
+                for (int i = 0; i < productIds.size(); i++) {
+                    Double amount = (amounts != null && i < amounts.size()) ? amounts.get(i) : null;
+                    eventBuffer.offer(UserBehaviorLog.builder()
+                            .userId(userId)
+                            .sessionId(sessionId)
+                            .productId(productIds.get(i))
+                            .eventType(BehaviorEventType.PURCHASE)
+                            .purchaseAmount(amount)
+                            .timestamp(now)
+                            .expiresAt(null) // NEVER expire purchase events
+                            .build());
+                }
+            } catch (Exception e) {
+                log.warn("Failed to track PURCHASE events for user {}: {}", userId, e.getMessage());
             }
-        } catch (Exception e) {
-            log.warn("Failed to track PURCHASE events for user {}: {}", userId, e.getMessage());
-        }
+        });
     }
 
     // =========================================================================
@@ -236,35 +223,16 @@ public class BehaviorTrackingService {
     // =========================================================================
 
     /**
-     * Returns true if the same (userId OR sessionId) already has this eventType
-     * for this productId within the last `windowMinutes` minutes.
-     * Prevents view-count inflation from page refreshes.
+     * Hands the work to the tracking executor, tagged with its event type so a
+     * saturated pool can shed it (LoadSheddingPolicy). Purchases are essential.
      */
-    private boolean isDuplicateEvent(String userId, String sessionId,
-                                     String productId, BehaviorEventType type,
-                                     int windowMinutes) {
+    private void submit(BehaviorEventType type, Runnable work) {
         try {
-            LocalDateTime cutoff = LocalDateTime.now().minusMinutes(windowMinutes);
-
-            if (userId != null) {
-                return behaviorRepository
-                        .findByUserIdAndEventTypeInAndTimestampAfter(
-                                userId, List.of(type), cutoff)
-                        .stream()
-                        .anyMatch(l -> productId.equals(l.getProductId()));
-            } else if (sessionId != null) {
-                return behaviorRepository
-                        .findBySessionIdOrderByTimestampDesc(
-                                sessionId, PageRequest.of(0, 50))
-                        .stream()
-                        .anyMatch(l -> productId.equals(l.getProductId())
-                                && type == l.getEventType()
-                                && l.getTimestamp().isAfter(cutoff));
-            }
-        } catch (Exception e) {
-            // If dedup check fails, allow the event rather than suppressing it
-            log.warn("Dedup check failed, allowing event: {}", e.getMessage());
+            trackingExecutor.execute(new TaggedTask(type.name(), type == BehaviorEventType.PURCHASE, work));
+        } catch (RejectedExecutionException e) {
+            // ABORT policy configured: tracking is best-effort, but a purchase is kept
+            if (type == BehaviorEventType.PURCHASE) work.run();
+            else log.debug("Tracking executor saturated, {} event not recorded", type);
         }
-        return false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import java.util.*;
+
+/**
+ * Changes to CoOccurrenceCounts accumulated over one incremental run.
+ *
+ * A user's contribution to the counts is +1 user for every product in their
+ * set and +1 co-occurrence for every ordered pair in it. Moving a user from
+ * set O to set N therefore only touches pairs involving an added or a removed
+ * product — pairs of products kept on both sides cancel out:
+ *
+ *   Δ = (kept × added) + (added × added) − (kept × removed) − (removed × removed)
+ */
+final class CoOccurrenceDeltas {
+
+    private final Map<String, Long> users = new HashMap<>();
+    private final Map<String, Map<String, Long>> co = new HashMap<>();
+
+    /** Moves one user's contribution from the products in before to those in after. */
+    void move(Set<String> before, Set<String> after) {
+        List<String> kept = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (String p : before) (after.contains(p) ? kept : removed).add(p);
+        List<String> added = new ArrayList<>();
+        for (String p : after) if (!before.contains(p)) added.add(p);
+
+        apply(added, kept, 1);
+        apply(removed, kept, -1);
+    }
+
+    /** Products whose user count or co-occurrence row moved. */
+    Set<String> products() {
+        Set<String> changed = new HashSet<>();
+        users.forEach((p, d) -> { if (d != 0) changed.add(p); });
+        co.forEach((p, row) -> { if (row.values().stream().anyMatch(d -> d != 0)) changed.add(p); });
+        return changed;
+    }
+
+    long usersDelta(String productId) {
+        return users.getOrDefault(productId, 0L);
+    }
+
+    /** Non-zero co-occurrence changes for productId, neighbour → delta. */
+    Map<String, Long> coDelta(String productId) {
+        Map<String, Long> row = new HashMap<>(co.getOrDefault(productId, Map.of()));
+        row.values().removeIf(d -> d == 0);
+        return row;
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    private void apply(List<String> moved, List<String> kept, long sign) {
+        for (String a : moved) {
+            users.merge(a, sign, Long::sum);
+            for (String b : kept) {
+                pair(a, b, sign);
+                pair(b, a, sign);
+            }
+            for (String b : moved) {
+                if (!a.equals(b)) pair(a, b, sign);
+            }
+        }
+    }
+
+    private void pair(String a, String b, long sign) {
+        co.computeIfAbsent(a, k -> new HashMap<>()).merge(b, sign, Long::sum);
+    }
+}
@@ -0,0 +1,288 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarEntry;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+import static semicolon.africa.waylchub.service.recommendation.ScoringPartitions.BEST_FIRST;
+
+/**
+ * Sparse user × product interaction matrix for item-item collaborative
+ * filtering, built from one pass over the behaviour log.
+ *
+ * LAYOUT:
+ *   User and product IDs are interned to dense ints on the way in. Each user
+ *   owns a growable int[] of the products they touched (and a parallel long[]
+ *   of when); freeze() sorts and de-duplicates those lists, keeping the latest
+ *   time per product, and derives the transpose (product → users) as one CSR
+ *   array pair. 5M events cost ~60 MB of primitive arrays plus the two intern
+ *   tables, instead of a String-keyed map per product.
+ *
+ * SCORING:
+ *   Binary cosine: score(A, B) = users(A ∩ B) / sqrt(users(A) × users(B)), so
+ *   a shopper who viewed B six times counts once and every score is in [0, 1].
+ *   Products are split into contiguous partitions and scored on a fork/join
+ *   pool; each partition counts into one dense int[products] scratch array and
+ *   only resets the cells it touched. Full rows go to the caller partition by
+ *   partition (forEachRowBatch), so a rebuild can write them as they are
+ *   scored instead of holding every row. topNeighbours applies the same formula
+ *   to persisted counts, so incremental runs rank exactly like full ones.
+ *
+ * Not thread-safe while filling; scoring freezes the matrix first.
+ */
+final class CoOccurrenceMatrix {
+
+    private final Map<String, Integer> productIndex = new HashMap<>();
+    private final List<String> productIds = new ArrayList<>();
+    private final Map<String, Integer> userIndex = new HashMap<>();
+    private final List<String> userIds = new ArrayList<>();
+
+    private int[][] userItems = new int[1024][];
+    private long[][] userSeen = new long[1024][];
+    private int[] userSizes = new int[1024];
+    private long events;
+
+    // CSR transpose, filled by freeze()
+    private int[] productOffsets;
+    private int[] productUsers;
+    private boolean frozen;
+
+    /** One product's full co-occurrence row, as persisted for incremental runs. */
+    record ItemRow(String productId, int users, String[] neighbours, int[] counts, List<SimilarEntry> top) {}
+
+    @FunctionalInterface
+    interface UserVisitor {
+        void visit(String userId, String[] productIds, long[] lastSeen);
+    }
+
+    /** Records that userId interacted with productId. Repeats are harmless. */
+    void add(String userId, String productId) {
+        add(userId, productId, 0L);
+    }
+
+    /** As add(userId, productId), remembering the latest seenAt (epoch millis) per pair. */
+    void add(String userId, String productId, long seenAt) {
+        if (frozen) throw new IllegalStateException("matrix is frozen");
+        if (userId == null || productId == null) return;
+
+        int product = productIndex.computeIfAbsent(productId, id -> {
+            productIds.add(id);
+            return productIds.size() - 1;
+        });
+        int user = userIndex.computeIfAbsent(userId, id -> {
+            userIds.add(id);
+            return userIds.size() - 1;
+        });
+        if (user == userItems.length) {
+            userItems = Arrays.copyOf(userItems, user * 2);
+            userSeen = Arrays.copyOf(userSeen, user * 2);
+            userSizes = Arrays.copyOf(userSizes, user * 2);
+        }
+
+        int size = userSizes[user];
+        if (userItems[user] == null) {
+            userItems[user] = new int[4];
+            userSeen[user] = new long[4];
+        } else if (size == userItems[user].length) {
+            userItems[user] = Arrays.copyOf(userItems[user], size * 2);
+            userSeen[user] = Arrays.copyOf(userSeen[user], size * 2);
+        }
+        userItems[user][size] = product;
+        userSeen[user][size] = seenAt;
+        userSizes[user] = size + 1;
+        events++;
+    }
+
+    int productCount() {
+        return productIds.size();
+    }
+
+    int userCount() {
+        return userIds.size();
+    }
+
+    long eventCount() {
+        return events;
+    }
+
+    /** De-duplicates each user's products and builds the product → users index. */
+    void freeze() {
+        if (frozen) return;
+        frozen = true;
+
+        int users = userIds.size();
+        int products = productIds.size();
+        int[] degree = new int[products];
+        for (int u = 0; u < users; u++) {
+            dedupe(u);
+            for (int p : userItems[u]) degree[p]++;
+        }
+        userIndex.clear(); // only needed while filling
+
+        productOffsets = new int[products + 1];
+        for (int p = 0; p < products; p++) productOffsets[p + 1] = productOffsets[p] + degree[p];
+        productUsers = new int[productOffsets[products]];
+        int[] cursor = Arrays.copyOf(productOffsets, products);
+        for (int u = 0; u < users; u++) {
+            for (int p : userItems[u]) productUsers[cursor[p]++] = u;
+        }
+    }
+
+    /**
+     * Every product's top-N neighbours by binary cosine, best first. Products
+     * with no neighbour are absent.
+     */
+    Map<String, List<SimilarEntry>> topSimilar(int topN, ForkJoinPool pool) {
+        ItemRow[] rows = new ItemRow[productIds.size()];
+        score(topN, pool, false, (from, partition) -> System.arraycopy(partition, 0, rows, from, partition.length));
+        Map<String, List<SimilarEntry>> result = new LinkedHashMap<>();
+        for (ItemRow row : rows) {
+            if (row != null && !row.top().isEmpty()) result.put(row.productId(), row.top());
+        }
+        return result;
+    }
+
+    /**
+     * Every product's user count, full co-occurrence row and top-N list — what
+     * an incremental run needs persisted to carry on from this matrix — handed
+     * to sink one partition at a time, as soon as that partition is scored.
+     * Only the partitions in flight are held, never every row at once. sink is
+     * called concurrently from the pool's threads.
+     */
+    void forEachRowBatch(int topN, ForkJoinPool pool, Consumer<List<ItemRow>> sink) {
+        score(topN, pool, true, (from, partition) -> sink.accept(Arrays.asList(partition)));
+    }
+
+    /** Each user's distinct products with the latest time each was seen. */
+    void forEachUser(UserVisitor visitor) {
+        freeze();
+        for (int u = 0; u < userIds.size(); u++) {
+            int[] items = userItems[u];
+            String[] products = new String[items.length];
+            for (int i = 0; i < items.length; i++) products[i] = productIds.get(items[i]);
+            visitor.visit(userIds.get(u), products, userSeen[u]);
+        }
+    }
+
+    /**
+     * The top-N list for one product from persisted counts: co maps neighbour →
+     * shared users, usersOf gives each neighbour's user count. Same formula and
+     * tie order as the full scan.
+     */
+    static List<SimilarEntry> topNeighbours(Map<String, Long> co, long usersA,
+                                            ToLongFunction<String> usersOf, int topN) {
+        PriorityQueue<SimilarEntry> best = new PriorityQueue<>(topN + 1, BEST_FIRST.reversed());
+        co.forEach((productB, count) -> {
+            long usersB = usersOf.applyAsLong(productB);
+            if (count <= 0 || usersA <= 0 || usersB <= 0) return;
+            best.offer(SimilarEntry.builder()
+                    .productId(productB)
+                    .score(count / Math.sqrt((double) usersA * usersB))
+                    .coOccurrenceCount(count)
+                    .build());
+            if (best.size() > topN) best.poll();
+        });
+        List<SimilarEntry> top = new ArrayList<>(best);
+        top.sort(BEST_FIRST);
+        return top;
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    /** Sorts user u's products, drops repeats and keeps the latest seen time of each. */
+    private void dedupe(int u) {
+        int size = userSizes[u];
+        int[] items = userItems[u];
+        long[] seen = userSeen[u];
+
+        // (product, position) packed into one long so a primitive sort carries both
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++) order[i] = ((long) items[i] << 32) | i;
+        Arrays.sort(order);
+
+        int[] distinctItems = new int[size];
+        long[] distinctSeen = new long[size];
+        int distinct = 0;
+        for (long key : order) {
+            int product = (int) (key >>> 32);
+            long at = seen[(int) key];
+            if (distinct > 0 && distinctItems[distinct - 1] == product) {
+                distinctSeen[distinct - 1] = Math.max(distinctSeen[distinct - 1], at);
+            } else {
+                distinctItems[distinct] = product;
+                distinctSeen[distinct++] = at;
+            }
+        }
+        userItems[u] = Arrays.copyOf(distinctItems, distinct);
+        userSeen[u] = Arrays.copyOf(distinctSeen, distinct);
+        userSizes[u] = distinct;
+    }
+
+    /** Scores every product partition by partition; done receives (first product, rows) per partition. */
+    private void score(int topN, ForkJoinPool pool, boolean keepRows, PartitionSink done) {
+        freeze();
+        ScoringPartitions.invoke(pool, productIds.size(),
+                (from, to) -> done.accept(from, scoreRange(from, to, topN, keepRows)));
+    }
+
+    private int degree(int product) {
+        return productOffsets[product + 1] - productOffsets[product];
+    }
+
+    /** Rows for products [from, to); without keepRows, products with no neighbour are null. */
+    private ItemRow[] scoreRange(int from, int to, int topN, boolean keepRows) {
+        ItemRow[] out = new ItemRow[to - from];
+        int[] counts = new int[productIds.size()];
+        int[] touched = new int[productIds.size()];
+        PriorityQueue<SimilarEntry> best = new PriorityQueue<>(topN + 1, BEST_FIRST.reversed());
+
+        for (int a = from; a < to; a++) {
+            int touchedCount = 0;
+            for (int i = productOffsets[a]; i < productOffsets[a + 1]; i++) {
+                int user = productUsers[i];
+                for (int b : userItems[user]) {
+                    if (b != a && counts[b]++ == 0) touched[touchedCount++] = b;
+                }
+            }
+            if (touchedCount == 0 && !keepRows) continue;
+
+            String[] neighbours = keepRows ? new String[touchedCount] : null;
+            int[] neighbourCounts = keepRows ? new int[touchedCount] : null;
+            double degreeA = degree(a);
+            for (int t = 0; t < touchedCount; t++) {
+                int b = touched[t];
+                double score = counts[b] / Math.sqrt(degreeA * degree(b));
+                // Most neighbours of a hot product lose to the current top N; skip building them
+                if (best.size() < topN || score >= best.peek().getScore()) {
+                    best.offer(SimilarEntry.builder()
+                            .productId(productIds.get(b))
+                            .score(score)
+                            .coOccurrenceCount(counts[b])
+                            .build());
+                    if (best.size() > topN) best.poll();
+                }
+                if (keepRows) {
+                    neighbours[t] = productIds.get(b);
+                    neighbourCounts[t] = counts[b];
+                }
+                counts[b] = 0;
+            }
+
+            List<SimilarEntry> top = new ArrayList<>(best);
+            top.sort(BEST_FIRST);
+            out[a - from] = new ItemRow(productIds.get(a), degree(a), neighbours, neighbourCounts, top);
+            best.clear();
+        }
+        return out;
+    }
+
+    @FunctionalInterface
+    private interface PartitionSink {
+        void accept(int from, ItemRow[] rows);
+    }
+}
@@ -0,0 +1,592 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import semicolon.africa.waylchub.event.ItemSimilaritiesUpdatedEvent;
+import semicolon.africa.waylchub.model.recommendation.CoOccurrenceCounts;
+import semicolon.africa.waylchub.model.recommendation.CoOccurrenceUserItems;
+import semicolon.africa.waylchub.model.recommendation.CoOccurrenceUserItems.SeenItem;
+import semicolon.africa.waylchub.model.recommendation.CoOccurrenceWatermark;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarEntry;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarityType;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+import semicolon.africa.waylchub.service.recommendation.CoOccurrenceMatrix.ItemRow;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Item-item collaborative filtering (CO_PURCHASE, CO_VIEW) kept fresh
+ * incrementally, with a full rebuild behind it.
+ *
+ * FULL REBUILD (admin-triggered, daily, or when there is no usable state)
+ *   One cursor over the behaviour window — purchases for 30 days, views and
+ *   carts for 15 — into a CoOccurrenceMatrix per signal, scored on a fork/join
+ *   pool. Each scored partition writes its top-N lists and its slice of the
+ *   incremental state straight away, so full rows are never all in memory:
+ *   CoOccurrenceCounts (each product's user count and co-occurrence row), then
+ *   CoOccurrenceUserItems (each user's products + last seen).
+ *
+ * INCREMENTAL (every app.recommendation.cf.incremental-interval)
+ *   Per signal, from CoOccurrenceWatermark.processedUpTo:
+ *     1. stream only the events since the watermark;
+ *     2. find users with a product whose lastSeen has left the window;
+ *     3. for those users, old product set → new product set becomes a
+ *        CoOccurrenceDeltas, applied to CoOccurrenceCounts with $inc;
+ *     4. re-score the products whose counts moved and write ItemSimilarity
+ *        only where the neighbour list actually changed.
+ *   A few hundred new events touch a few hundred documents instead of
+ *   re-reading the whole window.
+ *
+ * WATERMARK LAG:
+ *   Tracking writes are async, so an event can land a moment after its
+ *   timestamp. Runs only process up to now − app.recommendation.cf.watermark-lag;
+ *   anything later than that is picked up by the next full rebuild.
+ *
+ * APPROXIMATION:
+ *   A product whose user count moves changes the denominator of every list it
+ *   appears in. Incremental runs re-score the lists of products whose own
+ *   counts moved, not every list that mentions them; the drift is confined to
+ *   score values of unchanged pairs and is reset by the daily full rebuild.
+ *
+ * CONCURRENCY:
+ *   Both modes take the same ShedLock lock through LockedJobRunner, so one
+ *   pod runs at a time and an admin rebuild never interleaves with an
+ *   incremental run. A run marks its watermark dirty before writing; a dirty
+ *   or missing watermark forces a full rebuild on the next run.
+ *
+ *   Scheduled runs are submitted rather than run in place: an incremental
+ *   pass can fall back to a full rebuild, which must not hold the scheduler
+ *   thread. Matrices are scored on the shared scoringPool.
+ *
+ * Every run that rewrote lists publishes an ItemSimilaritiesUpdatedEvent, so
+ * materialized "For You" feeds built from the old lists get refreshed.
+ *
+ * METRICS:
+ *   recommendation.cf.run{mode}            — run duration
+ *   recommendation.cf.events{mode}         — behaviour events read
+ *   recommendation.cf.lists.written{mode}  — ItemSimilarity documents written
+ */
+@Slf4j
+@Service
+public class CollaborativeFilteringService {
+
+    static final String LOCK_NAME = "collaborativeFiltering";
+
+    // How many top neighbors to keep per product (memory/performance tradeoff)
+    private static final int TOP_N_SIMILAR = 20;
+
+    // Documents per cursor round trip while streaming behaviour events
+    private static final int CURSOR_BATCH = 10_000;
+
+    // IDs per $in read, and operations per bulk write during a rebuild
+    private static final int ID_BATCH = 1_000;
+    private static final int WRITE_BATCH = 1_000;
+
+    private static final Duration LOCK_AT_MOST_FOR = Duration.ofHours(2);
+
+    enum Signal {
+        CO_PURCHASE(SimilarityType.CO_PURCHASE, List.of(BehaviorEventType.PURCHASE), 30),
+        // Views and carts: larger volume, slightly noisier, age faster
+        CO_VIEW(SimilarityType.CO_VIEW, List.of(BehaviorEventType.VIEW, BehaviorEventType.ADD_TO_CART), 15);
+
+        final SimilarityType type;
+        final List<BehaviorEventType> events;
+        final int windowDays;
+
+        Signal(SimilarityType type, List<BehaviorEventType> events, int windowDays) {
+            this.type = type;
+            this.events = events;
+            this.windowDays = windowDays;
+        }
+
+        static Signal of(BehaviorEventType eventType) {
+            return eventType == BehaviorEventType.PURCHASE ? CO_PURCHASE : CO_VIEW;
+        }
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final LockedJobRunner jobs;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ForkJoinPool scoringPool;
+    private final Duration watermarkLag;
+
+    private final Timer fullRunTimer;
+    private final Timer incrementalRunTimer;
+    private final Counter fullEvents;
+    private final Counter incrementalEvents;
+    private final Counter fullListsWritten;
+    private final Counter incrementalListsWritten;
+
+    public CollaborativeFilteringService(MongoTemplate mongoTemplate,
+                                         LockedJobRunner jobs,
+                                         ApplicationEventPublisher eventPublisher,
+                                         @Qualifier("scoringPool") ForkJoinPool scoringPool,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${app.recommendation.cf.watermark-lag:PT1M}") Duration watermarkLag) {
+        this.mongoTemplate = mongoTemplate;
+        this.jobs = jobs;
+        this.eventPublisher = eventPublisher;
+        this.scoringPool = scoringPool;
+        this.watermarkLag = watermarkLag;
+
+        this.fullRunTimer        = meterRegistry.timer("recommendation.cf.run", "mode", "full");
+        this.incrementalRunTimer = meterRegistry.timer("recommendation.cf.run", "mode", "incremental");
+        this.fullEvents          = meterRegistry.counter("recommendation.cf.events", "mode", "full");
+        this.incrementalEvents   = meterRegistry.counter("recommendation.cf.events", "mode", "incremental");
+        this.fullListsWritten        = meterRegistry.counter("recommendation.cf.lists.written", "mode", "full");
+        this.incrementalListsWritten = meterRegistry.counter("recommendation.cf.lists.written", "mode", "incremental");
+    }
+
+    // =========================================================================
+    // ENTRY POINTS
+    // =========================================================================
+
+    @Scheduled(fixedDelayString = "${app.recommendation.cf.incremental-interval:PT5M}",
+            initialDelayString = "${app.recommendation.cf.incremental-interval:PT5M}")
+    public void scheduledRefresh() {
+        jobs.submit(this::refreshIncrementally);
+    }
+
+    /**
+     * Incremental pass now, or a full rebuild when there is no usable state.
+     * False when another run holds the lock and this one was skipped.
+     */
+    public boolean refreshIncrementally() {
+        return jobs.run(LOCK_NAME, LOCK_AT_MOST_FOR, "[CF] Incremental", () -> {
+            Map<Signal, CoOccurrenceWatermark> marks = loadWatermarks();
+            boolean usable = marks.size() == Signal.values().length
+                    && marks.values().stream().noneMatch(CoOccurrenceWatermark::isDirty);
+            if (!usable) {
+                log.info("[CF] No complete incremental state, running a full rebuild instead");
+                fullRebuild();
+                return;
+            }
+            Set<String> rewritten = new HashSet<>();
+            long written = incrementalRunTimer.record(() -> marks.entrySet().stream()
+                    .mapToLong(e -> refreshSignal(e.getKey(), e.getValue(), rewritten))
+                    .sum());
+            if (written > 0) eventPublisher.publishEvent(new ItemSimilaritiesUpdatedEvent(written, rewritten));
+        });
+    }
+
+    /** The daily full rebuild, also the admin trigger; returns once the run is queued. */
+    @Scheduled(fixedDelayString = "${app.recommendation.cf.full-rebuild-interval:P1D}",
+            initialDelayString = "${app.recommendation.cf.full-rebuild-interval:P1D}")
+    public void rebuildAsync() {
+        jobs.submit(this::rebuild);
+    }
+
+    /** Full rebuild now. False when another run holds the lock and this one was skipped. */
+    public boolean rebuild() {
+        return jobs.run(LOCK_NAME, LOCK_AT_MOST_FOR, "[CF] Full rebuild", this::fullRebuild);
+    }
+
+    // =========================================================================
+    // FULL REBUILD
+    // =========================================================================
+
+    private void fullRebuild() {
+        fullRunTimer.record(() -> {
+            long start = System.currentTimeMillis();
+            LocalDateTime upTo = LocalDateTime.now().minus(watermarkLag);
+            for (Signal signal : Signal.values()) markDirty(signal);
+
+            Map<Signal, CoOccurrenceMatrix> matrices = new EnumMap<>(Signal.class);
+            for (Signal signal : Signal.values()) matrices.put(signal, new CoOccurrenceMatrix());
+            loadWindow(matrices, upTo);
+
+            long written = 0;
+            for (Signal signal : Signal.values()) {
+                CoOccurrenceMatrix matrix = matrices.get(signal);
+                fullEvents.increment(matrix.eventCount());
+
+                long scoring = System.currentTimeMillis();
+                clearState(signal);
+                LocalDateTime computedAt = LocalDateTime.now();
+                LongAdder listCount = new LongAdder();
+                matrix.forEachRowBatch(TOP_N_SIMILAR, scoringPool,
+                        rows -> listCount.add(writeRows(signal, rows, computedAt)));
+                writeUserItems(signal, matrix);
+                long lists = listCount.sum();
+                saveWatermark(signal, upTo, true);
+                fullListsWritten.increment(lists);
+                written += lists;
+
+                log.info("[CF/{}] Full: {} events, {} users × {} products, {} lists written in {}ms",
+                        signal.type, matrix.eventCount(), matrix.userCount(), matrix.productCount(),
+                        lists, System.currentTimeMillis() - scoring);
+                matrices.remove(signal); // let the matrix go before the next signal is scored
+            }
+            eventPublisher.publishEvent(ItemSimilaritiesUpdatedEvent.all(written));
+            log.info("[CF] Full rebuild completed in {}ms", System.currentTimeMillis() - start);
+        });
+    }
+
+    /**
+     * One cursor for every signal's window up to upTo. Anonymous events (no
+     * userId) carry no cross-session signal and are skipped.
+     */
+    private void loadWindow(Map<Signal, CoOccurrenceMatrix> matrices, LocalDateTime upTo) {
+        Criteria[] windows = Arrays.stream(Signal.values())
+                .map(s -> Criteria.where("eventType").in(s.events)
+                        .and("timestamp").gte(upTo.minusDays(s.windowDays)).lte(upTo))
+                .toArray(Criteria[]::new);
+        Query q = new Query(Criteria.where("userId").ne(null).orOperator(windows));
+        q.fields().include("userId").include("productId").include("eventType").include("timestamp");
+        q.cursorBatchSize(CURSOR_BATCH);
+
+        try (Stream<UserBehaviorLog> events = mongoTemplate.stream(q, UserBehaviorLog.class)) {
+            events.forEach(e -> {
+                if (!storableKey(e.getProductId()) || e.getTimestamp() == null) return;
+                matrices.get(Signal.of(e.getEventType()))
+                        .add(e.getUserId(), e.getProductId(), toMillis(e.getTimestamp()));
+            });
+        }
+    }
+
+    /** Drops the signal's incremental state; the rebuild writes it again row by row. */
+    private void clearState(Signal signal) {
+        Query bySignal = new Query(Criteria.where("type").is(signal.type));
+        mongoTemplate.remove(bySignal, CoOccurrenceCounts.class);
+        mongoTemplate.remove(bySignal, CoOccurrenceUserItems.class);
+    }
+
+    /**
+     * One scored partition: its non-empty top-N lists and every product's
+     * counts, in batched bulk writes. Runs on the scoring pool's threads, one
+     * partition per call, so the rows can be dropped as soon as they are
+     * written. Returns the number of lists written.
+     */
+    private long writeRows(Signal signal, List<ItemRow> rows, LocalDateTime computedAt) {
+        BulkBatch similarities = new BulkBatch(ItemSimilarity.class);
+        BulkBatch counts = new BulkBatch(CoOccurrenceCounts.class);
+        long written = 0;
+        for (ItemRow row : rows) {
+            if (!row.top().isEmpty()) {
+                similarities.upsert(similarityQuery(signal, row.productId()),
+                        similarityUpdate(signal, row.productId(), row.top(), computedAt));
+                written++;
+            }
+            Map<String, Long> co = new HashMap<>(row.neighbours().length * 4 / 3 + 1);
+            for (int i = 0; i < row.neighbours().length; i++) co.put(row.neighbours()[i], (long) row.counts()[i]);
+            counts.insert(CoOccurrenceCounts.builder()
+                    .id(CoOccurrenceCounts.idOf(signal.type, row.productId()))
+                    .type(signal.type)
+                    .productId(row.productId())
+                    .users(row.users())
+                    .co(co)
+                    .build());
+        }
+        similarities.flush();
+        counts.flush();
+        return written;
+    }
+
+    /** Each user's products and last-seen times, for incremental runs to diff against. */
+    private void writeUserItems(Signal signal, CoOccurrenceMatrix matrix) {
+        BulkBatch users = new BulkBatch(CoOccurrenceUserItems.class);
+        matrix.forEachUser((userId, productIds, lastSeen) -> {
+            List<SeenItem> items = new ArrayList<>(productIds.length);
+            for (int i = 0; i < productIds.length; i++) {
+                items.add(new SeenItem(productIds[i], fromMillis(lastSeen[i])));
+            }
+            users.insert(CoOccurrenceUserItems.builder()
+                    .id(CoOccurrenceUserItems.idOf(signal.type, userId))
+                    .type(signal.type)
+                    .userId(userId)
+                    .items(items)
+                    .build());
+        });
+        users.flush();
+    }
+
+    // =========================================================================
+    // INCREMENTAL
+    // =========================================================================
+
+    /**
+     * Applies one signal's new events; returns how many similarity lists it
+     * rewrote and adds their source products to rewritten.
+     */
+    private long refreshSignal(Signal signal, CoOccurrenceWatermark mark, Set<String> rewritten) {
+        long start = System.currentTimeMillis();
+        LocalDateTime from = mark.getProcessedUpTo();
+        LocalDateTime upTo = LocalDateTime.now().minus(watermarkLag);
+        if (!upTo.isAfter(from)) return 0;
+        LocalDateTime windowStart = upTo.minusDays(signal.windowDays);
+
+        // 1. Events since the watermark: latest time per (user, product)
+        Map<String, Map<String, LocalDateTime>> fresh = new HashMap<>();
+        Query newEvents = new Query(Criteria.where("userId").ne(null)
+                .and("eventType").in(signal.events)
+                .and("timestamp").gt(from).lte(upTo));
+        newEvents.fields().include("userId").include("productId").include("timestamp");
+        newEvents.cursorBatchSize(CURSOR_BATCH);
+        long[] eventCount = {0};
+        try (Stream<UserBehaviorLog> events = mongoTemplate.stream(newEvents, UserBehaviorLog.class)) {
+            events.forEach(e -> {
+                if (!storableKey(e.getProductId()) || e.getTimestamp() == null) return;
+                eventCount[0]++;
+                fresh.computeIfAbsent(e.getUserId(), u -> new HashMap<>())
+                        .merge(e.getProductId(), e.getTimestamp(), (a, b) -> a.isAfter(b) ? a : b);
+            });
+        }
+        incrementalEvents.increment(eventCount[0]);
+
+        // 2. Users with a product sliding out of the window
+        Set<String> affected = new HashSet<>(fresh.keySet());
+        Query expiring = new Query(Criteria.where("type").is(signal.type).and("items.lastSeen").lt(windowStart));
+        expiring.fields().include("userId");
+        try (Stream<CoOccurrenceUserItems> users = mongoTemplate.stream(expiring, CoOccurrenceUserItems.class)) {
+            users.forEach(u -> affected.add(u.getUserId()));
+        }
+
+        if (affected.isEmpty()) {
+            saveWatermark(signal, upTo, false);
+            return 0;
+        }
+        markDirty(signal);
+
+        // 3. Old set → new set per user, as count deltas
+        CoOccurrenceDeltas deltas = new CoOccurrenceDeltas();
+        BulkBatch userWrites = new BulkBatch(CoOccurrenceUserItems.class);
+        for (List<String> chunk : chunks(affected)) {
+            List<String> ids = chunk.stream().map(u -> CoOccurrenceUserItems.idOf(signal.type, u)).toList();
+            Map<String, CoOccurrenceUserItems> stored = new HashMap<>();
+            mongoTemplate.find(new Query(Criteria.where("_id").in(ids)), CoOccurrenceUserItems.class)
+                    .forEach(doc -> stored.put(doc.getUserId(), doc));
+
+            for (String userId : chunk) {
+                Map<String, LocalDateTime> before = new HashMap<>();
+                CoOccurrenceUserItems doc = stored.get(userId);
+                if (doc != null && doc.getItems() != null) {
+                    doc.getItems().forEach(i -> before.put(i.getProductId(), i.getLastSeen()));
+                }
+                Map<String, LocalDateTime> after = new HashMap<>(before);
+                after.values().removeIf(seen -> seen.isBefore(windowStart));
+                fresh.getOrDefault(userId, Map.of())
+                        .forEach((p, seen) -> after.merge(p, seen, (a, b) -> a.isAfter(b) ? a : b));
+
+                deltas.move(before.keySet(), after.keySet());
+                writeUser(userWrites, signal, userId, after);
+            }
+        }
+
+        // 4. Counts, then the lists that depend on them
+        Set<String> changed = deltas.products();
+        BulkBatch countWrites = new BulkBatch(CoOccurrenceCounts.class);
+        for (String productId : changed) {
+            Update u = new Update()
+                    .setOnInsert("type", signal.type)
+                    .setOnInsert("productId", productId)
+                    .inc("users", deltas.usersDelta(productId));
+            deltas.coDelta(productId).forEach((neighbour, d) -> u.inc("co." + neighbour, d));
+            countWrites.upsert(new Query(Criteria.where("_id").is(CoOccurrenceCounts.idOf(signal.type, productId))), u);
+        }
+        userWrites.flush();
+        countWrites.flush();
+
+        long written = rescore(signal, changed, rewritten);
+        incrementalListsWritten.increment(written);
+        saveWatermark(signal, upTo, false);
+
+        log.info("[CF/{}] Incremental: {} new events, {} users moved, {} products re-scored, {} lists written in {}ms",
+                signal.type, eventCount[0], affected.size(), changed.size(), written,
+                System.currentTimeMillis() - start);
+        return written;
+    }
+
+    private void writeUser(BulkBatch writes, Signal signal, String userId, Map<String, LocalDateTime> items) {
+        Query byId = new Query(Criteria.where("_id").is(CoOccurrenceUserItems.idOf(signal.type, userId)));
+        if (items.isEmpty()) {
+            writes.remove(byId);
+            return;
+        }
+        List<SeenItem> seen = items.entrySet().stream()
+                .map(e -> new SeenItem(e.getKey(), e.getValue()))
+                .toList();
+        writes.upsert(byId, new Update()
+                .set("items", seen)
+                .setOnInsert("type", signal.type)
+                .setOnInsert("userId", userId));
+    }
+
+    /** Recomputes the top-N of each product from its counts; writes only lists that changed. */
+    private long rescore(Signal signal, Set<String> productIds, Set<String> rewritten) {
+        LocalDateTime computedAt = LocalDateTime.now();
+        BulkBatch writes = new BulkBatch(ItemSimilarity.class);
+        long written = 0;
+
+        for (List<String> chunk : chunks(productIds)) {
+            Map<String, CoOccurrenceCounts> counts = new HashMap<>();
+            mongoTemplate.find(new Query(Criteria.where("_id").in(
+                            chunk.stream().map(p -> CoOccurrenceCounts.idOf(signal.type, p)).toList())),
+                    CoOccurrenceCounts.class).forEach(c -> counts.put(c.getProductId(), c));
+
+            Set<String> neighbours = new HashSet<>();
+            counts.values().forEach(c -> { if (c.getCo() != null) neighbours.addAll(c.getCo().keySet()); });
+            Map<String, Long> usersById = loadUserCounts(signal, neighbours);
+            counts.values().forEach(c -> usersById.put(c.getProductId(), c.getUsers()));
+
+            Map<String, List<SimilarEntry>> current = new HashMap<>();
+            mongoTemplate.find(new Query(Criteria.where("sourceProductId").in(chunk)
+                            .and("type").is(signal.type.name())), ItemSimilarity.class)
+                    .forEach(s -> current.put(s.getSourceProductId(), s.getSimilar()));
+
+            for (String productId : chunk) {
+                CoOccurrenceCounts c = counts.get(productId);
+                List<SimilarEntry> top = c == null || c.getCo() == null
+                        ? List.of()
+                        : CoOccurrenceMatrix.topNeighbours(c.getCo(), c.getUsers(),
+                                p -> usersById.getOrDefault(p, 0L), TOP_N_SIMILAR);
+                if (sameNeighbours(current.get(productId), top)) continue;
+
+                writes.upsert(similarityQuery(signal, productId), similarityUpdate(signal, productId, top, computedAt));
+                rewritten.add(productId);
+                written++;
+            }
+        }
+        writes.flush();
+        return written;
+    }
+
+    private Map<String, Long> loadUserCounts(Signal signal, Set<String> productIds) {
+        Map<String, Long> users = new HashMap<>();
+        for (List<String> chunk : chunks(productIds)) {
+            Query q = new Query(Criteria.where("_id").in(
+                    chunk.stream().map(p -> CoOccurrenceCounts.idOf(signal.type, p)).toList()));
+            q.fields().include("productId").include("users");
+            mongoTemplate.find(q, CoOccurrenceCounts.class).forEach(c -> users.put(c.getProductId(), c.getUsers()));
+        }
+        return users;
+    }
+
+    /** Same neighbours in the same order with the same shared-user counts. */
+    static boolean sameNeighbours(List<SimilarEntry> current, List<SimilarEntry> next) {
+        List<SimilarEntry> existing = current != null ? current : List.of();
+        if (existing.size() != next.size()) return false;
+        for (int i = 0; i < next.size(); i++) {
+            if (!Objects.equals(existing.get(i).getProductId(), next.get(i).getProductId())
+                    || existing.get(i).getCoOccurrenceCount() != next.get(i).getCoOccurrenceCount()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    private Map<Signal, CoOccurrenceWatermark> loadWatermarks() {
+        Map<Signal, CoOccurrenceWatermark> marks = new EnumMap<>(Signal.class);
+        for (Signal signal : Signal.values()) {
+            CoOccurrenceWatermark mark = mongoTemplate.findById(signal.type.name(), CoOccurrenceWatermark.class);
+            if (mark != null && mark.getProcessedUpTo() != null) marks.put(signal, mark);
+        }
+        return marks;
+    }
+
+    private void markDirty(Signal signal) {
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(signal.type.name())),
+                new Update().set("dirty", true), CoOccurrenceWatermark.class);
+    }
+
+    private void saveWatermark(Signal signal, LocalDateTime upTo, boolean fullRebuild) {
+        Update u = new Update().set("processedUpTo", upTo).set("dirty", false);
+        if (fullRebuild) u.set("lastFullRebuildAt", LocalDateTime.now());
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(signal.type.name())), u, CoOccurrenceWatermark.class);
+    }
+
+    private static Query similarityQuery(Signal signal, String productId) {
+        return new Query(Criteria.where("sourceProductId").is(productId).and("type").is(signal.type.name()));
+    }
+
+    private static Update similarityUpdate(Signal signal, String productId, List<SimilarEntry> top,
+                                           LocalDateTime computedAt) {
+        return new Update()
+                .set("similar",    top)
+                .set("computedAt", computedAt)
+                .setOnInsert("sourceProductId", productId)
+                .setOnInsert("type", signal.type);
+    }
+
+    /** Product IDs become field names under co.* — ObjectIds always qualify. */
+    private static boolean storableKey(String productId) {
+        return productId != null && !productId.isEmpty()
+                && productId.indexOf('.') < 0 && !productId.startsWith("$");
+    }
+
+    private static List<List<String>> chunks(Collection<String> ids) {
+        List<String> all = new ArrayList<>(ids);
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += ID_BATCH) {
+            chunks.add(all.subList(i, Math.min(i + ID_BATCH, all.size())));
+        }
+        return chunks;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    /** Unordered bulk writes flushed every WRITE_BATCH operations, so no run holds them all at once. */
+    private final class BulkBatch {
+        private final Class<?> entity;
+        private BulkOperations ops;
+        private int pending;
+
+        BulkBatch(Class<?> entity) {
+            this.entity = entity;
+            this.ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, entity);
+        }
+
+        void insert(Object document) {
+            ops.insert(document);
+            added();
+        }
+
+        void upsert(Query query, Update update) {
+            ops.upsert(query, update);
+            added();
+        }
+
+        void remove(Query query) {
+            ops.remove(query);
+            added();
+        }
+
+        void flush() {
+            if (pending == 0) return;
+            ops.execute();
+            ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, entity);
+            pending = 0;
+        }
+
+        private void added() {
+            if (++pending >= WRITE_BATCH) flush();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import semicolon.africa.waylchub.event.ItemSimilaritiesUpdatedEvent;
+import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarEntry;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarityType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Offline content-based similarity: top-N CONTENT neighbours per active
+ * product, stored in item_similarities next to the CF lists.
+ *
+ * FEATURES:
+ *   l:{id} for every id in categoryLineageIds (the category and its
+ *   ancestors, so a shared leaf outweighs a shared root), b:{brand} and
+ *   t:{tag}, lower-cased. Score is the Jaccard similarity of two feature sets.
+ *
+ * SEARCH:
+ *   MinHashLsh: every active product is a candidate, but only pairs that
+ *   collide in an LSH band are scored — sub-quadratic, instead of the
+ *   request-time $or query that saw an arbitrary limit × 3 slice of matches.
+ *
+ * WRITES:
+ *   Only lists that differ from the stored ones (CollaborativeFilteringService
+ *   .sameNeighbours), and the lists of products that are gone or no longer
+ *   have a neighbour are removed. The rewritten product IDs go out in an
+ *   ItemSimilaritiesUpdatedEvent, which evicts their cached product pages.
+ *
+ * SCHEDULE:
+ *   Every app.recommendation.content.rebuild-interval, or on demand from
+ *   AdminRecommendationController, through LockedJobRunner; candidates are
+ *   scored on the shared scoringPool. Products created since the last run use
+ *   RecommendationService's live query until the next one.
+ *
+ * METRICS:
+ *   recommendation.content.run           — run duration
+ *   recommendation.content.lists.written — CONTENT lists written or removed
+ */
+@Slf4j
+@Service
+public class ContentSimilarityService {
+
+    static final String LOCK_NAME = "contentSimilarity";
+
+    private static final int TOP_N_SIMILAR = 20;
+
+    // 20 bands × 3 rows: a pair at Jaccard 0.5 collides with probability ~0.93, at 0.2 with ~0.15
+    private static final int LSH_BANDS = 20;
+    private static final int LSH_ROWS = 3;
+
+    private static final int CURSOR_BATCH = 5_000;
+    private static final int WRITE_BATCH = 1_000;
+
+    private static final Duration LOCK_AT_MOST_FOR = Duration.ofHours(1);
+
+    private final MongoTemplate mongoTemplate;
+    private final LockedJobRunner jobs;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ForkJoinPool scoringPool;
+
+    private final Timer runTimer;
+    private final Counter listsWritten;
+
+    public ContentSimilarityService(MongoTemplate mongoTemplate,
+                                    LockedJobRunner jobs,
+                                    ApplicationEventPublisher eventPublisher,
+                                    @Qualifier("scoringPool") ForkJoinPool scoringPool,
+                                    MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.jobs = jobs;
+        this.eventPublisher = eventPublisher;
+        this.scoringPool = scoringPool;
+        this.runTimer = meterRegistry.timer("recommendation.content.run");
+        this.listsWritten = meterRegistry.counter("recommendation.content.lists.written");
+    }
+
+    // =========================================================================
+    // ENTRY POINTS
+    // =========================================================================
+
+    /** Scheduled, and the admin trigger — returns at once; see LockedJobRunner. */
+    @Scheduled(fixedDelayString = "${app.recommendation.content.rebuild-interval:PT6H}",
+            initialDelayString = "${app.recommendation.content.initial-delay:PT2M}")
+    public void rebuildAsync() {
+        jobs.submit(this::rebuild);
+    }
+
+    /** Rebuild now. False when another pod holds the lock and this run was skipped. */
+    public boolean rebuild() {
+        return jobs.run(LOCK_NAME, LOCK_AT_MOST_FOR, "[Content] Rebuild", () -> runTimer.record(this::computeAndWrite));
+    }
+
+    // =========================================================================
+    // REBUILD
+    // =========================================================================
+
+    private void computeAndWrite() {
+        long start = System.currentTimeMillis();
+
+        MinHashLsh lsh = new MinHashLsh(LSH_BANDS, LSH_ROWS);
+        Query products = new Query(Criteria.where("isActive").is(true));
+        products.fields().include("categoryLineageIds", "brandName", "tags");
+        products.cursorBatchSize(CURSOR_BATCH);
+        try (Stream<Product> rows = mongoTemplate.stream(products, Product.class)) {
+            rows.forEach(p -> lsh.add(p.getId(), features(p)));
+        }
+
+        long scoring = System.currentTimeMillis();
+        Map<String, List<SimilarEntry>> next = lsh.topSimilar(TOP_N_SIMILAR, scoringPool);
+        long scored = System.currentTimeMillis() - scoring;
+
+        Set<String> rewritten = write(next);
+        listsWritten.increment(rewritten.size());
+        if (!rewritten.isEmpty()) {
+            eventPublisher.publishEvent(new ItemSimilaritiesUpdatedEvent(rewritten.size(), rewritten));
+        }
+
+        log.info("[Content] {} products, {} features, {} with neighbours (scored in {}ms), {} lists changed in {}ms",
+                lsh.productCount(), lsh.featureCount(), next.size(), scored, rewritten.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    /** Diffs against the stored CONTENT lists; returns the products whose list was written or removed. */
+    private Set<String> write(Map<String, List<SimilarEntry>> next) {
+        Set<String> changed = new HashSet<>();
+        Set<String> unchanged = new HashSet<>();
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ItemSimilarity.class);
+        int pending = 0;
+
+        Query stored = new Query(Criteria.where("type").is(SimilarityType.CONTENT.name()));
+        stored.fields().include("sourceProductId", "similar");
+        stored.cursorBatchSize(CURSOR_BATCH);
+        try (Stream<ItemSimilarity> lists = mongoTemplate.stream(stored, ItemSimilarity.class)) {
+            for (Iterator<ItemSimilarity> it = lists.iterator(); it.hasNext(); ) {
+                ItemSimilarity current = it.next();
+                String productId = current.getSourceProductId();
+                List<SimilarEntry> top = next.get(productId);
+                if (top == null) {
+                    ops.remove(similarityQuery(productId));
+                    changed.add(productId);
+                    if (++pending == WRITE_BATCH) { ops.execute(); ops = newBulk(); pending = 0; }
+                } else if (CollaborativeFilteringService.sameNeighbours(current.getSimilar(), top)) {
+                    unchanged.add(productId);
+                }
+            }
+        }
+
+        LocalDateTime computedAt = LocalDateTime.now();
+        for (Map.Entry<String, List<SimilarEntry>> e : next.entrySet()) {
+            if (unchanged.contains(e.getKey())) continue;
+            ops.upsert(similarityQuery(e.getKey()), new Update()
+                    .set("similar", e.getValue())
+                    .set("computedAt", computedAt)
+                    .setOnInsert("sourceProductId", e.getKey())
+                    .setOnInsert("type", SimilarityType.CONTENT));
+            changed.add(e.getKey());
+            if (++pending == WRITE_BATCH) { ops.execute(); ops = newBulk(); pending = 0; }
+        }
+        if (pending > 0) ops.execute();
+        return changed;
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    /** l:{lineage id}, b:{brand}, t:{tag} — see the class comment. */
+    static List<String> features(Product product) {
+        List<String> features = new ArrayList<>();
+        if (product.getCategoryLineageIds() != null) {
+            product.getCategoryLineageIds().stream()
+                    .filter(Objects::nonNull)
+                    .forEach(id -> features.add("l:" + id));
+        }
+        if (product.getBrandName() != null && !product.getBrandName().isBlank()) {
+            features.add("b:" + product.getBrandName().trim().toLowerCase(Locale.ROOT));
+        }
+        if (product.getTags() != null) {
+            product.getTags().stream()
+                    .filter(t -> t != null && !t.isBlank())
+                    .forEach(t -> features.add("t:" + t.trim().toLowerCase(Locale.ROOT)));
+        }
+        return features;
+    }
+
+    private BulkOperations newBulk() {
+        return mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ItemSimilarity.class);
+    }
+
+    private static Query similarityQuery(String productId) {
+        return new Query(Criteria.where("sourceProductId").is(productId)
+                .and("type").is(SimilarityType.CONTENT.name()));
+    }
+}
@@ -0,0 +1,170 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import semicolon.africa.waylchub.model.recommendation.FactorModelInfo;
+import semicolon.africa.waylchub.model.recommendation.ItemFactorChunk;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarEntry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Per-pod copy of the latest ALS model (AlsTrainingService), served from
+ * memory.
+ *
+ * LOADING:
+ *   At startup and every app.recommendation.als.check-interval, the newest
+ *   complete FactorModelInfo is compared with the loaded one; a newer model's
+ *   chunks are read in seq order into one flat float[] and swapped in as a
+ *   whole. Readers never block, and keep the old model until the new one is
+ *   fully built. The scheduled check hands the load to offlineJobExecutor, so
+ *   unpacking a large model never holds a scheduler thread; when that pool is
+ *   full the check is skipped and the next interval retries.
+ *
+ * SERVING:
+ *   recommend() folds the shopper in from their interactions; similar() is
+ *   factor cosine. Both are exact top-K scans (ItemFactors). With no model
+ *   loaded both return nothing and callers keep their existing fallbacks.
+ */
+@Slf4j
+@Service
+public class FactorModelService {
+
+    private final MongoTemplate mongoTemplate;
+    private final Executor loadExecutor;
+    private final AtomicBoolean loading = new AtomicBoolean();
+
+    private volatile Loaded current;   // null until a model is loaded
+
+    private record Loaded(String modelId, ItemFactors factors) {}
+
+    public FactorModelService(MongoTemplate mongoTemplate,
+                              MeterRegistry meterRegistry,
+                              @Qualifier("offlineJobExecutor") Executor loadExecutor) {
+        this.mongoTemplate = mongoTemplate;
+        this.loadExecutor = loadExecutor;
+        Gauge.builder("recommendation.als.model.products", this,
+                        s -> s.current == null ? 0 : s.current.factors().size())
+                .description("Products in this pod's loaded ALS model")
+                .register(meterRegistry);
+    }
+
+    // =========================================================================
+    // READ
+    // =========================================================================
+
+    public boolean isLoaded() {
+        return current != null;
+    }
+
+    /**
+     * Up to limit products for a shopper described by productId → summed event
+     * weight (UserBehaviorLog.eventWeight). Their own products and exclude are
+     * left out.
+     */
+    public List<String> recommend(Map<String, Float> interactions, int limit, Set<String> exclude) {
+        Loaded model = current;
+        if (model == null || interactions.isEmpty()) return List.of();
+        return model.factors().recommend(interactions, limit, exclude);
+    }
+
+    /** Up to limit products closest to productId in factor space, best first. */
+    public List<String> similarIds(String productId, int limit, Set<String> exclude) {
+        Loaded model = current;
+        if (model == null) return List.of();
+        return model.factors().similar(productId, limit, exclude).stream()
+                .map(SimilarEntry::getProductId)
+                .toList();
+    }
+
+    // =========================================================================
+    // LOAD
+    // =========================================================================
+
+    @Async("asyncExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${app.recommendation.als.check-interval:PT5M}",
+            initialDelayString = "${app.recommendation.als.check-interval:PT5M}")
+    public void scheduledRefresh() {
+        if (loading.get()) return;
+        try {
+            loadExecutor.execute(this::refresh);
+        } catch (RejectedExecutionException e) {
+            log.warn("[ALS] Model check rejected by offlineJobExecutor, retrying on the next interval");
+        }
+    }
+
+    /** Loads the newest complete model if it is not the one already held. */
+    public void refresh() {
+        if (!loading.compareAndSet(false, true)) return;
+        try {
+            Query latest = new Query(Criteria.where("complete").is(true))
+                    .with(Sort.by(Sort.Direction.DESC, "trainedAt"))
+                    .limit(1);
+            FactorModelInfo info = mongoTemplate.findOne(latest, FactorModelInfo.class);
+            Loaded held = current;
+            if (info == null || (held != null && held.modelId().equals(info.getId()))) return;
+
+            long start = System.currentTimeMillis();
+            ItemFactors factors = load(info);
+            current = new Loaded(info.getId(), factors);
+            log.info("[ALS] Loaded model {}: {} products × {} factors in {}ms",
+                    info.getId(), factors.size(), factors.factors(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("[ALS] Model load failed, serving the previous model: {}", e.getMessage(), e);
+        } finally {
+            loading.set(false);
+        }
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    private ItemFactors load(FactorModelInfo info) {
+        int k = info.getFactors();
+        String[] productIds = new String[info.getItems()];
+        float[] factors = new float[info.getItems() * k];
+        int loaded = 0;
+
+        Query chunks = new Query(Criteria.where("modelId").is(info.getId()))
+                .with(Sort.by(Sort.Direction.ASC, "seq"));
+        try (Stream<ItemFactorChunk> rows = mongoTemplate.stream(chunks, ItemFactorChunk.class)) {
+            for (Iterator<ItemFactorChunk> it = rows.iterator(); it.hasNext(); ) {
+                ItemFactorChunk chunk = it.next();
+                int count = chunk.getProductIds().size();
+                if (loaded + count > productIds.length || chunk.getFactors().length != count * k * Float.BYTES) {
+                    throw new IllegalStateException("chunk " + chunk.getId() + " does not match model " + info.getId());
+                }
+                ByteBuffer.wrap(chunk.getFactors()).order(ByteOrder.LITTLE_ENDIAN)
+                        .asFloatBuffer().get(factors, loaded * k, count * k);
+                for (String productId : chunk.getProductIds()) productIds[loaded++] = productId;
+            }
+        }
+        if (loaded != productIds.length) {
+            throw new IllegalStateException("model " + info.getId() + " has " + loaded + " of " + productIds.length + " products");
+        }
+        return new ItemFactors(k, info.getRegularization(), info.getAlpha(), productIds, factors);
+    }
+}
@@ -0,0 +1,148 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Trigram index over the search vocabulary, for rewriting misspelled query
+ * terms to the nearest indexed terms.
+ *
+ *   "snaekers" → snaeker → sneaker   (one transposition)
+ *   "agbda"    → agbda   → agbada    (one insertion)
+ *
+ * HOW A LOOKUP WORKS:
+ *   1. Split the token into padded trigrams ("^sn", "sna", … "er$").
+ *   2. Count how many trigrams each vocabulary term shares with it. One edit
+ *      touches at most four trigrams (a swap spans two positions), so a term
+ *      within distance d must share at least (trigrams − 4d); anything below
+ *      that, or whose length differs by more than d, is never compared.
+ *   3. Verify the survivors with a bounded Damerau-Levenshtein (optimal string
+ *      alignment) distance — adjacent swaps count as one edit, since they are the
+ *      most common typing slip.
+ *
+ * Edit budget: none below 4 characters (too many near neighbours), 1 up to 7,
+ * 2 from 8. Tokens containing digits are never rewritten — "ps4" is not a typo
+ * of "ps5".
+ *
+ * Lives inside a ProductSearchIndex segment and is mutated under its write
+ * lock; reads are lock-free.
+ */
+final class FuzzyVocabulary {
+
+    static final int MIN_FUZZY_LENGTH = 4;
+    static final int TWO_EDIT_LENGTH = 8;
+    static final int MAX_CORRECTIONS = 3;
+
+    private final Map<String, Set<String>> termsByTrigram = new ConcurrentHashMap<>();
+
+    void add(String term) {
+        for (String gram : trigrams(term)) {
+            termsByTrigram.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(term);
+        }
+    }
+
+    void remove(String term) {
+        for (String gram : trigrams(term)) {
+            termsByTrigram.computeIfPresent(gram, (g, terms) -> {
+                terms.remove(term);
+                return terms.isEmpty() ? null : terms;
+            });
+        }
+    }
+
+    int trigramCount() {
+        return termsByTrigram.size();
+    }
+
+    /**
+     * Up to MAX_CORRECTIONS vocabulary terms at the smallest edit distance within
+     * budget, most frequent first (frequency = documentFrequency). Empty when the
+     * token is not eligible or nothing is close enough.
+     */
+    List<String> nearest(String token, ToIntFunction<String> documentFrequency) {
+        int budget = editBudget(token);
+        if (budget == 0) return List.of();
+
+        List<String> grams = trigrams(token);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : grams) {
+            Set<String> terms = termsByTrigram.get(gram);
+            if (terms == null) continue;
+            for (String term : terms) {
+                if (Math.abs(term.length() - token.length()) <= budget) {
+                    shared.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+
+        int minShared = Math.max(1, grams.size() - 4 * budget);
+        int best = budget + 1;
+        List<String> closest = new ArrayList<>();
+        for (Map.Entry<String, Integer> e : shared.entrySet()) {
+            if (e.getValue() < minShared) continue;
+            int d = distance(token, e.getKey(), Math.min(best, budget));
+            if (d < best) {
+                best = d;
+                closest.clear();
+            }
+            if (d == best && d <= budget) closest.add(e.getKey());
+        }
+
+        closest.sort(Comparator.comparingInt(documentFrequency).reversed().thenComparing(t -> t));
+        return closest.size() <= MAX_CORRECTIONS ? closest : closest.subList(0, MAX_CORRECTIONS);
+    }
+
+    static int editBudget(String token) {
+        int n = token.length();
+        if (n < MIN_FUZZY_LENGTH) return 0;
+        for (int i = 0; i < n; i++) {
+            if (Character.isDigit(token.charAt(i))) return 0;
+        }
+        return n >= TWO_EDIT_LENGTH ? 2 : 1;
+    }
+
+    static List<String> trigrams(String term) {
+        String padded = "^" + term + "$";
+        List<String> grams = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /**
+     * Optimal-string-alignment distance, giving up early: returns max + 1 as soon
+     * as every cell of a row exceeds max.
+     */
+    static int distance(String a, String b, int max) {
+        int n = a.length(), m = b.length();
+        if (Math.abs(n - m) > max) return max + 1;
+
+        int[] prevPrev = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] curr = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+
+        for (int i = 1; i <= n; i++) {
+            curr[0] = i;
+            int rowMin = curr[0];
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int v = Math.min(Math.min(prev[j] + 1, curr[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    v = Math.min(v, prevPrev[j - 2] + 1);
+                }
+                curr[j] = v;
+                rowMin = Math.min(rowMin, v);
+            }
+            if (rowMin > max) return max + 1;
+
+            int[] recycled = prevPrev;
+            prevPrev = prev;
+            prev = curr;
+            curr = recycled;
+        }
+        return Math.min(prev[m], max + 1);
+    }
+}
@@ -0,0 +1,316 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Alternating least squares for implicit feedback (Hu, Koren & Volinsky):
+ * learns k latent factors per user and per product from weighted behaviour.
+ *
+ * MODEL:
+ *   r(u, i) is the summed event weight of user u on product i. Preference
+ *   p(u, i) = 1 when r > 0, confidence c(u, i) = 1 + alpha × log1p(r), so a
+ *   purchase (10) counts for more than a view (1) without one binge of views
+ *   drowning everything else. Unobserved pairs are preference 0 at
+ *   confidence 1. Minimises Σ c (p − xᵤ·yᵢ)² + λ(‖x‖² + ‖y‖²).
+ *
+ * SOLVE:
+ *   Fixing the products, each user's factors are the solution of
+ *     (YᵀY + Σᵢ (cᵢ − 1) yᵢyᵢᵀ + λI) xᵤ = Σᵢ cᵢ yᵢ
+ *   over only the products the user touched — YᵀY is shared by every user,
+ *   so a row costs O(nᵤ k² + k³), solved by Cholesky. Then products given
+ *   users, the same way. Rows are partitioned on a fork/join pool; each
+ *   partition owns its k × k scratch, so there is no locking.
+ *
+ * LAYOUT:
+ *   IDs are interned to dense ints; interactions are merged per (user,
+ *   product) and kept as CSR arrays in both directions. Factors are flat
+ *   float[rows × k] arrays; the normal equations are accumulated in double.
+ *
+ * Not thread-safe while filling; train() freezes the interactions first.
+ */
+final class ImplicitAls {
+
+    // Below this many rows a partition is not split further
+    private static final int MIN_PARTITION = 512;
+
+    /** Training knobs; seed makes a run reproducible. */
+    record Params(int factors, int iterations, double regularization, double alpha, long seed) {
+        Params {
+            if (factors < 1 || iterations < 1) throw new IllegalArgumentException("factors and iterations must be positive");
+            if (regularization <= 0) throw new IllegalArgumentException("regularization must be positive");
+        }
+    }
+
+    /** Trained factors: row r of userFactors / itemFactors is [r × k, (r + 1) × k). */
+    record Factors(int k, String[] userIds, float[] userFactors, String[] itemIds, float[] itemFactors) {
+        float[] userVector(int user) {
+            return Arrays.copyOfRange(userFactors, user * k, (user + 1) * k);
+        }
+    }
+
+    private final Map<String, Integer> userIndex = new HashMap<>();
+    private final List<String> userIds = new ArrayList<>();
+    private final Map<String, Integer> itemIndex = new HashMap<>();
+    private final List<String> itemIds = new ArrayList<>();
+
+    private int[][] userItems = new int[1024][];
+    private float[][] userWeights = new float[1024][];
+    private int[] userSizes = new int[1024];
+    private long events;
+
+    // CSR in both directions, filled by freeze(): raw weights merged per pair
+    private int[] userOffsets, userCols;
+    private float[] userVals;
+    private int[] itemOffsets, itemCols;
+    private float[] itemVals;
+    private boolean frozen;
+
+    /** Adds weight to (userId, productId); repeats accumulate. Non-positive weights are ignored. */
+    void add(String userId, String productId, float weight) {
+        if (frozen) throw new IllegalStateException("interactions are frozen");
+        if (userId == null || productId == null || !(weight > 0)) return;
+
+        int item = itemIndex.computeIfAbsent(productId, id -> {
+            itemIds.add(id);
+            return itemIds.size() - 1;
+        });
+        int user = userIndex.computeIfAbsent(userId, id -> {
+            userIds.add(id);
+            return userIds.size() - 1;
+        });
+        if (user == userItems.length) {
+            userItems = Arrays.copyOf(userItems, user * 2);
+            userWeights = Arrays.copyOf(userWeights, user * 2);
+            userSizes = Arrays.copyOf(userSizes, user * 2);
+        }
+
+        int size = userSizes[user];
+        if (userItems[user] == null) {
+            userItems[user] = new int[4];
+            userWeights[user] = new float[4];
+        } else if (size == userItems[user].length) {
+            userItems[user] = Arrays.copyOf(userItems[user], size * 2);
+            userWeights[user] = Arrays.copyOf(userWeights[user], size * 2);
+        }
+        userItems[user][size] = item;
+        userWeights[user][size] = weight;
+        userSizes[user] = size + 1;
+        events++;
+    }
+
+    int userCount() {
+        return userIds.size();
+    }
+
+    int itemCount() {
+        return itemIds.size();
+    }
+
+    long eventCount() {
+        return events;
+    }
+
+    /** Number of distinct (user, product) pairs; freezes the interactions. */
+    long interactionCount() {
+        freeze();
+        return userCols.length;
+    }
+
+    /** Dense index of userId, or -1 when the user has no interactions. */
+    int userOf(String userId) {
+        Integer user = userIndex.get(userId);
+        return user == null ? -1 : user;
+    }
+
+    /** The user's products and merged weights; freezes the interactions. */
+    Map<String, Float> interactionsOf(String userId) {
+        freeze();
+        int user = userOf(userId);
+        if (user < 0) return Map.of();
+        Map<String, Float> out = new HashMap<>();
+        for (int p = userOffsets[user]; p < userOffsets[user + 1]; p++) {
+            out.put(itemIds.get(userCols[p]), userVals[p]);
+        }
+        return out;
+    }
+
+    /** Runs params.iterations() sweeps (users, then products) on the pool. */
+    Factors train(Params params, ForkJoinPool pool) {
+        freeze();
+        int k = params.factors();
+        int users = userIds.size();
+        int items = itemIds.size();
+
+        // Small random product factors; user factors come out of the first sweep
+        Random random = new Random(params.seed());
+        float[] x = new float[users * k];
+        float[] y = new float[items * k];
+        float scale = (float) (0.1 / Math.sqrt(k));
+        for (int i = 0; i < y.length; i++) y[i] = (float) (random.nextGaussian() * scale);
+
+        for (int it = 0; it < params.iterations(); it++) {
+            sweep(x, users, userOffsets, userCols, userVals, y, params, pool);
+            sweep(y, items, itemOffsets, itemCols, itemVals, x, params, pool);
+        }
+        return new Factors(k, userIds.toArray(String[]::new), x, itemIds.toArray(String[]::new), y);
+    }
+
+    /** Confidence of a merged weight — see the class comment. */
+    static double confidence(double alpha, float weight) {
+        return 1.0 + alpha * Math.log1p(weight);
+    }
+
+    /** Σ vvᵀ over every row of flat factors, as a full symmetric k × k matrix. */
+    static double[] gram(float[] factors, int rows, int k) {
+        double[] g = new double[k * k];
+        for (int r = 0; r < rows; r++) {
+            int base = r * k;
+            for (int a = 0; a < k; a++) {
+                double va = factors[base + a];
+                if (va == 0) continue;
+                for (int b = 0; b <= a; b++) g[a * k + b] += va * factors[base + b];
+            }
+        }
+        for (int a = 0; a < k; a++) {
+            for (int b = 0; b < a; b++) g[b * k + a] = g[a * k + b];
+        }
+        return g;
+    }
+
+    /**
+     * Solves (gram + Σ (c − 1) vvᵀ + λI) out = Σ c v for one row, where v are
+     * the other side's factors of cols[from, to). scratch is k × k, rhs is k.
+     */
+    static void solveRow(double[] gram, float[] other, int k, int[] cols, float[] vals, int from, int to,
+                         double regularization, double alpha, double[] scratch, double[] rhs,
+                         float[] out, int outBase) {
+        System.arraycopy(gram, 0, scratch, 0, k * k);
+        Arrays.fill(rhs, 0);
+        for (int a = 0; a < k; a++) scratch[a * k + a] += regularization;
+
+        for (int p = from; p < to; p++) {
+            int base = cols[p] * k;
+            double c = confidence(alpha, vals[p]);
+            for (int a = 0; a < k; a++) {
+                double va = other[base + a];
+                rhs[a] += c * va;
+                double w = (c - 1) * va;
+                for (int b = 0; b <= a; b++) scratch[a * k + b] += w * other[base + b];
+            }
+        }
+        cholesky(scratch, rhs, k);
+        for (int a = 0; a < k; a++) out[outBase + a] = (float) rhs[a];
+    }
+
+    /**
+     * Solves A z = b in place (b becomes z). A is symmetric positive definite;
+     * only its lower triangle is read and it is overwritten by the factor L.
+     */
+    static void cholesky(double[] a, double[] b, int k) {
+        for (int j = 0; j < k; j++) {
+            double d = a[j * k + j];
+            for (int m = 0; m < j; m++) d -= a[j * k + m] * a[j * k + m];
+            d = Math.sqrt(Math.max(d, 1e-12));
+            a[j * k + j] = d;
+            for (int i = j + 1; i < k; i++) {
+                double s = a[i * k + j];
+                for (int m = 0; m < j; m++) s -= a[i * k + m] * a[j * k + m];
+                a[i * k + j] = s / d;
+            }
+        }
+        for (int i = 0; i < k; i++) {                      // L w = b
+            double s = b[i];
+            for (int m = 0; m < i; m++) s -= a[i * k + m] * b[m];
+            b[i] = s / a[i * k + i];
+        }
+        for (int i = k - 1; i >= 0; i--) {                 // Lᵀ z = w
+            double s = b[i];
+            for (int m = i + 1; m < k; m++) s -= a[m * k + i] * b[m];
+            b[i] = s / a[i * k + i];
+        }
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    /** Merges each user's repeated products and builds both CSR directions. */
+    private void freeze() {
+        if (frozen) return;
+        frozen = true;
+
+        int users = userIds.size();
+        int items = itemIds.size();
+        userOffsets = new int[users + 1];
+        int[] itemCounts = new int[items + 1];
+
+        for (int u = 0; u < users; u++) {
+            merge(u);
+            userOffsets[u + 1] = userOffsets[u] + userSizes[u];
+        }
+        userCols = new int[userOffsets[users]];
+        userVals = new float[userOffsets[users]];
+        for (int u = 0; u < users; u++) {
+            System.arraycopy(userItems[u], 0, userCols, userOffsets[u], userSizes[u]);
+            System.arraycopy(userWeights[u], 0, userVals, userOffsets[u], userSizes[u]);
+            for (int s = 0; s < userSizes[u]; s++) itemCounts[userItems[u][s] + 1]++;
+            userItems[u] = null;
+            userWeights[u] = null;
+        }
+        userItems = null;
+        userWeights = null;
+
+        itemOffsets = new int[items + 1];
+        for (int i = 0; i < items; i++) itemOffsets[i + 1] = itemOffsets[i] + itemCounts[i + 1];
+        itemCols = new int[userCols.length];
+        itemVals = new float[userCols.length];
+        int[] fill = Arrays.copyOf(itemOffsets, items);
+        for (int u = 0; u < users; u++) {
+            for (int p = userOffsets[u]; p < userOffsets[u + 1]; p++) {
+                int slot = fill[userCols[p]]++;
+                itemCols[slot] = u;
+                itemVals[slot] = userVals[p];
+            }
+        }
+    }
+
+    /** Sorts one user's products and sums the weights of repeats. */
+    private void merge(int u) {
+        int size = userSizes[u];
+        int[] cols = userItems[u];
+        float[] vals = userWeights[u];
+        Integer[] order = new Integer[size];
+        for (int s = 0; s < size; s++) order[s] = s;
+        Arrays.sort(order, Comparator.comparingInt(s -> cols[s]));
+
+        int[] mergedCols = new int[size];
+        float[] mergedVals = new float[size];
+        int out = -1;
+        for (int s : order) {
+            if (out >= 0 && mergedCols[out] == cols[s]) {
+                mergedVals[out] += vals[s];
+            } else {
+                mergedCols[++out] = cols[s];
+                mergedVals[out] = vals[s];
+            }
+        }
+        userItems[u] = mergedCols;
+        userWeights[u] = mergedVals;
+        userSizes[u] = out + 1;
+    }
+
+    private static void sweep(float[] target, int rows, int[] offsets, int[] cols, float[] vals,
+                              float[] other, Params params, ForkJoinPool pool) {
+        int k = params.factors();
+        double[] gram = gram(other, other.length / k, k);
+        ScoringPartitions.invoke(pool, rows, MIN_PARTITION, (from, to) -> {
+            double[] scratch = new double[k * k];
+            double[] rhs = new double[k];
+            for (int r = from; r < to; r++) {
+                solveRow(gram, other, k, cols, vals, offsets[r], offsets[r + 1],
+                        params.regularization(), params.alpha(), scratch, rhs, target, r * k);
+            }
+        });
+    }
+}
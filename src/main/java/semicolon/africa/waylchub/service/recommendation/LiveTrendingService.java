@@ -0,0 +1,282 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Live trending: weighted behaviour events per product over the last
+ * app.recommendation.trending.window, held in SlidingWindowCounters.
+ *
+ * FEED:
+ *   BehaviorTrackingService calls record() after each event is stored. The
+ *   event lands in this pod's counters at once and in an outbound delta map.
+ *
+ * CROSS-POD:
+ *   Every publish-interval the deltas are sent on CHANNEL; every other pod
+ *   adds them at the sender's minute, so all pods converge on cluster-wide
+ *   counts within a couple of seconds.
+ *
+ *   WIRE FORMAT: {origin}|{minute}|{productId}:{categoryId}:{weight},...
+ *   (empty categoryId for none). A pod skips messages with its own origin —
+ *   it counted those events in record() — and any delta it cannot parse.
+ *
+ *   Publishing is best-effort: a lost message under-counts until the events
+ *   age out of the window.
+ *
+ * STARTUP:
+ *   Counters are warmed from user_behavior_logs for the window before the
+ *   pod reports ready; until then reads return nothing and callers fall back
+ *   to product_popularity.
+ *
+ *   The warm-up replays whole minutes before its cutoff (the minute it
+ *   starts in) and live counting — record() and other pods' deltas — only
+ *   takes minutes from the cutoff on. Every event is stored before it is
+ *   counted live, so the two never count the same event; until the cutoff is
+ *   set live events are not counted at all. Events other pods counted in the
+ *   cutoff minute before this pod subscribed are missed, as if their
+ *   broadcast were lost.
+ *
+ * READS:
+ *   top()/topIn() are O(K) copies of the live lists — no database.
+ *
+ * WEIGHTS match the 24h terms of the popularity score.
+ */
+@Slf4j
+@Service
+public class LiveTrendingService implements MessageListener {
+
+    public static final String CHANNEL = "exploreaba:trending";
+
+    private static final Map<BehaviorEventType, Integer> WEIGHTS = Map.of(
+            BehaviorEventType.VIEW,        1,
+            BehaviorEventType.ADD_TO_CART, 5,
+            BehaviorEventType.PURCHASE,    10,
+            BehaviorEventType.WISHLIST,    3);
+
+    // Keeps one Redis message well under a few hundred KB
+    private static final int MAX_DELTAS_PER_MESSAGE = 5_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+    private final Duration window;
+    private final int topK;
+    private final String origin = UUID.randomUUID().toString();
+
+    private final SlidingWindowCounters counters;
+    // "productId:categoryId" → weight recorded here since the last publish
+    private final ConcurrentHashMap<String, Integer> outbound = new ConcurrentHashMap<>();
+    private volatile boolean ready = false;
+    // Minutes before this come from the warm-up replay only; unset until it starts
+    private volatile long warmCutoff = Long.MAX_VALUE;
+
+    public LiveTrendingService(MongoTemplate mongoTemplate,
+                               StringRedisTemplate redisTemplate,
+                               RedisMessageListenerContainer listenerContainer,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.recommendation.trending.window:PT1H}") Duration window,
+                               @Value("${app.recommendation.trending.top-k:100}") int topK) {
+        this.mongoTemplate = mongoTemplate;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.meterRegistry = meterRegistry;
+        this.window = window;
+        this.topK = topK;
+        this.counters = new SlidingWindowCounters((int) Math.max(1, window.toMinutes()), topK);
+    }
+
+    @PostConstruct
+    void registerListenerAndMetrics() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        Gauge.builder("recommendation.trending.products", counters, SlidingWindowCounters::productCount)
+                .description("Products with a trending counter on this pod")
+                .register(meterRegistry);
+    }
+
+    // =========================================================================
+    // WRITE
+    // =========================================================================
+
+    public void record(String productId, String categoryId, BehaviorEventType type) {
+        Integer weight = WEIGHTS.get(type);
+        if (productId == null || weight == null) return;
+
+        long minute = currentMinute();
+        if (minute >= warmCutoff) counters.add(productId, categoryId, weight, minute);
+        outbound.merge(productId + ":" + (categoryId != null ? categoryId : ""), weight, Integer::sum);
+    }
+
+    // =========================================================================
+    // READ
+    // =========================================================================
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Up to limit hottest product IDs across the catalogue; empty until warmed. */
+    public List<String> top(int limit) {
+        if (!ready) return List.of();
+        counters.advanceTo(currentMinute());
+        return counters.top(Math.min(limit, topK));
+    }
+
+    /** Up to limit hottest product IDs in the given (leaf) categories; empty until warmed. */
+    public List<String> topIn(Collection<String> categoryIds, int limit) {
+        if (!ready || categoryIds.isEmpty()) return List.of();
+        counters.advanceTo(currentMinute());
+        return counters.topIn(categoryIds, Math.min(limit, topK));
+    }
+
+    /** Window totals of every product that has one — what the popularity job persists. */
+    public Map<String, Integer> snapshot() {
+        counters.advanceTo(currentMinute());
+        return counters.totals();
+    }
+
+    // =========================================================================
+    // STARTUP
+    // =========================================================================
+
+    @Async("asyncExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmOnStartup() {
+        warm(currentMinute());
+    }
+
+    /** Replays the stored events of the window's minutes before cutoffMinute. */
+    void warm(long cutoffMinute) {
+        long start = System.currentTimeMillis();
+        warmCutoff = cutoffMinute;
+        LocalDateTime cutoff = LocalDateTime.ofInstant(Instant.ofEpochMilli(cutoffMinute * 60_000), ZoneId.systemDefault());
+        try {
+            Query q = new Query(Criteria.where("eventType").in(WEIGHTS.keySet())
+                    .and("timestamp").gte(cutoff.minus(window)).lt(cutoff)
+                    .and("productId").ne(null));
+            q.fields().include("productId").include("categoryId").include("eventType").include("timestamp");
+            long[] events = {0};
+            try (Stream<UserBehaviorLog> logs = mongoTemplate.stream(q, UserBehaviorLog.class)) {
+                logs.forEach(e -> {
+                    counters.add(e.getProductId(), e.getCategoryId(), WEIGHTS.get(e.getEventType()),
+                            minuteOf(e.getTimestamp()));
+                    events[0]++;
+                });
+            }
+            log.info("[Trending] Warmed from {} events in {}ms", events[0], System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("[Trending] Warm-up failed, counting live events only: {}", e.getMessage());
+        } finally {
+            ready = true;
+        }
+    }
+
+    // =========================================================================
+    // CROSS-POD
+    // =========================================================================
+
+    @Scheduled(fixedDelayString = "${app.recommendation.trending.publish-interval:PT2S}")
+    public void publish() {
+        if (outbound.isEmpty()) return;
+
+        long minute = currentMinute();
+        StringBuilder payload = new StringBuilder();
+        int pending = 0;
+        for (String key : outbound.keySet()) {
+            Integer weight = outbound.remove(key);
+            if (weight == null) continue;
+            if (pending > 0) payload.append(',');
+            payload.append(key).append(':').append(weight);
+            if (++pending == MAX_DELTAS_PER_MESSAGE) {
+                send(minute, payload);
+                payload.setLength(0);
+                pending = 0;
+            }
+        }
+        if (pending > 0) send(minute, payload);
+    }
+
+    private void send(long minute, CharSequence deltas) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, origin + "|" + minute + "|" + deltas);
+        } catch (Exception e) {
+            log.warn("[Trending] Broadcast failed, other pods miss these counts: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length < 3 || origin.equals(parts[0])) return;
+
+        long minute;
+        try {
+            minute = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            log.warn("[Trending] Ignoring malformed message: {}", e.getMessage());
+            return;
+        }
+        // Already in Mongo for the warm-up to replay
+        if (minute < warmCutoff) return;
+
+        int malformed = 0;
+        for (String delta : parts[2].split(",")) {
+            String[] fields = delta.split(":", -1);
+            int weight = fields.length == 3 ? parseWeight(fields[2]) : -1;
+            if (weight <= 0 || fields[0].isEmpty()) {
+                malformed++;
+                continue;
+            }
+            counters.add(fields[0], fields[1].isEmpty() ? null : fields[1], weight, minute);
+        }
+        // One bad delta costs only itself, not the rest of the sender's interval
+        if (malformed > 0) log.warn("[Trending] Skipped {} malformed deltas from {}", malformed, parts[0]);
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    private static int parseWeight(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long currentMinute() {
+        return System.currentTimeMillis() / 60_000;
+    }
+
+    private static long minuteOf(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() / 60_000;
+    }
+}
@@ -0,0 +1,77 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.SimpleLock;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs the offline recommendation jobs (CollaborativeFilteringService,
+ * ContentSimilarityService, AlsTrainingService) under their ShedLock lock,
+ * and AggregateConsistencyChecker's catalogue scan alongside them.
+ *
+ * ENTRY POINTS:
+ *   Each job has a synchronous run (tests, and the fallback from an
+ *   incremental CF pass to a full rebuild) and a fire-and-forget one for
+ *   @Scheduled methods and admin triggers. submit() hands the run to
+ *   offlineJobExecutor, so a scoring pass that takes minutes never holds the
+ *   scheduler thread or an HTTP request — not even when that pool is full:
+ *   it skips the run rather than run it on the submitting thread.
+ *
+ * LOCKING:
+ *   One pod runs a job at a time; a run that finds the lock taken is skipped,
+ *   not queued. A failure is logged and still counts as having run — the lock
+ *   was held, and the next scheduled run retries.
+ */
+@Slf4j
+@Component
+public class LockedJobRunner {
+
+    private final LockProvider lockProvider;
+    private final Executor jobExecutor;
+
+    public LockedJobRunner(LockProvider lockProvider,
+                           @Qualifier("offlineJobExecutor") Executor jobExecutor) {
+        this.lockProvider = lockProvider;
+        this.jobExecutor = jobExecutor;
+    }
+
+    /** Returns at once; run() goes to the offline job executor, or is skipped when it is full. */
+    public void submit(Runnable run) {
+        try {
+            jobExecutor.execute(run);
+        } catch (RejectedExecutionException e) {
+            log.warn("Offline job skipped: offlineJobExecutor is full, the next schedule retries");
+        }
+    }
+
+    /**
+     * Runs job while holding lockName. False when another run holds the lock
+     * and this one was skipped. name prefixes the skip and failure logs.
+     */
+    public boolean run(String lockName, Duration lockAtMostFor, String name, Runnable job) {
+        Optional<SimpleLock> lock = lockProvider.lock(
+                new LockConfiguration(Instant.now(), lockName, lockAtMostFor, Duration.ZERO));
+        if (lock.isEmpty()) {
+            log.info("{} skipped: another run holds the lock", name);
+            return false;
+        }
+        try {
+            job.run();
+            return true;
+        } catch (Exception e) {
+            log.error("{} failed: {}", name, e.getMessage(), e);
+            return true;
+        } finally {
+            lock.get().unlock();
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarEntry;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static semicolon.africa.waylchub.service.recommendation.ScoringPartitions.BEST_FIRST;
+
+/**
+ * Near-neighbour search over product feature sets (category lineage, brand,
+ * tags) with MinHash signatures and LSH banding.
+ *
+ * SIGNATURES:
+ *   Features are interned to dense ints; each product keeps its sorted,
+ *   de-duplicated feature ids. A signature is bands × rows minimums of
+ *   independent 64-bit hashes over those ids, so two products agree on one
+ *   signature position with probability equal to their Jaccard similarity.
+ *
+ * BANDING:
+ *   Per band, the rows of a signature hash to one bucket key. Products that
+ *   share a bucket in any band are candidates; with b bands of r rows a pair
+ *   at Jaccard s collides with probability 1 − (1 − s^r)^b. Buckets are
+ *   contiguous runs of one sorted long[] per band ((key << 32) | product),
+ *   so no bucket map is built.
+ *
+ * COST:
+ *   A bucket the size of a whole category would make its members compare
+ *   with each other quadratically. In every band a product scans at most
+ *   MAX_BUCKET_SAMPLE members of its bucket: all of a small bucket, a
+ *   pseudo-random sample of a large one (a random start and a stride coprime
+ *   with the bucket size, seeded per product and band). Members are ordered
+ *   by insertion, so a window around the product would favour whatever was
+ *   added next to it; independent samples per band instead give a close
+ *   match one chance per band it collides in. The MAX_CANDIDATES that
+ *   collided in the most bands are scored with exact Jaccard —
+ *   O(products × bands × MAX_BUCKET_SAMPLE) overall.
+ *
+ * Not thread-safe while filling; topSimilar() partitions scoring on a
+ * fork/join pool once every product is added.
+ */
+final class MinHashLsh {
+
+    // Members of one band bucket a product is compared against; larger buckets are sampled
+    static final int MAX_BUCKET_SAMPLE = 200;
+    // Candidates per product that get an exact Jaccard score
+    static final int MAX_CANDIDATES = 200;
+
+    private final int bands;
+    private final int rows;
+    private final long[] hashMultipliers;
+    private final long[] hashOffsets;
+
+    private final Map<String, Integer> featureIndex = new HashMap<>();
+    private final Map<String, Integer> productIndex = new HashMap<>();
+    private final List<String> productIds = new ArrayList<>();
+    private final List<int[]> featureSets = new ArrayList<>();
+
+    MinHashLsh(int bands, int rows) {
+        if (bands < 1 || rows < 1) throw new IllegalArgumentException("bands and rows must be positive");
+        this.bands = bands;
+        this.rows = rows;
+
+        // Fixed seed: the same catalogue always yields the same neighbours
+        Random random = new Random(0x5eed_1a5bL);
+        int hashes = bands * rows;
+        this.hashMultipliers = new long[hashes];
+        this.hashOffsets = new long[hashes];
+        for (int i = 0; i < hashes; i++) {
+            hashMultipliers[i] = random.nextLong() | 1L;
+            hashOffsets[i] = random.nextLong();
+        }
+    }
+
+    /** Adds a product; products without features, or added twice, are ignored. */
+    void add(String productId, Collection<String> features) {
+        if (productId == null || features.isEmpty() || productIndex.containsKey(productId)) return;
+
+        int[] ids = features.stream()
+                .mapToInt(f -> featureIndex.computeIfAbsent(f, k -> featureIndex.size()))
+                .distinct()
+                .sorted()
+                .toArray();
+        productIndex.put(productId, productIds.size());
+        productIds.add(productId);
+        featureSets.add(ids);
+    }
+
+    int productCount() {
+        return productIds.size();
+    }
+
+    int featureCount() {
+        return featureIndex.size();
+    }
+
+    /**
+     * Up to topN most similar products per product, best first. Score is the
+     * exact Jaccard similarity of the two feature sets; coOccurrenceCount is
+     * the number of shared features. Products with no neighbour are absent.
+     */
+    Map<String, List<SimilarEntry>> topSimilar(int topN, ForkJoinPool pool) {
+        int products = productIds.size();
+        long[][] bandKeys = bandKeys();
+        int[][] positions = new int[bands][products];
+        for (int b = 0; b < bands; b++) {
+            for (int i = 0; i < products; i++) positions[b][(int) bandKeys[b][i]] = i;
+        }
+
+        List<SimilarEntry>[] out = newLists(products);
+        ScoringPartitions.invoke(pool, products,
+                (from, to) -> scoreRange(from, to, topN, bandKeys, positions, out));
+
+        Map<String, List<SimilarEntry>> result = new LinkedHashMap<>();
+        for (int p = 0; p < products; p++) {
+            if (out[p] != null && !out[p].isEmpty()) result.put(productIds.get(p), out[p]);
+        }
+        return result;
+    }
+
+    /** |A ∩ B| of two sorted, de-duplicated id arrays. */
+    static int intersection(int[] a, int[] b) {
+        int i = 0, j = 0, shared = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else { shared++; i++; j++; }
+        }
+        return shared;
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    /** Per band, (bucket key << 32 | product) for every product, sorted — buckets are runs. */
+    private long[][] bandKeys() {
+        int products = productIds.size();
+        long[][] keys = new long[bands][products];
+        long[] signature = new long[bands * rows];
+
+        for (int p = 0; p < products; p++) {
+            signature(featureSets.get(p), signature);
+            for (int b = 0; b < bands; b++) {
+                long key = b;
+                for (int r = 0; r < rows; r++) key = mix(key * 31 + signature[b * rows + r]);
+                keys[b][p] = (key & 0xFFFF_FFFF_0000_0000L) | p;
+            }
+        }
+        for (long[] band : keys) Arrays.sort(band);
+        return keys;
+    }
+
+    private void signature(int[] features, long[] out) {
+        for (int h = 0; h < out.length; h++) {
+            long min = Long.MAX_VALUE;
+            for (int f : features) {
+                long value = mix(f * hashMultipliers[h] + hashOffsets[h]);
+                if (value < min) min = value;
+            }
+            out[h] = min;
+        }
+    }
+
+    // MurmurHash3 64-bit finalizer
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+
+    private void scoreRange(int from, int to, int topN, long[][] bandKeys, int[][] positions,
+                            List<SimilarEntry>[] out) {
+        int[] collisions = new int[productIds.size()];
+        int[] touched = new int[productIds.size()];
+        PriorityQueue<SimilarEntry> best = new PriorityQueue<>(topN + 1, BEST_FIRST.reversed());
+
+        for (int p = from; p < to; p++) {
+            int touchedCount = 0;
+            for (int b = 0; b < bands; b++) {
+                long[] band = bandKeys[b];
+                int pos = positions[b][p];
+                long bucket = band[pos] & 0xFFFF_FFFF_0000_0000L;
+                int start = lowerBound(band, bucket);
+                // No product index is 0xFFFF_FFFF, so this lands just past the bucket
+                int size = lowerBound(band, bucket | 0xFFFF_FFFFL) - start;
+
+                // Whole bucket when small, else a sample: start offset and coprime stride visit distinct members
+                int scan = Math.min(size, MAX_BUCKET_SAMPLE + 1);
+                long seed = mix((long) p * bands + b);
+                int offset = size > scan ? (int) Long.remainderUnsigned(seed, size) : 0;
+                int stride = size > scan ? coprimeStride(mix(seed), size) : 1;
+                for (int k = 0; k < scan; k++) {
+                    int i = start + (int) ((offset + (long) k * stride) % size);
+                    if (i == pos) continue;
+                    int q = (int) band[i];
+                    if (collisions[q]++ == 0) touched[touchedCount++] = q;
+                }
+            }
+            if (touchedCount == 0) continue;
+
+            // Most band collisions first: the best estimate of Jaccard before scoring exactly
+            int candidates = Math.min(touchedCount, MAX_CANDIDATES);
+            if (touchedCount > MAX_CANDIDATES) {
+                Integer[] order = new Integer[touchedCount];
+                for (int t = 0; t < touchedCount; t++) order[t] = touched[t];
+                Arrays.sort(order, (a, c) -> collisions[c] != collisions[a]
+                        ? Integer.compare(collisions[c], collisions[a]) : Integer.compare(a, c));
+                for (int t = 0; t < touchedCount; t++) touched[t] = order[t];
+            }
+
+            int[] features = featureSets.get(p);
+            for (int t = 0; t < candidates; t++) {
+                int q = touched[t];
+                int[] other = featureSets.get(q);
+                int shared = intersection(features, other);
+                if (shared == 0) continue;   // truncated bucket keys can collide
+                double score = (double) shared / (features.length + other.length - shared);
+                if (best.size() < topN || score >= best.peek().getScore()) {
+                    best.offer(SimilarEntry.builder()
+                            .productId(productIds.get(q))
+                            .score(score)
+                            .coOccurrenceCount(shared)
+                            .build());
+                    if (best.size() > topN) best.poll();
+                }
+            }
+            for (int t = 0; t < touchedCount; t++) collisions[touched[t]] = 0;
+
+            List<SimilarEntry> top = new ArrayList<>(best);
+            top.sort(BEST_FIRST);
+            out[p] = top;
+            best.clear();
+        }
+    }
+
+    /** First index in the sorted band whose key is at least value. */
+    private static int lowerBound(long[] band, long value) {
+        int lo = 0, hi = band.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (band[mid] < value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** A stride in [1, size) sharing no factor with size, so size steps visit every member once. */
+    private static int coprimeStride(long random, int size) {
+        int stride = 1 + (int) Long.remainderUnsigned(random, size - 1);
+        while (gcd(stride, size) != 1) stride = stride % (size - 1) + 1;
+        return stride;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<SimilarEntry>[] newLists(int size) {
+        return (List<SimilarEntry>[]) new List[size];
+    }
+}
@@ -0,0 +1,377 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarityType;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+import semicolon.africa.waylchub.repository.recommendationRepository.UserBehaviorRepository;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Materialized "For You" feeds — one Redis string per user or anonymous
+ * session, so serving a feed is one key lookup plus one product fetch.
+ *
+ * WHAT IS STORED:
+ *   {generation}|{ranked productIds}|{excluded productIds}
+ *   ranked   — up to FEED_SIZE products scored from the shopper's recent views
+ *              through CO_PURCHASE (×2) and CO_VIEW (×1) similarities, then
+ *              topped up from the ALS model (FactorModelService) folded in
+ *              from those views and purchases — the long tail the
+ *              co-occurrence lists have nothing for
+ *   excluded — what they just viewed or already bought, so callers can pad
+ *              the feed without showing those again
+ *   Comma-separated ObjectId strings: ~2 KB for a full feed. Keys expire after
+ *   app.recommendation.feed.user-ttl / session-ttl.
+ *
+ * WHEN IT IS REBUILT:
+ *   - Behaviour: BehaviorRecordedEvent → markStale() records the owner in a
+ *     concurrent set; every flush-interval the set is drained on
+ *     feedRebuildExecutor and each feed rebuilt once, however many events the shopper produced
+ *     meanwhile. Only owners that have a stored feed are rebuilt — one multiGet
+ *     per batch tells — so sessions that never open "For You" cost no Mongo
+ *     reads. The set holds at most app.recommendation.feed.max-pending owners;
+ *     past that, events are not queued and those feeds refresh on the next
+ *     generation bump or their TTL.
+ *   - New similarities: ItemSimilaritiesUpdatedEvent → similaritiesChanged()
+ *     bumps a generation counter in Redis. A feed built under an older
+ *     generation is still served, and queued for a rebuild.
+ *   - Miss (first visit, expired): built inline on the request, then stored.
+ *
+ * FAILURES:
+ *   Redis unreachable → the feed is built inline and not stored (the
+ *   pre-materialized behaviour). Rebuild failures leave the old feed in place.
+ *
+ * METRICS:
+ *   recommendation.feed.reads{result=hit|stale|miss}
+ *   recommendation.feed.rebuilds      — background rebuild duration
+ *   recommendation.feed.queue.depth   — owners waiting for a rebuild
+ *   recommendation.feed.queue.dropped — behaviour events not queued, set full
+ *   recommendation.feed.skipped       — queued owners with no stored feed
+ */
+@Slf4j
+@Service
+public class PersonalFeedService {
+
+    static final String KEY_PREFIX = "exploreaba:feed:";
+    static final String GENERATION_KEY = KEY_PREFIX + "generation";
+
+    static final int FEED_SIZE = 50;
+    private static final int SEED_PRODUCT_LIMIT = 5;
+    private static final int PURCHASE_HISTORY_LIMIT = 200;
+    // Most-recent exclusions kept in the stored feed
+    private static final int MAX_EXCLUDED = 50;
+
+    private final StringRedisTemplate redisTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final BehaviorTrackingService trackingService;
+    private final UserBehaviorRepository behaviorRepository;
+    private final FactorModelService factorModels;
+    private final Executor rebuildExecutor;
+    private final Duration userTtl;
+    private final Duration sessionTtl;
+    private final int maxBatch;
+    private final int maxPending;
+
+    // Owner keys ("u:{userId}" / "s:{sessionId}") waiting for a rebuild
+    private final Set<String> stale = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    private final Counter hits;
+    private final Counter staleHits;
+    private final Counter misses;
+    private final Counter dropped;
+    private final Counter skipped;
+    private final Timer rebuildTimer;
+
+    /** A shopper's materialized feed. */
+    public record Feed(List<String> productIds, Set<String> excluded, long generation) {
+        static final Feed EMPTY = new Feed(List.of(), Set.of(), 0);
+    }
+
+    public PersonalFeedService(StringRedisTemplate redisTemplate,
+                               MongoTemplate mongoTemplate,
+                               BehaviorTrackingService trackingService,
+                               UserBehaviorRepository behaviorRepository,
+                               FactorModelService factorModels,
+                               @Qualifier("feedRebuildExecutor") Executor rebuildExecutor,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.recommendation.feed.user-ttl:P1D}") Duration userTtl,
+                               @Value("${app.recommendation.feed.session-ttl:PT2H}") Duration sessionTtl,
+                               @Value("${app.recommendation.feed.max-batch:200}") int maxBatch,
+                               @Value("${app.recommendation.feed.max-pending:20000}") int maxPending) {
+        this.redisTemplate = redisTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.trackingService = trackingService;
+        this.behaviorRepository = behaviorRepository;
+        this.factorModels = factorModels;
+        this.rebuildExecutor = rebuildExecutor;
+        this.userTtl = userTtl;
+        this.sessionTtl = sessionTtl;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxPending = Math.max(1, maxPending);
+
+        Gauge.builder("recommendation.feed.queue.depth", stale, Set::size)
+                .description("Feeds waiting for a background rebuild")
+                .register(meterRegistry);
+        this.hits         = meterRegistry.counter("recommendation.feed.reads", "result", "hit");
+        this.staleHits    = meterRegistry.counter("recommendation.feed.reads", "result", "stale");
+        this.misses       = meterRegistry.counter("recommendation.feed.reads", "result", "miss");
+        this.dropped      = meterRegistry.counter("recommendation.feed.queue.dropped");
+        this.skipped      = meterRegistry.counter("recommendation.feed.skipped");
+        this.rebuildTimer = meterRegistry.timer("recommendation.feed.rebuilds");
+    }
+
+    // =========================================================================
+    // READ
+    // =========================================================================
+
+    /** The shopper's feed: stored copy if any, otherwise built now (and stored). */
+    public Feed feedFor(String userId, String sessionId) {
+        String owner = ownerOf(userId, sessionId);
+        if (owner == null) return Feed.EMPTY;
+
+        try {
+            List<String> values = redisTemplate.opsForValue().multiGet(List.of(KEY_PREFIX + owner, GENERATION_KEY));
+            String stored = values != null ? values.get(0) : null;
+            long generation = values != null ? parseLong(values.get(1)) : 0;
+
+            Feed feed = stored != null ? decode(stored) : null;
+            if (feed != null) {
+                if (feed.generation() < generation) {
+                    staleHits.increment();
+                    enqueue(owner);
+                } else {
+                    hits.increment();
+                }
+                return feed;
+            }
+
+            misses.increment();
+            Feed built = build(userId, sessionId, generation);
+            store(owner, built);
+            return built;
+
+        } catch (Exception e) {
+            log.warn("[Feed] Redis read failed for {}, building inline: {}", owner, e.getMessage());
+            return build(userId, sessionId, 0);
+        }
+    }
+
+    // =========================================================================
+    // INVALIDATE — called from RecommendationFeedEventListener
+    // =========================================================================
+
+    public void markStale(String userId, String sessionId) {
+        String owner = ownerOf(userId, sessionId);
+        if (owner != null) enqueue(owner);
+    }
+
+    public void similaritiesChanged() {
+        try {
+            redisTemplate.opsForValue().increment(GENERATION_KEY);
+        } catch (Exception e) {
+            log.warn("[Feed] Could not bump the feed generation, feeds refresh on behaviour or TTL: {}",
+                    e.getMessage());
+        }
+    }
+
+    // =========================================================================
+    // REBUILD
+    // =========================================================================
+
+    @Scheduled(fixedDelayString = "${app.recommendation.feed.flush-interval:PT5S}")
+    public void rebuildStale() {
+        if (stale.isEmpty() || !draining.compareAndSet(false, true)) return;
+        try {
+            rebuildExecutor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            log.warn("[Feed] Drain rejected by feedRebuildExecutor, retrying on the next tick");
+        }
+    }
+
+    /** Rebuilds every queued owner that has a stored feed, maxBatch at a time. */
+    private void drain() {
+        try {
+            long generation = currentGeneration();
+            while (!stale.isEmpty()) {
+                List<String> batch = new ArrayList<>();
+                for (Iterator<String> it = stale.iterator(); it.hasNext() && batch.size() < maxBatch; ) {
+                    String owner = it.next();
+                    // remove() before the rebuild: an event arriving meanwhile re-queues the owner
+                    if (stale.remove(owner)) batch.add(owner);
+                }
+
+                List<String> stored = withStoredFeed(batch);
+                skipped.increment(batch.size() - stored.size());
+                rebuildTimer.record(() -> stored.forEach(owner -> {
+                    try {
+                        boolean user = owner.startsWith("u:");
+                        String id = owner.substring(2);
+                        store(owner, build(user ? id : null, user ? null : id, generation));
+                    } catch (Exception e) {
+                        log.warn("[Feed] Rebuild failed for {}: {}", owner, e.getMessage());
+                    }
+                }));
+            }
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    /**
+     * Scores the shopper's recent views through the pre-computed similarity
+     * lists: two seed types, one query for all of them. Slots the lists cannot
+     * fill go to the ALS model, when one is loaded.
+     */
+    Feed build(String userId, String sessionId, long generation) {
+        List<String> seeds = trackingService.getRecentlyViewed(userId, sessionId, SEED_PRODUCT_LIMIT);
+        if (seeds.isEmpty()) return new Feed(List.of(), Set.of(), generation);
+
+        Map<String, Double> scores = new HashMap<>();
+        Query q = new Query(Criteria.where("sourceProductId").in(seeds)
+                .and("type").in(SimilarityType.CO_PURCHASE.name(), SimilarityType.CO_VIEW.name()));
+        for (ItemSimilarity sim : mongoTemplate.find(q, ItemSimilarity.class)) {
+            if (sim.getSimilar() == null) continue;
+            double weight = sim.getType() == SimilarityType.CO_PURCHASE ? 2.0 : 1.0;
+            sim.getSimilar().forEach(entry -> scores.merge(entry.getProductId(), entry.getScore() * weight, Double::sum));
+        }
+
+        Set<String> excluded = new LinkedHashSet<>(seeds);
+        Map<String, Float> interactions = new HashMap<>();
+        seeds.forEach(id -> interactions.put(id, (float) UserBehaviorLog.eventWeight(BehaviorEventType.VIEW)));
+        if (userId != null) {
+            behaviorRepository.findByUserIdAndEventType(
+                            userId, BehaviorEventType.PURCHASE, PageRequest.of(0, PURCHASE_HISTORY_LIMIT))
+                    .stream()
+                    .map(UserBehaviorLog::getProductId)
+                    .filter(Objects::nonNull)
+                    .forEach(id -> {
+                        excluded.add(id);
+                        interactions.merge(id, (float) UserBehaviorLog.eventWeight(BehaviorEventType.PURCHASE), Float::sum);
+                    });
+        }
+
+        List<String> ranked = new ArrayList<>(scores.entrySet().stream()
+                .filter(e -> !excluded.contains(e.getKey()))
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(FEED_SIZE)
+                .map(Map.Entry::getKey)
+                .toList());
+        if (ranked.size() < FEED_SIZE) {
+            Set<String> skip = new HashSet<>(excluded);
+            skip.addAll(ranked);
+            ranked.addAll(factorModels.recommend(interactions, FEED_SIZE - ranked.size(), skip));
+        }
+
+        // The ranked list already leaves out every purchase; only the most recent are kept for padding
+        Set<String> keep = new LinkedHashSet<>();
+        for (String id : excluded) {
+            if (keep.size() == MAX_EXCLUDED) break;
+            keep.add(id);
+        }
+        return new Feed(ranked, keep, generation);
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    private void enqueue(String owner) {
+        // size() is approximate under concurrency; the bound only has to hold roughly
+        if (stale.size() < maxPending || stale.contains(owner)) {
+            stale.add(owner);
+        } else {
+            dropped.increment();
+        }
+    }
+
+    /** The owners of batch whose feed is still in Redis — the only ones anyone will read. */
+    private List<String> withStoredFeed(List<String> batch) {
+        try {
+            List<String> values = redisTemplate.opsForValue()
+                    .multiGet(batch.stream().map(owner -> KEY_PREFIX + owner).toList());
+            if (values == null) return List.of();
+            List<String> stored = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                if (values.get(i) != null) stored.add(batch.get(i));
+            }
+            return stored;
+        } catch (Exception e) {
+            log.warn("[Feed] Could not check stored feeds, skipping {} rebuilds: {}", batch.size(), e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void store(String owner, Feed feed) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + owner, encode(feed),
+                    owner.startsWith("u:") ? userTtl : sessionTtl);
+        } catch (Exception e) {
+            log.warn("[Feed] Could not store feed for {}: {}", owner, e.getMessage());
+        }
+    }
+
+    private long currentGeneration() {
+        try {
+            return parseLong(redisTemplate.opsForValue().get(GENERATION_KEY));
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /** Logged-in shoppers own their feed across sessions; anonymous ones per session. */
+    static String ownerOf(String userId, String sessionId) {
+        if (userId != null) return "u:" + userId;
+        if (sessionId != null && !sessionId.isBlank()) return "s:" + sessionId;
+        return null;
+    }
+
+    static String encode(Feed feed) {
+        return feed.generation() + "|" + String.join(",", feed.productIds()) + "|" + String.join(",", feed.excluded());
+    }
+
+    /** Null when the value is not a feed this version wrote — treated as a miss. */
+    static Feed decode(String value) {
+        String[] parts = value.split("\\|", -1);
+        if (parts.length != 3) return null;
+        try {
+            return new Feed(split(parts[1]), new LinkedHashSet<>(split(parts[2])), Long.parseLong(parts[0]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static List<String> split(String csv) {
+        return csv.isEmpty() ? List.of() : List.of(csv.split(","));
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,596 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import semicolon.africa.waylchub.dto.productDto.ProductFilterRequest;
+import semicolon.africa.waylchub.model.product.Category;
+import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.model.recommendation.ProductPopularity;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Per-pod in-memory inverted index over active products — the read side of
+ * SmartSearchService.
+ *
+ * WHY:
+ *   A keyword search used to cost up to five MongoDB round trips per keystroke
+ *   ($text, a category regex and a findBySlug per term, a brandName regex, a
+ *   popularity findAllById) before the products were even fetched. The catalogue
+ *   is small enough to hold in memory, so the lookup now costs nothing and the
+ *   only query left is the ordered page fetch.
+ *
+ * WHAT IS INDEXED (weights mirror products_smart_text_idx):
+ *   name 10 · brandName 8 · category names and slugs of the whole lineage 5 ·
+ *   tags 4 · description 1
+ *   A term's weight for a product is the sum of the fields it appears in.
+ *   Indexing the lineage names replaces the old category-expansion strategy:
+ *   "jeans" finds products of every sub-category of Jeans.
+ *
+ * POSTINGS:
+ *   term → productId → Posting(product, weight). The Posting points at the
+ *   IndexedProduct, which carries the filter fields (minPrice, maxPrice,
+ *   lineage ids) and the popularity score, so filtering and ranking need no
+ *   further lookups.
+ *
+ * TYPOS:
+ *   Every posting term is also in the segment's FuzzyVocabulary. A query token
+ *   with no postings is rewritten to its nearest terms within 1–2 edits
+ *   ("snaekers" → sneaker) before retrieval — all in memory.
+ *
+ * FRESHNESS:
+ *   - Full build at startup (ApplicationReadyEvent) and every
+ *     app.search.index.rebuild-interval as a safety net for writes that bypass
+ *     ProductService (category renames, campaign price moves). Both run off the
+ *     scheduler (the interval build on offlineJobExecutor, skipped when that
+ *     pool is full), so the 1 s flushDirty never waits behind a catalogue stream.
+ *   - ProductService marks a product dirty on every write (after commit). Dirty
+ *     products are re-read in one query per flush and re-indexed in place.
+ *   - The flushed IDs are broadcast on CHANNEL so every other pod re-reads them too.
+ *   - RecommendationScheduler pushes fresh popularity scores after each refresh.
+ *
+ * Until the first build completes, isReady() is false and SmartSearchService
+ * falls back to its MongoDB strategies.
+ */
+@Slf4j
+@Component
+public class ProductSearchIndex implements MessageListener {
+
+    public static final String CHANNEL = "exploreaba:search-index";
+
+    static final int NAME_WEIGHT = 10;
+    static final int BRAND_WEIGHT = 8;
+    static final int CATEGORY_WEIGHT = 5;
+    static final int TAG_WEIGHT = 4;
+    static final int DESCRIPTION_WEIGHT = 1;
+
+    private static final int BUILD_BATCH_SIZE = 1_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+    private final Executor rebuildExecutor;
+    private final Counter fuzzyRewrites;
+    private final String origin = UUID.randomUUID().toString();
+
+    private final boolean enabled;
+
+    // Written on this pod — re-indexed and broadcast
+    private final Set<String> dirtyIds = ConcurrentHashMap.newKeySet();
+    // Announced by another pod — re-indexed only, never re-broadcast
+    private final Set<String> remoteDirtyIds = ConcurrentHashMap.newKeySet();
+    private final Object writeLock = new Object();
+    // One per build in progress: ids flushed into the live segment meanwhile (guarded by writeLock)
+    private final List<Set<String>> buildRecorders = new ArrayList<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile Segment current = new Segment(Map.of());
+    private volatile boolean ready = false;
+
+    public ProductSearchIndex(MongoTemplate mongoTemplate,
+                              StringRedisTemplate redisTemplate,
+                              RedisMessageListenerContainer listenerContainer,
+                              MeterRegistry meterRegistry,
+                              @Qualifier("offlineJobExecutor") Executor rebuildExecutor,
+                              @Value("${app.search.index.enabled:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.meterRegistry = meterRegistry;
+        this.rebuildExecutor = rebuildExecutor;
+        this.enabled = enabled;
+        this.fuzzyRewrites = Counter.builder("search.fuzzy.rewrites")
+                .description("Query terms not in the index that were rewritten to a near indexed term")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void registerListenerAndMetrics() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        Gauge.builder("search.index.products", this, idx -> idx.current.products.size())
+                .description("Products held in this pod's search index")
+                .register(meterRegistry);
+        Gauge.builder("search.index.terms", this, idx -> idx.current.postings.size())
+                .description("Distinct terms in this pod's search index")
+                .register(meterRegistry);
+    }
+
+    // =========================================================================
+    // READ
+    // =========================================================================
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * Bumped on every rebuild, every flush that changed indexed content, and every
+     * popularity push. Lets derived structures (SearchSuggestIndex,
+     * SearchResultCache) tell cheaply whether the catalogue moved under them.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Products matching any query term and passing the filter, ranked by
+     * popularity (highest first), then relevance, then id for a stable order.
+     */
+    public List<String> search(String query, ProductFilterRequest filter, int limit) {
+        Segment segment = current;
+        Set<String> terms = correctTerms(segment, SearchTokenizer.distinctTokens(query));
+        if (terms.isEmpty()) return List.of();
+
+        String categoryId = null;
+        if (filter != null && filter.getCategorySlug() != null) {
+            // Unknown slug → no category filter, as applyHardCategoryFilter does
+            categoryId = segment.categoryIdBySlug.get(filter.getCategorySlug());
+        }
+
+        // Keyed by id: a concurrent reindex swaps in a new IndexedProduct for the same product.
+        // Popularity is read once per product, so updatePopularity cannot move it mid-sort.
+        Map<String, Match> matches = new HashMap<>();
+        for (String term : terms) {
+            Map<String, Posting> postings = segment.postings.get(term);
+            if (postings == null) continue;
+            for (Posting posting : postings.values()) {
+                IndexedProduct product = posting.product();
+                if (product.matches(filter, categoryId)) {
+                    matches.computeIfAbsent(product.id(), id -> new Match(id, product.popularity))
+                            .relevance += posting.weight();
+                }
+            }
+        }
+
+        return matches.values().stream()
+                .sorted(Comparator.comparingDouble((Match m) -> m.popularity).reversed()
+                        .thenComparing(m -> m.relevance, Comparator.reverseOrder())
+                        .thenComparing(m -> m.id))
+                .limit(limit)
+                .map(m -> m.id)
+                .toList();
+    }
+
+    /**
+     * Tokens the index knows pass through; unknown ones are rewritten to their
+     * nearest indexed terms (see FuzzyVocabulary), or dropped if nothing is close.
+     */
+    private Set<String> correctTerms(Segment segment, Set<String> tokens) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String token : tokens) {
+            if (segment.postings.containsKey(token)) {
+                terms.add(token);
+                continue;
+            }
+            List<String> corrections = segment.vocabulary.nearest(token, term -> {
+                Map<String, Posting> postings = segment.postings.get(term);
+                return postings != null ? postings.size() : 0;
+            });
+            if (!corrections.isEmpty()) {
+                fuzzyRewrites.increment();
+                terms.addAll(corrections);
+            }
+        }
+        return terms;
+    }
+
+    // =========================================================================
+    // FULL BUILD
+    // =========================================================================
+
+    @Async("asyncExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.index.rebuild-interval:PT30M}",
+            initialDelayString = "${app.search.index.rebuild-interval:PT30M}")
+    public void scheduledRebuild() {
+        if (!enabled) return;
+        try {
+            rebuildExecutor.execute(this::rebuild);
+        } catch (RejectedExecutionException e) {
+            log.warn("[SearchIndex] Scheduled rebuild rejected by offlineJobExecutor, retrying on the next interval");
+        }
+    }
+
+    /**
+     * Builds a fresh segment off to the side and swaps it in. Readers never see a half-built index.
+     *
+     * Flushes keep updating the live segment while the build streams. The ids they
+     * apply are recorded and replayed into the fresh segment under writeLock just
+     * before the swap, so an update the cursor had already passed is not lost.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Set<String> flushedDuringBuild = ConcurrentHashMap.newKeySet();
+        synchronized (writeLock) {
+            buildRecorders.add(flushedDuringBuild);
+        }
+        try {
+            Map<String, Category> categories = loadCategories();
+            Map<String, Double> popularity = loadPopularity();
+
+            Segment fresh = new Segment(categories);
+            Query query = new Query(Criteria.where("isActive").is(true));
+            includeIndexedFields(query);
+            query.cursorBatchSize(BUILD_BATCH_SIZE);
+            try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+                products.forEach(p -> fresh.put(toIndexed(p, fresh, popularity.getOrDefault(p.getId(), 0.0))));
+            }
+
+            synchronized (writeLock) {
+                if (!flushedDuringBuild.isEmpty()) {
+                    reindex(fresh, new ArrayList<>(flushedDuringBuild));
+                }
+                current = fresh;
+                ready = true;
+            }
+            generation.incrementAndGet();
+            log.info("[SearchIndex] Built {} products / {} terms in {}ms ({} replayed)",
+                    fresh.products.size(), fresh.postings.size(), System.currentTimeMillis() - start,
+                    flushedDuringBuild.size());
+        } catch (Exception e) {
+            // Keep serving the previous segment (or the Mongo fallback if there is none)
+            log.error("[SearchIndex] Build failed: {}", e.getMessage(), e);
+        } finally {
+            synchronized (writeLock) {
+                buildRecorders.remove(flushedDuringBuild);
+            }
+        }
+    }
+
+    // =========================================================================
+    // INCREMENTAL UPDATES
+    // =========================================================================
+
+    /**
+     * Queue a product for re-indexing. Inside a transaction the mark is deferred
+     * to afterCommit so the flush never reads the pre-commit document. With the
+     * index disabled only the generation moves, so SearchResultCache still
+     * drops rankings that include the product.
+     */
+    public void markDirty(String productId) {
+        if (productId == null) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyDirty(productId);
+                }
+            });
+        } else {
+            applyDirty(productId);
+        }
+    }
+
+    private void applyDirty(String productId) {
+        if (enabled) dirtyIds.add(productId);
+        else generation.incrementAndGet();
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.index.flush-interval-ms:1000}")
+    public void flushDirty() {
+        flush(dirtyIds, true);
+        flush(remoteDirtyIds, false);
+    }
+
+    /** Fresh popularity scores from RecommendationScheduler; products not in the map keep theirs. */
+    public void updatePopularity(Map<String, Double> scores) {
+        Segment segment = current;
+        scores.forEach((productId, score) -> {
+            IndexedProduct product = segment.products.get(productId);
+            if (product != null) product.popularity = score;
+        });
+        generation.incrementAndGet();
+    }
+
+    private void flush(Set<String> source, boolean broadcast) {
+        if (!ready || source.isEmpty()) return;
+
+        List<String> batch = new ArrayList<>(source);
+        source.removeAll(batch);
+
+        try {
+            boolean changed;
+            synchronized (writeLock) {
+                changed = reindex(current, batch);
+                // A build streaming right now may have read these before the write
+                buildRecorders.forEach(recorder -> recorder.addAll(batch));
+            }
+            // Stock-only writes leave every indexed field alone — keep cached rankings warm
+            if (changed) generation.incrementAndGet();
+            if (broadcast) publish(batch);
+        } catch (Exception e) {
+            source.addAll(batch);   // retry on the next flush
+            log.warn("[SearchIndex] Incremental update of {} product(s) failed: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    /** Re-reads the products and re-indexes them in the segment. Caller holds writeLock. */
+    private boolean reindex(Segment segment, List<String> productIds) {
+        Query query = new Query(Criteria.where("id").in(productIds));
+        includeIndexedFields(query);
+        query.fields().include("isActive");
+        Map<String, Product> loaded = new HashMap<>();
+        mongoTemplate.find(query, Product.class).forEach(p -> loaded.put(p.getId(), p));
+
+        segment.addCategories(loadMissingCategories(segment, loaded.values()));
+
+        boolean changed = false;
+        for (String productId : productIds) {
+            Product product = loaded.get(productId);
+            IndexedProduct previous = segment.products.get(productId);
+            if (product == null || !product.isActive()) {
+                segment.remove(productId);
+                changed |= previous != null;
+            } else {
+                IndexedProduct next = toIndexed(product, segment,
+                        previous != null ? previous.popularity : 0.0);
+                segment.put(next);
+                changed |= previous == null || !previous.sameContent(next);
+            }
+        }
+        return changed;
+    }
+
+    // =========================================================================
+    // CROSS-POD
+    // =========================================================================
+
+    private void publish(List<String> productIds) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, origin + "|" + String.join(",", productIds));
+        } catch (Exception e) {
+            log.warn("[SearchIndex] Broadcast failed, other pods catch up at the next rebuild: {}",
+                    e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = payload.split("\\|", 2);
+        if (parts.length < 2 || origin.equals(parts[0]) || !enabled) return;
+
+        for (String productId : parts[1].split(",")) {
+            if (!productId.isBlank()) remoteDirtyIds.add(productId);
+        }
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    private static void includeIndexedFields(Query query) {
+        query.fields().include("id", "name", "brandName", "categoryName", "categorySlug",
+                "tags", "description", "minPrice", "maxPrice", "categoryLineageIds");
+    }
+
+    private Map<String, Category> loadCategories() {
+        Query query = new Query();
+        query.fields().include("id", "name", "slug");
+        Map<String, Category> categories = new HashMap<>();
+        mongoTemplate.find(query, Category.class).forEach(c -> categories.put(c.getId(), c));
+        return categories;
+    }
+
+    private Map<String, Category> loadMissingCategories(Segment segment, Collection<Product> products) {
+        Set<String> missing = new HashSet<>();
+        for (Product p : products) {
+            if (p.getCategoryLineageIds() == null) continue;
+            for (String id : p.getCategoryLineageIds()) {
+                if (!segment.categoriesById.containsKey(id)) missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) return Map.of();
+
+        Query query = new Query(Criteria.where("id").in(missing));
+        query.fields().include("id", "name", "slug");
+        Map<String, Category> categories = new HashMap<>();
+        mongoTemplate.find(query, Category.class).forEach(c -> categories.put(c.getId(), c));
+        return categories;
+    }
+
+    private Map<String, Double> loadPopularity() {
+        Query query = new Query();
+        query.fields().include("popularityScore");
+        Map<String, Double> scores = new HashMap<>();
+        try (Stream<ProductPopularity> rows = mongoTemplate.stream(query, ProductPopularity.class)) {
+            rows.forEach(p -> scores.put(p.getProductId(), p.getPopularityScore()));
+        }
+        return scores;
+    }
+
+    static IndexedProduct toIndexed(Product product, Segment segment, double popularity) {
+        Map<String, Integer> weights = new HashMap<>();
+        addField(weights, product.getName(), NAME_WEIGHT);
+        addField(weights, product.getBrandName(), BRAND_WEIGHT);
+
+        // Category names and slugs of the whole lineage, one weight per term
+        Set<String> categoryTerms = new HashSet<>();
+        categoryTerms.addAll(SearchTokenizer.tokenize(product.getCategoryName()));
+        categoryTerms.addAll(SearchTokenizer.tokenize(product.getCategorySlug()));
+        List<String> lineage = product.getCategoryLineageIds() != null
+                ? product.getCategoryLineageIds() : List.of();
+        for (String categoryId : lineage) {
+            Category category = segment.categoriesById.get(categoryId);
+            if (category != null) {
+                categoryTerms.addAll(SearchTokenizer.tokenize(category.getName()));
+                categoryTerms.addAll(SearchTokenizer.tokenize(category.getSlug()));
+            }
+        }
+        categoryTerms.forEach(t -> weights.merge(t, CATEGORY_WEIGHT, Integer::sum));
+
+        if (product.getTags() != null) {
+            Set<String> tagTerms = new HashSet<>();
+            product.getTags().forEach(tag -> tagTerms.addAll(SearchTokenizer.tokenize(tag)));
+            tagTerms.forEach(t -> weights.merge(t, TAG_WEIGHT, Integer::sum));
+        }
+        addField(weights, product.getDescription(), DESCRIPTION_WEIGHT);
+
+        IndexedProduct indexed = new IndexedProduct(product.getId(), product.getMinPrice(),
+                product.getMaxPrice(), Set.copyOf(lineage), Map.copyOf(weights));
+        indexed.popularity = popularity;
+        return indexed;
+    }
+
+    private static void addField(Map<String, Integer> weights, String text, int weight) {
+        // A field counts once per term, however often the term repeats in it
+        SearchTokenizer.distinctTokens(text).forEach(t -> weights.merge(t, weight, Integer::sum));
+    }
+
+    // =========================================================================
+    // INDEX STRUCTURES
+    // =========================================================================
+
+    /** One complete index generation. Built off to the side, then swapped in. */
+    static final class Segment {
+        final Map<String, IndexedProduct> products = new ConcurrentHashMap<>();
+        final Map<String, Map<String, Posting>> postings = new ConcurrentHashMap<>();
+        final Map<String, Category> categoriesById = new ConcurrentHashMap<>();
+        final Map<String, String> categoryIdBySlug = new ConcurrentHashMap<>();
+        final FuzzyVocabulary vocabulary = new FuzzyVocabulary();
+
+        Segment(Map<String, Category> categories) {
+            addCategories(categories);
+        }
+
+        void addCategories(Map<String, Category> categories) {
+            categories.forEach((id, category) -> {
+                categoriesById.put(id, category);
+                if (category.getSlug() != null) categoryIdBySlug.put(category.getSlug(), id);
+            });
+        }
+
+        void put(IndexedProduct product) {
+            remove(product.id());
+            products.put(product.id(), product);
+            product.termWeights().forEach((term, weight) -> postings
+                    .computeIfAbsent(term, t -> {
+                        vocabulary.add(t);
+                        return new ConcurrentHashMap<>();
+                    })
+                    .put(product.id(), new Posting(product, weight)));
+        }
+
+        void remove(String productId) {
+            IndexedProduct old = products.remove(productId);
+            if (old == null) return;
+            for (String term : old.termWeights().keySet()) {
+                postings.computeIfPresent(term, (t, byProduct) -> {
+                    byProduct.remove(productId);
+                    if (!byProduct.isEmpty()) return byProduct;
+                    vocabulary.remove(t);
+                    return null;
+                });
+            }
+        }
+    }
+
+    record Posting(IndexedProduct product, int weight) {}
+
+    /** One product's score within a single search; popularity as it was when first matched. */
+    private static final class Match {
+        final String id;
+        final double popularity;
+        int relevance;
+
+        Match(String id, double popularity) {
+            this.id = id;
+            this.popularity = popularity;
+        }
+    }
+
+    /** Identity-based equality: each write replaces the object, so stale postings never match. */
+    static final class IndexedProduct {
+        private final String id;
+        private final BigDecimal minPrice;
+        private final BigDecimal maxPrice;
+        private final Set<String> lineageIds;
+        private final Map<String, Integer> termWeights;
+        volatile double popularity;
+
+        IndexedProduct(String id, BigDecimal minPrice, BigDecimal maxPrice,
+                       Set<String> lineageIds, Map<String, Integer> termWeights) {
+            this.id = id;
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+            this.lineageIds = lineageIds;
+            this.termWeights = termWeights;
+        }
+
+        String id() { return id; }
+        Map<String, Integer> termWeights() { return termWeights; }
+
+        /** Same terms, prices and lineage — i.e. no query would match or filter it differently. */
+        boolean sameContent(IndexedProduct other) {
+            return samePrice(minPrice, other.minPrice) && samePrice(maxPrice, other.maxPrice)
+                    && lineageIds.equals(other.lineageIds) && termWeights.equals(other.termWeights);
+        }
+
+        private static boolean samePrice(BigDecimal a, BigDecimal b) {
+            return a == null ? b == null : b != null && a.compareTo(b) == 0;
+        }
+
+        /** Same semantics as SmartSearchService.applyPriceFilter / applyHardCategoryFilter. */
+        boolean matches(ProductFilterRequest filter, String categoryId) {
+            if (categoryId != null && !lineageIds.contains(categoryId)) return false;
+            if (filter == null) return true;
+            if (filter.getMinPrice() != null
+                    && (minPrice == null || minPrice.compareTo(filter.getMinPrice()) < 0)) return false;
+            if (filter.getMaxPrice() != null
+                    && (maxPrice == null || maxPrice.compareTo(filter.getMaxPrice()) > 0)) return false;
+            return true;
+        }
+    }
+}
@@ -2,25 +2,25 @@ package semicolon.africa.waylchub.service.recommendation;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import com.mongodb.DBRef;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.*;
 import org.springframework.data.mongodb.core.query.*;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import semicolon.africa.waylchub.model.product.Product;
-import semicolon.africa.waylchub.model.recommendation.ItemSimilarity;
-import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarEntry;
-import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarityType;
 import semicolon.africa.waylchub.model.recommendation.ProductPopularity;
 import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog;
 import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
-import semicolon.africa.waylchub.repository.productRepository.ProductRepository;
-import semicolon.africa.waylchub.repository.recommendationRepository.ItemSimilarityRepository;
-import semicolon.africa.waylchub.repository.recommendationRepository.ProductPopularityRepository;
-import semicolon.africa.waylchub.repository.recommendationRepository.UserBehaviorRepository;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Background scheduler that keeps the recommendation data fresh.
@@ -29,20 +29,14 @@ import java.util.stream.Collectors;
  *   Aggregates behavior counts per product for 24h and 7d windows.
  *   Computes blended popularity score.
  *   Writes to product_popularity collection.
- *   Cost: one MongoDB aggregation query + N upserts.
+ *   Cost: one aggregation that counts, scores, joins product metadata and
+ *   $merges into product_popularity on the server — no per-product round trips.
+ *   Also persists the live trending counters (trendingScore) as a durable
+ *   snapshot; trending reads themselves come from LiveTrendingService.
  *
- * JOB 2 — COLLABORATIVE FILTERING (every hour)
- *   Computes item-item co-occurrence for CO_VIEW and CO_PURCHASE.
- *   Uses the last 30 days of behavior data.
- *   Writes to item_similarities collection.
- *   Cost: O(U × P²) in the worst case, but bounded by MAX_PRODUCTS_PER_JOB
- *   and only processes products with recent activity.
- *
- * SCALABILITY NOTE:
- *   This implementation is correct up to ~100k active products and ~5M
- *   behavior events. Beyond that, move the CF job to a dedicated
- *   offline Spark/Flink pipeline and have it write back to MongoDB.
- *   The RecommendationService read layer does NOT change — only the writer changes.
+ * JOB 2 — COLLABORATIVE FILTERING
+ *   Moved to CollaborativeFilteringService: incremental runs from a watermark
+ *   every few minutes, a full rebuild daily or on demand.
  *
  * SCHEDULING:
  *   Uses fixedDelay (not fixedRate) so a long-running job cannot stack.
@@ -53,20 +47,19 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class RecommendationScheduler {
 
-    private final UserBehaviorRepository behaviorRepository;
-    private final ItemSimilarityRepository similarityRepository;
-    private final ProductPopularityRepository popularityRepository;
-    private final ProductRepository productRepository;
     private final MongoTemplate mongoTemplate;
+    private final ProductSearchIndex searchIndex;
+    private final LiveTrendingService liveTrending;
 
-    // How many top neighbors to keep per product (memory/performance tradeoff)
-    private static final int TOP_N_SIMILAR = 20;
+    // $merge needs MongoDB 4.2+ (the join 5.0+); without it the counters are streamed into bulk upserts
+    @Value("${app.recommendation.popularity.merge-enabled:true}")
+    private boolean mergeEnabled = true;
 
-    // Only process products that had activity in the last N days
-    private static final int ACTIVE_WINDOW_DAYS = 30;
+    static final String POPULARITY_COLLECTION = "product_popularity";
+    private static final String PRODUCTS_COLLECTION = "products";
 
-    // Max products to process per CF run (safety cap — raise as you scale)
-    private static final int MAX_PRODUCTS_PER_CF_RUN = 5_000;
+    // Upserts per bulk round trip on the fallback path
+    private static final int POPULARITY_WRITE_BATCH = 1_000;
 
     // =========================================================================
     // JOB 1: POPULARITY REFRESH (every 15 minutes)
@@ -78,271 +71,267 @@ public class RecommendationScheduler {
         long start = System.currentTimeMillis();
 
         try {
-            LocalDateTime now    = LocalDateTime.now();
-            LocalDateTime ago24h = now.minusHours(24);
-            LocalDateTime ago7d  = now.minusDays(7);
-
-            // Aggregate event counts for 24h and 7d windows in two queries
-            List<UserBehaviorRepository.EventCount> counts24h =
-                    behaviorRepository.countGroupedByProductAndEvent(
-                            List.of(BehaviorEventType.VIEW, BehaviorEventType.ADD_TO_CART,
-                                    BehaviorEventType.PURCHASE, BehaviorEventType.WISHLIST),
-                            ago24h);
-
-            List<UserBehaviorRepository.EventCount> counts7d =
-                    behaviorRepository.countGroupedByProductAndEvent(
-                            List.of(BehaviorEventType.ADD_TO_CART, BehaviorEventType.PURCHASE),
-                            ago7d);
-
-            // Build maps: productId → { eventType → count }
-            Map<String, Map<String, Long>> map24h = groupCounts(counts24h);
-            Map<String, Map<String, Long>> map7d  = groupCounts(counts7d);
-
-            // Collect all affected product IDs
-            Set<String> allProductIds = new HashSet<>();
-            allProductIds.addAll(map24h.keySet());
-            allProductIds.addAll(map7d.keySet());
-
-            if (allProductIds.isEmpty()) {
-                log.info("[Popularity] No activity found, skipping.");
-                return;
+            LocalDateTime now = LocalDateTime.now();
+            boolean merged = false;
+
+            if (mergeEnabled) {
+                try {
+                    mergePopularity(now);
+                    merged = true;
+                } catch (DataAccessException e) {
+                    log.warn("[Popularity] $merge failed ({}), falling back to bulk upserts", e.getMessage());
+                }
             }
 
-            // Fetch existing category/brand denormalization from Product (for index fields)
-            Map<String, Product> productMeta = productRepository.findAllById(allProductIds).stream()
-                    .collect(Collectors.toMap(Product::getId, p -> p));
-
-            // Build and upsert ProductPopularity documents
-            List<ProductPopularity> toSave = new ArrayList<>();
-
-            for (String productId : allProductIds) {
-                Map<String, Long> e24 = map24h.getOrDefault(productId, Map.of());
-                Map<String, Long> e7  = map7d.getOrDefault(productId, Map.of());
-
-                long views24h     = e24.getOrDefault("VIEW",           0L);
-                long carts24h     = e24.getOrDefault("ADD_TO_CART",    0L);
-                long purchases24h = e24.getOrDefault("PURCHASE",       0L);
-                long wishlists24h = e24.getOrDefault("WISHLIST",       0L);
-                long carts7d      = e7.getOrDefault("ADD_TO_CART",     0L);
-                long purchases7d  = e7.getOrDefault("PURCHASE",        0L);
-
-                double score = (views24h     * 1.0)
-                        + (carts24h     * 5.0)
-                        + (purchases24h * 10.0)
-                        + (wishlists24h * 3.0)
-                        + (carts7d      * 2.0)
-                        + (purchases7d  * 4.0);
-
-                Product meta = productMeta.get(productId);
-
-                ProductPopularity pop = ProductPopularity.builder()
-                        .productId(productId)
-                        .categoryId(meta != null && meta.getCategory() != null
-                                ? meta.getCategory().getId() : null)
-                        .categorySlug(meta != null ? meta.getCategorySlug() : null)
-                        .brandId(meta != null && meta.getBrand() != null
-                                ? meta.getBrand().getId() : null)
-                        .views24h(views24h)
-                        .carts24h(carts24h)
-                        .purchases24h(purchases24h)
-                        .wishlists24h(wishlists24h)
-                        .carts7d(carts7d)
-                        .purchases7d(purchases7d)
-                        .popularityScore(score)
-                        .lastRefreshed(now)
-                        .build();
-
-                toSave.add(pop);
+            Map<String, Double> scores = merged ? loadRefreshedScores(now) : bulkUpsertPopularity(now);
+            snapshotTrending(now);
+            if (scores.isEmpty()) {
+                log.info("[Popularity] No activity found, skipping.");
+                return;
             }
 
-            // Batch upsert
-            for (ProductPopularity pop : toSave) {
-                Query q = new Query(Criteria.where("_id").is(pop.getProductId()));
-                Update u = new Update()
-                        .set("categoryId",     pop.getCategoryId())
-                        .set("categorySlug",   pop.getCategorySlug())
-                        .set("brandId",        pop.getBrandId())
-                        .set("views24h",       pop.getViews24h())
-                        .set("carts24h",       pop.getCarts24h())
-                        .set("purchases24h",   pop.getPurchases24h())
-                        .set("wishlists24h",   pop.getWishlists24h())
-                        .set("carts7d",        pop.getCarts7d())
-                        .set("purchases7d",    pop.getPurchases7d())
-                        .set("popularityScore", pop.getPopularityScore())
-                        .set("lastRefreshed",  pop.getLastRefreshed());
-
-                mongoTemplate.upsert(q, u, ProductPopularity.class);
-            }
+            // Search ranks by these scores straight from the in-memory postings
+            searchIndex.updatePopularity(scores);
 
-            log.info("[Popularity] Refreshed {} products in {}ms",
-                    toSave.size(), System.currentTimeMillis() - start);
+            log.info("[Popularity] Refreshed {} products via {} in {}ms",
+                    scores.size(), merged ? "$merge" : "bulk upserts", System.currentTimeMillis() - start);
 
         } catch (Exception e) {
             log.error("[Popularity] Refresh failed: {}", e.getMessage(), e);
         }
     }
 
+    /**
+     * One document per active product, counted, scored and joined on the
+     * server. Fields the pipeline does not produce (views7d) are left alone
+     * by the merge.
+     *
+     * SCORING FORMULA:
+     *   score = views24h × 1 + carts24h × 5 + purchases24h × 10 + wishlists24h × 3
+     *         + carts7d × 2 + purchases7d × 4
+     *
+     * PIPELINE:
+     *   $match     — views/wishlists of the last 24h, carts/purchases of the last 7d
+     *   $group     — per product, one conditional $sum per counter
+     *   $addFields — popularityScore, lastRefreshed
+     *   $lookup    — categorySlug and the category/brand DBRef ids from products
+     *
+     * The join needs $getField (5.0+) and $replaceWith/$unset (4.2+), so only
+     * the $merge path runs it; see countingPipeline for the fallback.
+     */
+    static List<AggregationOperation> popularityPipeline(LocalDateTime now) {
+        List<AggregationOperation> stages = countingPipeline(now);
+
+        // productId is the hex string of the product's ObjectId; category and brand are DBRefs
+        stages.add(stage("$lookup", new Document("from", PRODUCTS_COLLECTION)
+                .append("let", new Document("pid", new Document("$convert", new Document("input", "$_id")
+                        .append("to", "objectId").append("onError", null).append("onNull", null))))
+                .append("pipeline", List.of(
+                        new Document("$match", new Document("$expr", new Document("$eq", List.of("$_id", "$$pid")))),
+                        new Document("$project", new Document("_id", 0)
+                                .append("categorySlug", 1)
+                                .append("categoryId", dbRefId("$category"))
+                                .append("brandId", dbRefId("$brand")))))
+                .append("as", "product")));
+        stages.add(stage("$replaceWith", new Document("$mergeObjects",
+                List.of(new Document("$arrayElemAt", List.of("$product", 0)), "$$ROOT"))));
+        stages.add(stage("$unset", "product"));
+        return stages;
+    }
+
+    /**
+     * Counters and score only — $match, $group and $addFields with $cond/$sum
+     * arithmetic, all of which predate $merge. The bulk-upsert fallback streams
+     * this and joins product metadata in Java, one $in per write batch.
+     */
+    static List<AggregationOperation> countingPipeline(LocalDateTime now) {
+        Date ago24h = toDate(now.minusHours(24));
+
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(Aggregation.match(new Criteria().andOperator(
+                Criteria.where("productId").ne(null),
+                new Criteria().orOperator(
+                        Criteria.where("eventType").in(BehaviorEventType.VIEW, BehaviorEventType.WISHLIST)
+                                .and("timestamp").gte(now.minusHours(24)),
+                        Criteria.where("eventType").in(BehaviorEventType.ADD_TO_CART, BehaviorEventType.PURCHASE)
+                                .and("timestamp").gte(now.minusDays(7))))));
+
+        // Views and wishlists only match inside 24h already
+        stages.add(stage("$group", new Document("_id", "$productId")
+                .append("views24h",     countOf(BehaviorEventType.VIEW, null))
+                .append("carts24h",     countOf(BehaviorEventType.ADD_TO_CART, ago24h))
+                .append("purchases24h", countOf(BehaviorEventType.PURCHASE, ago24h))
+                .append("wishlists24h", countOf(BehaviorEventType.WISHLIST, null))
+                .append("carts7d",      countOf(BehaviorEventType.ADD_TO_CART, null))
+                .append("purchases7d",  countOf(BehaviorEventType.PURCHASE, null))));
+
+        stages.add(stage("$addFields", new Document("popularityScore", new Document("$add", List.of(
+                        weighted("$views24h",     1.0),
+                        weighted("$carts24h",     5.0),
+                        weighted("$purchases24h", 10.0),
+                        weighted("$wishlists24h", 3.0),
+                        weighted("$carts7d",      2.0),
+                        weighted("$purchases7d",  4.0))))
+                .append("lastRefreshed", toDate(now))));
+        return stages;
+    }
+
     // =========================================================================
-    // JOB 2: COLLABORATIVE FILTERING MATRIX (every hour)
+    // PRIVATE HELPERS
     // =========================================================================
 
-    @Scheduled(fixedDelay = 60 * 60 * 1000, initialDelay = 5 * 60 * 1000)
-    public void recomputeCollaborativeFiltering() {
-        log.info("[CF] Starting item-item collaborative filtering computation...");
-        long start = System.currentTimeMillis();
+    private void mergePopularity(LocalDateTime now) {
+        List<AggregationOperation> stages = popularityPipeline(now);
+        stages.add(stage("$merge", new Document("into", POPULARITY_COLLECTION)
+                .append("on", "_id")
+                .append("whenMatched", "merge")
+                .append("whenNotMatched", "insert")));
 
-        try {
-            // Process CO_PURCHASE (highest quality signal)
-            computeCoOccurrence(
-                    List.of(BehaviorEventType.PURCHASE),
-                    SimilarityType.CO_PURCHASE,
-                    ACTIVE_WINDOW_DAYS);
+        // Returns no documents — the write happens on the server
+        mongoTemplate.aggregate(popularityAggregation(stages), Document.class);
+    }
 
-            // Process CO_VIEW (larger volume, slightly noisier)
-            computeCoOccurrence(
-                    List.of(BehaviorEventType.VIEW, BehaviorEventType.ADD_TO_CART),
-                    SimilarityType.CO_VIEW,
-                    ACTIVE_WINDOW_DAYS / 2); // shorter window for view signals
+    /**
+     * Fallback: the counting pipeline streamed back, joined to product metadata
+     * in Java and written as unordered bulk upserts, a batch at a time.
+     */
+    private Map<String, Double> bulkUpsertPopularity(LocalDateTime now) {
+        Map<String, Double> scores = new HashMap<>();
+        List<Document> batch = new ArrayList<>(POPULARITY_WRITE_BATCH);
+
+        try (Stream<Document> rows = mongoTemplate.aggregateStream(
+                popularityAggregation(countingPipeline(now)), Document.class)) {
+            for (Iterator<Document> it = rows.iterator(); it.hasNext(); ) {
+                batch.add(it.next());
+                if (batch.size() == POPULARITY_WRITE_BATCH) {
+                    upsertBatch(batch, scores);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) upsertBatch(batch, scores);
+        return scores;
+    }
 
-            log.info("[CF] Completed in {}ms", System.currentTimeMillis() - start);
+    private void upsertBatch(List<Document> rows, Map<String, Double> scores) {
+        Map<String, Document> products = productMetadata(rows);
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, POPULARITY_COLLECTION);
+
+        for (Document row : rows) {
+            String productId = row.getString("_id");
+            Update u = new Update();
+            row.forEach((field, value) -> { if (!"_id".equals(field)) u.set(field, value); });
+
+            Document product = products.get(productId);
+            if (product != null) {
+                // Missing fields stay untouched, as the $lookup projection leaves them
+                setIfPresent(u, "categorySlug", product.get("categorySlug"));
+                setIfPresent(u, "categoryId", dbRefId(product.get("category")));
+                setIfPresent(u, "brandId", dbRefId(product.get("brand")));
+            }
+            ops.upsert(new Query(Criteria.where("_id").is(productId)), u);
+            scores.put(productId, ((Number) row.get("popularityScore")).doubleValue());
+        }
+        ops.execute();
+    }
 
-        } catch (Exception e) {
-            log.error("[CF] Computation failed: {}", e.getMessage(), e);
+    /** categorySlug and the raw category/brand DBRefs of the batch's products, keyed by hex id. */
+    private Map<String, Document> productMetadata(List<Document> rows) {
+        List<ObjectId> ids = new ArrayList<>(rows.size());
+        for (Document row : rows) {
+            String productId = row.getString("_id");
+            if (ObjectId.isValid(productId)) ids.add(new ObjectId(productId));
         }
+        if (ids.isEmpty()) return Map.of();
+
+        Query query = new Query(Criteria.where("_id").in(ids));
+        query.fields().include("categorySlug", "category", "brand");
+        Map<String, Document> products = new HashMap<>();
+        for (Document product : mongoTemplate.find(query, Document.class, PRODUCTS_COLLECTION)) {
+            products.put(product.getObjectId("_id").toHexString(), product);
+        }
+        return products;
     }
 
     /**
-     * Core item-item collaborative filtering algorithm.
-     *
-     * ALGORITHM (Item-Item CF — the same approach Amazon patented in 1998):
-     *
-     *   For each product A:
-     *     1. Find all users U who have event(s) with product A in the time window
-     *     2. For each user in U:
-     *        - Find all other products B they also interacted with
-     *        - Increment coOccurrence(A, B)
-     *     3. Normalize: score(A, B) = coOccurrence(A,B) / sqrt(interactions(A) × interactions(B))
-     *        (This is the standard cosine similarity for implicit feedback)
-     *     4. Keep top-N by score, save to ItemSimilarity collection
-     *
-     * COMPLEXITY: O(P × U_avg × P_avg) where:
-     *   P = active products, U_avg = avg users per product, P_avg = avg products per user
-     *   In practice this is very fast because we bound by ACTIVE_WINDOW_DAYS.
+     * Writes the live window totals as trendingScore, then zeroes products that
+     * were trending at the last snapshot and no longer are.
      */
-    private void computeCoOccurrence(
-            List<BehaviorEventType> eventTypes,
-            SimilarityType similarityType,
-            int windowDays) {
-
-        LocalDateTime windowStart = LocalDateTime.now().minusDays(windowDays);
-
-        // Step 1: Find products with recent activity (avoid processing dead products)
-        Query activeProductQuery = new Query(
-                new Criteria().andOperator(
-                        Criteria.where("eventType").in(eventTypes),
-                        Criteria.where("timestamp").gte(windowStart)
-                )
-        );
-        activeProductQuery.fields().include("productId");
-        activeProductQuery.limit(MAX_PRODUCTS_PER_CF_RUN);
-
-        Set<String> activeProductIds = mongoTemplate
-                .find(activeProductQuery, UserBehaviorLog.class).stream()
-                .map(UserBehaviorLog::getProductId)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-
-        log.info("[CF/{}] Processing {} active products", similarityType, activeProductIds.size());
-
-        // Per-product interaction counts (denominator for cosine similarity)
-        Map<String, Long> productInteractionCounts = new HashMap<>();
-        for (String productId : activeProductIds) {
-            long count = behaviorRepository
-                    .findByProductIdAndEventTypeInAndTimestampAfter(productId, eventTypes, windowStart)
-                    .stream().map(UserBehaviorLog::getUserId)
-                    .filter(Objects::nonNull)
-                    .distinct()
-                    .count();
-            productInteractionCounts.put(productId, Math.max(count, 1));
+    private void snapshotTrending(LocalDateTime now) {
+        Map<String, Integer> totals = liveTrending.snapshot();
+        Date snapshotAt = toDate(now);
+
+        BulkOperations ops = null;
+        int pending = 0;
+        for (Map.Entry<String, Integer> e : totals.entrySet()) {
+            if (ops == null) ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, POPULARITY_COLLECTION);
+            ops.upsert(new Query(Criteria.where("_id").is(e.getKey())),
+                    new Update().set("trendingScore", e.getValue().doubleValue()).set("trendingAt", snapshotAt));
+            if (++pending == POPULARITY_WRITE_BATCH) {
+                ops.execute();
+                ops = null;
+                pending = 0;
+            }
         }
+        if (ops != null) ops.execute();
 
-        // Step 2 & 3: Build co-occurrence matrix and compute similarities
-        for (String productA : activeProductIds) {
-
-            // Find all users who interacted with product A
-            Set<String> usersOfA = behaviorRepository
-                    .findByProductIdAndEventTypeInAndTimestampAfter(productA, eventTypes, windowStart)
-                    .stream()
-                    .map(UserBehaviorLog::getUserId)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toSet());
-
-            if (usersOfA.isEmpty()) continue;
-
-            // Co-occurrence counter: productB → count of users who also touched A
-            Map<String, Long> coOccurrence = new HashMap<>();
-
-            for (String userId : usersOfA) {
-                // What else did this user interact with?
-                List<String> otherProducts = behaviorRepository
-                        .findByUserIdAndEventTypeInAndTimestampAfter(userId, eventTypes, windowStart)
-                        .stream()
-                        .map(UserBehaviorLog::getProductId)
-                        .filter(id -> id != null && !id.equals(productA))
-                        .toList();
-
-                for (String productB : otherProducts) {
-                    coOccurrence.merge(productB, 1L, Long::sum);
-                }
-            }
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("trendingScore").gt(0).and("trendingAt").lt(snapshotAt)),
+                new Update().set("trendingScore", 0.0),
+                POPULARITY_COLLECTION);
+    }
 
-            if (coOccurrence.isEmpty()) continue;
-
-            // Compute cosine similarity scores and keep top N
-            long interactionsA = productInteractionCounts.getOrDefault(productA, 1L);
-
-            List<SimilarEntry> topSimilar = coOccurrence.entrySet().stream()
-                    .filter(e -> activeProductIds.contains(e.getKey())) // only products we track
-                    .map(e -> {
-                        long interactionsB = productInteractionCounts.getOrDefault(e.getKey(), 1L);
-                        double score = e.getValue() / Math.sqrt((double) interactionsA * interactionsB);
-                        return SimilarEntry.builder()
-                                .productId(e.getKey())
-                                .score(score)
-                                .coOccurrenceCount(e.getValue())
-                                .build();
-                    })
-                    .sorted(Comparator.comparingDouble(SimilarEntry::getScore).reversed())
-                    .limit(TOP_N_SIMILAR)
-                    .toList();
-
-            // Upsert the similarity document for product A
-            Query q = new Query(
-                    Criteria.where("sourceProductId").is(productA)
-                            .and("type").is(similarityType.name())
-            );
-            Update u = new Update()
-                    .set("similar",    topSimilar)
-                    .set("computedAt", LocalDateTime.now())
-                    .setOnInsert("sourceProductId", productA)
-                    .setOnInsert("type", similarityType);
-
-            mongoTemplate.upsert(q, u, ItemSimilarity.class);
+    /** Scores this run's $merge wrote, for the in-memory search index. */
+    private Map<String, Double> loadRefreshedScores(LocalDateTime now) {
+        Query query = new Query(Criteria.where("lastRefreshed").is(toDate(now)));
+        query.fields().include("popularityScore");
+        Map<String, Double> scores = new HashMap<>();
+        try (Stream<ProductPopularity> rows = mongoTemplate.stream(query, ProductPopularity.class)) {
+            rows.forEach(p -> scores.put(p.getProductId(), p.getPopularityScore()));
         }
+        return scores;
     }
 
-    // =========================================================================
-    // PRIVATE HELPERS
-    // =========================================================================
+    private static TypedAggregation<UserBehaviorLog> popularityAggregation(List<AggregationOperation> stages) {
+        return Aggregation.newAggregation(UserBehaviorLog.class, stages)
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+    }
+
+    /** Raw stage — conditional sums and the DBRef lookup have no typed builder. */
+    private static AggregationOperation stage(String operator, Object body) {
+        return context -> new Document(operator, body);
+    }
 
-    private Map<String, Map<String, Long>> groupCounts(
-            List<UserBehaviorRepository.EventCount> counts) {
-        Map<String, Map<String, Long>> result = new HashMap<>();
-        for (UserBehaviorRepository.EventCount ec : counts) {
-            if (ec._id() == null) continue;
-            result.computeIfAbsent(ec._id().productId(), k -> new HashMap<>())
-                    .put(ec._id().eventType(), ec.count());
+    /** $sum of 1 per event of this type, optionally only at or after since. */
+    private static Document countOf(BehaviorEventType type, Date since) {
+        Object matches = new Document("$eq", List.of("$eventType", type.name()));
+        if (since != null) {
+            matches = new Document("$and", List.of(matches, new Document("$gte", List.of("$timestamp", since))));
         }
-        return result;
+        return new Document("$sum", new Document("$cond", List.of(matches, 1, 0)));
+    }
+
+    private static Document weighted(String field, double weight) {
+        return new Document("$multiply", List.of(field, weight));
+    }
+
+    private static void setIfPresent(Update update, String field, Object value) {
+        if (value != null) update.set(field, value);
+    }
+
+    /** Java-side twin of dbRefId(String) for the fallback; null when the reference is missing. */
+    private static String dbRefId(Object ref) {
+        return ref instanceof DBRef dbRef && dbRef.getId() != null ? dbRef.getId().toString() : null;
+    }
+
+    /** The hex id inside a DBRef field ({$ref, $id}); null when the field is missing. */
+    private static Document dbRefId(String field) {
+        return new Document("$toString", new Document("$getField",
+                new Document("field", new Document("$literal", "$id")).append("input", field)));
+    }
+
+    // Same conversion Spring Data applies to LocalDateTime query values
+    private static Date toDate(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
     }
-}
\ No newline at end of file
+}
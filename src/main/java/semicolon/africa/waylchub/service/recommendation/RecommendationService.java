@@ -1,39 +1,66 @@
 package semicolon.africa.waylchub.service.recommendation;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.*;
 import org.springframework.stereotype.Service;
+import semicolon.africa.waylchub.dto.recommendation.ProductPageCandidates;
 import semicolon.africa.waylchub.dto.recommendation.RecommendationResponse;
 import semicolon.africa.waylchub.model.product.Product;
 import semicolon.africa.waylchub.model.recommendation.ItemSimilarity;
 import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarityType;
-import semicolon.africa.waylchub.repository.productRepository.ProductRepository;
-import semicolon.africa.waylchub.repository.recommendationRepository.ItemSimilarityRepository;
 import semicolon.africa.waylchub.repository.recommendationRepository.ProductPopularityRepository;
-import semicolon.africa.waylchub.repository.recommendationRepository.UserBehaviorRepository;
-import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+import semicolon.africa.waylchub.service.productService.CatalogTermDictionary;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import static semicolon.africa.waylchub.config.CacheConfig.RECOMMENDATION_CANDIDATES_CACHE;
+
 /**
  * Recommendation Service — four layers of intelligence, graceful degradation.
  *
  * LAYER 1 — CONTENT-BASED (always available, zero user data needed)
- *   Same category + brand overlap + tag overlap.
+ *   Same category + brand overlap + tag overlap. Pre-computed CONTENT lists
+ *   (ContentSimilarityService); products newer than the last run use a live
+ *   query instead.
  *
  * LAYER 2 — COLLABORATIVE FILTERING (available after CF job has run)
- *   Pre-computed nightly by RecommendationScheduler.
+ *   CO_PURCHASE / CO_VIEW lists kept up to date by CollaborativeFilteringService:
+ *   an incremental pass every app.recommendation.cf.incremental-interval (5 min
+ *   by default), with a full rebuild behind it. Products without a
+ *   CO_VIEW list (too few shoppers to co-occur) use their nearest neighbours
+ *   in the ALS factor space instead (FactorModelService).
  *
  * LAYER 3 — PERSONALIZED (available when user has history)
- *   Seeds from user's recent behavior → fetches CF similarities for each seed.
+ *   Seeds from user's recent behavior → CF similarities, materialized per
+ *   shopper by PersonalFeedService and rebuilt in the background.
  *
  * LAYER 4 — POPULARITY FALLBACK (always available)
  *   Most popular products in the same category.
  *
+ * TRENDING — live counters (LiveTrendingService), falling back to layer 4
+ *   while they are warming up or empty.
+ *
+ * PRODUCT PAGE BUNDLE:
+ *   Strategies return candidate IDs only. The source product and its three
+ *   similarity lists (CONTENT, CO_PURCHASE, CO_VIEW — one indexed query) are
+ *   read concurrently on the searchExecutor, then every ID of the bundle is
+ *   hydrated by one $in query projected to card fields (CARD_FIELDS) — two
+ *   round trips in parallel plus one, instead of five or more sequential
+ *   full-document fetches. Only the candidate IDs are cached per product
+ *   (RECOMMENDATION_CANDIDATES_CACHE, Caffeine L1 over Redis), evicted when
+ *   the product's similarity lists are rewritten (evictProductPageCandidates);
+ *   a cached page costs the one hydration query, and cards never go stale.
+ *
  * FIELD NOTE:
  *   Product.categoryLineageIds is a List<String>. Querying sub-categories uses
  *   Criteria.where("categoryLineageIds").in(categoryId) — NOT a regex on a
@@ -41,46 +68,140 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class RecommendationService {
 
     private final MongoTemplate mongoTemplate;
-    private final ProductRepository productRepository;
-    private final ItemSimilarityRepository similarityRepository;
     private final ProductPopularityRepository popularityRepository;
-    private final UserBehaviorRepository behaviorRepository;
-    private final BehaviorTrackingService trackingService;
+    private final PersonalFeedService feedService;
+    private final FactorModelService factorModels;
+    private final CatalogTermDictionary termDictionary;
+    private final LiveTrendingService liveTrending;
+    private final CacheManager cacheManager;
+    private final Executor lookupExecutor;
 
     private static final int DEFAULT_LIMIT       = 10;
-    private static final int SEED_PRODUCT_LIMIT  = 5;
+
+    // What a product card renders — the same projection as the listing pages
+    static final String[] CARD_FIELDS = {
+            "name", "slug", "brandName", "categoryName", "categorySlug",
+            "minPrice", "maxPrice", "basePrice", "totalStock", "discount",
+            "compareAtPrice", "averageRating", "reviewCount", "images", "isActive"
+    };
+
+    public RecommendationService(MongoTemplate mongoTemplate,
+                                 ProductPopularityRepository popularityRepository,
+                                 PersonalFeedService feedService,
+                                 FactorModelService factorModels,
+                                 CatalogTermDictionary termDictionary,
+                                 LiveTrendingService liveTrending,
+                                 CacheManager cacheManager,
+                                 @Qualifier("searchExecutor") Executor lookupExecutor) {
+        this.mongoTemplate = mongoTemplate;
+        this.popularityRepository = popularityRepository;
+        this.feedService = feedService;
+        this.factorModels = factorModels;
+        this.termDictionary = termDictionary;
+        this.liveTrending = liveTrending;
+        this.cacheManager = cacheManager;
+        this.lookupExecutor = lookupExecutor;
+    }
 
     // =========================================================================
     // PRODUCT PAGE: "Similar Products" + "Also Bought"
     // =========================================================================
 
+    /**
+     * userId and sessionId are accepted for the endpoint's contract; the
+     * candidates are the same for every shopper, which is what makes them
+     * cacheable. Cards are hydrated on every request, so price, stock and
+     * deactivation show up immediately.
+     */
     public RecommendationResponse getProductPageRecommendations(
             String productId, String userId, String sessionId) {
 
-        Product source = productRepository.findById(productId).orElse(null);
-        if (source == null) return RecommendationResponse.empty();
+        ProductPageCandidates candidates = productPageCandidates(productId);
+
+        // One hydration for the whole bundle
+        Set<String> all = new LinkedHashSet<>(candidates.getSimilarIds());
+        all.addAll(candidates.getAlsoBoughtIds());
+        all.addAll(candidates.getAlsoViewedIds());
+        Map<String, Product> cards = fetchCards(all);
+
+        return RecommendationResponse.builder()
+                .similarProducts(ordered(candidates.getSimilarIds(), cards))
+                .customersAlsoBought(ordered(candidates.getAlsoBoughtIds(), cards))
+                .customersAlsoViewed(ordered(candidates.getAlsoViewedIds(), cards))
+                .build();
+    }
+
+    /**
+     * Drops cached product-page candidates; null means every product. Goes
+     * through the cache manager, so other pods drop their L1 copies too.
+     */
+    public void evictProductPageCandidates(Collection<String> productIds) {
+        try {
+            Optional.ofNullable(cacheManager.getCache(RECOMMENDATION_CANDIDATES_CACHE)).ifPresent(c -> {
+                if (productIds == null) {
+                    c.clear();
+                } else {
+                    productIds.forEach(c::evict);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("[Cache] Recommendation candidates evict failed: {}", e.getMessage());
+        }
+    }
 
+    /**
+     * Cached candidates, computed on a miss; concurrent misses share one
+     * computation (sync get). When the cache itself is unreachable the
+     * candidates are computed uncached, as @Cacheable's error handler would.
+     */
+    private ProductPageCandidates productPageCandidates(String productId) {
+        try {
+            Cache cache = cacheManager.getCache(RECOMMENDATION_CANDIDATES_CACHE);
+            if (cache != null) {
+                return cache.get(productId, () -> candidates(productId));
+            }
+        } catch (Cache.ValueRetrievalException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.warn("[Cache] Recommendation candidates unavailable ({}), computing uncached", e.getMessage());
+        }
+        return candidates(productId);
+    }
+
+    private ProductPageCandidates candidates(String productId) {
         Set<String> exclude = Set.of(productId);
 
-        List<Product> similar    = getContentBasedSimilar(source, exclude, DEFAULT_LIMIT);
-        List<Product> alsoBought = getCollaborativeRecs(productId, SimilarityType.CO_PURCHASE, exclude, DEFAULT_LIMIT);
-        List<Product> alsoViewed = getCollaborativeRecs(productId, SimilarityType.CO_VIEW,     exclude, DEFAULT_LIMIT);
+        // The two reads are independent
+        CompletableFuture<Map<SimilarityType, List<String>>> similarityIds =
+                startLookup(() -> similarityIds(productId, exclude, DEFAULT_LIMIT));
+        Product source = loadSource(productId);
+        Map<SimilarityType, List<String>> neighbours = similarityIds.join();
+        if (source == null) return ProductPageCandidates.empty();
 
-        if (similar.isEmpty()) {
-            similar = getPopularInCategory(source.getCategorySlug(), exclude, DEFAULT_LIMIT);
+        List<String> similarIds = neighbours.getOrDefault(SimilarityType.CONTENT, List.of());
+        if (similarIds.isEmpty()) {
+            similarIds = liveContentIds(source, exclude, DEFAULT_LIMIT);
+        }
+        if (similarIds.isEmpty()) {
+            similarIds = popularIds(source.getCategorySlug(), exclude, DEFAULT_LIMIT);
+        }
+        List<String> alsoBoughtIds = neighbours.getOrDefault(SimilarityType.CO_PURCHASE, List.of());
+        if (alsoBoughtIds.isEmpty()) {
+            alsoBoughtIds = similarIds;
         }
-        if (alsoBought.isEmpty()) {
-            alsoBought = similar;
+        List<String> alsoViewedIds = neighbours.getOrDefault(SimilarityType.CO_VIEW, List.of());
+        if (alsoViewedIds.isEmpty()) {
+            alsoViewedIds = factorModels.similarIds(productId, DEFAULT_LIMIT, exclude);
         }
 
-        return RecommendationResponse.builder()
-                .similarProducts(similar)
-                .customersAlsoBought(alsoBought)
-                .customersAlsoViewed(alsoViewed)
+        // ArrayList copies: cached candidates round-trip through Redis' default typing
+        return ProductPageCandidates.builder()
+                .similarIds(new ArrayList<>(similarIds))
+                .alsoBoughtIds(new ArrayList<>(alsoBoughtIds))
+                .alsoViewedIds(new ArrayList<>(alsoViewedIds))
                 .build();
     }
 
@@ -93,6 +214,17 @@ public class RecommendationService {
     // =========================================================================
 
     public List<Product> getContentBasedSimilar(Product source, Set<String> exclude, int limit) {
+        List<String> ids = similarityIds(source.getId(), exclude, limit)
+                .getOrDefault(SimilarityType.CONTENT, List.of());
+        return fetchProductsOrdered(!ids.isEmpty() ? ids : liveContentIds(source, exclude, limit));
+    }
+
+    /**
+     * Fallback for products the CONTENT job has not seen yet: candidates
+     * ranked by content overlap. Only the fields the score needs are read; the
+     * winners are hydrated by the caller.
+     */
+    private List<String> liveContentIds(Product source, Set<String> exclude, int limit) {
         try {
             List<Criteria> criteriaList = new ArrayList<>();
 
@@ -100,14 +232,12 @@ public class RecommendationService {
             if (source.getCategorySlug() != null) {
                 criteriaList.add(Criteria.where("categorySlug").is(source.getCategorySlug()));
             }
-            if (source.getCategory() != null && source.getCategory().getId() != null) {
-                // categoryLineageIds contains the category itself + all ancestor IDs.
-                // Any product whose lineage contains this category ID is in the
-                // same category tree — no regex required.
-                criteriaList.add(
-                        Criteria.where("categoryLineageIds").in(source.getCategory().getId())
-                );
-            }
+            // categoryLineageIds contains the category itself + all ancestor IDs.
+            // Any product whose lineage contains this category ID is in the
+            // same category tree — no regex required. The ID comes from the
+            // slug, so the source's category DBRef is never resolved.
+            termDictionary.categoryIdForSlug(source.getCategorySlug()).ifPresent(categoryId ->
+                    criteriaList.add(Criteria.where("categoryLineageIds").in(categoryId)));
 
             if (source.getBrandName() != null) {
                 criteriaList.add(Criteria.where("brandName").is(source.getBrandName()));
@@ -118,7 +248,7 @@ public class RecommendationService {
             }
 
             if (criteriaList.isEmpty()) {
-                return getPopularInCategory(source.getCategorySlug(), exclude, limit);
+                return popularIds(source.getCategorySlug(), exclude, limit);
             }
 
             Query q = new Query(new Criteria().orOperator(criteriaList.toArray(new Criteria[0])));
@@ -126,6 +256,7 @@ public class RecommendationService {
             if (!exclude.isEmpty()) {
                 q.addCriteria(Criteria.where("id").nin(exclude));
             }
+            q.fields().include("categorySlug", "brandName", "tags");
             q.limit(limit * 3);
 
             List<Product> candidates = mongoTemplate.find(q, Product.class);
@@ -134,7 +265,7 @@ public class RecommendationService {
                     .map(p -> new AbstractMap.SimpleEntry<>(p, scoreContentSimilarity(source, p)))
                     .sorted(Map.Entry.<Product, Integer>comparingByValue().reversed())
                     .limit(limit)
-                    .map(Map.Entry::getKey)
+                    .map(e -> e.getKey().getId())
                     .collect(Collectors.toList());
 
         } catch (Exception e) {
@@ -161,26 +292,34 @@ public class RecommendationService {
 
     public List<Product> getCollaborativeRecs(
             String productId, SimilarityType type, Set<String> exclude, int limit) {
-        try {
-            Optional<ItemSimilarity> similarity =
-                    similarityRepository.findBySourceProductIdAndType(productId, type);
+        return fetchProductsOrdered(similarityIds(productId, exclude, limit).getOrDefault(type, List.of()));
+    }
 
-            if (similarity.isEmpty() || similarity.get().getSimilar() == null) {
-                return List.of();
+    /**
+     * Neighbour IDs of every product-page list (CONTENT, CO_PURCHASE, CO_VIEW),
+     * best first, from one query on the (sourceProductId, type) index.
+     */
+    private Map<SimilarityType, List<String>> similarityIds(String productId, Set<String> exclude, int limit) {
+        try {
+            Query q = new Query(Criteria.where("sourceProductId").is(productId)
+                    .and("type").in(SimilarityType.CONTENT.name(),
+                            SimilarityType.CO_PURCHASE.name(), SimilarityType.CO_VIEW.name()));
+
+            Map<SimilarityType, List<String>> byType = new EnumMap<>(SimilarityType.class);
+            for (ItemSimilarity similarity : mongoTemplate.find(q, ItemSimilarity.class)) {
+                if (similarity.getSimilar() == null) continue;
+                byType.put(similarity.getType(), similarity.getSimilar().stream()
+                        .sorted(Comparator.comparingDouble(ItemSimilarity.SimilarEntry::getScore).reversed())
+                        .map(ItemSimilarity.SimilarEntry::getProductId)
+                        .filter(id -> !exclude.contains(id))
+                        .limit(limit)
+                        .collect(Collectors.toList()));
             }
-
-            List<String> similarIds = similarity.get().getSimilar().stream()
-                    .sorted(Comparator.comparingDouble(ItemSimilarity.SimilarEntry::getScore).reversed())
-                    .map(ItemSimilarity.SimilarEntry::getProductId)
-                    .filter(id -> !exclude.contains(id))
-                    .limit(limit)
-                    .collect(Collectors.toList());
-
-            return fetchProductsOrdered(similarIds);
+            return byType;
 
         } catch (Exception e) {
-            log.warn("Collaborative filtering lookup failed for product {}: {}", productId, e.getMessage());
-            return List.of();
+            log.warn("Similarity lookup failed for product {}: {}", productId, e.getMessage());
+            return Map.of();
         }
     }
 
@@ -188,45 +327,35 @@ public class RecommendationService {
     // LAYER 3: PERSONALIZED ("For You")
     // =========================================================================
 
+    /**
+     * The shopper's materialized feed (PersonalFeedService), padded with live
+     * trending products when it is shorter than limit, in one product fetch.
+     */
     public List<Product> getPersonalizedRecommendations(
             String userId, String sessionId, String currentCategorySlug, int limit) {
         try {
-            List<String> recentlyViewed = trackingService.getRecentlyViewed(
-                    userId, sessionId, SEED_PRODUCT_LIMIT);
-
-            if (recentlyViewed.isEmpty()) {
-                return getPopularInCategory(currentCategorySlug, Set.of(), limit);
-            }
-
-            Map<String, Double> scoreAccumulator = new HashMap<>();
-            for (String seedId : recentlyViewed) {
-                accumulateSimilarityScores(seedId, SimilarityType.CO_PURCHASE, 2.0, scoreAccumulator);
-                accumulateSimilarityScores(seedId, SimilarityType.CO_VIEW,     1.0, scoreAccumulator);
+            PersonalFeedService.Feed feed = feedService.feedFor(userId, sessionId);
+            List<String> ids = new ArrayList<>(feed.productIds().subList(0, Math.min(limit, feed.productIds().size())));
+
+            Set<String> exclude = new HashSet<>(feed.excluded());
+            exclude.addAll(ids);
+            if (ids.size() < limit) {
+                List<String> trending = currentCategorySlug != null
+                        ? liveTrending.topIn(termDictionary.categoryAndDescendantIds(currentCategorySlug), limit + exclude.size())
+                        : liveTrending.top(limit + exclude.size());
+                trending.stream()
+                        .filter(id -> !exclude.contains(id))
+                        .limit(limit - ids.size())
+                        .forEach(ids::add);
             }
 
-            Set<String> seenIds = new HashSet<>(recentlyViewed);
-            if (userId != null) {
-                seenIds.addAll(getPurchasedProductIds(userId));
-            }
-
-            List<String> rankedIds = scoreAccumulator.entrySet().stream()
-                    .filter(e -> !seenIds.contains(e.getKey()))
-                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-                    .map(Map.Entry::getKey)
-                    .limit(limit)
-                    .collect(Collectors.toList());
-
-            List<Product> personalized = fetchProductsOrdered(rankedIds);
+            List<Product> personalized = fetchProductsOrdered(ids);
 
+            // Live counters still warming up, or products gone inactive
             if (personalized.size() < limit) {
-                Set<String> exclude = new HashSet<>(seenIds);
                 personalized.forEach(p -> exclude.add(p.getId()));
-
-                List<Product> fallback = getPopularInCategory(
-                        currentCategorySlug, exclude, limit - personalized.size());
-
                 List<Product> merged = new ArrayList<>(personalized);
-                merged.addAll(fallback);
+                merged.addAll(getPopularInCategory(currentCategorySlug, exclude, limit - personalized.size()));
                 return merged;
             }
 
@@ -238,25 +367,28 @@ public class RecommendationService {
         }
     }
 
+    // =========================================================================
+    // TRENDING (live counters, popularity fallback)
+    // =========================================================================
+
+    public List<Product> getTrending(int limit) {
+        List<Product> live = fetchProductsOrdered(liveTrending.top(limit));
+        return !live.isEmpty() ? live : getGloballyPopular(Set.of(), limit);
+    }
+
+    public List<Product> getTrendingInCategory(String categorySlug, int limit) {
+        List<Product> live = fetchProductsOrdered(
+                liveTrending.topIn(termDictionary.categoryAndDescendantIds(categorySlug), limit));
+        return !live.isEmpty() ? live : getPopularInCategory(categorySlug, Set.of(), limit);
+    }
+
     // =========================================================================
     // LAYER 4: POPULARITY FALLBACK
     // =========================================================================
 
     public List<Product> getPopularInCategory(String categorySlug, Set<String> exclude, int limit) {
         try {
-            if (categorySlug == null) {
-                return getGloballyPopular(exclude, limit);
-            }
-
-            List<String> popularIds = popularityRepository
-                    .findByCategoryIdOrderByPopularityScoreDesc(categorySlug,
-                            PageRequest.of(0, limit + exclude.size()))
-                    .stream()
-                    .map(p -> p.getProductId())
-                    .filter(id -> !exclude.contains(id))
-                    .limit(limit)
-                    .collect(Collectors.toList());
-
+            List<String> popularIds = popularIdsInCategory(categorySlug, exclude, limit);
             if (popularIds.isEmpty()) {
                 return getGloballyPopular(exclude, limit);
             }
@@ -271,63 +403,100 @@ public class RecommendationService {
 
     public List<Product> getGloballyPopular(Set<String> exclude, int limit) {
         try {
-            List<String> ids = popularityRepository
-                    .findAllByOrderByPopularityScoreDesc(PageRequest.of(0, limit + exclude.size()))
-                    .stream()
-                    .map(p -> p.getProductId())
-                    .filter(id -> !exclude.contains(id))
-                    .limit(limit)
-                    .collect(Collectors.toList());
-
-            return fetchProductsOrdered(ids);
+            return fetchProductsOrdered(globallyPopularIds(exclude, limit));
 
         } catch (Exception e) {
             log.warn("Global popularity fallback failed: {}", e.getMessage());
             Query q = new Query(Criteria.where("isActive").is(true));
+            q.fields().include(CARD_FIELDS);
             q.limit(limit);
             return mongoTemplate.find(q, Product.class);
         }
     }
 
+    /** Category popularity, else global popularity — IDs only, for bundle assembly. */
+    private List<String> popularIds(String categorySlug, Set<String> exclude, int limit) {
+        try {
+            List<String> ids = popularIdsInCategory(categorySlug, exclude, limit);
+            return !ids.isEmpty() ? ids : globallyPopularIds(exclude, limit);
+        } catch (Exception e) {
+            log.warn("Popularity lookup failed: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    /** Empty when the slug is unknown or its categories have no popularity yet. */
+    private List<String> popularIdsInCategory(String categorySlug, Set<String> exclude, int limit) {
+        if (categorySlug == null) return List.of();
+
+        // ProductPopularity.categoryId is the product's own (leaf) category —
+        // resolve the slug to it and every category below it
+        Set<String> categoryIds = termDictionary.categoryAndDescendantIds(categorySlug);
+        if (categoryIds.isEmpty()) return List.of();
+
+        return popularityRepository
+                .findByCategoryIdInOrderByPopularityScoreDesc(categoryIds,
+                        PageRequest.of(0, limit + exclude.size()))
+                .stream()
+                .map(p -> p.getProductId())
+                .filter(id -> !exclude.contains(id))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private List<String> globallyPopularIds(Set<String> exclude, int limit) {
+        return popularityRepository
+                .findAllByOrderByPopularityScoreDesc(PageRequest.of(0, limit + exclude.size()))
+                .stream()
+                .map(p -> p.getProductId())
+                .filter(id -> !exclude.contains(id))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     // =========================================================================
     // PRIVATE HELPERS
     // =========================================================================
 
-    private void accumulateSimilarityScores(
-            String seedProductId, SimilarityType type,
-            double weight, Map<String, Double> accumulator) {
-
-        similarityRepository.findBySourceProductIdAndType(seedProductId, type)
-                .ifPresent(sim -> {
-                    if (sim.getSimilar() == null) return;
-                    sim.getSimilar().forEach(entry ->
-                            accumulator.merge(entry.getProductId(),
-                                    entry.getScore() * weight,
-                                    Double::sum)
-                    );
-                });
+    /** Only what content scoring reads; null when the product does not exist. */
+    private Product loadSource(String productId) {
+        Query q = new Query(Criteria.where("id").is(productId));
+        q.fields().include("categorySlug", "brandName", "tags");
+        return mongoTemplate.findOne(q, Product.class);
+    }
+
+    /**
+     * Runs a lookup on the shared read pool. A saturated pool rejects; the
+     * lookup then runs on the request thread, as it always used to.
+     */
+    private <T> CompletableFuture<T> startLookup(Supplier<T> lookup) {
+        try {
+            return CompletableFuture.supplyAsync(lookup, lookupExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(lookup.get());
+        }
     }
 
     private List<Product> fetchProductsOrdered(List<String> orderedIds) {
-        if (orderedIds.isEmpty()) return List.of();
+        return ordered(orderedIds, fetchCards(orderedIds));
+    }
+
+    /** Active products by ID, card fields only, in one query. */
+    private Map<String, Product> fetchCards(Collection<String> ids) {
+        if (ids.isEmpty()) return Map.of();
 
-        Query q = new Query(Criteria.where("id").in(orderedIds)
+        Query q = new Query(Criteria.where("id").in(ids)
                 .and("isActive").is(true));
-        Map<String, Product> productMap = mongoTemplate.find(q, Product.class).stream()
+        q.fields().include(CARD_FIELDS);
+        return mongoTemplate.find(q, Product.class).stream()
                 .collect(Collectors.toMap(Product::getId, p -> p));
-
-        return orderedIds.stream()
-                .map(productMap::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
     }
 
-    private Set<String> getPurchasedProductIds(String userId) {
-        return behaviorRepository.findByUserIdAndEventType(
-                        userId, BehaviorEventType.PURCHASE, PageRequest.of(0, 200))
-                .stream()
-                .map(l -> l.getProductId())
+    // Products are never cached (only candidate IDs are), so an unmodifiable list will do
+    private static List<Product> ordered(List<String> orderedIds, Map<String, Product> cards) {
+        return orderedIds.stream()
+                .map(cards::get)
                 .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+                .toList();
     }
 }
\ No newline at end of file
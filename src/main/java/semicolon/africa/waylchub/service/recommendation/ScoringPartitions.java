@@ -0,0 +1,65 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarEntry;
+
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * What the offline scorers (CoOccurrenceMatrix, MinHashLsh, ImplicitAls)
+ * share: the order of a neighbour list, and splitting rows [0, size) into
+ * contiguous fork/join partitions — about four per pool thread, so a slow
+ * partition does not leave the other threads idle, and never below a floor
+ * that keeps the per-partition scratch arrays worth allocating.
+ */
+final class ScoringPartitions {
+
+    // Below this many products a neighbour-scoring partition is not split further
+    static final int MIN_PARTITION = 256;
+
+    // Highest score first; ties go to the lower product ID so runs are reproducible
+    static final Comparator<SimilarEntry> BEST_FIRST =
+            Comparator.comparingDouble(SimilarEntry::getScore).reversed()
+                    .thenComparing(SimilarEntry::getProductId);
+
+    @FunctionalInterface
+    interface RangeTask {
+        void run(int from, int to);
+    }
+
+    private ScoringPartitions() {}
+
+    /** Runs task over [0, size) on pool, MIN_PARTITION rows per partition at least. */
+    static void invoke(ForkJoinPool pool, int size, RangeTask task) {
+        invoke(pool, size, MIN_PARTITION, task);
+    }
+
+    /** Runs task over [0, size) on pool and returns once every partition is done. */
+    static void invoke(ForkJoinPool pool, int size, int minPartition, RangeTask task) {
+        int threshold = Math.max(minPartition, size / (pool.getParallelism() * 4) + 1);
+        pool.invoke(new Partition(0, size, threshold, task));
+    }
+
+    private static final class Partition extends RecursiveAction {
+        private final int from, to, threshold;
+        private final RangeTask task;
+
+        Partition(int from, int to, int threshold, RangeTask task) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                task.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Partition(from, mid, threshold, task), new Partition(mid, to, threshold, task));
+        }
+    }
+}
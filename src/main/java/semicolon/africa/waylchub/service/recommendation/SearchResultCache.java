@@ -0,0 +1,276 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import semicolon.africa.waylchub.dto.productDto.ProductFilterRequest;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Short-TTL per-pod cache of complete ranked ID lists for SmartSearchService.
+ *
+ * WHY:
+ *   search() ranked every candidate and then sliced one page out of the list, so
+ *   page 2 of "jeans" cost exactly what page 1 did, and the tenth shopper to
+ *   search "jeans" this minute paid the same as the first. The ranking is now
+ *   computed once per (query, filter) and every later page or repeat search only
+ *   fetches its products.
+ *
+ * KEY:
+ *   normalised query (lower-case, single spaces) + category slug + price bounds
+ *   (scale-stripped) + ProductSearchIndex.generation() + whether the index was
+ *   ready. The generation moves when a product's indexed content changes, on a
+ *   rebuild and on every popularity push, so a changed catalogue or ranking
+ *   simply stops matching old keys — no explicit eviction. Stale keys age out
+ *   under the TTL. Rankings computed by the Mongo fallback are never reused once
+ *   the index is ready, and partial rankings (a strategy missed its deadline)
+ *   are handed back but never stored.
+ *
+ * MISSES:
+ *   Ranked outside the cache's compute, so a slow ranking never holds a map
+ *   lock. Concurrent misses for one key on a pod share a single ranking
+ *   through an in-flight future.
+ *
+ * STORAGE:
+ *   Up to 300 IDs per entry. ObjectId-shaped IDs are packed into 12 bytes each
+ *   instead of ~64 bytes per String, so 10k entries fit in ~40 MB rather than
+ *   ~200 MB. Other ID shapes are kept as a String[].
+ *
+ * REPORTING:
+ *   search.result_cache.requests{result=hit|miss} for the overall rate, plus a
+ *   bounded per-query tally logged every report interval: the busiest queries
+ *   and how many of their requests were served from cache. Per-query numbers are
+ *   deliberately not Micrometer tags — free-text queries would explode tag
+ *   cardinality.
+ */
+@Slf4j
+@Component
+public class SearchResultCache {
+
+    private static final int MAX_TRACKED_QUERIES = 2_000;
+    private static final int REPORT_TOP_N = 20;
+
+    private final ProductSearchIndex searchIndex;
+    private final Cache<Key, RankedIds> cache;
+    // Rankings in progress on this pod, by key
+    private final Map<Key, CompletableFuture<RankedIds>> ranking = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final boolean enabled;
+
+    private final Cache<String, QueryStats> queryStats = Caffeine.newBuilder()
+            .maximumSize(MAX_TRACKED_QUERIES)
+            .build();
+
+    public SearchResultCache(ProductSearchIndex searchIndex,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.search.result-cache.enabled:true}") boolean enabled,
+                             @Value("${app.search.result-cache.ttl:PT2M}") Duration ttl,
+                             @Value("${app.search.result-cache.max-entries:10000}") long maxEntries) {
+        this.searchIndex = searchIndex;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .build();
+        this.hits = Counter.builder("search.result_cache.requests").tag("result", "hit")
+                .description("Keyword searches answered from a cached ranking")
+                .register(meterRegistry);
+        this.misses = Counter.builder("search.result_cache.requests").tag("result", "miss")
+                .description("Keyword searches that had to rank their candidates")
+                .register(meterRegistry);
+        Gauge.builder("search.result_cache.entries", cache, Cache::estimatedSize)
+                .description("Ranked ID lists held in this pod's search result cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The full ranked ID list for this query and filter — from cache when the
+     * catalogue has not moved since it was ranked, otherwise from ranker.
+     */
+    public RankedIds rankedIds(String cleanQuery, ProductFilterRequest filter, Supplier<RankedIds> ranker) {
+        if (!enabled) return ranker.get();
+
+        String query = normalize(cleanQuery);
+        Key key = new Key(query,
+                filter != null ? filter.getCategorySlug() : null,
+                filter != null ? strip(filter.getMinPrice()) : null,
+                filter != null ? strip(filter.getMaxPrice()) : null,
+                searchIndex.generation(),
+                searchIndex.isReady());
+
+        RankedIds ranked = cache.getIfPresent(key);
+        boolean computed = false;
+        if (ranked == null) {
+            CompletableFuture<RankedIds> mine = new CompletableFuture<>();
+            CompletableFuture<RankedIds> inFlight = ranking.putIfAbsent(key, mine);
+            if (inFlight != null) {
+                // Another request is ranking this key; share its result, partial or not
+                ranked = await(inFlight);
+            } else {
+                computed = true;
+                ranked = rank(key, ranker, mine);
+            }
+        }
+
+        QueryStats stats = queryStats.get(query, q -> new QueryStats());
+        if (computed) {
+            misses.increment();
+            stats.misses.increment();
+        } else {
+            hits.increment();
+            stats.hits.increment();
+        }
+        return ranked;
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.result-cache.report-interval:PT15M}",
+            initialDelayString = "${app.search.result-cache.report-interval:PT15M}")
+    public void reportTopQueries() {
+        List<QueryReport> top = topQueries(REPORT_TOP_N);
+        queryStats.invalidateAll();
+        if (top.isEmpty()) return;
+
+        StringBuilder sb = new StringBuilder();
+        for (QueryReport r : top) {
+            sb.append(String.format("%n  %-30s %6d req  %5.1f%% cached", r.query(), r.requests(), r.hitRate() * 100));
+        }
+        log.info("[SearchCache] Busiest queries since last report:{}", sb);
+    }
+
+    /** Busiest queries since the last report, with the share of requests served from cache. */
+    public List<QueryReport> topQueries(int n) {
+        List<QueryReport> reports = new ArrayList<>();
+        queryStats.asMap().forEach((query, stats) -> {
+            long h = stats.hits.sum();
+            long m = stats.misses.sum();
+            if (h + m > 0) reports.add(new QueryReport(query, h + m, (double) h / (h + m)));
+        });
+        reports.sort(Comparator.comparingLong(QueryReport::requests).reversed()
+                .thenComparing(QueryReport::query));
+        return reports.size() <= n ? reports : reports.subList(0, n);
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    /**
+     * Ranks outside Caffeine's compute — cache.get(key, fn) would hold the map
+     * bin lock for the whole ranking and block writes to unrelated keys — then
+     * stores complete rankings. Requests that missed meanwhile wait on mine.
+     */
+    private RankedIds rank(Key key, Supplier<RankedIds> ranker, CompletableFuture<RankedIds> mine) {
+        try {
+            RankedIds ranked = ranker.get();
+            // The next search ranks a partial result again
+            if (!ranked.isPartial()) cache.put(key, ranked);
+            mine.complete(ranked);
+            return ranked;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            ranking.remove(key, mine);
+        }
+    }
+
+    private static RankedIds await(CompletableFuture<RankedIds> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    static String normalize(String query) {
+        return String.join(" ", query.trim().toLowerCase(Locale.ROOT).split("\\s+"));
+    }
+
+    private static BigDecimal strip(BigDecimal value) {
+        // 100, 100.0 and 100.00 are one key
+        return value != null ? value.stripTrailingZeros() : null;
+    }
+
+    public record QueryReport(String query, long requests, double hitRate) {}
+
+    private static final class QueryStats {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+    }
+
+    record Key(String query, String categorySlug, BigDecimal minPrice, BigDecimal maxPrice,
+               long generation, boolean fromIndex) {}
+
+    /** An immutable ranked ID list, packed when every ID is an ObjectId. Only the sliced page is decoded. */
+    public static final class RankedIds {
+        private final byte[] packed;      // 12 bytes per ID, or null
+        private final String[] plain;     // used when some ID is not an ObjectId
+        private final int size;
+        private final boolean partial;
+
+        private RankedIds(byte[] packed, String[] plain, int size, boolean partial) {
+            this.packed = packed;
+            this.plain = plain;
+            this.size = size;
+            this.partial = partial;
+        }
+
+        static RankedIds of(List<String> ids) {
+            return of(ids, false);
+        }
+
+        /** A ranking that is missing at least one search strategy's candidates. */
+        static RankedIds partial(List<String> ids) {
+            return of(ids, true);
+        }
+
+        private static RankedIds of(List<String> ids, boolean partial) {
+            for (String id : ids) {
+                if (!ObjectId.isValid(id)) {
+                    return new RankedIds(null, ids.toArray(new String[0]), ids.size(), partial);
+                }
+            }
+            byte[] packed = new byte[ids.size() * 12];
+            for (int i = 0; i < ids.size(); i++) {
+                System.arraycopy(new ObjectId(ids.get(i)).toByteArray(), 0, packed, i * 12, 12);
+            }
+            return new RankedIds(packed, null, ids.size(), partial);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isPartial() {
+            return partial;
+        }
+
+        /** IDs at ranks [from, to), best first. */
+        public List<String> slice(int from, int to) {
+            if (plain != null) return List.of(Arrays.copyOfRange(plain, from, to));
+            String[] ids = new String[to - from];
+            for (int i = from; i < to; i++) {
+                ids[i - from] = new ObjectId(Arrays.copyOfRange(packed, i * 12, i * 12 + 12)).toHexString();
+            }
+            return List.of(ids);
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import semicolon.africa.waylchub.dto.recommendation.SearchSuggestion;
+import semicolon.africa.waylchub.dto.recommendation.SearchSuggestion.Type;
+import semicolon.africa.waylchub.model.product.Category;
+import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.model.recommendation.ProductPopularity;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Per-pod prefix index behind GET /api/v1/search/suggest.
+ *
+ * WHY:
+ *   Without a suggest API the frontend called /search on every keystroke — a full
+ *   SmartSearchService pipeline plus a product page fetch for a dropdown of eight
+ *   strings. Typeahead needs an answer in microseconds, not a query.
+ *
+ * SOURCES (one candidate per distinct normalised text, highest score wins):
+ *   PRODUCT  — active product names, scored by their popularityScore
+ *   BRAND    — brand names, scored by the summed popularity of their products
+ *   CATEGORY — categories with active products, summed popularity of the lineage
+ *   QUERY    — the most frequent SEARCH queries of the last 30 days that still
+ *              return something, scaled so the busiest query scores like the
+ *              most popular product
+ *
+ * STRUCTURE:
+ *   Two parallel arrays, keys sorted: every candidate sits under its full text
+ *   and under each later word start ("levi slim jeans", "slim jeans", "jeans"),
+ *   so "jea" finds it too. The keys under a prefix are one contiguous range,
+ *   found with two binary searches.
+ *
+ * RANKING:
+ *   A max-score segment tree over the entries answers "best entry in [from,
+ *   to)" in O(log n). The top K come out of a small heap of sub-ranges: take
+ *   the best range, emit its best entry, split the range around it — K
+ *   answers, in score order, in O(K log n) however many keys the prefix
+ *   covers. A bounded scan would return the best of the alphabetically
+ *   first keys instead ("sam" under a large Samsung catalogue).
+ *
+ * FRESHNESS:
+ *   Built in the background at startup, then rebuilt whenever
+ *   ProductSearchIndex.generation() has moved (product writes on any pod,
+ *   popularity refresh) or the snapshot is older than app.search.suggest.max-age
+ *   (new queries). The check runs on the shared scheduler but hands the build to
+ *   offlineJobExecutor, never to the scheduler thread itself: a full pool
+ *   rejects it and the next check retries. While one build is in flight
+ *   further generation bumps are skipped, and the next check picks up
+ *   whatever moved meanwhile. The build
+ *   swaps in a whole new snapshot; readers never block.
+ */
+@Slf4j
+@Component
+public class SearchSuggestIndex {
+
+    public static final int MAX_LIMIT = 10;
+
+    private static final int MAX_WORD_STARTS = 4;
+
+    private static final int QUERY_WINDOW_DAYS = 30;
+    private static final int MAX_QUERIES = 1_000;
+    // Below this a query is as likely a typo as a trend
+    private static final int MIN_QUERY_COUNT = 3;
+    private static final int BUILD_BATCH_SIZE = 1_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductSearchIndex searchIndex;
+    private final MeterRegistry meterRegistry;
+    private final Executor buildExecutor;
+    private final Duration maxAge;
+
+    private final AtomicBoolean building = new AtomicBoolean();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile long builtGeneration = -1;
+    private volatile Instant builtAt = Instant.EPOCH;
+
+    public SearchSuggestIndex(MongoTemplate mongoTemplate,
+                              ProductSearchIndex searchIndex,
+                              MeterRegistry meterRegistry,
+                              @Qualifier("offlineJobExecutor") Executor buildExecutor,
+                              @Value("${app.search.suggest.max-age:PT15M}") Duration maxAge) {
+        this.mongoTemplate = mongoTemplate;
+        this.searchIndex = searchIndex;
+        this.meterRegistry = meterRegistry;
+        this.buildExecutor = buildExecutor;
+        this.maxAge = maxAge;
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("search.suggest.keys", this, idx -> idx.snapshot.keys.length)
+                .description("Prefix keys held in this pod's suggest index")
+                .register(meterRegistry);
+    }
+
+    // =========================================================================
+    // READ
+    // =========================================================================
+
+    /** Up to limit suggestions for what the user has typed so far, best first. */
+    public List<SearchSuggestion> suggest(String typed, int limit) {
+        String prefix = normalize(typed);
+        if (prefix.isEmpty()) return List.of();
+
+        int k = Math.max(1, Math.min(limit, MAX_LIMIT));
+        return topK(snapshot, prefix, k);
+    }
+
+    // =========================================================================
+    // BUILD
+    // =========================================================================
+
+    @Async("asyncExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.suggest.check-interval:PT30S}",
+            initialDelayString = "${app.search.suggest.check-interval:PT30S}")
+    public void rebuildIfStale() {
+        boolean catalogueMoved = searchIndex.generation() != builtGeneration;
+        boolean tooOld = builtAt.plus(maxAge).isBefore(Instant.now());
+        if (!catalogueMoved && !tooOld) return;
+
+        // Claimed here, not in the task, so a busy pool never holds two queued builds
+        if (!building.compareAndSet(false, true)) return;
+        try {
+            buildExecutor.execute(this::buildClaimed);
+        } catch (RejectedExecutionException e) {
+            building.set(false);
+            log.warn("[Suggest] Rebuild rejected by offlineJobExecutor, retrying on the next check");
+        }
+    }
+
+    public void rebuild() {
+        if (!building.compareAndSet(false, true)) return;
+        buildClaimed();
+    }
+
+    private void buildClaimed() {
+        long start = System.currentTimeMillis();
+        try {
+            // Read before loading: a write during the build moves it again and triggers another pass
+            long generation = searchIndex.generation();
+            Snapshot fresh = Snapshot.build(loadCandidates());
+
+            snapshot = fresh;
+            builtGeneration = generation;
+            builtAt = Instant.now();
+            log.info("[Suggest] Built {} keys in {}ms", fresh.keys.length, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("[Suggest] Build failed, serving the previous snapshot: {}", e.getMessage(), e);
+        } finally {
+            building.set(false);
+        }
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    private List<Candidate> loadCandidates() {
+        Map<String, Double> popularity = loadPopularity();
+
+        Map<String, Category> categories = new HashMap<>();
+        Query categoryQuery = new Query();
+        categoryQuery.fields().include("id", "name", "slug");
+        mongoTemplate.find(categoryQuery, Category.class).forEach(c -> categories.put(c.getId(), c));
+
+        List<Candidate> candidates = new ArrayList<>();
+        Map<String, Double> brandScores = new HashMap<>();
+        Map<String, Double> categoryScores = new HashMap<>();
+        double maxProductScore = 0;
+
+        Query productQuery = new Query(Criteria.where("isActive").is(true));
+        productQuery.fields().include("id", "name", "slug", "brandName", "categoryLineageIds");
+        productQuery.cursorBatchSize(BUILD_BATCH_SIZE);
+        try (Stream<Product> products = mongoTemplate.stream(productQuery, Product.class)) {
+            for (Product p : (Iterable<Product>) products::iterator) {
+                double score = popularity.getOrDefault(p.getId(), 0.0);
+                maxProductScore = Math.max(maxProductScore, score);
+                candidates.add(new Candidate(p.getName(), Type.PRODUCT, p.getSlug(), score));
+                if (p.getBrandName() != null) brandScores.merge(p.getBrandName(), score, Double::sum);
+                if (p.getCategoryLineageIds() != null) {
+                    p.getCategoryLineageIds().forEach(id -> categoryScores.merge(id, score, Double::sum));
+                }
+            }
+        }
+
+        brandScores.forEach((name, score) -> candidates.add(new Candidate(name, Type.BRAND, null, score)));
+        categoryScores.forEach((id, score) -> {
+            Category category = categories.get(id);
+            if (category != null) {
+                candidates.add(new Candidate(category.getName(), Type.CATEGORY, category.getSlug(), score));
+            }
+        });
+
+        List<Document> queries = loadTopQueries();
+        if (!queries.isEmpty()) {
+            double maxCount = ((Number) queries.get(0).get("count")).doubleValue();
+            double scale = maxProductScore > 0 ? maxProductScore : 1.0;
+            for (Document row : queries) {
+                String query = row.getString("_id");
+                // Never suggest a search that lands on an empty page
+                if (searchIndex.isReady() && searchIndex.search(query, null, 1).isEmpty()) continue;
+                double count = ((Number) row.get("count")).doubleValue();
+                candidates.add(new Candidate(query, Type.QUERY, null, count / maxCount * scale));
+            }
+        }
+        return candidates;
+    }
+
+    private Map<String, Double> loadPopularity() {
+        Query query = new Query();
+        query.fields().include("popularityScore");
+        Map<String, Double> scores = new HashMap<>();
+        try (Stream<ProductPopularity> rows = mongoTemplate.stream(query, ProductPopularity.class)) {
+            rows.forEach(p -> scores.put(p.getProductId(), p.getPopularityScore()));
+        }
+        return scores;
+    }
+
+    private List<Document> loadTopQueries() {
+        TypedAggregation<UserBehaviorLog> aggregation = Aggregation.newAggregation(UserBehaviorLog.class,
+                Aggregation.match(Criteria.where("eventType").is(BehaviorEventType.SEARCH)
+                        .and("timestamp").gte(LocalDateTime.now().minusDays(QUERY_WINDOW_DAYS))
+                        .and("searchQuery").ne(null)),
+                Aggregation.group("searchQuery").count().as("count"),
+                Aggregation.match(Criteria.where("count").gte(MIN_QUERY_COUNT)),
+                Aggregation.sort(Sort.Direction.DESC, "count"),
+                Aggregation.limit(MAX_QUERIES));
+        return mongoTemplate.aggregate(aggregation, Document.class).getMappedResults();
+    }
+
+    /** Best k entries whose key starts with prefix, best first; ties keep key order. */
+    static List<SearchSuggestion> topK(Snapshot s, String prefix, int k) {
+        int from = lowerBound(s.keys, prefix);
+        // Normalised keys hold only letters, digits and spaces, so nothing sorts after this bound
+        int to = lowerBound(s.keys, prefix + Character.MAX_VALUE);
+        if (from >= to) return List.of();
+
+        PriorityQueue<int[]> ranges = new PriorityQueue<>(
+                (a, b) -> s.better(a[2], b[2]) == a[2] ? -1 : 1);
+        ranges.add(new int[]{from, to, s.best(from, to)});
+        Entry[] top = new Entry[k];
+        int size = 0;
+
+        while (size < k && !ranges.isEmpty()) {
+            int[] range = ranges.poll();
+            int best = range[2];
+            Entry e = s.entries[best];
+            if (!contains(top, size, e)) top[size++] = e;   // same entry reached through another word start
+            if (range[0] < best) ranges.add(new int[]{range[0], best, s.best(range[0], best)});
+            if (best + 1 < range[1]) ranges.add(new int[]{best + 1, range[1], s.best(best + 1, range[1])});
+        }
+
+        SearchSuggestion[] out = new SearchSuggestion[size];
+        for (int i = 0; i < size; i++) out[i] = top[i].suggestion();
+        return List.of(out);
+    }
+
+    private static int lowerBound(String[] keys, String key) {
+        int i = Arrays.binarySearch(keys, key);
+        return i < 0 ? -i - 1 : i;
+    }
+
+    private static boolean contains(Entry[] top, int size, Entry e) {
+        for (int i = 0; i < size; i++) {
+            if (top[i] == e) return true;
+        }
+        return false;
+    }
+
+    /** Lower-case, runs of anything but letters and digits collapsed to one space, trimmed. */
+    static String normalize(String text) {
+        if (text == null) return "";
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && sb.length() > 0) sb.append(' ');
+                sb.append(Character.toLowerCase(c));
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    // =========================================================================
+    // INDEX STRUCTURES
+    // =========================================================================
+
+    record Candidate(String text, Type type, String slug, double score) {}
+
+    record Entry(SearchSuggestion suggestion, double score) {}
+
+    /** Immutable once built. keys[i] is a prefix key of entries[i]; keys are sorted. */
+    static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new String[0], new Entry[0]);
+
+        final String[] keys;
+        final Entry[] entries;
+        // Iterative segment tree: leaves at [n, 2n), each node the index of its subtree's best entry
+        private final int[] tree;
+
+        private Snapshot(String[] keys, Entry[] entries) {
+            this.keys = keys;
+            this.entries = entries;
+            int n = entries.length;
+            this.tree = new int[2 * n];
+            for (int i = 0; i < n; i++) tree[n + i] = i;
+            for (int node = n - 1; node > 0; node--) tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+        }
+
+        /** Index of the best entry in [from, to); from < to. */
+        int best(int from, int to) {
+            int n = entries.length;
+            int best = -1;
+            for (int lo = from + n, hi = to + n; lo < hi; lo >>= 1, hi >>= 1) {
+                if ((lo & 1) == 1) best = better(best, tree[lo++]);
+                if ((hi & 1) == 1) best = better(best, tree[--hi]);
+            }
+            return best;
+        }
+
+        /** Higher score wins; on a tie the earlier key, as a scan in key order would keep it. */
+        int better(int a, int b) {
+            if (a < 0) return b;
+            if (b < 0) return a;
+            double sa = entries[a].score(), sb = entries[b].score();
+            if (sa != sb) return sa > sb ? a : b;
+            return Math.min(a, b);
+        }
+
+        static Snapshot build(Collection<Candidate> candidates) {
+            // One entry per normalised text — "nike" the brand and "nike" the query are one row
+            Map<String, Entry> byText = new HashMap<>();
+            for (Candidate c : candidates) {
+                String text = normalize(c.text());
+                if (text.isEmpty()) continue;
+                Entry entry = new Entry(new SearchSuggestion(c.text().trim(), c.type(), c.slug()), c.score());
+                byText.merge(text, entry, (a, b) -> b.score() > a.score() ? b : a);
+            }
+
+            List<Map.Entry<String, Entry>> pairs = new ArrayList<>();
+            byText.forEach((text, entry) -> {
+                pairs.add(Map.entry(text, entry));
+                int wordStarts = 0;
+                for (int i = text.indexOf(' '); i >= 0 && ++wordStarts < MAX_WORD_STARTS; i = text.indexOf(' ', i + 1)) {
+                    pairs.add(Map.entry(text.substring(i + 1), entry));
+                }
+            });
+            pairs.sort(Map.Entry.<String, Entry>comparingByKey()
+                    .thenComparing(p -> p.getValue().score(), Comparator.reverseOrder()));
+
+            String[] keys = new String[pairs.size()];
+            Entry[] entries = new Entry[pairs.size()];
+            for (int i = 0; i < pairs.size(); i++) {
+                keys[i] = pairs.get(i).getKey();
+                entries[i] = pairs.get(i).getValue();
+            }
+            return new Snapshot(keys, entries);
+        }
+    }
+}
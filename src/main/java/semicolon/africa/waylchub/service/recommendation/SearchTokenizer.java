@@ -0,0 +1,64 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Shared text normalisation for ProductSearchIndex — the same function runs on
+ * indexed fields and on the query, so whatever one side folds the other folds too.
+ *
+ *   "Men's Slim-Fit JEANS"  →  [men, slim, fit, jean]
+ *
+ * Deliberately light: lower-case, split on anything that is not a letter or
+ * digit, drop a handful of English stop words, and fold plurals the way the
+ * MongoDB text index did for our catalogue ("jeans"/"jean", "dresses"/"dress",
+ * "accessories"/"accessory"). No full stemmer — product names are short and a
+ * stemmer that turns "boots" into "boot" but "running" into "run" surprises
+ * merchandisers more than it helps.
+ */
+public final class SearchTokenizer {
+
+    private static final Pattern SPLIT = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "the", "of", "for", "with", "in", "on", "to", "by", "or", "s");
+
+    private SearchTokenizer() {}
+
+    /** Normalised tokens in order of appearance, duplicates kept. */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) return List.of();
+
+        List<String> tokens = new ArrayList<>();
+        for (String raw : SPLIT.split(text.toLowerCase(Locale.ROOT))) {
+            if (raw.isEmpty() || STOP_WORDS.contains(raw)) continue;
+            tokens.add(normalize(raw));
+        }
+        return tokens;
+    }
+
+    /** Distinct normalised tokens, first-seen order. */
+    public static Set<String> distinctTokens(String text) {
+        return new LinkedHashSet<>(tokenize(text));
+    }
+
+    static String normalize(String token) {
+        int n = token.length();
+        if (n <= 3 || Character.isDigit(token.charAt(n - 1))) return token;
+
+        if (token.endsWith("ies") && n > 4) {
+            return token.substring(0, n - 3) + "y";
+        }
+        if (token.endsWith("es") && n > 4) {
+            String stem = token.substring(0, n - 2);
+            if (stem.endsWith("s") || stem.endsWith("x") || stem.endsWith("z")
+                    || stem.endsWith("ch") || stem.endsWith("sh")) {
+                return stem;
+            }
+        }
+        if (token.endsWith("s") && !token.endsWith("ss") && !token.endsWith("us")) {
+            return token.substring(0, n - 1);
+        }
+        return token;
+    }
+}
@@ -0,0 +1,226 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import java.util.*;
+
+/**
+ * Weighted event counts per product over the last N minutes, with the top K
+ * products kept live globally and per category.
+ *
+ * LAYOUT:
+ *   Product and category IDs are interned to dense ints. Each product owns a
+ *   ring of N minute buckets in one flat int[] (slot × N + minute % N) plus a
+ *   running total, so an event is two array increments and a product costs
+ *   4 × (N + 2) bytes whatever the traffic.
+ *
+ * SLIDING:
+ *   advanceTo(minute) subtracts the buckets that fall out of the window from
+ *   every total and zeroes them — O(products) once per minute, nothing per
+ *   event. Reads advance first, so a quiet product cools down on time.
+ *
+ * TOP K:
+ *   Between advances totals only grow, so each add re-positions one product
+ *   in a sorted array of K slots (O(K)) and the lists stay exact. Every
+ *   advance rebuilds them from the totals in one pass.
+ *
+ * Thread-safe: every method synchronizes on the instance.
+ */
+final class SlidingWindowCounters {
+
+    private final int windowMinutes;
+    private final int topK;
+
+    private final Map<String, Integer> productIndex = new HashMap<>();
+    private String[] productIds = new String[1024];
+    private int[] productCategory = new int[1024];
+    private int[] totals = new int[1024];
+    private int[] buckets;
+    private int products;
+
+    private final Map<String, Integer> categoryIndex = new HashMap<>();
+    private final List<TopK> categoryTop = new ArrayList<>();
+    private final TopK globalTop;
+
+    private long currentMinute = Long.MIN_VALUE;
+
+    SlidingWindowCounters(int windowMinutes, int topK) {
+        if (windowMinutes < 1 || topK < 1) throw new IllegalArgumentException("window and K must be positive");
+        this.windowMinutes = windowMinutes;
+        this.topK = topK;
+        this.buckets = new int[1024 * windowMinutes];
+        this.globalTop = new TopK(topK);
+    }
+
+    /** Adds weight to productId at minute; minutes already outside the window are ignored. */
+    synchronized void add(String productId, String categoryId, int weight, long minute) {
+        if (productId == null || weight <= 0) return;
+        if (currentMinute == Long.MIN_VALUE) currentMinute = minute;
+        if (minute > currentMinute) advanceTo(minute);
+        if (minute <= currentMinute - windowMinutes) return;
+
+        int slot = slotOf(productId, categoryId);
+        buckets[slot * windowMinutes + bucket(minute)] += weight;
+        totals[slot] += weight;
+
+        globalTop.offer(slot);
+        if (productCategory[slot] >= 0) categoryTop.get(productCategory[slot]).offer(slot);
+    }
+
+    /** Slides the window so minute is its newest bucket. */
+    synchronized void advanceTo(long minute) {
+        if (currentMinute == Long.MIN_VALUE) {
+            currentMinute = minute;
+            return;
+        }
+        if (minute <= currentMinute) return;
+
+        if (minute - currentMinute >= windowMinutes) {
+            Arrays.fill(buckets, 0, products * windowMinutes, 0);
+            Arrays.fill(totals, 0, products, 0);
+        } else {
+            for (long m = currentMinute + 1; m <= minute; m++) {
+                int column = bucket(m);
+                for (int slot = 0; slot < products; slot++) {
+                    int cell = slot * windowMinutes + column;
+                    totals[slot] -= buckets[cell];
+                    buckets[cell] = 0;
+                }
+            }
+        }
+        currentMinute = minute;
+        rebuildTop();
+    }
+
+    /** Up to k product IDs, hottest first. */
+    synchronized List<String> top(int k) {
+        return ids(globalTop.slots, globalTop.size, k);
+    }
+
+    /** Up to k product IDs across the given categories, hottest first. */
+    synchronized List<String> topIn(Collection<String> categoryIds, int k) {
+        List<Integer> candidates = new ArrayList<>();
+        for (String categoryId : categoryIds) {
+            Integer category = categoryIndex.get(categoryId);
+            if (category == null) continue;
+            TopK top = categoryTop.get(category);
+            for (int i = 0; i < top.size; i++) candidates.add(top.slots[i]);
+        }
+        candidates.sort(this::hotterFirst);
+        int[] slots = candidates.stream().mapToInt(Integer::intValue).toArray();
+        return ids(slots, slots.length, k);
+    }
+
+    /** Window total of every product that has one. */
+    synchronized Map<String, Integer> totals() {
+        Map<String, Integer> result = new HashMap<>();
+        for (int slot = 0; slot < products; slot++) {
+            if (totals[slot] > 0) result.put(productIds[slot], totals[slot]);
+        }
+        return result;
+    }
+
+    synchronized int productCount() {
+        return products;
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    private int bucket(long minute) {
+        return (int) Math.floorMod(minute, (long) windowMinutes);
+    }
+
+    private int slotOf(String productId, String categoryId) {
+        Integer existing = productIndex.get(productId);
+        if (existing != null) {
+            // First known category wins; a product that moves category is re-placed at the next advance
+            if (productCategory[existing] < 0 && categoryId != null) productCategory[existing] = categoryOf(categoryId);
+            return existing;
+        }
+
+        int slot = products++;
+        if (slot == productIds.length) {
+            int capacity = slot * 2;
+            productIds = Arrays.copyOf(productIds, capacity);
+            productCategory = Arrays.copyOf(productCategory, capacity);
+            totals = Arrays.copyOf(totals, capacity);
+            buckets = Arrays.copyOf(buckets, capacity * windowMinutes);
+        }
+        productIds[slot] = productId;
+        productCategory[slot] = categoryId != null ? categoryOf(categoryId) : -1;
+        productIndex.put(productId, slot);
+        return slot;
+    }
+
+    private int categoryOf(String categoryId) {
+        return categoryIndex.computeIfAbsent(categoryId, id -> {
+            categoryTop.add(new TopK(topK));
+            return categoryTop.size() - 1;
+        });
+    }
+
+    private void rebuildTop() {
+        globalTop.clear();
+        categoryTop.forEach(TopK::clear);
+        for (int slot = 0; slot < products; slot++) {
+            if (totals[slot] == 0) continue;
+            globalTop.offer(slot);
+            if (productCategory[slot] >= 0) categoryTop.get(productCategory[slot]).offer(slot);
+        }
+    }
+
+    // Higher total first; ties go to the product seen first so lists do not flicker
+    private int hotterFirst(int a, int b) {
+        int byTotal = Integer.compare(totals[b], totals[a]);
+        return byTotal != 0 ? byTotal : Integer.compare(a, b);
+    }
+
+    private List<String> ids(int[] slots, int size, int k) {
+        int n = Math.min(size, k);
+        List<String> ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            if (totals[slots[i]] > 0) ids.add(productIds[slots[i]]);
+        }
+        return ids;
+    }
+
+    /** Slots sorted hottest first, at most K of them. */
+    private final class TopK {
+        private final int[] slots;
+        private int size;
+
+        TopK(int k) {
+            this.slots = new int[k];
+        }
+
+        void offer(int slot) {
+            int pos = indexOf(slot);
+            if (pos < 0) {
+                if (size < slots.length) {
+                    pos = size++;
+                } else if (hotterFirst(slot, slots[size - 1]) < 0) {
+                    pos = size - 1;
+                } else {
+                    return;
+                }
+                slots[pos] = slot;
+            }
+            // The slot's total only grew: bubble it towards the front
+            while (pos > 0 && hotterFirst(slots[pos], slots[pos - 1]) < 0) {
+                slots[pos] = slots[pos - 1];
+                slots[--pos] = slot;
+            }
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        private int indexOf(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) return i;
+            }
+            return -1;
+        }
+    }
+}
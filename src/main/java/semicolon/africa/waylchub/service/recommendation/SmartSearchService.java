@@ -1,20 +1,30 @@
 package semicolon.africa.waylchub.service.recommendation;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.*;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
+import semicolon.africa.waylchub.dto.productDto.CursorPage;
 import semicolon.africa.waylchub.dto.productDto.ProductFilterRequest;
-import semicolon.africa.waylchub.model.product.Category;
+import semicolon.africa.waylchub.dto.recommendation.SearchPage;
 import semicolon.africa.waylchub.model.product.Product;
-import semicolon.africa.waylchub.repository.productRepository.CategoryRepository;
 import semicolon.africa.waylchub.repository.recommendationRepository.ProductPopularityRepository;
+import semicolon.africa.waylchub.service.productService.CatalogTermDictionary;
+import semicolon.africa.waylchub.service.productService.KeysetPagination;
+import semicolon.africa.waylchub.service.recommendation.SearchResultCache.RankedIds;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -38,6 +48,28 @@ import java.util.stream.Collectors;
  *   Strategy 3: BRAND MATCHING
  *     Check if any query term matches a brand name.
  *
+ *   The three are submitted together to the bounded searchExecutor and merged
+ *   in the order above once all have answered or app.search.strategy-deadline
+ *   has passed, whichever comes first. A strategy still running at the deadline
+ *   is left out and the result is flagged partial (SearchPage.isPartial,
+ *   CursorPage.partial) — a slow brand query costs the shopper its brand hits,
+ *   not the whole page. Each strategy's query also carries the deadline as
+ *   maxTimeMS, so MongoDB stops working on it too.
+ *
+ *   Term → category / brand resolution for strategies 2 and 3 (and the hard
+ *   category filter) is a CatalogTermDictionary lookup, not a query.
+ *
+ * IN-MEMORY FIRST:
+ *   Once ProductSearchIndex has been built, candidates and their ranking come
+ *   from it and the only MongoDB query is the ordered page fetch. The three
+ *   strategies below stay as the fallback while the index is still building
+ *   (or when app.search.index.enabled=false).
+ *
+ * METRICS:
+ *   search.strategy.duration{strategy}   — every strategy run, including late ones
+ *   search.strategy.timeouts{strategy}   — runs left out of a result
+ *   search.partial_results               — searches answered without every strategy
+ *
  * FIELD NOTE:
  *   Product.categoryLineageIds is a List<String> of ancestor + self category IDs.
  *   Queries use Criteria.where("categoryLineageIds").in(catId) — NOT a regex on
@@ -45,65 +77,201 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class SmartSearchService {
 
     private final MongoTemplate mongoTemplate;
-    private final CategoryRepository categoryRepository;
+    private final CatalogTermDictionary termDictionary;
     private final ProductPopularityRepository popularityRepository;
+    private final ProductSearchIndex searchIndex;
+    private final SearchResultCache resultCache;
+    private final Executor searchExecutor;
+    private final Duration strategyDeadline;
+
+    private final Map<Strategy, Timer> strategyTimers = new EnumMap<>(Strategy.class);
+    private final Map<Strategy, Counter> strategyTimeouts = new EnumMap<>(Strategy.class);
+    private final Counter partialResults;
 
     private static final int MAX_RESULTS_PER_STRATEGY = 100;
 
+    // Same ceiling the three fallback strategies together can produce
+    private static final int MAX_CANDIDATES = 3 * MAX_RESULTS_PER_STRATEGY;
+
+    private enum Strategy { TEXT, CATEGORY, BRAND }
+
+    public SmartSearchService(MongoTemplate mongoTemplate,
+                              CatalogTermDictionary termDictionary,
+                              ProductPopularityRepository popularityRepository,
+                              ProductSearchIndex searchIndex,
+                              SearchResultCache resultCache,
+                              @Qualifier("searchExecutor") Executor searchExecutor,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.search.strategy-deadline:PT0.4S}") Duration strategyDeadline) {
+        this.mongoTemplate = mongoTemplate;
+        this.termDictionary = termDictionary;
+        this.popularityRepository = popularityRepository;
+        this.searchIndex = searchIndex;
+        this.resultCache = resultCache;
+        this.searchExecutor = searchExecutor;
+        this.strategyDeadline = strategyDeadline;
+
+        for (Strategy strategy : Strategy.values()) {
+            String tag = strategy.name().toLowerCase(Locale.ROOT);
+            strategyTimers.put(strategy, Timer.builder("search.strategy.duration")
+                    .tag("strategy", tag)
+                    .description("Fallback search strategy run time, measured to completion")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            strategyTimeouts.put(strategy, Counter.builder("search.strategy.timeouts")
+                    .tag("strategy", tag)
+                    .description("Fallback search strategy runs left out after missing the deadline")
+                    .register(meterRegistry));
+        }
+        this.partialResults = Counter.builder("search.partial_results")
+                .description("Keyword searches answered without every fallback strategy")
+                .register(meterRegistry);
+    }
+
     // =========================================================================
     // MAIN ENTRY POINT
     // =========================================================================
 
-    public Page<Product> search(String keyword, ProductFilterRequest filter, Pageable pageable) {
+    public SearchPage<Product> search(String keyword, ProductFilterRequest filter, Pageable pageable) {
         if (keyword == null || keyword.isBlank()) {
-            return browseFiltered(filter, pageable);
+            return new SearchPage<>(browseFiltered(filter, pageable), false);
         }
 
         String cleanQuery = keyword.trim().toLowerCase();
-        List<String> queryTerms = Arrays.asList(cleanQuery.split("\\s+"));
+        RankedIds rankedIds = rankedCandidates(cleanQuery, filter);
 
-        Set<String> textMatchIds      = runTextSearch(cleanQuery, filter);
-        Set<String> categoryExpandIds = runCategoryExpansion(queryTerms, filter);
-        Set<String> brandMatchIds     = runBrandMatch(queryTerms, filter);
-
-        LinkedHashSet<String> orderedIds = new LinkedHashSet<>();
-        orderedIds.addAll(textMatchIds);
-        orderedIds.addAll(categoryExpandIds);
-        orderedIds.addAll(brandMatchIds);
-
-        if (orderedIds.isEmpty()) {
+        if (rankedIds.size() == 0) {
             log.debug("Smart search: zero results for query='{}', returning empty page", cleanQuery);
-            return Page.empty(pageable);
+            return new SearchPage<>(List.of(), pageable, 0, rankedIds.isPartial());
         }
 
-        List<String> rankedIds = reRankByPopularity(new ArrayList<>(orderedIds));
-
         int totalSize = rankedIds.size();
         int start     = (int) pageable.getOffset();
         int end       = Math.min(start + pageable.getPageSize(), totalSize);
 
         if (start >= totalSize) {
-            return Page.empty(pageable);
+            return new SearchPage<>(List.of(), pageable, totalSize, rankedIds.isPartial());
         }
 
-        List<String> pageIds = rankedIds.subList(start, end);
+        List<String> pageIds = rankedIds.slice(start, end);
+        List<Product> orderedProducts = fetchOrdered(pageIds);
 
-        Query fetchQuery = new Query(Criteria.where("id").in(pageIds)
-                .and("isActive").is(true));
-        List<Product> products = mongoTemplate.find(fetchQuery, Product.class);
+        return new SearchPage<>(orderedProducts, pageable, totalSize, rankedIds.isPartial());
+    }
 
-        Map<String, Product> productMap = products.stream()
-                .collect(Collectors.toMap(Product::getId, p -> p));
-        List<Product> orderedProducts = pageIds.stream()
-                .map(productMap::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+    /**
+     * Cursor-mode search for infinite-scroll clients.
+     *
+     * Keyword searches rank an in-memory ID list (bounded by the strategy caps),
+     * so their cursor is a rank offset — no skip is ever sent to MongoDB, and
+     * every slice after the first reads the cached ranking.
+     * Browse requests (no keyword) use a true keyset seek via browseFilteredByCursor.
+     */
+    public CursorPage<Product> searchByCursor(String keyword, ProductFilterRequest filter,
+                                              KeysetPagination.SortKey sort, String cursor,
+                                              int size, boolean includeTotal) {
+        if (keyword == null || keyword.isBlank()) {
+            return browseFilteredByCursor(filter, sort, cursor, size, includeTotal);
+        }
+
+        int pageSize = KeysetPagination.clampSize(size);
+        int offset   = KeysetPagination.decodeOffset(cursor);
+
+        String cleanQuery = keyword.trim().toLowerCase();
+        RankedIds rankedIds = rankedCandidates(cleanQuery, filter);
+        int totalSize = rankedIds.size();
+        int end = Math.min(offset + pageSize, totalSize);
+
+        List<Product> content = offset >= totalSize
+                ? List.of()
+                : fetchOrdered(rankedIds.slice(offset, end));
+        boolean hasNext = end < totalSize;
+
+        return CursorPage.<Product>builder()
+                .content(content)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? KeysetPagination.encodeOffset(end) : null)
+                .size(pageSize)
+                .totalElements(includeTotal ? (long) totalSize : null)
+                .totalExact(includeTotal ? Boolean.TRUE : null)
+                .partial(rankedIds.isPartial())
+                .build();
+    }
+
+    /**
+     * Every matching product ID, best first. Ranked once per query and filter and
+     * then served from SearchResultCache until the catalogue or popularity moves,
+     * so later pages and repeat searches only pay for fetchOrdered.
+     */
+    private RankedIds rankedCandidates(String cleanQuery, ProductFilterRequest filter) {
+        return resultCache.rankedIds(cleanQuery, filter, () -> rank(cleanQuery, filter));
+    }
+
+    /**
+     * From the in-memory index when it is ready; otherwise the three MongoDB
+     * strategies, run concurrently under one deadline, merged and re-ranked.
+     */
+    private RankedIds rank(String cleanQuery, ProductFilterRequest filter) {
+        if (searchIndex.isReady()) {
+            return RankedIds.of(searchIndex.search(cleanQuery, filter, MAX_CANDIDATES));
+        }
+
+        List<String> queryTerms = Arrays.asList(cleanQuery.split("\\s+"));
+        long deadline = System.nanoTime() + strategyDeadline.toNanos();
+
+        Map<Strategy, CompletableFuture<Set<String>>> running = new EnumMap<>(Strategy.class);
+        running.put(Strategy.TEXT, start(Strategy.TEXT, () -> runTextSearch(cleanQuery, filter)));
+        running.put(Strategy.CATEGORY, start(Strategy.CATEGORY, () -> runCategoryExpansion(queryTerms, filter)));
+        running.put(Strategy.BRAND, start(Strategy.BRAND, () -> runBrandMatch(queryTerms, filter)));
+
+        // Merged in enum order, so popularity ties still rank text > category > brand
+        LinkedHashSet<String> orderedIds = new LinkedHashSet<>();
+        boolean partial = false;
+        for (Map.Entry<Strategy, CompletableFuture<Set<String>>> e : running.entrySet()) {
+            Set<String> ids = await(e.getKey(), e.getValue(), deadline, cleanQuery);
+            if (ids == null) {
+                partial = true;
+            } else {
+                orderedIds.addAll(ids);
+            }
+        }
+        if (partial) partialResults.increment();
+
+        List<String> ranked = reRankByPopularity(new ArrayList<>(orderedIds));
+        return partial ? RankedIds.partial(ranked) : RankedIds.of(ranked);
+    }
+
+    private CompletableFuture<Set<String>> start(Strategy strategy, Supplier<Set<String>> body) {
+        Supplier<Set<String>> timed = () -> strategyTimers.get(strategy).record(body);
+        try {
+            return CompletableFuture.supplyAsync(timed, searchExecutor);
+        } catch (RejectedExecutionException e) {
+            // Pool saturated: run on the request thread, as every strategy used to
+            return CompletableFuture.completedFuture(timed.get());
+        }
+    }
 
-        return PageableExecutionUtils.getPage(orderedProducts, pageable, () -> totalSize);
+    /** The strategy's IDs, or null when it has not answered by the deadline. */
+    private Set<String> await(Strategy strategy, CompletableFuture<Set<String>> future,
+                              long deadline, String query) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            strategyTimeouts.get(strategy).increment();
+            log.debug("Search strategy {} missed the {} deadline for query='{}'", strategy, strategyDeadline, query);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            // Strategies log and swallow their own failures; this is a bug, not a slow query
+            log.warn("Search strategy {} failed: {}", strategy, e.getCause().getMessage());
+            return Set.of();
+        }
     }
 
     // =========================================================================
@@ -119,35 +287,17 @@ public class SmartSearchService {
             applyHardCategoryFilter(q, filter);
             q.fields().include("id");
             q.limit(MAX_RESULTS_PER_STRATEGY);
+            q.maxTime(strategyDeadline);
 
             return mongoTemplate.find(q, Product.class).stream()
                     .map(Product::getId)
                     .collect(Collectors.toCollection(LinkedHashSet::new));
 
         } catch (Exception e) {
+            // No regex fallback: an unanchored .*term.* over name/brandName/description
+            // is a collection scan. Strategies 2 and 3 still run; typo tolerance lives
+            // in ProductSearchIndex, which takes over once built.
             log.warn("Text search failed (index may not exist): {}", e.getMessage());
-            return runFallbackNameSearch(query, filter);
-        }
-    }
-
-    private Set<String> runFallbackNameSearch(String query, ProductFilterRequest filter) {
-        try {
-            String regex = ".*" + query.replace(" ", ".*") + ".*";
-            Query q = new Query();
-            q.addCriteria(new Criteria().orOperator(
-                    Criteria.where("name").regex(regex, "i"),
-                    Criteria.where("brandName").regex(regex, "i"),
-                    Criteria.where("description").regex(regex, "i")
-            ));
-            q.addCriteria(Criteria.where("isActive").is(true));
-            q.fields().include("id");
-            q.limit(MAX_RESULTS_PER_STRATEGY);
-
-            return mongoTemplate.find(q, Product.class).stream()
-                    .map(Product::getId)
-                    .collect(Collectors.toCollection(LinkedHashSet::new));
-        } catch (Exception e) {
-            log.error("Fallback name search failed: {}", e.getMessage());
             return new LinkedHashSet<>();
         }
     }
@@ -163,26 +313,9 @@ public class SmartSearchService {
 
     private Set<String> runCategoryExpansion(List<String> queryTerms, ProductFilterRequest filter) {
         try {
-            List<Category> matchingCategories = new ArrayList<>();
-
-            for (String term : queryTerms) {
-                if (term.length() < 3) continue;
-
-                categoryRepository.findBySlug(term).ifPresent(matchingCategories::add);
-
-                Query catQuery = new Query(
-                        Criteria.where("name").regex(".*" + term + ".*", "i")
-                );
-                matchingCategories.addAll(mongoTemplate.find(catQuery, Category.class));
-            }
-
-            if (matchingCategories.isEmpty()) return new LinkedHashSet<>();
-
-            // Deduplicate matched category IDs
-            Set<String> categoryIds = matchingCategories.stream()
-                    .map(Category::getId)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toSet());
+            // Slug and name-token lookups in memory — was a findBySlug plus a name regex per term
+            Set<String> categoryIds = termDictionary.categoryIdsMatching(queryTerms);
+            if (categoryIds.isEmpty()) return new LinkedHashSet<>();
 
             // categoryLineageIds contains the category itself AND all its ancestors.
             // Querying .in(catId) finds every product that belongs to this category
@@ -193,6 +326,7 @@ public class SmartSearchService {
             applyPriceFilter(q, filter);
             q.fields().include("id");
             q.limit(MAX_RESULTS_PER_STRATEGY);
+            q.maxTime(strategyDeadline);
 
             return mongoTemplate.find(q, Product.class).stream()
                     .map(Product::getId)
@@ -210,19 +344,17 @@ public class SmartSearchService {
 
     private Set<String> runBrandMatch(List<String> queryTerms, ProductFilterRequest filter) {
         try {
-            List<Criteria> brandCriteria = queryTerms.stream()
-                    .filter(term -> term.length() >= 2)
-                    .map(term -> Criteria.where("brandName").regex(".*" + term + ".*", "i"))
-                    .collect(Collectors.toList());
-
-            if (brandCriteria.isEmpty()) return new LinkedHashSet<>();
+            // Exact brand names resolved in memory, so the query is an $in on brand_active
+            Set<String> brandNames = termDictionary.brandNamesMatching(queryTerms);
+            if (brandNames.isEmpty()) return new LinkedHashSet<>();
 
             Query q = new Query();
-            q.addCriteria(new Criteria().orOperator(brandCriteria.toArray(new Criteria[0])));
+            q.addCriteria(Criteria.where("brandName").in(brandNames));
             q.addCriteria(Criteria.where("isActive").is(true));
             applyPriceFilter(q, filter);
             q.fields().include("id");
             q.limit(MAX_RESULTS_PER_STRATEGY);
+            q.maxTime(strategyDeadline);
 
             return mongoTemplate.find(q, Product.class).stream()
                     .map(Product::getId)
@@ -246,10 +378,7 @@ public class SmartSearchService {
             popularityRepository.findAllById(productIds)
                     .forEach(p -> scoreMap.put(p.getProductId(), p.getPopularityScore()));
 
-            return productIds.stream()
-                    .sorted(Comparator.comparingDouble(
-                            (String id) -> scoreMap.getOrDefault(id, 0.0)).reversed())
-                    .collect(Collectors.toList());
+            return rankByScore(productIds, scoreMap);
 
         } catch (Exception e) {
             log.warn("Popularity re-ranking failed, using original order: {}", e.getMessage());
@@ -257,6 +386,17 @@ public class SmartSearchService {
         }
     }
 
+    /**
+     * Stable sort by popularity, highest first; unscored IDs count as 0 and keep
+     * their strategy order. The CPU half of reRankByPopularity (see SearchRankingBenchmark).
+     */
+    static List<String> rankByScore(List<String> productIds, Map<String, Double> scoreMap) {
+        return productIds.stream()
+                .sorted(Comparator.comparingDouble(
+                        (String id) -> scoreMap.getOrDefault(id, 0.0)).reversed())
+                .collect(Collectors.toList());
+    }
+
     // =========================================================================
     // BROWSE (no keyword — filter only)
     // =========================================================================
@@ -273,6 +413,56 @@ public class SmartSearchService {
         return PageableExecutionUtils.getPage(products, pageable, () -> count);
     }
 
+    /**
+     * Keyset variant of browseFiltered: no skip, and the count (capped) only
+     * when the client asks for it.
+     */
+    private CursorPage<Product> browseFilteredByCursor(ProductFilterRequest filter,
+                                                       KeysetPagination.SortKey sort,
+                                                       String cursor, int size,
+                                                       boolean includeTotal) {
+        int pageSize = KeysetPagination.clampSize(size);
+
+        Query q = new Query();
+        q.addCriteria(Criteria.where("isActive").is(true));
+        applyHardCategoryFilter(q, filter);
+        applyPriceFilter(q, filter);
+
+        Long total = null;
+        Boolean totalExact = null;
+        if (includeTotal) {
+            long capped = mongoTemplate.count(
+                    Query.of(q).limit(KeysetPagination.TOTAL_COUNT_CAP + 1), Product.class);
+            totalExact = capped <= KeysetPagination.TOTAL_COUNT_CAP;
+            total = Math.min(capped, KeysetPagination.TOTAL_COUNT_CAP);
+        }
+
+        KeysetPagination.apply(q, sort, cursor, pageSize);
+        CursorPage<Product> page = KeysetPagination.slice(
+                mongoTemplate.find(q, Product.class), sort, pageSize);
+        page.setTotalElements(total);
+        page.setTotalExact(totalExact);
+        return page;
+    }
+
+    // =========================================================================
+    // FETCH HELPERS
+    // =========================================================================
+
+    /** Loads the given products, preserving the order of the ID list. */
+    private List<Product> fetchOrdered(List<String> pageIds) {
+        Query fetchQuery = new Query(Criteria.where("id").in(pageIds)
+                .and("isActive").is(true));
+        List<Product> products = mongoTemplate.find(fetchQuery, Product.class);
+
+        Map<String, Product> productMap = products.stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+        return pageIds.stream()
+                .map(productMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     // =========================================================================
     // FILTER HELPERS
     // =========================================================================
@@ -288,9 +478,9 @@ public class SmartSearchService {
     private void applyHardCategoryFilter(Query q, ProductFilterRequest filter) {
         if (filter == null || filter.getCategorySlug() == null) return;
 
-        categoryRepository.findBySlug(filter.getCategorySlug()).ifPresent(cat -> {
+        termDictionary.categoryIdForSlug(filter.getCategorySlug()).ifPresent(catId -> {
             // Same fix: use categoryLineageIds not a regex on a non-existent field
-            q.addCriteria(Criteria.where("categoryLineageIds").in(cat.getId()));
+            q.addCriteria(Criteria.where("categoryLineageIds").in(catId));
         });
     }
 
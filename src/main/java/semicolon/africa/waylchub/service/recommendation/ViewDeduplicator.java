@@ -0,0 +1,112 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+
+import java.time.Duration;
+
+/**
+ * Decides whether a behaviour event repeats one the same shopper sent for the
+ * same product within the dedup window (page refreshes, back-navigation).
+ *
+ * WHY:
+ *   BehaviorTrackingService used to answer this with a Mongo query per view —
+ *   all of a user's views in the last 30 minutes, or a guest's last 50
+ *   session events filtered in Java — which kept the (sessionId, timestamp)
+ *   index busy with reads that only ever found a refresh.
+ *
+ * HOW IT WORKS:
+ *   KEY: {actor}|{productId}|{eventType}, where the actor is "u:{userId}" for
+ *   signed-in shoppers and "s:{sessionId}" for guests.
+ *
+ *   1. LOCAL: a Caffeine cache of keys seen on this pod, expiring window after
+ *      the first sighting (app.tracking.dedup.window) and capped at
+ *      app.tracking.dedup.max-size. putIfAbsent makes concurrent refreshes race
+ *      safely — exactly one of them is first.
+ *   2. CROSS-POD (app.tracking.dedup.redis.enabled): a key first seen here is
+ *      claimed with SET NX EX window, so a refresh that lands on another pod
+ *      is still a duplicate. Redis errors count as "first" — an extra view is
+ *      better than a lost one.
+ *
+ *   The window runs from the first sighting, as the stored-event query did:
+ *   a view 29 minutes in is a duplicate, one at 31 minutes is recorded.
+ *   Eviction under the size cap can let an occasional repeat through.
+ *
+ * METRICS:
+ *   tracking.dedup{result=first|duplicate}
+ */
+@Slf4j
+@Service
+public class ViewDeduplicator {
+
+    static final String KEY_PREFIX = "exploreaba:dedup:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration window;
+    private final boolean redisEnabled;
+    private final Cache<String, Boolean> seen;
+
+    private final Counter first;
+    private final Counter duplicates;
+
+    public ViewDeduplicator(StringRedisTemplate redisTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.tracking.dedup.window:PT30M}") Duration window,
+                            @Value("${app.tracking.dedup.max-size:200000}") long maxSize,
+                            @Value("${app.tracking.dedup.redis.enabled:false}") boolean redisEnabled) {
+        this.redisTemplate = redisTemplate;
+        this.window = window;
+        this.redisEnabled = redisEnabled;
+        this.seen = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(window)
+                .build();
+
+        this.first      = meterRegistry.counter("tracking.dedup", "result", "first");
+        this.duplicates = meterRegistry.counter("tracking.dedup", "result", "duplicate");
+    }
+
+    /**
+     * True if this (shopper, product, type) was already seen within the window.
+     * Shoppers with neither a user nor a session id are never deduplicated.
+     */
+    public boolean isDuplicate(String userId, String sessionId, String productId, BehaviorEventType type) {
+        String key = keyOf(userId, sessionId, productId, type);
+        if (key == null) return false;
+
+        boolean duplicate = seen.asMap().putIfAbsent(key, Boolean.TRUE) != null
+                || (redisEnabled && !claimAcrossPods(key));
+        (duplicate ? duplicates : first).increment();
+        return duplicate;
+    }
+
+    static String keyOf(String userId, String sessionId, String productId, BehaviorEventType type) {
+        if (productId == null || type == null) return null;
+        String actor = userId != null && !userId.isBlank() ? "u:" + userId
+                : sessionId != null && !sessionId.isBlank() ? "s:" + sessionId
+                : null;
+        return actor == null ? null : actor + "|" + productId + "|" + type.name();
+    }
+
+    // =========================================================================
+    // PRIVATE HELPERS
+    // =========================================================================
+
+    /** SET NX EX: true if this pod claimed the key, i.e. no other pod saw it first. */
+    private boolean claimAcrossPods(String key) {
+        try {
+            Boolean claimed = redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + key, "1", window);
+            return !Boolean.FALSE.equals(claimed);
+        } catch (Exception e) {
+            log.debug("Cross-pod dedup unavailable, allowing event: {}", e.getMessage());
+            return true;
+        }
+    }
+}
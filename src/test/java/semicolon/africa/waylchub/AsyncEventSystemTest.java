@@ -17,6 +17,7 @@ import semicolon.africa.waylchub.model.product.ProductVariant;
 import semicolon.africa.waylchub.repository.event.FailedAggregateSyncRepository;
 import semicolon.africa.waylchub.repository.productRepository.ProductRepository;
 import semicolon.africa.waylchub.repository.productRepository.ProductVariantRepository;
+import semicolon.africa.waylchub.service.AggregateConsistencyChecker;
 import semicolon.africa.waylchub.service.AggregateSyncScheduler;
 import semicolon.africa.waylchub.service.productService.ProductService;
 
@@ -47,6 +48,7 @@ class AsyncEventSystemTest {
     @Autowired private ProductVariantRepository variantRepository;
     @Autowired private FailedAggregateSyncRepository failedSyncRepository;
     @Autowired private AggregateSyncScheduler syncScheduler;
+    @Autowired private AggregateConsistencyChecker consistencyChecker;
 
     @BeforeEach
     void setUp() {
@@ -242,6 +244,39 @@ class AsyncEventSystemTest {
                 });
     }
 
+    @Test
+    @Order(5)
+    @DisplayName("🩺 5b. CONSISTENCY CHECK: Drifted totalStock is repaired from product_variants")
+    void testConsistencyCheckerRepairsDrift() {
+        Product parent = createProduct("Drift Test", "drift-test", BigDecimal.TEN);
+        createVariant(parent.getId(), "DRIFT-1", BigDecimal.valueOf(15), 40);
+        createVariant(parent.getId(), "DRIFT-2", BigDecimal.valueOf(25), 2);
+
+        // totalStock was kept by $inc alongside each variant write
+        assertThat(productRepository.findById(parent.getId()).orElseThrow().getTotalStock()).isEqualTo(42);
+        // Prices follow through the coalesced sync
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertThat(productRepository.findById(parent.getId())
+                        .orElseThrow().getMinPrice()).isEqualByComparingTo(BigDecimal.valueOf(15)));
+
+        // Simulate a crash between a variant write and its product $inc
+        Product drifted = productRepository.findById(parent.getId()).orElseThrow();
+        drifted.setTotalStock(7);
+        productRepository.save(drifted);
+
+        int repaired = consistencyChecker.checkAndRepair();
+
+        assertThat(repaired).isEqualTo(1);
+        Product fixed = productRepository.findById(parent.getId()).orElseThrow();
+        assertThat(fixed.getTotalStock()).isEqualTo(42);
+        assertThat(fixed.getMinPrice()).isEqualByComparingTo(BigDecimal.valueOf(15));
+        assertThat(fixed.getMaxPrice()).isEqualByComparingTo(BigDecimal.valueOf(25));
+
+        // A second pass finds nothing left to fix
+        assertThat(consistencyChecker.checkAndRepair()).isZero();
+    }
+
     // =============================================================================
     // TEST 6: EDGE CASE — Variant Update During Checkout
     // =============================================================================
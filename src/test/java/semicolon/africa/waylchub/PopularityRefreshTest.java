@@ -0,0 +1,133 @@
+package semicolon.africa.waylchub;
+
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import semicolon.africa.waylchub.model.product.Brand;
+import semicolon.africa.waylchub.model.product.Category;
+import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.model.recommendation.ProductPopularity;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+import semicolon.africa.waylchub.service.recommendation.RecommendationScheduler;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@SpringBootTest
+@Testcontainers
+class PopularityRefreshTest {
+
+    @Container
+    static MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:7.0")
+            .withExposedPorts(27017);
+
+    @DynamicPropertySource
+    static void setProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", mongoDBContainer::getReplicaSetUrl);
+        registry.add("spring.data.mongodb.auto-index-creation", () -> "true");
+    }
+
+    @Autowired
+    private RecommendationScheduler scheduler;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(UserBehaviorLog.class);
+        mongoTemplate.dropCollection(ProductPopularity.class);
+        mongoTemplate.dropCollection(Product.class);
+
+        Category category = mongoTemplate.save(Category.builder().name("Phones").slug("phones").build());
+        Brand brand = new Brand();
+        brand.setName("Nexus");
+        brand.setSlug("nexus");
+        brand = mongoTemplate.save(brand);
+
+        product = mongoTemplate.save(Product.builder()
+                .name("Nexus One")
+                .slug("nexus-one")
+                .basePrice(BigDecimal.valueOf(300))
+                .categorySlug("phones")
+                .category(category)
+                .brand(brand)
+                .build());
+
+        LocalDateTime now = LocalDateTime.now();
+        List<UserBehaviorLog> events = new ArrayList<>();
+        events.add(event(BehaviorEventType.VIEW, now.minusHours(1)));
+        events.add(event(BehaviorEventType.VIEW, now.minusHours(2)));
+        events.add(event(BehaviorEventType.VIEW, now.minusDays(3)));          // outside 24h: ignored
+        events.add(event(BehaviorEventType.ADD_TO_CART, now.minusHours(3)));
+        events.add(event(BehaviorEventType.ADD_TO_CART, now.minusDays(2)));
+        events.add(event(BehaviorEventType.PURCHASE, now.minusDays(4)));
+        events.add(event(BehaviorEventType.WISHLIST, now.minusHours(5)));
+        events.add(event(BehaviorEventType.PURCHASE, now.minusDays(9)));      // outside 7d: ignored
+        mongoTemplate.insertAll(events);
+    }
+
+    @Test
+    @DisplayName("$merge writes counters, score and product metadata in one pipeline")
+    void mergeRefresh() {
+        ReflectionTestUtils.setField(scheduler, "mergeEnabled", true);
+
+        scheduler.refreshPopularityScores();
+
+        assertPopularity(mongoTemplate.findById(product.getId(), ProductPopularity.class));
+    }
+
+    @Test
+    @DisplayName("bulk-upsert fallback writes the same document")
+    void bulkRefresh() {
+        ReflectionTestUtils.setField(scheduler, "mergeEnabled", false);
+
+        scheduler.refreshPopularityScores();
+
+        assertPopularity(mongoTemplate.findById(product.getId(), ProductPopularity.class));
+    }
+
+    // =============================================================================
+    // HELPER METHODS
+    // =============================================================================
+
+    private void assertPopularity(ProductPopularity pop) {
+        assertThat(pop).isNotNull();
+        assertThat(pop.getViews24h()).isEqualTo(2);
+        assertThat(pop.getCarts24h()).isEqualTo(1);
+        assertThat(pop.getPurchases24h()).isZero();
+        assertThat(pop.getWishlists24h()).isEqualTo(1);
+        assertThat(pop.getCarts7d()).isEqualTo(2);
+        assertThat(pop.getPurchases7d()).isEqualTo(1);
+        // 2×1 + 1×5 + 0×10 + 1×3 + 2×2 + 1×4
+        assertThat(pop.getPopularityScore()).isCloseTo(18.0, within(1e-9));
+        assertThat(pop.getCategorySlug()).isEqualTo("phones");
+        assertThat(pop.getCategoryId()).isEqualTo(product.getCategory().getId());
+        assertThat(pop.getBrandId()).isEqualTo(product.getBrand().getId());
+        assertThat(pop.getLastRefreshed()).isNotNull();
+    }
+
+    private UserBehaviorLog event(BehaviorEventType type, LocalDateTime at) {
+        return UserBehaviorLog.builder()
+                .userId("user-1")
+                .productId(product.getId())
+                .eventType(type)
+                .timestamp(at)
+                .build();
+    }
+}
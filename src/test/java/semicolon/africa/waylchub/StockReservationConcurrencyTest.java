@@ -0,0 +1,243 @@
+package semicolon.africa.waylchub;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import semicolon.africa.waylchub.dto.productDto.ProductRequest;
+import semicolon.africa.waylchub.dto.productDto.VariantRequest;
+import semicolon.africa.waylchub.exception.InsufficientStockException;
+import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.model.product.ProductVariant;
+import semicolon.africa.waylchub.model.product.StockReservation;
+import semicolon.africa.waylchub.repository.productRepository.ProductRepository;
+import semicolon.africa.waylchub.repository.productRepository.ProductVariantRepository;
+import semicolon.africa.waylchub.repository.productRepository.StockReservationRepository;
+import semicolon.africa.waylchub.service.productService.ProductService;
+import semicolon.africa.waylchub.service.productService.StockReservationExpiryJob;
+import semicolon.africa.waylchub.service.productService.StockReservationService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Hammers a 10-unit variant with 300 concurrent checkouts, and checks that a
+ * multi-line cart with one short line takes nothing.
+ *
+ * EXPECTED:
+ * - Exactly 10 holds succeed, the rest fail with InsufficientStockException
+ * - Available stock never goes negative, held units are all in reservedQuantity
+ * - Once the holds lapse, the expiry sweep puts every unit back on sale
+ */
+@SpringBootTest(properties = {
+        "app.stock-reservation.hold=PT1S",
+        "app.stock-reservation.sweep-interval=PT1H"   // the test drives the sweep itself
+})
+@Testcontainers
+class StockReservationConcurrencyTest {
+
+    private static final int STOCK = 10;
+    private static final int CHECKOUTS = 300;
+
+    @Container
+    static MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:7.0")
+            .withExposedPorts(27017);
+
+    @DynamicPropertySource
+    static void setProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", mongoDBContainer::getReplicaSetUrl);
+    }
+
+    @Autowired private ProductService productService;
+    @Autowired private StockReservationService reservationService;
+    @Autowired private StockReservationExpiryJob expiryJob;
+    @Autowired private ProductRepository productRepository;
+    @Autowired private ProductVariantRepository variantRepository;
+    @Autowired private StockReservationRepository reservationRepository;
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAll();
+        variantRepository.deleteAll();
+        reservationRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("🔥 300 checkouts on 10 units: exactly 10 holds, all released on expiry")
+    void concurrentReservationsNeverOversellAndExpireCleanly() throws Exception {
+        Product product = createProduct("Drop Sneaker", "drop-sneaker", BigDecimal.valueOf(120));
+        ProductVariant variant = createVariant(product.getId(), "DROP-42", BigDecimal.valueOf(120), STOCK);
+
+        StockReservation.Line line = StockReservation.Line.builder()
+                .variantId(variant.getId())
+                .productId(product.getId())
+                .quantity(1)
+                .build();
+
+        AtomicInteger held = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < CHECKOUTS; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    reservationService.reserve(List.of(line));
+                    held.incrementAndGet();
+                } catch (InsufficientStockException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // 1. Exactly the available units were held
+        assertThat(held.get()).isEqualTo(STOCK);
+        assertThat(rejected.get()).isEqualTo(CHECKOUTS - STOCK);
+
+        ProductVariant afterRush = variantRepository.findById(variant.getId()).orElseThrow();
+        assertThat(afterRush.getStockQuantity()).isZero();
+        assertThat(afterRush.getReservedQuantity()).isEqualTo(STOCK);
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getTotalStock()).isZero();
+
+        // 2. Let the holds lapse, then sweep
+        Thread.sleep(1_500);
+        expiryJob.releaseExpiredHolds();
+
+        ProductVariant afterExpiry = variantRepository.findById(variant.getId()).orElseThrow();
+        assertThat(afterExpiry.getStockQuantity()).isEqualTo(STOCK);
+        assertThat(afterExpiry.getReservedQuantity()).isZero();
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getTotalStock()).isEqualTo(STOCK);
+        assertThat(reservationRepository.findAll())
+                .hasSize(STOCK)
+                .allMatch(r -> r.getStatus() == StockReservation.Status.EXPIRED);
+    }
+
+    @Test
+    @DisplayName("🛑 Short line mid-cart: exact variant reported, nothing taken")
+    void shortLineInBatchIsReportedAndRolledBack() {
+        Product product = createProduct("Bundle", "bundle", BigDecimal.TEN);
+        ProductVariant small = createVariant(product.getId(), "B-S", BigDecimal.TEN, 5);
+        ProductVariant medium = createVariant(product.getId(), "B-M", BigDecimal.TEN, 1);
+        ProductVariant large = createVariant(product.getId(), "B-L", BigDecimal.TEN, 5);
+
+        List<StockReservation.Line> cart = List.of(
+                lineFor(product, small, 2),
+                lineFor(product, medium, 3),     // only 1 left
+                lineFor(product, large, 2));
+
+        assertThatThrownBy(() -> reservationService.reserve(cart))
+                .isInstanceOfSatisfying(InsufficientStockException.class, e ->
+                        assertThat(e.getVariantIds()).containsExactly(medium.getId()));
+
+        assertThat(variantRepository.findById(small.getId()).orElseThrow().getStockQuantity()).isEqualTo(5);
+        assertThat(variantRepository.findById(medium.getId()).orElseThrow().getStockQuantity()).isEqualTo(1);
+        assertThat(variantRepository.findById(large.getId()).orElseThrow().getStockQuantity()).isEqualTo(5);
+        assertThat(variantRepository.findById(small.getId()).orElseThrow().getReservedQuantity()).isIn(null, 0);
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getTotalStock()).isEqualTo(11);
+        assertThat(reservationRepository.count()).isZero();
+        // The failed line never inserted a stub variant
+        assertThat(variantRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("👻 Deleted variant in the cart: reported as missing, no stub written, nothing taken")
+    void deletedVariantInBatchIsReportedWithoutWritingIt() {
+        Product product = createProduct("Capsule", "capsule", BigDecimal.TEN);
+        ProductVariant small = createVariant(product.getId(), "C-S", BigDecimal.TEN, 5);
+        ProductVariant gone = createVariant(product.getId(), "C-M", BigDecimal.TEN, 5);
+        ProductVariant large = createVariant(product.getId(), "C-L", BigDecimal.TEN, 5);
+        variantRepository.deleteById(gone.getId());
+
+        List<StockReservation.Line> cart = List.of(
+                lineFor(product, small, 2),
+                lineFor(product, gone, 1),       // deleted after it went into the cart
+                lineFor(product, large, 2));
+
+        assertThatThrownBy(() -> reservationService.reserve(cart))
+                .isInstanceOfSatisfying(InsufficientStockException.class, e ->
+                        assertThat(e.getVariantIds()).containsExactly(gone.getId()));
+
+        assertThat(variantRepository.findById(small.getId()).orElseThrow().getStockQuantity()).isEqualTo(5);
+        assertThat(variantRepository.findById(large.getId()).orElseThrow().getStockQuantity()).isEqualTo(5);
+        assertThat(variantRepository.existsById(gone.getId())).isFalse();
+        assertThat(variantRepository.count()).isEqualTo(2);
+        assertThat(reservationRepository.count()).isZero();
+    }
+
+    @Test
+    @DisplayName("📦 Admin restock during open holds: value is on-hand, holds stay out of it")
+    void adminStockEditCountsHeldUnitsAsOnHand() {
+        Product product = createProduct("Restock", "restock", BigDecimal.TEN);
+        ProductVariant variant = createVariant(product.getId(), "R-1", BigDecimal.TEN, 10);
+        reservationService.reserve(List.of(lineFor(product, variant, 3)));
+
+        VariantRequest restock = new VariantRequest();
+        restock.setId(variant.getId());
+        restock.setProductId(product.getId());
+        restock.setSku("R-1");
+        restock.setPrice(BigDecimal.TEN);
+        restock.setStockQuantity(12);
+        restock.setAttributes(Map.of("Option", "R-1"));
+        productService.saveVariant(restock);
+
+        ProductVariant afterEdit = variantRepository.findById(variant.getId()).orElseThrow();
+        assertThat(afterEdit.getStockQuantity()).isEqualTo(9);
+        assertThat(afterEdit.getReservedQuantity()).isEqualTo(3);
+
+        restock.setStockQuantity(2);
+        assertThatThrownBy(() -> productService.saveVariant(restock))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(variantRepository.findById(variant.getId()).orElseThrow().getStockQuantity()).isEqualTo(9);
+    }
+
+    // =============================================================================
+    // HELPER METHODS
+    // =============================================================================
+
+    private StockReservation.Line lineFor(Product product, ProductVariant variant, int quantity) {
+        return StockReservation.Line.builder()
+                .variantId(variant.getId())
+                .productId(product.getId())
+                .quantity(quantity)
+                .build();
+    }
+
+    private Product createProduct(String name, String slug, BigDecimal price) {
+        ProductRequest req = new ProductRequest();
+        req.setName(name);
+        req.setSlug(slug);
+        req.setBasePrice(price);
+        return productService.createOrUpdateProduct(req);
+    }
+
+    private ProductVariant createVariant(String productId, String sku, BigDecimal price, int stock) {
+        VariantRequest req = new VariantRequest();
+        req.setProductId(productId);
+        req.setSku(sku);
+        req.setPrice(price);
+        req.setStockQuantity(stock);
+        req.setAttributes(Map.of("Option", sku));
+        return productService.saveVariant(req);
+    }
+}
@@ -0,0 +1,121 @@
+package semicolon.africa.waylchub.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import semicolon.africa.waylchub.config.LoadSheddingPolicy.Mode;
+import semicolon.africa.waylchub.config.LoadSheddingPolicy.TaggedTask;
+
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadSheddingPolicyTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ThreadPoolExecutor executor =
+            new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    private final AtomicInteger ran = new AtomicInteger();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void callerRunsRunsEveryTaskOnTheCaller() {
+        LoadSheddingPolicy policy = policy(Mode.CALLER_RUNS, Map.of());
+
+        policy.rejectedExecution(task("VIEW", false), executor);
+        policy.rejectedExecution(ran::incrementAndGet, executor);
+
+        assertEquals(2, ran.get());
+        assertEquals(1.0, count("VIEW", "caller_runs"));
+        assertEquals(1.0, count(LoadSheddingPolicy.UNTAGGED, "caller_runs"));
+    }
+
+    @Test
+    void abortThrowsAndCounts() {
+        LoadSheddingPolicy policy = policy(Mode.ABORT, Map.of());
+
+        assertThrows(RejectedExecutionException.class,
+                () -> policy.rejectedExecution(task("SEARCH", false), executor));
+        assertEquals(0, ran.get());
+        assertEquals(1.0, count("SEARCH", "aborted"));
+    }
+
+    @Test
+    void dropDiscardsAllButEssentialTasks() {
+        LoadSheddingPolicy policy = policy(Mode.DROP, Map.of());
+
+        policy.rejectedExecution(task("VIEW", false), executor);
+        policy.rejectedExecution(task("PURCHASE", true), executor);
+
+        assertEquals(1, ran.get());
+        assertEquals(1.0, count("VIEW", "dropped"));
+        assertEquals(1.0, count("PURCHASE", "caller_runs"));
+    }
+
+    @Test
+    void sampleKeepsEachTagAtItsRate() {
+        LoadSheddingPolicy policy = policy(Mode.SAMPLE, Map.of("ADD_TO_CART", 1.0, "WISHLIST", 0.5));
+
+        for (int i = 0; i < 1_000; i++) {
+            policy.rejectedExecution(task("ADD_TO_CART", false), executor);
+            policy.rejectedExecution(task("WISHLIST", false), executor);
+            policy.rejectedExecution(task("VIEW", false), executor);
+        }
+        policy.rejectedExecution(task("PURCHASE", true), executor);
+
+        assertEquals(1_000.0, count("ADD_TO_CART", "caller_runs"));
+        double wishlists = count("WISHLIST", "caller_runs");
+        assertTrue(wishlists > 400 && wishlists < 600, "sampled " + wishlists);
+        assertEquals(1_000.0, count("WISHLIST", "caller_runs") + count("WISHLIST", "dropped"));
+        assertEquals(1_000.0, count("VIEW", "dropped"));
+        assertEquals(1.0, count("PURCHASE", "caller_runs"));
+    }
+
+    @Test
+    void shutdownExecutorDropsInsteadOfRunning() {
+        LoadSheddingPolicy policy = policy(Mode.CALLER_RUNS, Map.of());
+        executor.shutdown();
+
+        policy.rejectedExecution(task("PURCHASE", true), executor);
+
+        assertEquals(0, ran.get());
+        assertEquals(1.0, count("PURCHASE", "dropped"));
+    }
+
+    @Test
+    void parsesSampleRates() {
+        assertEquals(Map.of("ADD_TO_CART", 1.0, "WISHLIST", 0.5, "VIEW", 0.0),
+                LoadSheddingPolicy.parseSampleRates(" ADD_TO_CART:1.0, WISHLIST : 0.5,VIEW:-2"));
+        assertTrue(LoadSheddingPolicy.parseSampleRates("").isEmpty());
+        assertTrue(LoadSheddingPolicy.parseSampleRates(null).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> LoadSheddingPolicy.parseSampleRates("VIEW"));
+        assertThrows(NumberFormatException.class, () -> LoadSheddingPolicy.parseSampleRates("VIEW:often"));
+    }
+
+    // =========================================================================
+    // HELPER METHODS
+    // =========================================================================
+
+    private LoadSheddingPolicy policy(Mode mode, Map<String, Double> rates) {
+        return new LoadSheddingPolicy("tracking", mode, rates, meterRegistry);
+    }
+
+    private TaggedTask task(String tag, boolean essential) {
+        return new TaggedTask(tag, essential, ran::incrementAndGet);
+    }
+
+    private double count(String tag, String outcome) {
+        var counter = meterRegistry.find("executor.rejected")
+                .tags("executor", "tracking", "tag", tag, "outcome", outcome).counter();
+        return counter == null ? 0.0 : counter.count();
+    }
+}
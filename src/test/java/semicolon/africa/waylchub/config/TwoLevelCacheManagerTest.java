@@ -0,0 +1,347 @@
+package semicolon.africa.waylchub.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Two "pods" share one L2 (a ConcurrentMapCacheManager standing in for Redis),
+ * each with its own L1 and broadcaster. Published invalidations are captured
+ * from the mocked template and delivered by hand, as the Redis listener would.
+ */
+class TwoLevelCacheManagerTest {
+
+    private static final String CACHE = "productDetail";
+    private static final String L2_ONLY = "productList";
+
+    private final ConcurrentMapCacheManager sharedL2 = new RedisLikeCacheManager(CACHE, L2_ONLY);
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+
+    private StringRedisTemplate redisA;
+    private StringRedisTemplate redisB;
+    private TwoLevelCacheManager podA;
+    private TwoLevelCacheManager podB;
+    private CacheInvalidationBroadcaster broadcasterA;
+    private CacheInvalidationBroadcaster broadcasterB;
+
+    @BeforeEach
+    void setUp() {
+        redisA = mock(StringRedisTemplate.class);
+        redisB = mock(StringRedisTemplate.class);
+        podA = manager();
+        podB = manager();
+        broadcasterA = new CacheInvalidationBroadcaster(redisA, podA);
+        broadcasterB = new CacheInvalidationBroadcaster(redisB, podB);
+        podA.setBroadcaster(broadcasterA);
+        podB.setBroadcaster(broadcasterB);
+    }
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // =========================================================================
+    // GET / PUT / EVICT / CLEAR
+    // =========================================================================
+
+    @Test
+    @DisplayName("Caches outside l1CacheNames come back from L2 unchanged")
+    void nonL1CacheIsReturnedFromL2() {
+        assertSame(sharedL2.getCache(L2_ONLY), podA.getCache(L2_ONLY));
+        assertInstanceOf(TwoLevelCacheManager.TwoLevelCache.class, podA.getCache(CACHE));
+    }
+
+    @Test
+    @DisplayName("An L2 hit is promoted to L1 and served from there afterwards")
+    void l2HitIsPromotedToL1() {
+        l2().put("p1", "detail-1");
+
+        assertEquals("detail-1", podA.getCache(CACHE).get("p1").get());
+
+        l2().evict("p1");
+        assertEquals("detail-1", podA.getCache(CACHE).get("p1").get());
+        assertEquals("detail-1", podA.getCache(CACHE).get("p1", String.class));
+    }
+
+    @Test
+    @DisplayName("A miss on both levels returns null")
+    void missOnBothLevelsReturnsNull() {
+        assertNull(podA.getCache(CACHE).get("absent"));
+    }
+
+    @Test
+    @DisplayName("put writes through to L2 and L1")
+    void putWritesBothLevels() {
+        podA.getCache(CACHE).put("p1", "detail-1");
+
+        assertEquals("detail-1", l2().get("p1").get());
+        l2().evict("p1");
+        assertEquals("detail-1", podA.getCache(CACHE).get("p1").get());
+    }
+
+    @Test
+    @DisplayName("evict drops both levels and publishes the key")
+    void evictDropsBothLevelsAndPublishes() {
+        podA.getCache(CACHE).put("p1", "detail-1");
+
+        podA.getCache(CACHE).evict("p1");
+
+        assertNull(l2().get("p1"));
+        assertNull(podA.getCache(CACHE).get("p1"));
+        String payload = lastPublished(redisA);
+        assertTrue(payload.endsWith("|E|" + CACHE + "|p1"), payload);
+    }
+
+    @Test
+    @DisplayName("clear empties both levels and publishes the cache name")
+    void clearEmptiesBothLevelsAndPublishes() {
+        podA.getCache(CACHE).put("p1", "detail-1");
+        podA.getCache(CACHE).put("p2", "detail-2");
+
+        podA.getCache(CACHE).clear();
+
+        assertNull(l2().get("p1"));
+        assertNull(podA.getCache(CACHE).get("p1"));
+        assertNull(podA.getCache(CACHE).get("p2"));
+        String payload = lastPublished(redisA);
+        assertTrue(payload.endsWith("|C|" + CACHE), payload);
+    }
+
+    // =========================================================================
+    // SYNC LOADER
+    // =========================================================================
+
+    @Test
+    @DisplayName("sync get loads once, then serves from L1 without calling the loader")
+    void syncGetLoadsOnceAndCachesBothLevels() {
+        AtomicInteger loads = new AtomicInteger();
+        Cache cache = podA.getCache(CACHE);
+
+        assertEquals("detail-1", cache.get("p1", () -> "detail-" + loads.incrementAndGet()));
+        assertEquals("detail-1", cache.get("p1", () -> "detail-" + loads.incrementAndGet()));
+
+        assertEquals(1, loads.get());
+        assertEquals("detail-1", l2().get("p1").get());
+    }
+
+    @Test
+    @DisplayName("sync get uses an L2 hit without calling the loader")
+    void syncGetUsesL2Hit() {
+        l2().put("p1", "from-l2");
+
+        assertEquals("from-l2", podA.getCache(CACHE).get("p1", () -> fail("loader must not run")));
+    }
+
+    @Test
+    @DisplayName("Concurrent sync misses for one key share a single load")
+    void concurrentSyncMissesShareOneLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        Cache cache = podA.getCache(CACHE);
+
+        Future<Object> first = pool.submit(() -> cache.get("p1", () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            release.await();
+            return "detail-1";
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        List<Future<Object>> waiters = List.of(
+                pool.submit(() -> cache.get("p1", () -> "loaded-twice-" + loads.incrementAndGet())),
+                pool.submit(() -> cache.get("p1", () -> "loaded-twice-" + loads.incrementAndGet())));
+
+        release.countDown();
+
+        assertEquals("detail-1", first.get(5, TimeUnit.SECONDS));
+        for (Future<Object> waiter : waiters) {
+            assertEquals("detail-1", waiter.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("A slow sync load does not block writes to other keys")
+    void slowLoadDoesNotBlockOtherKeys() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Cache cache = podA.getCache(CACHE);
+
+        Future<Object> slow = pool.submit(() -> cache.get("slow", () -> {
+            loading.countDown();
+            release.await();
+            return "slow-detail";
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        // Enough keys that some share the slow key's hash bin.
+        Future<?> writes = pool.submit(() -> {
+            for (int i = 0; i < 2_000; i++) {
+                cache.put("p" + i, "detail-" + i);
+            }
+        });
+        try {
+            writes.get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+        }
+
+        assertEquals("slow-detail", slow.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("A failed sync load propagates to the caller and is retried next time")
+    void failedLoadPropagatesAndIsRetried() {
+        Cache cache = podA.getCache(CACHE);
+
+        assertThrows(Cache.ValueRetrievalException.class,
+                () -> cache.get("p1", () -> { throw new IllegalStateException("db down"); }));
+
+        assertEquals("detail-1", cache.get("p1", () -> "detail-1"));
+    }
+
+    // =========================================================================
+    // REMOTE INVALIDATION
+    // =========================================================================
+
+    @Test
+    @DisplayName("An evict on pod A drops pod B's L1 copy")
+    void remoteEvictDropsOtherPodsL1() {
+        podA.getCache(CACHE).put("p1", "detail-1");
+        assertEquals("detail-1", podB.getCache(CACHE).get("p1").get());
+
+        podA.getCache(CACHE).evict("p1");
+        // L2 is already empty, but B still serves its L1 copy until the message lands
+        assertEquals("detail-1", podB.getCache(CACHE).get("p1").get());
+
+        deliver(broadcasterB, lastPublished(redisA));
+
+        assertNull(podB.getCache(CACHE).get("p1"));
+    }
+
+    @Test
+    @DisplayName("A clear on pod A empties pod B's L1")
+    void remoteClearEmptiesOtherPodsL1() {
+        podA.getCache(CACHE).put("p1", "detail-1");
+        podA.getCache(CACHE).put("p2", "detail-2");
+        podB.getCache(CACHE).get("p1");
+        podB.getCache(CACHE).get("p2");
+
+        podA.getCache(CACHE).clear();
+        deliver(broadcasterB, lastPublished(redisA));
+
+        assertNull(podB.getCache(CACHE).get("p1"));
+        assertNull(podB.getCache(CACHE).get("p2"));
+    }
+
+    @Test
+    @DisplayName("A pod ignores invalidations carrying its own origin")
+    void podIgnoresItsOwnMessages() {
+        podA.getCache(CACHE).put("p1", "detail-1");
+        podA.getCache(CACHE).evict("p1");
+        String ownEvict = lastPublished(redisA);
+        podA.getCache(CACHE).clear();
+        String ownClear = lastPublished(redisA);
+
+        podA.getCache(CACHE).put("p1", "detail-2");
+        l2().evict("p1");
+
+        deliver(broadcasterA, ownEvict);
+        deliver(broadcasterA, ownClear);
+
+        assertEquals("detail-2", podA.getCache(CACHE).get("p1").get());
+    }
+
+    @Test
+    @DisplayName("Malformed messages and unknown caches are ignored")
+    void malformedMessagesAreIgnored() {
+        podB.getCache(CACHE).put("p1", "detail-1");
+        l2().evict("p1");
+
+        deliver(broadcasterB, "garbage");
+        deliver(broadcasterB, "other-pod|X|" + CACHE + "|p1");
+        deliver(broadcasterB, "other-pod|E|unknownCache|p1");
+
+        assertEquals("detail-1", podB.getCache(CACHE).get("p1").get());
+    }
+
+    // =========================================================================
+    // HELPER METHODS
+    // =========================================================================
+
+    private TwoLevelCacheManager manager() {
+        return new TwoLevelCacheManager(sharedL2, Set.of(CACHE), 10_000, Duration.ofMinutes(5));
+    }
+
+    private Cache l2() {
+        return sharedL2.getCache(CACHE);
+    }
+
+    private static String lastPublished(StringRedisTemplate template) {
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(template, atLeastOnce()).convertAndSend(eq(CacheInvalidationBroadcaster.CHANNEL), payload.capture());
+        return payload.getValue();
+    }
+
+    /**
+     * ConcurrentMapCache.get(key, loader) loads inside computeIfAbsent, a bin lock
+     * Redis does not have. Load outside it, as RedisCache does, so the tests see
+     * only the locking TwoLevelCache itself adds.
+     */
+    private static class RedisLikeCacheManager extends ConcurrentMapCacheManager {
+        RedisLikeCacheManager(String... names) {
+            super(names);
+        }
+
+        @Override
+        protected Cache createConcurrentMapCache(String name) {
+            return new ConcurrentMapCache(name) {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <T> T get(Object key, Callable<T> valueLoader) {
+                    ValueWrapper hit = get(key);
+                    if (hit != null) {
+                        return (T) hit.get();
+                    }
+                    try {
+                        T value = valueLoader.call();
+                        put(key, value);
+                        return value;
+                    } catch (Exception e) {
+                        throw new ValueRetrievalException(key, valueLoader, e);
+                    }
+                }
+            };
+        }
+    }
+
+    private static void deliver(CacheInvalidationBroadcaster broadcaster, String payload) {
+        broadcaster.onMessage(new DefaultMessage(
+                CacheInvalidationBroadcaster.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                payload.getBytes(StandardCharsets.UTF_8)), null);
+    }
+}
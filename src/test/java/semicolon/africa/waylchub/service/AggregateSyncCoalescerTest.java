@@ -0,0 +1,146 @@
+package semicolon.africa.waylchub.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import semicolon.africa.waylchub.model.event.FailedAggregateSync;
+import semicolon.africa.waylchub.repository.event.FailedAggregateSyncRepository;
+import semicolon.africa.waylchub.service.productService.ProductService;
+import semicolon.africa.waylchub.service.productService.ProductService.AggregateSyncResult;
+
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("AggregateSyncCoalescer")
+class AggregateSyncCoalescerTest {
+
+    @Mock ProductService productService;
+    @Mock FailedAggregateSyncRepository failedSyncRepository;
+
+    SimpleMeterRegistry meterRegistry;
+    AggregateSyncCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // Direct executor is never hit below max-batch; flushes are driven by the test
+        coalescer = new AggregateSyncCoalescer(
+                productService, failedSyncRepository, Runnable::run, meterRegistry, 500);
+
+        when(productService.refreshAggregates(anyCollection(), anySet())).thenAnswer(inv ->
+                new AggregateSyncResult(new HashSet<>(inv.getArgument(0)), Set.of(), Map.of()));
+    }
+
+    @Test
+    @DisplayName("a burst of events on hot products collapses into one bulk sync")
+    void burst_isCoalescedIntoOneSync() {
+        for (int i = 0; i < 100; i++) {
+            coalescer.markDirty("hot-product", false);
+        }
+        coalescer.markDirty("product-b", false);
+        coalescer.markDirty("product-c", false);
+
+        assertThat(coalescer.pendingCount()).isEqualTo(3);
+
+        coalescer.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> batch = ArgumentCaptor.forClass(Collection.class);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Set<String>> priceChanged = ArgumentCaptor.forClass(Set.class);
+        verify(productService, times(1)).refreshAggregates(batch.capture(), priceChanged.capture());
+        assertThat(batch.getValue()).containsExactlyInAnyOrder("hot-product", "product-b", "product-c");
+        assertThat(priceChanged.getValue()).isEmpty();
+
+        assertThat(coalescer.pendingCount()).isZero();
+        assertThat(coalescer.coalescingRatio()).isEqualTo(102.0 / 3);
+        assertThat(meterRegistry.get("aggregate.sync.queue.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("a price change anywhere in the burst sticks until the flush")
+    void priceChange_isMergedAcrossEvents() {
+        coalescer.markDirty("p1", true);
+        coalescer.markDirty("p1", false);   // later stock-only event must not clear the flag
+        coalescer.markDirty("p2", false);
+
+        coalescer.flush();
+
+        verify(productService).refreshAggregates(anyCollection(), eq(Set.of("p1")));
+    }
+
+    @Test
+    @DisplayName("products the bulk write could not update are parked in FailedAggregateSync")
+    void bulkWriteError_isRecordedForRetry() {
+        when(productService.refreshAggregates(anyCollection(), anySet())).thenReturn(
+                new AggregateSyncResult(Set.of("ok"), Set.of(), Map.of("broken", "E11000 write error")));
+
+        coalescer.markDirty("ok", false);
+        coalescer.markDirty("broken", false);
+        coalescer.flush();
+
+        ArgumentCaptor<FailedAggregateSync> saved = ArgumentCaptor.forClass(FailedAggregateSync.class);
+        verify(failedSyncRepository, times(1)).save(saved.capture());
+        assertThat(saved.getValue().getProductId()).isEqualTo("broken");
+        assertThat(saved.getValue().isResolved()).isFalse();
+        assertThat(meterRegistry.get("aggregate.sync.failures").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("a batch-wide failure records every product in the batch")
+    void infrastructureFailure_recordsWholeBatch() {
+        when(productService.refreshAggregates(anyCollection(), anySet()))
+                .thenThrow(new RuntimeException("connection refused"));
+
+        coalescer.markDirty("a", false);
+        coalescer.markDirty("b", false);
+        coalescer.flush();
+
+        verify(failedSyncRepository, times(2)).save(any(FailedAggregateSync.class));
+    }
+
+    @Test
+    @DisplayName("exceeding max-batch flushes early and splits into bounded batches")
+    void maxBatch_triggersEarlyFlush() {
+        coalescer = new AggregateSyncCoalescer(
+                productService, failedSyncRepository, Runnable::run, meterRegistry, 2);
+
+        coalescer.markDirty("a", false);
+        coalescer.markDirty("b", false);   // hits max-batch → drained on the (direct) executor
+
+        verify(productService, times(1)).refreshAggregates(anyCollection(), anySet());
+        assertThat(coalescer.pendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("a busy flusher leaves the early flush to the tick, never to the marking thread")
+    void rejectedEarlyFlush_waitsForTick() {
+        coalescer = new AggregateSyncCoalescer(productService, failedSyncRepository,
+                task -> { throw new RejectedExecutionException("busy"); }, meterRegistry, 2);
+
+        coalescer.markDirty("a", false);
+        coalescer.markDirty("b", false);
+
+        verify(productService, never()).refreshAggregates(anyCollection(), anySet());
+        assertThat(coalescer.pendingCount()).isEqualTo(2);
+
+        coalescer.flush();
+        verify(productService, times(1)).refreshAggregates(anyCollection(), anySet());
+    }
+}
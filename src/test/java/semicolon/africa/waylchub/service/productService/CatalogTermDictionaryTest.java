@@ -0,0 +1,125 @@
+package semicolon.africa.waylchub.service.productService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import semicolon.africa.waylchub.model.product.Brand;
+import semicolon.africa.waylchub.model.product.Category;
+import semicolon.africa.waylchub.repository.productRepository.CategoryRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("CatalogTermDictionary")
+class CatalogTermDictionaryTest {
+
+    @Mock MongoTemplate mongoTemplate;
+    @Mock CategoryRepository categoryRepository;
+    @Mock StringRedisTemplate redisTemplate;
+    @Mock RedisMessageListenerContainer listenerContainer;
+
+    CatalogTermDictionary dictionary;
+
+    @BeforeEach
+    void setUp() {
+        dictionary = new CatalogTermDictionary(mongoTemplate, categoryRepository, redisTemplate, listenerContainer);
+
+        when(mongoTemplate.find(any(Query.class), eq(Category.class))).thenReturn(List.of(
+                category("c-men", "Men", "men", ","),
+                category("c-jeans", "Jeans", "men-jeans", ",c-men,"),
+                category("c-skinny", "Skinny Jeans", "skinny-jeans", ",c-men,c-jeans,"),
+                category("c-tees", "T-Shirts", "t-shirts", ",c-men,")));
+        when(mongoTemplate.find(any(Query.class), eq(Brand.class))).thenReturn(List.of(
+                brand("Levi's"), brand("Tommy Hilfiger")));
+    }
+
+    @Test
+    @DisplayName("resolves slugs and their descendant lineage from memory")
+    void slugLookups() {
+        assertThat(dictionary.categoryIdForSlug("men-jeans")).contains("c-jeans");
+        assertThat(dictionary.categoryAndDescendantIds("men"))
+                .containsExactlyInAnyOrder("c-men", "c-jeans", "c-skinny", "c-tees");
+        assertThat(dictionary.categoryAndDescendantIds("men-jeans"))
+                .containsExactlyInAnyOrder("c-jeans", "c-skinny");
+
+        dictionary.categoryIdForSlug("skinny-jeans");
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Category.class));
+        verifyNoInteractions(categoryRepository);
+    }
+
+    @Test
+    @DisplayName("an unknown slug falls back to the repository")
+    void unknownSlugFallsBack() {
+        Category fresh = category("c-new", "New In", "new-in", ",");
+        when(categoryRepository.findBySlug("new-in")).thenReturn(Optional.of(fresh));
+
+        assertThat(dictionary.categoryIdForSlug("new-in")).contains("c-new");
+        assertThat(dictionary.categoryIdForSlug("nope")).isEmpty();
+        assertThat(dictionary.categoryAndDescendantIds("nope")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("query terms expand to categories by slug and by normalised name token")
+    void categoryTerms() {
+        assertThat(dictionary.categoryIdsMatching(List.of("jeans"))).containsExactlyInAnyOrder("c-jeans", "c-skinny");
+        assertThat(dictionary.categoryIdsMatching(List.of("shirts"))).containsExactly("c-tees");
+        assertThat(dictionary.categoryIdsMatching(List.of("t-shirts"))).containsExactly("c-tees");
+        // Shorter than the category threshold, as the regex strategy had it
+        assertThat(dictionary.categoryIdsMatching(List.of("me"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("query terms resolve to brand names exactly as stored on products")
+    void brandTerms() {
+        assertThat(dictionary.brandNamesMatching(List.of("levis"))).containsExactly("Levi's");
+        assertThat(dictionary.brandNamesMatching(List.of("tommy", "jeans"))).containsExactly("Tommy Hilfiger");
+        assertThat(dictionary.brandNamesMatching(List.of("zara"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("invalidate drops the snapshot, broadcasts, and the next read reloads")
+    void invalidateReloads() {
+        dictionary.categoryIdForSlug("men");
+        dictionary.invalidate();
+        dictionary.categoryIdForSlug("men");
+
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(Category.class));
+        verify(redisTemplate).convertAndSend(eq(CatalogTermDictionary.CHANNEL), any(String.class));
+    }
+
+    // =============================================================================
+    // HELPER METHODS
+    // =============================================================================
+
+    private static Category category(String id, String name, String slug, String lineage) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(name);
+        category.setSlug(slug);
+        category.setLineage(lineage);
+        return category;
+    }
+
+    private static Brand brand(String name) {
+        Brand brand = new Brand();
+        brand.setId("b-" + name.toLowerCase());
+        brand.setName(name);
+        return brand;
+    }
+}
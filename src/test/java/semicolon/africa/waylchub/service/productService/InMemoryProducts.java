@@ -0,0 +1,120 @@
+package semicolon.africa.waylchub.service.productService;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.Query;
+import semicolon.africa.waylchub.model.product.Product;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Runs the subset of MongoDB queries the cursor listings build (equality, $gt,
+ * $lt, $gte, $lte, $ne, $in, $and, $or, sort, limit) against a product list,
+ * with MongoDB's ordering of null below every value. Lets the keyset tests walk
+ * real pages without a database.
+ */
+final class InMemoryProducts {
+
+    private final List<Product> products;
+
+    InMemoryProducts(List<Product> products) {
+        this.products = List.copyOf(products);
+    }
+
+    List<Product> find(Query query) {
+        Document criteria = query.getQueryObject();
+        return products.stream()
+                .filter(p -> matches(p, criteria))
+                .sorted(comparator(query.getSortObject()))
+                .limit(query.getLimit() > 0 ? query.getLimit() : Long.MAX_VALUE)
+                .toList();
+    }
+
+    long count(Query query) {
+        Document criteria = query.getQueryObject();
+        long matching = products.stream().filter(p -> matches(p, criteria)).count();
+        return query.getLimit() > 0 ? Math.min(matching, query.getLimit()) : matching;
+    }
+
+    // =========================================================================
+    // HELPER METHODS
+    // =========================================================================
+
+    private static boolean matches(Product product, Document criteria) {
+        for (Map.Entry<String, Object> e : criteria.entrySet()) {
+            boolean ok = switch (e.getKey()) {
+                case "$and" -> clauses(e.getValue()).stream().allMatch(c -> matches(product, c));
+                case "$or"  -> clauses(e.getValue()).stream().anyMatch(c -> matches(product, c));
+                default     -> matchesField(field(product, e.getKey()), e.getValue());
+            };
+            if (!ok) return false;
+        }
+        return true;
+    }
+
+    private static boolean matchesField(Object actual, Object condition) {
+        if (!(condition instanceof Document operators)) {
+            return compare(actual, condition) == 0;
+        }
+        for (Map.Entry<String, Object> op : operators.entrySet()) {
+            Object expected = op.getValue();
+            boolean ok = switch (op.getKey()) {
+                case "$gt"  -> actual != null && compare(actual, expected) > 0;
+                case "$lt"  -> actual != null && compare(actual, expected) < 0;
+                case "$gte" -> actual != null && compare(actual, expected) >= 0;
+                case "$lte" -> actual != null && compare(actual, expected) <= 0;
+                case "$ne"  -> compare(actual, expected) != 0;
+                case "$in"  -> in(actual, (Collection<?>) expected);
+                default -> throw new UnsupportedOperationException(op.getKey());
+            };
+            if (!ok) return false;
+        }
+        return true;
+    }
+
+    private static boolean in(Object actual, Collection<?> expected) {
+        if (actual instanceof Collection<?> values) {
+            return values.stream().anyMatch(v -> expected.stream().anyMatch(x -> compare(v, x) == 0));
+        }
+        return expected.stream().anyMatch(x -> compare(actual, x) == 0);
+    }
+
+    private static Comparator<Product> comparator(Document sort) {
+        Comparator<Product> order = (a, b) -> 0;
+        for (Map.Entry<String, Object> e : sort.entrySet()) {
+            String name = e.getKey();
+            Comparator<Product> byField = (a, b) -> compare(field(a, name), field(b, name));
+            order = order.thenComparing(((Number) e.getValue()).intValue() < 0 ? byField.reversed() : byField);
+        }
+        return order;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : a == null ? -1 : 1;
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Document> clauses(Object value) {
+        return (List<Document>) value;
+    }
+
+    private static Object field(Product product, String name) {
+        return switch (name) {
+            case "id", "_id"          -> product.getId();
+            case "minPrice"           -> product.getMinPrice();
+            case "maxPrice"           -> product.getMaxPrice();
+            case "createdAt"          -> product.getCreatedAt();
+            case "soldCount"          -> product.getSoldCount();
+            case "isActive"           -> product.isActive();
+            case "categoryLineageIds" -> product.getCategoryLineageIds();
+            default -> throw new UnsupportedOperationException(Objects.toString(name));
+        };
+    }
+}
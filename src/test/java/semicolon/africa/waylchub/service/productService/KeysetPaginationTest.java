@@ -0,0 +1,218 @@
+package semicolon.africa.waylchub.service.productService;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Query;
+import semicolon.africa.waylchub.dto.productDto.CursorPage;
+import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.service.productService.KeysetPagination.SortKey;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("KeysetPagination")
+class KeysetPaginationTest {
+
+    // minPrice ties on 10 and two nulls, so every seek branch is exercised
+    final InMemoryProducts byPrice = new InMemoryProducts(List.of(
+            priced("a", "10"), priced("b", "10.00"), priced("c", null), priced("d", "5"),
+            priced("e", "10"), priced("f", null), priced("g", "20")));
+
+    // =========================================================================
+    // KEYSET WALKS
+    // =========================================================================
+
+    @Test
+    @DisplayName("PRICE_ASC: nulls first, ties broken by ascending id, nothing repeated or skipped")
+    void priceAscWalksEveryProductOnce() {
+        assertThat(walk(byPrice, SortKey.PRICE_ASC, 2))
+                .containsExactly(List.of("c", "f"), List.of("d", "a"), List.of("b", "e"), List.of("g"));
+    }
+
+    @Test
+    @DisplayName("PRICE_DESC: ties broken by descending id, then the null-priced products last")
+    void priceDescWalksEveryProductOnce() {
+        // the cursor after "d" still owes the nulls; the one after "f" is the null-valued DESC seek
+        assertThat(walk(byPrice, SortKey.PRICE_DESC, 2))
+                .containsExactly(List.of("g", "e"), List.of("b", "a"), List.of("d", "f"), List.of("c"));
+    }
+
+    @Test
+    @DisplayName("PRICE_DESC resumes after a null sort value with only the remaining nulls")
+    void priceDescAfterNullSeeksRemainingNulls() {
+        assertThat(walk(byPrice, SortKey.PRICE_DESC, 3))
+                .containsExactly(List.of("g", "e", "b"), List.of("a", "d", "f"), List.of("c"));
+    }
+
+    @Test
+    @DisplayName("NEWEST round-trips an Instant through the cursor, ties on createdAt included")
+    void newestWalksEveryProductOnce() {
+        Instant t = Instant.parse("2026-03-01T10:15:30.123Z");
+        InMemoryProducts store = new InMemoryProducts(List.of(
+                created("a", t), created("b", t), created("c", t.plusSeconds(60)),
+                created("d", null), created("e", t.minusSeconds(60))));
+
+        assertThat(walk(store, SortKey.NEWEST, 2))
+                .containsExactly(List.of("c", "b"), List.of("a", "e"), List.of("d"));
+    }
+
+    @Test
+    @DisplayName("POPULAR breaks soldCount ties on id")
+    void popularWalksEveryProductOnce() {
+        InMemoryProducts store = new InMemoryProducts(List.of(
+                sold("a", 7L), sold("b", 7L), sold("c", 7L), sold("d", 9L), sold("e", 0L)));
+
+        assertThat(walk(store, SortKey.POPULAR, 2))
+                .containsExactly(List.of("d", "c"), List.of("b", "a"), List.of("e"));
+    }
+
+    // =========================================================================
+    // SLICE / APPLY
+    // =========================================================================
+
+    @Test
+    @DisplayName("apply sorts on (field, id) and asks for one look-ahead row")
+    void applyAddsSortAndLookAhead() {
+        Query query = new Query();
+
+        KeysetPagination.apply(query, SortKey.PRICE_ASC, null, 24);
+
+        assertThat(query.getLimit()).isEqualTo(25);
+        assertThat(query.getSortObject().keySet()).containsExactly("minPrice", "id");
+        assertThat(query.getQueryObject()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("slice without a look-ahead row is the last slice and mints no cursor")
+    void sliceWithoutLookAheadIsLast() {
+        CursorPage<Product> page = KeysetPagination.slice(
+                List.of(priced("a", "1"), priced("b", "2")), SortKey.PRICE_ASC, 2);
+
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+        assertThat(page.getContent()).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("clampSize defaults non-positive sizes and caps large ones")
+    void clampSize() {
+        assertThat(KeysetPagination.clampSize(0)).isEqualTo(KeysetPagination.DEFAULT_PAGE_SIZE);
+        assertThat(KeysetPagination.clampSize(-3)).isEqualTo(KeysetPagination.DEFAULT_PAGE_SIZE);
+        assertThat(KeysetPagination.clampSize(500)).isEqualTo(KeysetPagination.MAX_PAGE_SIZE);
+        assertThat(KeysetPagination.clampSize(12)).isEqualTo(12);
+    }
+
+    // =========================================================================
+    // OFFSET CURSORS
+    // =========================================================================
+
+    @Test
+    @DisplayName("offset cursors round-trip; a missing cursor is offset 0")
+    void offsetRoundTrip() {
+        assertThat(KeysetPagination.decodeOffset(KeysetPagination.encodeOffset(48))).isEqualTo(48);
+        assertThat(KeysetPagination.decodeOffset(null)).isZero();
+        assertThat(KeysetPagination.decodeOffset(" ")).isZero();
+        assertThat(KeysetPagination.decodeOffset(raw("v1|o|-5"))).isZero();
+    }
+
+    // =========================================================================
+    // TAMPERED CURSORS
+    // =========================================================================
+
+    @Test
+    @DisplayName("tampered keyset cursors are rejected as invalid")
+    void tamperedKeysetCursorsAreRejected() {
+        for (String cursor : List.of(
+                "not base64!",
+                raw("v2|k|PRICE_ASC|10|a"),
+                raw("v1|k|PRICE_ASC|10"),
+                raw("v1|k|PRICE_ASC|ten|a"),
+                raw("v1|k|PRICE_ASC|10|a|extra"),
+                KeysetPagination.encodeOffset(24))) {
+            assertThatThrownBy(() -> KeysetPagination.apply(new Query(), SortKey.PRICE_ASC, cursor, 24))
+                    .as(cursor)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Invalid cursor");
+        }
+    }
+
+    @Test
+    @DisplayName("a cursor minted for one sort cannot page another")
+    void cursorForAnotherSortIsRejected() {
+        String priceCursor = KeysetPagination.slice(
+                List.of(priced("a", "1"), priced("b", "2")), SortKey.PRICE_ASC, 1).getNextCursor();
+
+        assertThatThrownBy(() -> KeysetPagination.apply(new Query(), SortKey.NEWEST, priceCursor, 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("PRICE_ASC");
+    }
+
+    @Test
+    @DisplayName("tampered offset cursors are rejected as invalid")
+    void tamperedOffsetCursorsAreRejected() {
+        String keysetCursor = KeysetPagination.slice(
+                List.of(priced("a", "1"), priced("b", "2")), SortKey.PRICE_ASC, 1).getNextCursor();
+
+        for (String cursor : List.of("%%%", raw("v1|o|many"), raw("v1|o"), raw("v0|o|5"), keysetCursor)) {
+            assertThatThrownBy(() -> KeysetPagination.decodeOffset(cursor))
+                    .as(cursor)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Invalid cursor");
+        }
+    }
+
+    // =========================================================================
+    // HELPER METHODS
+    // =========================================================================
+
+    /** Follows nextCursor from the first slice to the last, as an infinite-scroll client would. */
+    private static List<List<String>> walk(InMemoryProducts store, SortKey sort, int size) {
+        List<List<String>> pages = new ArrayList<>();
+        String cursor = null;
+        do {
+            Query query = new Query();
+            KeysetPagination.apply(query, sort, cursor, size);
+            CursorPage<Product> page = KeysetPagination.slice(store.find(query), sort, size);
+            pages.add(page.getContent().stream().map(Product::getId).toList());
+            cursor = page.getNextCursor();
+            assertThat(page.isHasNext()).isEqualTo(cursor != null);
+        } while (cursor != null && pages.size() < 20);
+        return pages;
+    }
+
+    private static String raw(String cursor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Product priced(String id, String minPrice) {
+        Product product = product(id);
+        product.setMinPrice(minPrice != null ? new BigDecimal(minPrice) : null);
+        return product;
+    }
+
+    private static Product created(String id, Instant createdAt) {
+        Product product = product(id);
+        product.setCreatedAt(createdAt);
+        return product;
+    }
+
+    private static Product sold(String id, Long soldCount) {
+        Product product = product(id);
+        product.setSoldCount(soldCount);
+        return product;
+    }
+
+    private static Product product(String id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setActive(true);
+        return product;
+    }
+}
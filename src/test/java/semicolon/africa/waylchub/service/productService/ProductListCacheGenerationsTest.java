@@ -0,0 +1,168 @@
+package semicolon.africa.waylchub.service.productService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import semicolon.africa.waylchub.model.product.Category;
+import semicolon.africa.waylchub.repository.productRepository.CategoryRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("ProductListCacheGenerations")
+class ProductListCacheGenerationsTest {
+
+    @Mock StringRedisTemplate redisTemplate;
+    @Mock ValueOperations<String, String> valueOps;
+    @Mock CategoryRepository categoryRepository;
+
+    ProductListCacheGenerations generations;
+
+    // Stand-in for Redis: generation counters keyed by their Redis key
+    final Map<String, Long> redis = new ConcurrentHashMap<>();
+
+    final Category fashion = category("cat-fashion", "fashion", null);
+    final Category shoes   = category("cat-shoes",   "shoes",   "cat-fashion");
+    final Category phones  = category("cat-phones",  "phones",  null);
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.get(anyString())).thenAnswer(inv -> {
+            Long v = redis.get(inv.<String>getArgument(0));
+            return v != null ? v.toString() : null;
+        });
+        when(valueOps.increment(anyString())).thenAnswer(inv ->
+                redis.merge(inv.<String>getArgument(0), 1L, Long::sum));
+
+        Map<String, Category> byId = Map.of(
+                fashion.getId(), fashion, shoes.getId(), shoes, phones.getId(), phones);
+        when(categoryRepository.findAllById(anyIterable())).thenAnswer(inv -> {
+            List<Category> found = new ArrayList<>();
+            inv.<Iterable<String>>getArgument(0).forEach(id -> {
+                if (byId.containsKey(id)) found.add(byId.get(id));
+            });
+            return found;
+        });
+
+        generations = new ProductListCacheGenerations(redisTemplate, categoryRepository, 5);
+    }
+
+    @Test
+    @DisplayName("stock change in one category leaves other categories' cached pages warm")
+    void stockChange_onlyInvalidatesTouchedLineage() {
+        Cache listCache = new ConcurrentMapCache("productsList");
+
+        String shoesKey   = generations.keyPrefix("shoes")   + "__shoes_0_24";
+        String fashionKey = generations.keyPrefix("fashion") + "__fashion_0_24";
+        String phonesKey  = generations.keyPrefix("phones")  + "__phones_0_24";
+        String homeKey    = generations.keyPrefix(null)      + "___0_24";
+        listCache.put(shoesKey,   "shoes page");
+        listCache.put(fashionKey, "fashion page");
+        listCache.put(phonesKey,  "phones page");
+        listCache.put(homeKey,    "home page");
+
+        // A paid order reduces stock on a product in fashion > shoes
+        generations.bumpForLineage(List.of("cat-fashion", "cat-shoes"));
+
+        // Pages that could contain the product resolve to new keys → cache miss
+        assertThat(listCache.get(generations.keyPrefix("shoes")   + "__shoes_0_24")).isNull();
+        assertThat(listCache.get(generations.keyPrefix("fashion") + "__fashion_0_24")).isNull();
+        assertThat(listCache.get(generations.keyPrefix(null)      + "___0_24")).isNull();
+
+        // An unrelated category keeps its key → still a hit
+        Cache.ValueWrapper phonesPage = listCache.get(generations.keyPrefix("phones") + "__phones_0_24");
+        assertThat(phonesPage).isNotNull();
+        assertThat(phonesPage.get()).isEqualTo("phones page");
+    }
+
+    @Test
+    @DisplayName("bump is visible to another pod once its local mirror expires")
+    void bump_isSharedThroughRedis() {
+        ProductListCacheGenerations otherPod =
+                new ProductListCacheGenerations(redisTemplate, categoryRepository, 0);
+
+        String before = otherPod.keyPrefix("shoes");
+        generations.bumpForLineage(List.of("cat-shoes"));
+
+        assertThat(otherPod.keyPrefix("shoes")).isNotEqualTo(before);
+        assertThat(otherPod.keyPrefix("shoes")).isEqualTo(generations.keyPrefix("shoes"));
+    }
+
+    @Test
+    @DisplayName("Redis outage falls back to a local counter that still changes the key")
+    void redisDown_fallsBackToLocalCounter() {
+        String before = generations.keyPrefix("phones");
+
+        when(valueOps.increment(anyString())).thenThrow(new RuntimeException("connection refused"));
+        generations.bumpForLineage(List.of("cat-phones"));
+
+        assertThat(generations.keyPrefix("phones")).isNotEqualTo(before);
+    }
+
+    @Test
+    @DisplayName("a bump made while Redis was down is not undone when Redis comes back")
+    void redisRecovery_neverMovesGenerationBackwards() {
+        ProductListCacheGenerations pod = new ProductListCacheGenerations(redisTemplate, categoryRepository, 0);
+        generations.bumpForLineage(List.of("cat-phones"));
+        String cachedBeforeOutage = pod.keyPrefix("phones");
+
+        when(valueOps.increment(anyString())).thenThrow(new RuntimeException("connection refused"));
+        when(valueOps.get(anyString())).thenThrow(new RuntimeException("connection refused"));
+        pod.bumpForLineage(List.of("cat-phones"));
+        String afterOutageWrite = pod.keyPrefix("phones");
+        assertThat(afterOutageWrite).isNotEqualTo(cachedBeforeOutage);
+
+        // Redis is back with its older counter
+        doAnswer(inv -> {
+            Long v = redis.get(inv.<String>getArgument(0));
+            return v != null ? v.toString() : null;
+        }).when(valueOps).get(anyString());
+        doAnswer(inv -> redis.merge(inv.<String>getArgument(0), 1L, Long::sum)).when(valueOps).increment(anyString());
+        assertThat(pod.keyPrefix("phones")).isEqualTo(afterOutageWrite);
+
+        // The next write moves the key even though Redis only catches up to the fallback
+        pod.bumpForLineage(List.of("cat-phones"));
+        assertThat(pod.keyPrefix("phones")).isNotIn(cachedBeforeOutage, afterOutageWrite);
+    }
+
+    @Test
+    @DisplayName("inside a transaction the bump waits for the commit")
+    void bumpInTransaction_isDeferredToAfterCommit() {
+        String before = generations.keyPrefix("shoes");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            generations.bumpForLineage(List.of("cat-shoes"));
+            assertThat(generations.keyPrefix("shoes")).isEqualTo(before);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(generations.keyPrefix("shoes")).isNotEqualTo(before);
+    }
+
+    private static Category category(String id, String slug, String lineage) {
+        return Category.builder().id(id).slug(slug).name(slug).lineage(lineage).build();
+    }
+}
@@ -0,0 +1,208 @@
+package semicolon.africa.waylchub.service.productService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.transaction.PlatformTransactionManager;
+import semicolon.africa.waylchub.dto.productDto.CursorPage;
+import semicolon.africa.waylchub.dto.productDto.ProductFilterRequest;
+import semicolon.africa.waylchub.exception.ResourceNotFoundException;
+import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.repository.productRepository.BrandRepository;
+import semicolon.africa.waylchub.repository.productRepository.CategoryRepository;
+import semicolon.africa.waylchub.repository.productRepository.ProductRepository;
+import semicolon.africa.waylchub.repository.productRepository.ProductVariantRepository;
+import semicolon.africa.waylchub.service.campaign.CampaignService;
+import semicolon.africa.waylchub.service.productService.KeysetPagination.SortKey;
+import semicolon.africa.waylchub.service.recommendation.ProductSearchIndex;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * filterProductsByCursor against an in-memory catalogue: every query the
+ * service builds is run by InMemoryProducts, so slices are what MongoDB
+ * would return for the same criteria, sort and limit.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("ProductService cursor listings")
+class ProductServiceCursorTest {
+
+    @Mock ProductRepository productRepository;
+    @Mock ProductVariantRepository variantRepository;
+    @Mock CategoryRepository categoryRepository;
+    @Mock BrandRepository brandRepository;
+    @Mock MongoTemplate mongoTemplate;
+    @Mock CampaignService campaignService;
+    @Mock ApplicationEventPublisher eventPublisher;
+    @Mock CacheManager cacheManager;
+    @Mock ProductListCacheGenerations listCacheGenerations;
+    @Mock ProductSearchIndex searchIndex;
+    @Mock CatalogTermDictionary termDictionary;
+    @Mock PlatformTransactionManager transactionManager;
+
+    ProductService service;
+
+    final Instant t0 = Instant.parse("2026-05-01T00:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        service = new ProductService(productRepository, variantRepository, categoryRepository, brandRepository,
+                mongoTemplate, campaignService, eventPublisher, cacheManager, listCacheGenerations,
+                searchIndex, termDictionary, transactionManager);
+
+        when(termDictionary.categoryIdForSlug(anyString())).thenAnswer(inv ->
+                "jeans".equals(inv.getArgument(0)) ? Optional.of("cat-jeans") : Optional.empty());
+    }
+
+    // =========================================================================
+    // CATEGORY CURSOR
+    // =========================================================================
+
+    @Test
+    @DisplayName("page 2 of a category cursor continues after page 1 inside the category only")
+    void categoryCursorPageTwo() {
+        // j1..j5 are jeans, newest first by number; j3 and j4 share a timestamp; s1 and hidden are filtered out
+        useCatalogue(List.of(
+                product("j1", "cat-jeans", t0.plusSeconds(50), true),
+                product("s1", "cat-shoes", t0.plusSeconds(45), true),
+                product("j2", "cat-jeans", t0.plusSeconds(40), true),
+                product("j3", "cat-jeans", t0.plusSeconds(30), true),
+                product("j4", "cat-jeans", t0.plusSeconds(30), true),
+                product("hidden", "cat-jeans", t0.plusSeconds(25), false),
+                product("j5", "cat-jeans", t0.plusSeconds(20), true)));
+        ProductFilterRequest filter = category("jeans");
+
+        CursorPage<Product> page1 = service.filterProductsByCursor(filter, SortKey.NEWEST, null, 2, false);
+        CursorPage<Product> page2 = service.filterProductsByCursor(filter, SortKey.NEWEST, page1.getNextCursor(), 2, false);
+        CursorPage<Product> page3 = service.filterProductsByCursor(filter, SortKey.NEWEST, page2.getNextCursor(), 2, false);
+
+        assertThat(page1.getContent()).extracting(Product::getId).containsExactly("j1", "j2");
+        assertThat(page2.getContent()).extracting(Product::getId).containsExactly("j4", "j3");
+        assertThat(page2.isHasNext()).isTrue();
+        assertThat(page3.getContent()).extracting(Product::getId).containsExactly("j5");
+        assertThat(page3.isHasNext()).isFalse();
+        assertThat(page3.getNextCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("an unknown category slug is a 404, not an unfiltered listing")
+    void unknownCategoryIsNotFound() {
+        assertThatThrownBy(() -> service.filterProductsByCursor(category("nope"), SortKey.NEWEST, null, 24, false))
+                .isInstanceOf(ResourceNotFoundException.class);
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Product.class));
+    }
+
+    // =========================================================================
+    // TOTAL COUNT
+    // =========================================================================
+
+    @Test
+    @DisplayName("the total is exact below the cap and ignores the cursor position")
+    void totalIsExactBelowCap() {
+        useCatalogue(jeans(5));
+
+        CursorPage<Product> page1 = service.filterProductsByCursor(category("jeans"), SortKey.NEWEST, null, 2, true);
+        CursorPage<Product> page2 = service.filterProductsByCursor(
+                category("jeans"), SortKey.NEWEST, page1.getNextCursor(), 2, true);
+
+        assertThat(page1.getTotalElements()).isEqualTo(5L);
+        assertThat(page1.getTotalExact()).isTrue();
+        assertThat(page2.getTotalElements()).isEqualTo(5L);
+        assertThat(page2.getTotalExact()).isTrue();
+    }
+
+    @Test
+    @DisplayName("past the cap the count stops at TOTAL_COUNT_CAP and is flagged inexact")
+    void totalIsCappedAboveCap() {
+        useCatalogue(jeans(KeysetPagination.TOTAL_COUNT_CAP + 50));
+
+        CursorPage<Product> page = service.filterProductsByCursor(category("jeans"), SortKey.NEWEST, null, 24, true);
+
+        assertThat(page.getTotalElements()).isEqualTo((long) KeysetPagination.TOTAL_COUNT_CAP);
+        assertThat(page.getTotalExact()).isFalse();
+        ArgumentCaptor<Query> countQuery = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).count(countQuery.capture(), eq(Product.class));
+        assertThat(countQuery.getValue().getLimit()).isEqualTo(KeysetPagination.TOTAL_COUNT_CAP + 1);
+    }
+
+    @Test
+    @DisplayName("exactly TOTAL_COUNT_CAP matches is still an exact total")
+    void totalAtCapIsExact() {
+        useCatalogue(jeans(KeysetPagination.TOTAL_COUNT_CAP));
+
+        CursorPage<Product> page = service.filterProductsByCursor(category("jeans"), SortKey.NEWEST, null, 24, true);
+
+        assertThat(page.getTotalElements()).isEqualTo((long) KeysetPagination.TOTAL_COUNT_CAP);
+        assertThat(page.getTotalExact()).isTrue();
+    }
+
+    @Test
+    @DisplayName("no count query is run unless the total is asked for")
+    void noCountWithoutIncludeTotal() {
+        useCatalogue(jeans(3));
+
+        CursorPage<Product> page = service.filterProductsByCursor(category("jeans"), SortKey.NEWEST, null, 24, false);
+
+        assertThat(page.getTotalElements()).isNull();
+        assertThat(page.getTotalExact()).isNull();
+        verify(mongoTemplate, never()).count(any(Query.class), eq(Product.class));
+    }
+
+    // =============================================================================
+    // HELPER METHODS
+    // =============================================================================
+
+    private void useCatalogue(List<Product> products) {
+        InMemoryProducts store = new InMemoryProducts(products);
+        when(mongoTemplate.find(any(Query.class), eq(Product.class)))
+                .thenAnswer(inv -> store.find(inv.getArgument(0)));
+        when(mongoTemplate.count(any(Query.class), eq(Product.class)))
+                .thenAnswer(inv -> store.count(inv.getArgument(0)));
+    }
+
+    private List<Product> jeans(int count) {
+        List<Product> products = new ArrayList<>(count);
+        IntStream.range(0, count).forEach(i ->
+                products.add(product("j" + i, "cat-jeans", t0.plusSeconds(i), true)));
+        return products;
+    }
+
+    private static ProductFilterRequest category(String slug) {
+        ProductFilterRequest filter = new ProductFilterRequest();
+        filter.setCategorySlug(slug);
+        return filter;
+    }
+
+    private static Product product(String id, String categoryId, Instant createdAt, boolean active) {
+        Product product = new Product();
+        product.setId(id);
+        product.setCategoryLineageIds(List.of(categoryId));
+        product.setCreatedAt(createdAt);
+        product.setActive(active);
+        return product;
+    }
+}
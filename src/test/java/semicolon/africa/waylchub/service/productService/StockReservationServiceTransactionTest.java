@@ -0,0 +1,165 @@
+package semicolon.africa.waylchub.service.productService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import semicolon.africa.waylchub.model.order.Order;
+import semicolon.africa.waylchub.model.order.OrderItem;
+import semicolon.africa.waylchub.model.product.ProductVariant;
+import semicolon.africa.waylchub.model.product.StockReservation;
+import semicolon.africa.waylchub.model.product.StockReservation.Line;
+import semicolon.africa.waylchub.model.product.StockReservation.Status;
+import semicolon.africa.waylchub.repository.productRepository.StockReservationRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs StockReservationService behind a real Spring transaction proxy with a
+ * mocked transaction manager, to check which entry points actually open a
+ * transaction — the bit a plain unit test of the class cannot see.
+ */
+@DisplayName("StockReservationService — transaction boundaries")
+class StockReservationServiceTransactionTest {
+
+    AnnotationConfigApplicationContext context;
+    StockReservationService service;
+    PlatformTransactionManager transactionManager;
+    MongoTemplate mongoTemplate;
+    ProductService productService;
+
+    final List<Line> lines = List.of(Line.builder().variantId("v1").productId("p1").quantity(2).build());
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(ProxyConfig.class);
+        service = context.getBean(StockReservationService.class);
+        transactionManager = context.getBean(PlatformTransactionManager.class);
+        mongoTemplate = context.getBean(MongoTemplate.class);
+        productService = context.getBean(ProductService.class);
+
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(StockReservation.class)))
+                .thenReturn(StockReservation.builder().id("r1").status(Status.HELD).lines(lines).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    @DisplayName("A failed reservation save rolls back the stock hold with it")
+    void failedReserveSaveRollsBack() {
+        when(mongoTemplate.find(any(Query.class), eq(ProductVariant.class)))
+                .thenReturn(List.of(ProductVariant.builder().id("v1").build()));
+        StockReservationRepository repository = context.getBean(StockReservationRepository.class);
+        when(repository.save(any(StockReservation.class))).thenThrow(new IllegalStateException("write conflict"));
+
+        assertThatThrownBy(() -> service.reserve(lines)).isInstanceOf(IllegalStateException.class);
+
+        verify(transactionManager, times(1)).getTransaction(any(TransactionDefinition.class));
+        verify(productService).reduceStockBatch(lines, true);
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    @DisplayName("Cancelling releases the hold inside one transaction")
+    void releaseForCancellationIsTransactional() {
+        List<OrderItem> toRestore = service.releaseForCancellation(order("r1"));
+
+        assertThat(toRestore).isEmpty();
+        verify(transactionManager, times(1)).getTransaction(any(TransactionDefinition.class));
+        verify(productService).addStockBatch(lines, true);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("A failed stock return rolls back the status flip with it")
+    void failedStockReturnRollsBack() {
+        doThrow(new IllegalStateException("write conflict")).when(productService).addStockBatch(anyList(), anyBoolean());
+
+        assertThatThrownBy(() -> service.releaseForCancellation(order("r1")))
+                .isInstanceOf(IllegalStateException.class);
+
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    @DisplayName("The expiry job's direct release still gets its own transaction")
+    void directReleaseIsTransactional() {
+        assertThat(service.release("r1", Status.EXPIRED)).isTrue();
+
+        verify(transactionManager, times(1)).getTransaction(any(TransactionDefinition.class));
+        verify(transactionManager).commit(any());
+    }
+
+    // =========================================================================
+    // HELPER METHODS
+    // =========================================================================
+
+    private static Order order(String reservationId) {
+        Order order = new Order();
+        order.setReservationId(reservationId);
+        order.setItems(List.of(new OrderItem()));
+        return order;
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class ProxyConfig {
+
+        @Bean
+        ConversionService conversionService() {
+            return ApplicationConversionService.getSharedInstance();   // binds the @Value Durations
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return mock(PlatformTransactionManager.class);
+        }
+
+        @Bean
+        MongoTemplate mongoTemplate() {
+            return mock(MongoTemplate.class);
+        }
+
+        @Bean
+        ProductService productService() {
+            return mock(ProductService.class);
+        }
+
+        @Bean
+        StockReservationRepository reservationRepository() {
+            return mock(StockReservationRepository.class);
+        }
+
+        @Bean
+        StockReservationService stockReservationService(MongoTemplate mongoTemplate,
+                                                        StockReservationRepository reservationRepository,
+                                                        ProductService productService) {
+            return new StockReservationService(mongoTemplate, reservationRepository, productService);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import com.mongodb.DBRef;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import semicolon.africa.waylchub.event.BehaviorRecordedEvent;
+import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("BehaviorEventBuffer")
+class BehaviorEventBufferTest {
+
+    private static final ObjectId SHOES = new ObjectId();
+    private static final ObjectId NIKE = new ObjectId();
+
+    @Mock MongoTemplate mongoTemplate;
+    @Mock BulkOperations bulkOps;
+    @Mock LiveTrendingService liveTrending;
+    @Mock ApplicationEventPublisher eventPublisher;
+
+    SimpleMeterRegistry meterRegistry;
+    BehaviorEventBuffer buffer;
+
+    // Raw product documents the fake collection holds, by id
+    final Map<String, Document> products = new HashMap<>();
+    final List<List<UserBehaviorLog>> inserted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        buffer = buffer(100, 50);
+
+        product("p1");
+        product("p2");
+        when(mongoTemplate.getCollectionName(Product.class)).thenReturn("products");
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("products"))).thenAnswer(inv -> {
+            Document q = ((Query) inv.getArgument(0)).getQueryObject();
+            Collection<?> ids = (Collection<?>) ((Document) q.get("_id")).get("$in");
+            return ids.stream().map(String::valueOf).map(products::get).filter(Objects::nonNull).toList();
+        });
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(UserBehaviorLog.class))).thenReturn(bulkOps);
+        when(bulkOps.insert(anyList())).thenAnswer(inv -> {
+            inserted.add(new ArrayList<>(inv.getArgument(0)));
+            return bulkOps;
+        });
+    }
+
+    @Test
+    @DisplayName("A flush enriches from one $in lookup and writes one insertMany")
+    void oneLookupAndOneInsertPerBatch() {
+        buffer.offer(event("u1", "p1", BehaviorEventType.VIEW));
+        buffer.offer(event("u1", "p1", BehaviorEventType.VIEW));
+        buffer.offer(event("u1", "p2", BehaviorEventType.ADD_TO_CART));
+        buffer.offer(event("u2", "gone", BehaviorEventType.VIEW));
+
+        buffer.flush();
+
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Document.class), eq("products"));
+        assertThat(inserted).hasSize(1);
+        List<UserBehaviorLog> written = inserted.get(0);
+        assertThat(written).extracting(UserBehaviorLog::getProductId).containsExactly("p1", "p1", "p2");
+        assertThat(written).allSatisfy(e -> {
+            assertThat(e.getCategoryId()).isEqualTo(SHOES.toHexString());
+            assertThat(e.getCategorySlug()).isEqualTo("shoes");
+            assertThat(e.getBrandId()).isEqualTo(NIKE.toHexString());
+        });
+
+        verify(liveTrending, times(2)).record("p1", SHOES.toHexString(), BehaviorEventType.VIEW);
+        verify(liveTrending).record("p2", SHOES.toHexString(), BehaviorEventType.ADD_TO_CART);
+        // One feed refresh per shopper and event type, not per event
+        verify(eventPublisher, times(2)).publishEvent(any(BehaviorRecordedEvent.class));
+        assertThat(dropped("unknown_product")).isEqualTo(1.0);
+        assertThat(meterRegistry.get("tracking.events.written").counter().count()).isEqualTo(3.0);
+        assertThat(buffer.pendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Product metadata is cached between flushes")
+    void metadataIsCached() {
+        buffer.offer(event("u1", "p1", BehaviorEventType.VIEW));
+        buffer.flush();
+        buffer.offer(event("u2", "p1", BehaviorEventType.WISHLIST));
+        buffer.flush();
+
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Document.class), eq("products"));
+        assertThat(inserted).hasSize(2);
+        assertThat(inserted.get(1).get(0).getCategorySlug()).isEqualTo("shoes");
+    }
+
+    @Test
+    @DisplayName("A search keeps its query when the clicked product is gone")
+    void searchWithoutProductIsKept() {
+        UserBehaviorLog search = event("u1", "gone", BehaviorEventType.SEARCH);
+        search.setSearchQuery("red shoes");
+        buffer.offer(search);
+
+        buffer.flush();
+
+        assertThat(inserted.get(0)).singleElement().satisfies(e -> {
+            assertThat(e.getProductId()).isNull();
+            assertThat(e.getSearchQuery()).isEqualTo("red shoes");
+        });
+        verifyNoInteractions(liveTrending);
+    }
+
+    @Test
+    @DisplayName("A full buffer drops new events — but never purchases")
+    void fullBufferDropsAllButPurchases() {
+        buffer = buffer(2, 50);
+
+        assertThat(buffer.offer(event("u1", "p1", BehaviorEventType.VIEW))).isTrue();
+        assertThat(buffer.offer(event("u1", "p2", BehaviorEventType.VIEW))).isTrue();
+        assertThat(buffer.offer(event("u1", "p1", BehaviorEventType.ADD_TO_CART))).isFalse();
+        assertThat(buffer.offer(event("u1", "p1", BehaviorEventType.PURCHASE))).isTrue();
+
+        assertThat(buffer.pendingCount()).isEqualTo(3);
+        assertThat(dropped("buffer_full")).isEqualTo(1.0);
+        assertThat(meterRegistry.get("tracking.buffer.depth").gauge().value()).isEqualTo(3.0);
+    }
+
+    @Test
+    @DisplayName("Purchases past capacity are bounded by their own overflow")
+    void purchasesStopAtTheOverflow() {
+        buffer = buffer(1, 1, 50);
+
+        assertThat(buffer.offer(event("u1", "p1", BehaviorEventType.PURCHASE))).isTrue();
+        assertThat(buffer.offer(event("u1", "p2", BehaviorEventType.PURCHASE))).isTrue();
+        assertThat(buffer.offer(event("u1", "p1", BehaviorEventType.PURCHASE))).isFalse();
+
+        assertThat(buffer.pendingCount()).isEqualTo(2);
+        assertThat(dropped("purchase_overflow")).isEqualTo(1.0);
+        assertThat(meterRegistry.get("tracking.buffer.overflow").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("A failed write re-queues purchases only while the overflow allows")
+    void failedWritesDoNotGrowTheQueueWithoutBound() {
+        buffer = buffer(2, 1, 50);
+        buffer.offer(event("u1", "p1", BehaviorEventType.PURCHASE));
+        buffer.offer(event("u1", "p2", BehaviorEventType.PURCHASE));
+        // Fresh purchases arrive while the failing write is in flight and take the room first
+        when(bulkOps.execute()).thenAnswer(inv -> {
+            buffer.offer(event("u2", "p1", BehaviorEventType.PURCHASE));
+            buffer.offer(event("u2", "p2", BehaviorEventType.PURCHASE));
+            throw new RuntimeException("mongo down");
+        });
+
+        buffer.flush();
+
+        assertThat(buffer.pendingCount()).isEqualTo(3);
+        assertThat(meterRegistry.get("tracking.purchases.requeued").counter().count()).isEqualTo(1.0);
+        assertThat(dropped("purchase_overflow")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("A failed write re-queues purchases for the next flush and drops the rest")
+    void failedWriteKeepsPurchases() {
+        when(bulkOps.execute()).thenThrow(new RuntimeException("mongo down"));
+        buffer.offer(event("u1", "p1", BehaviorEventType.VIEW));
+        buffer.offer(event("u1", "p2", BehaviorEventType.PURCHASE));
+
+        buffer.flush();
+
+        // One attempt per tick: the re-queued purchase waits instead of spinning
+        verify(bulkOps, times(1)).execute();
+        assertThat(buffer.pendingCount()).isEqualTo(1);
+        assertThat(dropped("write_failed")).isEqualTo(1.0);
+        verifyNoInteractions(liveTrending, eventPublisher);
+
+        reset(bulkOps);
+        when(bulkOps.insert(anyList())).thenAnswer(inv -> {
+            inserted.add(new ArrayList<>(inv.getArgument(0)));
+            return bulkOps;
+        });
+        buffer.flush();
+
+        assertThat(inserted.get(inserted.size() - 1)).singleElement()
+                .extracting(UserBehaviorLog::getEventType).isEqualTo(BehaviorEventType.PURCHASE);
+        assertThat(buffer.pendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("A partly failed write stores the rest and retries its purchases on the next tick, same id")
+    void partialFailureRetriesPurchaseNextTick() {
+        UserBehaviorLog purchase = event("u1", "p1", BehaviorEventType.PURCHASE);
+        buffer.offer(purchase);
+        buffer.offer(event("u1", "p2", BehaviorEventType.VIEW));
+        when(bulkOps.execute()).thenThrow(bulkFailure(new BulkWriteError(121, "Document failed validation", new BsonDocument(), 0)));
+
+        buffer.flush();
+
+        // The re-queued purchase is not retried within the same drain
+        verify(bulkOps, times(1)).execute();
+        assertThat(buffer.pendingCount()).isEqualTo(1);
+        assertThat(meterRegistry.get("tracking.events.written").counter().count()).isEqualTo(1.0);
+        verify(liveTrending).record("p2", SHOES.toHexString(), BehaviorEventType.VIEW);
+        String firstId = inserted.get(0).get(0).getId();
+        assertThat(firstId).isNotNull();
+
+        reset(bulkOps);
+        when(bulkOps.insert(anyList())).thenAnswer(inv -> {
+            inserted.add(new ArrayList<>(inv.getArgument(0)));
+            return bulkOps;
+        });
+        buffer.flush();
+
+        assertThat(inserted.get(1)).singleElement().extracting(UserBehaviorLog::getId).isEqualTo(firstId);
+        assertThat(buffer.pendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("A retry that meets E11000 on _id counts the event as stored, not a second copy")
+    void duplicateIdOnRetryCountsAsStored() {
+        buffer.offer(event("u1", "p1", BehaviorEventType.PURCHASE));
+        buffer.offer(event("u1", "p2", BehaviorEventType.VIEW));
+        when(bulkOps.execute()).thenThrow(bulkFailure(new BulkWriteError(11000,
+                "E11000 duplicate key error collection: waylchub.user_behavior_logs index: _id_ dup key: { _id: 1 }",
+                new BsonDocument(), 0)));
+
+        buffer.flush();
+
+        assertThat(buffer.pendingCount()).isZero();
+        assertThat(meterRegistry.get("tracking.events.written").counter().count()).isEqualTo(2.0);
+        verify(liveTrending).record("p1", SHOES.toHexString(), BehaviorEventType.PURCHASE);
+        assertThat(meterRegistry.find("tracking.events.dropped").tag("reason", "write_failed").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Reaching max-batch drains early without waiting for the tick")
+    void maxBatchTriggersEarlyFlush() {
+        buffer = buffer(100, 2);
+
+        buffer.offer(event("u1", "p1", BehaviorEventType.VIEW));
+        assertThat(inserted).isEmpty();
+        buffer.offer(event("u1", "p2", BehaviorEventType.VIEW));
+
+        assertThat(inserted).hasSize(1);
+        assertThat(inserted.get(0)).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("A busy flusher leaves the early drain to the tick, never to the offering thread")
+    void rejectedEarlyFlushWaitsForTheTick() {
+        buffer = new BehaviorEventBuffer(mongoTemplate, liveTrending, eventPublisher,
+                task -> { throw new RejectedExecutionException("busy"); },
+                meterRegistry = new SimpleMeterRegistry(), 100, 10, 2, 1_000, Duration.ofMinutes(10));
+
+        assertThat(buffer.offer(event("u1", "p1", BehaviorEventType.VIEW))).isTrue();
+        assertThat(buffer.offer(event("u1", "p2", BehaviorEventType.VIEW))).isTrue();
+        assertThat(inserted).isEmpty();
+
+        buffer.flush();
+        assertThat(inserted).hasSize(1);
+        assertThat(inserted.get(0)).hasSize(2);
+    }
+
+    // =========================================================================
+    // HELPER METHODS
+    // =========================================================================
+
+    private BehaviorEventBuffer buffer(int capacity, int maxBatch) {
+        return buffer(capacity, 10, maxBatch);
+    }
+
+    private BehaviorEventBuffer buffer(int capacity, int purchaseOverflow, int maxBatch) {
+        // Direct executor: an early drain runs inline on the offering thread
+        return new BehaviorEventBuffer(mongoTemplate, liveTrending, eventPublisher, Runnable::run,
+                meterRegistry = new SimpleMeterRegistry(), capacity, purchaseOverflow, maxBatch, 1_000,
+                Duration.ofMinutes(10));
+    }
+
+    private void product(String id) {
+        products.put(id, new Document("_id", id)
+                .append("categorySlug", "shoes")
+                .append("category", new DBRef("categories", SHOES))
+                .append("brand", new DBRef("brands", NIKE)));
+    }
+
+    private static UserBehaviorLog event(String userId, String productId, BehaviorEventType type) {
+        return UserBehaviorLog.builder()
+                .userId(userId)
+                .sessionId("s-" + userId)
+                .productId(productId)
+                .eventType(type)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private static BulkOperationException bulkFailure(BulkWriteError error) {
+        return new BulkOperationException(error.getMessage(), new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(), List.of(error), null, new ServerAddress(), Set.of()));
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("tracking.events.dropped").tag("reason", reason).counter().count();
+    }
+}
@@ -0,0 +1,117 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import semicolon.africa.waylchub.service.recommendation.CoOccurrenceMatrix.ItemRow;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("CoOccurrenceDeltas")
+class CoOccurrenceDeltasTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(2);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    @DisplayName("adding a product to a user's set counts it against the kept ones")
+    void addedProduct() {
+        CoOccurrenceDeltas deltas = new CoOccurrenceDeltas();
+        deltas.move(Set.of("A", "B"), Set.of("A", "B", "C"));
+
+        assertThat(deltas.products()).containsExactlyInAnyOrder("A", "B", "C");
+        assertThat(deltas.usersDelta("C")).isEqualTo(1);
+        assertThat(deltas.usersDelta("A")).isZero();
+        assertThat(deltas.coDelta("C")).containsOnly(Map.entry("A", 1L), Map.entry("B", 1L));
+        assertThat(deltas.coDelta("A")).containsOnly(Map.entry("C", 1L));
+    }
+
+    @Test
+    @DisplayName("moves that cancel out leave nothing to write")
+    void cancellingMoves() {
+        CoOccurrenceDeltas deltas = new CoOccurrenceDeltas();
+        deltas.move(Set.of("A"), Set.of("A", "B"));
+        deltas.move(Set.of("A", "B"), Set.of("A"));
+
+        assertThat(deltas.products()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("old counts plus deltas equal the counts of the new window")
+    void deltasMatchFullRecount() {
+        Random random = new Random(11);
+        Map<String, Set<String>> before = new HashMap<>();
+        for (int u = 0; u < 200; u++) before.put("u" + u, randomSet(random));
+
+        // Some users gain and lose products, some leave, some arrive
+        Map<String, Set<String>> after = new HashMap<>();
+        before.forEach((user, items) -> {
+            if (random.nextInt(5) == 0) return;
+            Set<String> next = new HashSet<>(items);
+            next.removeIf(p -> random.nextInt(3) == 0);
+            next.addAll(randomSet(random));
+            after.put(user, next);
+        });
+        for (int u = 200; u < 240; u++) after.put("u" + u, randomSet(random));
+
+        CoOccurrenceDeltas deltas = new CoOccurrenceDeltas();
+        Set<String> users = new HashSet<>(before.keySet());
+        users.addAll(after.keySet());
+        for (String user : users) {
+            deltas.move(before.getOrDefault(user, Set.of()), after.getOrDefault(user, Set.of()));
+        }
+
+        Map<String, Long> userCounts = new HashMap<>();
+        Map<String, Map<String, Long>> coCounts = new HashMap<>();
+        load(before, userCounts, coCounts);
+        for (String p : deltas.products()) {
+            userCounts.merge(p, deltas.usersDelta(p), Long::sum);
+            deltas.coDelta(p).forEach((q, d) ->
+                    coCounts.computeIfAbsent(p, k -> new HashMap<>()).merge(q, d, Long::sum));
+        }
+        userCounts.values().removeIf(n -> n == 0);
+        coCounts.values().forEach(row -> row.values().removeIf(n -> n == 0));
+        coCounts.values().removeIf(Map::isEmpty);
+
+        Map<String, Long> expectedUsers = new HashMap<>();
+        Map<String, Map<String, Long>> expectedCo = new HashMap<>();
+        load(after, expectedUsers, expectedCo);
+
+        assertThat(userCounts).isEqualTo(expectedUsers);
+        assertThat(coCounts).isEqualTo(expectedCo);
+    }
+
+    // =============================================================================
+    // HELPER METHODS
+    // =============================================================================
+
+    private static Set<String> randomSet(Random random) {
+        Set<String> items = new HashSet<>();
+        int size = 1 + random.nextInt(5);
+        for (int i = 0; i < size; i++) items.add("p" + random.nextInt(30));
+        return items;
+    }
+
+    /** Counts as a full rebuild would persist them, straight from CoOccurrenceMatrix rows. */
+    private void load(Map<String, Set<String>> sets, Map<String, Long> users, Map<String, Map<String, Long>> co) {
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix();
+        sets.forEach((user, items) -> items.forEach(p -> matrix.add(user, p)));
+        List<ItemRow> rows = Collections.synchronizedList(new ArrayList<>());
+        matrix.forEachRowBatch(20, pool, rows::addAll);
+        for (ItemRow row : rows) {
+            users.put(row.productId(), (long) row.users());
+            if (row.neighbours().length == 0) continue;
+            Map<String, Long> neighbours = co.computeIfAbsent(row.productId(), k -> new HashMap<>());
+            for (int i = 0; i < row.neighbours().length; i++) {
+                neighbours.put(row.neighbours()[i], (long) row.counts()[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarEntry;
+import semicolon.africa.waylchub.service.recommendation.CoOccurrenceMatrix.ItemRow;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("CoOccurrenceMatrix")
+class CoOccurrenceMatrixTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    @DisplayName("scores binary cosine over distinct users, best first")
+    void binaryCosine() {
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix();
+        add(matrix, "u1", "A", "B");
+        add(matrix, "u2", "A", "B", "C");
+        add(matrix, "u3", "A", "A", "C");   // a repeat view counts once
+        add(matrix, "u4", "B");
+        add(matrix, "u5", "D");             // nobody else touched D
+
+        Map<String, List<SimilarEntry>> top = matrix.topSimilar(20, pool);
+
+        assertThat(top).containsOnlyKeys("A", "B", "C");
+        assertThat(top.get("A")).extracting(SimilarEntry::getProductId).containsExactly("C", "B");
+        assertThat(top.get("A").get(0).getScore()).isCloseTo(2 / Math.sqrt(6), within(1e-9));
+        assertThat(top.get("A").get(1).getScore()).isCloseTo(2 / 3.0, within(1e-9));
+        assertThat(top.get("A").get(1).getCoOccurrenceCount()).isEqualTo(2);
+        assertThat(top.get("C")).extracting(SimilarEntry::getProductId).containsExactly("A", "B");
+        assertThat(matrix.userCount()).isEqualTo(5);
+        assertThat(matrix.eventCount()).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("keeps only the top N neighbours, ties broken by product ID")
+    void topNWithStableTies() {
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix();
+        add(matrix, "u1", "A", "P3", "P1", "P2", "P4");
+
+        assertThat(matrix.topSimilar(2, pool).get("A"))
+                .extracting(SimilarEntry::getProductId).containsExactly("P1", "P2");
+    }
+
+    @Test
+    @DisplayName("partitioned scoring matches a single-threaded run")
+    void parallelMatchesSequential() {
+        Map<String, List<SimilarEntry>> parallel = synthetic().topSimilar(20, pool);
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            Map<String, List<SimilarEntry>> sequential = synthetic().topSimilar(20, single);
+            assertThat(parallel).hasSizeGreaterThan(1_000).isEqualTo(sequential);
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("rows keep every product with its full co-occurrence row")
+    void rowsIncludeLoneProducts() {
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix();
+        add(matrix, "u1", "A", "B");
+        add(matrix, "u2", "A", "B");
+        add(matrix, "u3", "D");
+
+        Map<String, ItemRow> rows = new HashMap<>();
+        rows(matrix).forEach(r -> rows.put(r.productId(), r));
+
+        assertThat(rows).containsOnlyKeys("A", "B", "D");
+        assertThat(rows.get("A").users()).isEqualTo(2);
+        assertThat(rows.get("A").neighbours()).containsExactly("B");
+        assertThat(rows.get("A").counts()).containsExactly(2);
+        assertThat(rows.get("D").neighbours()).isEmpty();
+        assertThat(rows.get("D").top()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("rows arrive one partition at a time, every product exactly once")
+    void rowsStreamPerPartition() {
+        CoOccurrenceMatrix matrix = synthetic();
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+
+        matrix.forEachRowBatch(20, pool, rows -> {
+            batchSizes.add(rows.size());
+            rows.forEach(r -> assertThat(seen.add(r.productId())).as(r.productId()).isTrue());
+        });
+
+        assertThat(seen).hasSize(matrix.productCount());
+        assertThat(batchSizes).hasSizeGreaterThan(1).allSatisfy(size -> assertThat(size).isLessThan(matrix.productCount()));
+    }
+
+    @Test
+    @DisplayName("forEachUser reports each product once, at its latest time")
+    void forEachUserKeepsLatestSeen() {
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix();
+        matrix.add("u1", "B", 50);
+        matrix.add("u1", "A", 10);
+        matrix.add("u1", "B", 20);
+
+        Map<String, Long> seen = new HashMap<>();
+        matrix.forEachUser((user, products, lastSeen) -> {
+            for (int i = 0; i < products.length; i++) seen.put(user + "/" + products[i], lastSeen[i]);
+        });
+
+        assertThat(seen).containsOnly(Map.entry("u1/A", 10L), Map.entry("u1/B", 50L));
+    }
+
+    @Test
+    @DisplayName("topNeighbours over persisted counts ranks exactly like the full scan")
+    void topNeighboursMatchesFullScan() {
+        CoOccurrenceMatrix matrix = synthetic();
+        List<ItemRow> rows = rows(matrix);
+        Map<String, Long> users = new HashMap<>();
+        rows.forEach(r -> users.put(r.productId(), (long) r.users()));
+
+        for (ItemRow row : rows) {
+            Map<String, Long> co = new HashMap<>();
+            for (int i = 0; i < row.neighbours().length; i++) co.put(row.neighbours()[i], (long) row.counts()[i]);
+
+            assertThat(CoOccurrenceMatrix.topNeighbours(co, row.users(), users::get, 20))
+                    .as(row.productId()).isEqualTo(row.top());
+        }
+    }
+
+    // =============================================================================
+    // HELPER METHODS
+    // =============================================================================
+
+    private List<ItemRow> rows(CoOccurrenceMatrix matrix) {
+        List<ItemRow> rows = Collections.synchronizedList(new ArrayList<>());
+        matrix.forEachRowBatch(20, pool, rows::addAll);
+        return rows;
+    }
+
+    private static void add(CoOccurrenceMatrix matrix, String user, String... products) {
+        for (String product : products) matrix.add(user, product);
+    }
+
+    /** Enough products to split into several partitions. */
+    private static CoOccurrenceMatrix synthetic() {
+        Random random = new Random(7);
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix();
+        for (int u = 0; u < 3_000; u++) {
+            for (int e = 0; e < 8; e++) {
+                matrix.add("u" + u, "p" + random.nextInt(2_000));
+            }
+        }
+        return matrix;
+    }
+}
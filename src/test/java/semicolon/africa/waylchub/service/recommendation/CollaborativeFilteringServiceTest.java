@@ -0,0 +1,374 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.SimpleLock;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import semicolon.africa.waylchub.event.ItemSimilaritiesUpdatedEvent;
+import semicolon.africa.waylchub.model.recommendation.CoOccurrenceCounts;
+import semicolon.africa.waylchub.model.recommendation.CoOccurrenceUserItems;
+import semicolon.africa.waylchub.model.recommendation.CoOccurrenceUserItems.SeenItem;
+import semicolon.africa.waylchub.model.recommendation.CoOccurrenceWatermark;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarEntry;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarityType;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Drives CollaborativeFilteringService against an in-memory stand-in for the
+ * few MongoTemplate calls it makes. State is always seeded by a real full
+ * rebuild, so every incremental run starts from what production would have.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("CollaborativeFilteringService — incremental runs")
+class CollaborativeFilteringServiceTest {
+
+    private static final Duration LAG = Duration.ofMinutes(1);
+
+    @Mock MongoTemplate mongoTemplate;
+    @Mock LockProvider lockProvider;
+    @Mock SimpleLock lock;
+    @Mock ApplicationEventPublisher eventPublisher;
+
+    final ForkJoinPool pool = new ForkJoinPool(2);
+    CollaborativeFilteringService service;
+    final LocalDateTime now = LocalDateTime.now();
+
+    // The collections, as the service would leave them in Mongo
+    final List<UserBehaviorLog> events = new ArrayList<>();
+    final Map<String, CoOccurrenceWatermark> watermarks = new HashMap<>();
+    final Map<String, CoOccurrenceCounts> counts = new HashMap<>();
+    final Map<String, CoOccurrenceUserItems> userItems = new HashMap<>();
+    final Map<String, ItemSimilarity> similarities = new HashMap<>();
+    // Source products of every ItemSimilarity upsert, in order
+    final List<String> similarityWrites = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        service = new CollaborativeFilteringService(mongoTemplate, new LockedJobRunner(lockProvider, Runnable::run),
+                eventPublisher, pool, new SimpleMeterRegistry(), LAG);
+        when(lockProvider.lock(any(LockConfiguration.class))).thenReturn(Optional.of(lock));
+
+        when(mongoTemplate.findById(anyString(), eq(CoOccurrenceWatermark.class)))
+                .thenAnswer(inv -> watermarks.get((String) inv.getArgument(0)));
+        when(mongoTemplate.upsert(any(Query.class), any(UpdateDefinition.class), eq(CoOccurrenceWatermark.class)))
+                .thenAnswer(inv -> { upsertWatermark(inv.getArgument(0), inv.getArgument(1)); return null; });
+        when(mongoTemplate.stream(any(Query.class), eq(UserBehaviorLog.class)))
+                .thenAnswer(inv -> streamEvents(inv.getArgument(0)));
+        when(mongoTemplate.stream(any(Query.class), eq(CoOccurrenceUserItems.class)))
+                .thenAnswer(inv -> streamExpiring(inv.getArgument(0)));
+        when(mongoTemplate.find(any(Query.class), eq(CoOccurrenceUserItems.class)))
+                .thenAnswer(inv -> byIds(userItems, inv.getArgument(0)));
+        when(mongoTemplate.find(any(Query.class), eq(CoOccurrenceCounts.class)))
+                .thenAnswer(inv -> byIds(counts, inv.getArgument(0)));
+        when(mongoTemplate.find(any(Query.class), eq(ItemSimilarity.class)))
+                .thenAnswer(inv -> currentLists(inv.getArgument(0)));
+        when(mongoTemplate.remove(any(Query.class), any(Class.class)))
+                .thenAnswer(inv -> { removeBySignal(inv.getArgument(0), inv.getArgument(1)); return null; });
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class)))
+                .thenAnswer(inv -> bulk(inv.getArgument(1)));
+
+        // u1 and u2 viewed A and B; u3 viewed A and C
+        view("u1", "A", now.minusDays(2));
+        view("u1", "B", now.minusDays(2));
+        view("u2", "A", now.minusDays(3));
+        view("u2", "B", now.minusDays(3));
+        view("u3", "A", now.minusDays(4));
+        view("u3", "C", now.minusDays(4));
+    }
+
+    @Test
+    @DisplayName("No watermark — full rebuild, then clean watermarks for every signal")
+    void firstRunIsAFullRebuild() {
+        assertThat(service.refreshIncrementally()).isTrue();
+
+        assertThat(watermarks).containsOnlyKeys("CO_PURCHASE", "CO_VIEW");
+        watermarks.values().forEach(mark -> {
+            assertThat(mark.isDirty()).isFalse();
+            assertThat(mark.getProcessedUpTo()).isBetween(now.minus(LAG).minusSeconds(5), LocalDateTime.now());
+            assertThat(mark.getLastFullRebuildAt()).isNotNull();
+        });
+        assertThat(counts.get(key("A")).getUsers()).isEqualTo(3);
+        assertThat(counts.get(key("A")).getCo()).containsOnly(Map.entry("B", 2L), Map.entry("C", 1L));
+        assertThat(neighbours("A")).containsExactly("B", "C");
+        assertThat(lastEvent().isFullRebuild()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Watermarks advance from where the last run stopped, and come back clean")
+    void watermarksAdvance() {
+        rebuiltAnHourAgo();
+        view("u4", "D", now.minusMinutes(30));
+
+        service.refreshIncrementally();
+
+        ArgumentCaptor<Query> reads = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, atLeastOnce()).stream(reads.capture(), eq(UserBehaviorLog.class));
+        Document since = (Document) reads.getValue().getQueryObject().get("timestamp");
+        assertThat(since.get("$gt")).isEqualTo(now.minusHours(1));
+
+        watermarks.values().forEach(mark -> {
+            assertThat(mark.isDirty()).isFalse();
+            assertThat(mark.getProcessedUpTo()).isAfter(now.minusMinutes(2));
+        });
+        assertThat(userItems).containsKey(CoOccurrenceUserItems.idOf(SimilarityType.CO_VIEW, "u4"));
+    }
+
+    @Test
+    @DisplayName("A product whose lastSeen left the window is retracted from the counts")
+    void expiredItemsAreRetracted() {
+        rebuiltAnHourAgo();
+        // u3's views slide out of the 15-day window
+        userItems.get(CoOccurrenceUserItems.idOf(SimilarityType.CO_VIEW, "u3")).getItems()
+                .forEach(item -> item.setLastSeen(now.minusDays(20)));
+
+        service.refreshIncrementally();
+
+        assertThat(userItems).doesNotContainKey(CoOccurrenceUserItems.idOf(SimilarityType.CO_VIEW, "u3"));
+        assertThat(counts.get(key("A")).getUsers()).isEqualTo(2);
+        assertThat(counts.get(key("A")).getCo()).containsEntry("B", 2L).containsEntry("C", 0L);
+        assertThat(counts.get(key("C")).getUsers()).isZero();
+        assertThat(neighbours("A")).containsExactly("B");
+        assertThat(neighbours("C")).isEmpty();
+        assertThat(lastEvent().getSourceProductIds()).containsExactlyInAnyOrder("A", "C");
+    }
+
+    @Test
+    @DisplayName("A dirty watermark forces a full rebuild instead of applying deltas")
+    void dirtyStateForcesFullRebuild() {
+        rebuiltAnHourAgo();
+        watermarks.get("CO_VIEW").setDirty(true);
+        // Only a full rebuild would see this: it is older than the watermark
+        view("u4", "A", now.minusDays(1));
+        view("u4", "D", now.minusDays(1));
+        clearInvocations(mongoTemplate);
+
+        service.refreshIncrementally();
+
+        // A full rebuild clears each signal's counts before rewriting them
+        verify(mongoTemplate, times(CollaborativeFilteringService.Signal.values().length))
+                .remove(any(Query.class), eq(CoOccurrenceCounts.class));
+        assertThat(counts.get(key("A")).getUsers()).isEqualTo(4);
+        assertThat(counts.get(key("D")).getUsers()).isEqualTo(1);
+        assertThat(watermarks.get("CO_VIEW").isDirty()).isFalse();
+        assertThat(lastEvent().isFullRebuild()).isTrue();
+    }
+
+    @Test
+    @DisplayName("ItemSimilarity is written only for lists that changed")
+    void onlyChangedListsAreWritten() {
+        rebuiltAnHourAgo();
+        // u4 touches two new products; A, B and C keep their lists
+        view("u4", "D", now.minusMinutes(30));
+        view("u4", "E", now.minusMinutes(30));
+        // u1 repeats a view — same product set, nothing moves
+        view("u1", "A", now.minusMinutes(20));
+
+        service.refreshIncrementally();
+
+        assertThat(similarityWrites).containsExactlyInAnyOrder("D", "E");
+        assertThat(neighbours("D")).containsExactly("E");
+        assertThat(lastEvent().getListsWritten()).isEqualTo(2);
+        assertThat(lastEvent().getSourceProductIds()).containsExactlyInAnyOrder("D", "E");
+    }
+
+    @Test
+    @DisplayName("Nothing new since the watermark — no lists written and no event")
+    void quietWindowWritesNothing() {
+        rebuiltAnHourAgo();
+
+        service.refreshIncrementally();
+
+        assertThat(similarityWrites).isEmpty();
+        verify(eventPublisher, never()).publishEvent(any());
+        assertThat(watermarks.get("CO_VIEW").getProcessedUpTo()).isAfter(now.minusMinutes(2));
+    }
+
+    @Test
+    @DisplayName("A run that cannot take the lock is skipped")
+    void lockedRunIsSkipped() {
+        when(lockProvider.lock(any(LockConfiguration.class))).thenReturn(Optional.empty());
+
+        assertThat(service.refreshIncrementally()).isFalse();
+        assertThat(watermarks).isEmpty();
+    }
+
+    // =========================================================================
+    // HELPER METHODS
+    // =========================================================================
+
+    /** A full rebuild, then the watermarks wound back to an hour ago, with the writes forgotten. */
+    private void rebuiltAnHourAgo() {
+        service.rebuild();
+        watermarks.values().forEach(mark -> mark.setProcessedUpTo(now.minusHours(1)));
+        similarityWrites.clear();
+        clearInvocations(eventPublisher);
+    }
+
+    private void view(String userId, String productId, LocalDateTime at) {
+        events.add(UserBehaviorLog.builder().userId(userId).productId(productId)
+                .eventType(BehaviorEventType.VIEW).timestamp(at).build());
+    }
+
+    private static String key(String productId) {
+        return CoOccurrenceCounts.idOf(SimilarityType.CO_VIEW, productId);
+    }
+
+    private List<String> neighbours(String productId) {
+        ItemSimilarity list = similarities.get(productId + "/" + SimilarityType.CO_VIEW.name());
+        return list == null ? List.of() : list.getSimilar().stream().map(SimilarEntry::getProductId).toList();
+    }
+
+    private ItemSimilaritiesUpdatedEvent lastEvent() {
+        ArgumentCaptor<Object> published = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, atLeastOnce()).publishEvent(published.capture());
+        return (ItemSimilaritiesUpdatedEvent) published.getValue();
+    }
+
+    // ---- the in-memory collections ------------------------------------------
+
+    private Stream<UserBehaviorLog> streamEvents(Query query) {
+        Document q = query.getQueryObject();
+        return new ArrayList<>(events).stream().filter(e -> matchesEvent(q, e));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean matchesEvent(Document q, UserBehaviorLog e) {
+        if (q.containsKey("$or")) {
+            List<Document> windows = (List<Document>) q.get("$or");
+            if (windows.stream().noneMatch(w -> matchesEvent(w, e))) return false;
+        }
+        if (q.containsKey("eventType")
+                && !((Collection<?>) ((Document) q.get("eventType")).get("$in")).contains(e.getEventType())) {
+            return false;
+        }
+        if (q.get("timestamp") instanceof Document range) {
+            LocalDateTime t = e.getTimestamp();
+            if (range.get("$gt") instanceof LocalDateTime v && !t.isAfter(v)) return false;
+            if (range.get("$gte") instanceof LocalDateTime v && t.isBefore(v)) return false;
+            if (range.get("$lte") instanceof LocalDateTime v && t.isAfter(v)) return false;
+        }
+        return e.getUserId() != null;
+    }
+
+    private Stream<CoOccurrenceUserItems> streamExpiring(Query query) {
+        Document q = query.getQueryObject();
+        LocalDateTime before = (LocalDateTime) ((Document) q.get("items.lastSeen")).get("$lt");
+        return userItems.values().stream()
+                .filter(u -> u.getType() == q.get("type"))
+                .filter(u -> u.getItems().stream().anyMatch(i -> i.getLastSeen().isBefore(before)))
+                .toList().stream();
+    }
+
+    private static <T> List<T> byIds(Map<String, T> collection, Query query) {
+        Collection<?> ids = (Collection<?>) ((Document) query.getQueryObject().get("_id")).get("$in");
+        return ids.stream().map(collection::get).filter(Objects::nonNull).toList();
+    }
+
+    private List<ItemSimilarity> currentLists(Query query) {
+        Document q = query.getQueryObject();
+        Collection<?> sources = (Collection<?>) ((Document) q.get("sourceProductId")).get("$in");
+        return sources.stream().map(s -> similarities.get(s + "/" + q.get("type"))).filter(Objects::nonNull).toList();
+    }
+
+    private void removeBySignal(Query query, Class<?> entity) {
+        Object type = query.getQueryObject().get("type");
+        if (entity == CoOccurrenceCounts.class) counts.values().removeIf(c -> c.getType() == type);
+        if (entity == CoOccurrenceUserItems.class) userItems.values().removeIf(u -> u.getType() == type);
+    }
+
+    private void upsertWatermark(Query query, UpdateDefinition update) {
+        String id = (String) query.getQueryObject().get("_id");
+        CoOccurrenceWatermark mark = watermarks.computeIfAbsent(id, k -> CoOccurrenceWatermark.builder().id(k).build());
+        Document set = (Document) update.getUpdateObject().get("$set");
+        if (set.containsKey("processedUpTo")) mark.setProcessedUpTo((LocalDateTime) set.get("processedUpTo"));
+        if (set.containsKey("lastFullRebuildAt")) mark.setLastFullRebuildAt((LocalDateTime) set.get("lastFullRebuildAt"));
+        if (set.containsKey("dirty")) mark.setDirty((Boolean) set.get("dirty"));
+    }
+
+    /** Records operations and applies them on execute(), like an unordered bulk write. */
+    private BulkOperations bulk(Class<?> entity) {
+        List<Runnable> pending = new ArrayList<>();
+        return mock(BulkOperations.class, inv -> {
+            Object[] args = inv.getArguments();
+            switch (inv.getMethod().getName()) {
+                case "insert" -> pending.add(() -> insert(args[0]));
+                case "upsert" -> pending.add(() -> upsert(entity, (Query) args[0], (UpdateDefinition) args[1]));
+                case "remove" -> pending.add(() -> userItems.remove((String) ((Query) args[0]).getQueryObject().get("_id")));
+                case "execute" -> {
+                    pending.forEach(Runnable::run);
+                    pending.clear();
+                    return null;
+                }
+                default -> { }
+            }
+            return inv.getMock();
+        });
+    }
+
+    private void insert(Object document) {
+        if (document instanceof CoOccurrenceCounts c) counts.put(c.getId(), c);
+        if (document instanceof CoOccurrenceUserItems u) userItems.put(u.getId(), u);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void upsert(Class<?> entity, Query query, UpdateDefinition update) {
+        Document q = query.getQueryObject();
+        Document u = update.getUpdateObject();
+        Document set = (Document) u.getOrDefault("$set", new Document());
+        Document onInsert = (Document) u.getOrDefault("$setOnInsert", new Document());
+
+        if (entity == ItemSimilarity.class) {
+            String source = (String) q.get("sourceProductId");
+            similarities.put(source + "/" + q.get("type"), ItemSimilarity.builder()
+                    .sourceProductId(source)
+                    .type(SimilarityType.valueOf((String) q.get("type")))
+                    .similar((List<SimilarEntry>) set.get("similar"))
+                    .build());
+            similarityWrites.add(source);
+        } else if (entity == CoOccurrenceUserItems.class) {
+            String id = (String) q.get("_id");
+            CoOccurrenceUserItems doc = userItems.computeIfAbsent(id, k -> CoOccurrenceUserItems.builder().id(k)
+                    .type((SimilarityType) onInsert.get("type")).userId((String) onInsert.get("userId")).build());
+            doc.setItems(new ArrayList<>((List<SeenItem>) set.get("items")));
+        } else if (entity == CoOccurrenceCounts.class) {
+            String id = (String) q.get("_id");
+            CoOccurrenceCounts doc = counts.computeIfAbsent(id, k -> CoOccurrenceCounts.builder().id(k)
+                    .type((SimilarityType) onInsert.get("type")).productId((String) onInsert.get("productId"))
+                    .co(new HashMap<>()).build());
+            if (doc.getCo() == null) doc.setCo(new HashMap<>());
+            ((Document) u.get("$inc")).forEach((field, delta) -> {
+                long d = ((Number) delta).longValue();
+                if (field.equals("users")) doc.setUsers(doc.getUsers() + d);
+                else doc.getCo().merge(field.substring("co.".length()), d, Long::sum);
+            });
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("FuzzyVocabulary")
+class FuzzyVocabularyTest {
+
+    private final Map<String, Integer> frequency = Map.of(
+            "sneaker", 40, "speaker", 5, "agbada", 12, "jean", 90, "jacket", 30, "ps5", 3, "headphone", 8);
+
+    FuzzyVocabulary vocabulary;
+
+    @BeforeEach
+    void setUp() {
+        vocabulary = new FuzzyVocabulary();
+        frequency.keySet().forEach(vocabulary::add);
+    }
+
+    @Test
+    @DisplayName("a swap, a missing letter and two slips in a long word are all recovered")
+    void recoversCommonTypos() {
+        assertThat(nearest("snaeker")).containsExactly("sneaker");          // transposition
+        assertThat(nearest("agbda")).containsExactly("agbada");             // insertion
+        assertThat(nearest("hedphonne")).containsExactly("headphone");      // two edits, 9 chars
+    }
+
+    @Test
+    @DisplayName("ties at the same distance are ordered by how many products use the term")
+    void tiesByFrequency() {
+        // "sxeaker" is one substitution from both sneaker and speaker
+        assertThat(nearest("sxeaker")).containsExactly("sneaker", "speaker");
+    }
+
+    @Test
+    @DisplayName("short tokens, tokens with digits and far-off tokens are left alone")
+    void ineligibleOrTooFar() {
+        assertThat(nearest("jen")).isEmpty();
+        assertThat(nearest("ps4")).isEmpty();
+        assertThat(nearest("blender")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("removed terms are no longer suggested")
+    void removal() {
+        vocabulary.remove("agbada");
+        assertThat(nearest("agbda")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("distance counts an adjacent swap as one edit and stops past the bound")
+    void boundedDistance() {
+        assertThat(FuzzyVocabulary.distance("snaeker", "sneaker", 2)).isEqualTo(1);
+        assertThat(FuzzyVocabulary.distance("kitten", "sitting", 3)).isEqualTo(3);
+        assertThat(FuzzyVocabulary.distance("kitten", "sitting", 1)).isEqualTo(2);
+    }
+
+    private java.util.List<String> nearest(String token) {
+        return vocabulary.nearest(token, t -> frequency.getOrDefault(t, 0));
+    }
+}
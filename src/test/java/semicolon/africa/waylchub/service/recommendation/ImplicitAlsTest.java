@@ -0,0 +1,112 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarEntry;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImplicitAlsTest {
+
+    private static final ImplicitAls.Params PARAMS = new ImplicitAls.Params(4, 15, 1.0, 20, 42);
+
+    private final ForkJoinPool pool = new ForkJoinPool(2);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void repeatedEventsAreMergedPerPair() {
+        ImplicitAls als = new ImplicitAls();
+        als.add("u1", "p1", 1f);
+        als.add("u1", "p1", 10f);
+        als.add("u1", "p2", 5f);
+        als.add("u1", "p3", 0f);     // ignored
+        als.add(null, "p1", 1f);     // ignored
+
+        assertEquals(3, als.eventCount());
+        assertEquals(2, als.interactionCount());
+        assertEquals(Map.of("p1", 11f, "p2", 5f), als.interactionsOf("u1"));
+        assertEquals(-1, als.userOf("nobody"));
+    }
+
+    @Test
+    void choleskySolvesSymmetricSystem() {
+        // [[4, 2, 1], [2, 5, 3], [1, 3, 6]] z = [1, 2, 3]; only the lower triangle is read
+        double[] a = {4, 0, 0, 2, 5, 0, 1, 3, 6};
+        double[] z = {1, 2, 3};
+
+        ImplicitAls.cholesky(a, z, 3);
+
+        assertEquals(1, 4 * z[0] + 2 * z[1] + z[2], 1e-9);
+        assertEquals(2, 2 * z[0] + 5 * z[1] + 3 * z[2], 1e-9);
+        assertEquals(3, z[0] + 3 * z[1] + 6 * z[2], 1e-9);
+    }
+
+    @Test
+    void similarProductsStayInTheirCluster() {
+        ItemFactors model = trainTwoClusters();
+
+        for (String product : List.of("a0", "a7", "b3", "b19")) {
+            List<SimilarEntry> similar = model.similar(product, 5, Set.of());
+            assertEquals(5, similar.size());
+            for (SimilarEntry e : similar) {
+                assertEquals(product.charAt(0), e.getProductId().charAt(0), product + " → " + e.getProductId());
+            }
+            for (int i = 1; i < similar.size(); i++) {
+                assertTrue(similar.get(i - 1).getScore() >= similar.get(i).getScore());
+            }
+        }
+        assertTrue(model.similar("unknown", 5, Set.of()).isEmpty());
+    }
+
+    @Test
+    void foldedInShopperGetsTheirClusterWithoutSeenOrExcluded() {
+        ItemFactors model = trainTwoClusters();
+
+        List<String> recommended = model.recommend(Map.of("b1", 1f, "b2", 10f), 5, Set.of("b3"));
+
+        assertEquals(5, recommended.size());
+        for (String product : recommended) {
+            assertTrue(product.startsWith("b"), product);
+            assertFalse(Set.of("b1", "b2", "b3").contains(product), product);
+        }
+        assertTrue(model.recommend(Map.of("unknown", 1f), 5, Set.of()).isEmpty());
+    }
+
+    @Test
+    void trainingIsReproducible() {
+        ImplicitAls first = twoClusters();
+        ImplicitAls second = twoClusters();
+
+        assertArrayEquals(first.train(PARAMS, pool).itemFactors(), second.train(PARAMS, pool).itemFactors());
+    }
+
+    // =========================================================================
+    // HELPER METHODS
+    // =========================================================================
+
+    /** 400 shoppers, each touching six products of one of two 20-product clusters. */
+    private static ImplicitAls twoClusters() {
+        Random random = new Random(1);
+        ImplicitAls als = new ImplicitAls();
+        for (int u = 0; u < 400; u++) {
+            String cluster = u % 2 == 0 ? "a" : "b";
+            for (int j = 0; j < 6; j++) {
+                als.add("u" + u, cluster + random.nextInt(20), j == 0 ? 10f : 1f);
+            }
+        }
+        return als;
+    }
+
+    private ItemFactors trainTwoClusters() {
+        ImplicitAls.Factors factors = twoClusters().train(PARAMS, pool);
+        return new ItemFactors(factors.k(), PARAMS.regularization(), PARAMS.alpha(),
+                factors.itemIds(), factors.itemFactors());
+    }
+}
@@ -0,0 +1,229 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Two LiveTrendingService instances — two pods — joined by an in-memory
+ * stand-in for the Redis channel: every published message reaches every
+ * subscriber, the sender included, as Redis pub/sub delivers it.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("LiveTrendingService — cross-pod deltas")
+class LiveTrendingServiceTest {
+
+    // Payloads published on the channel, in order
+    final List<String> published = new ArrayList<>();
+    final List<MessageListener> subscribers = new ArrayList<>();
+
+    LiveTrendingService podA;
+    LiveTrendingService podB;
+
+    @BeforeEach
+    void setUp() {
+        podA = pod();
+        podB = pod();
+    }
+
+    @Test
+    @DisplayName("Deltas published by one pod land in the other's counters, categories included")
+    void deltasRoundTrip() {
+        podA.record("phone-1", "phones", BehaviorEventType.VIEW);
+        podA.record("phone-1", "phones", BehaviorEventType.ADD_TO_CART);
+        podA.record("gift-card", null, BehaviorEventType.PURCHASE);
+        podA.record("phone-2", "phones", BehaviorEventType.SEARCH);   // not weighted
+
+        podA.publish();
+
+        assertThat(published).hasSize(1);
+        assertThat(podB.snapshot()).containsOnly(Map.entry("phone-1", 6), Map.entry("gift-card", 10));
+        assertThat(podB.topIn(List.of("phones"), 10)).containsExactly("phone-1");
+        assertThat(podB.top(10)).containsExactly("gift-card", "phone-1");
+    }
+
+    @Test
+    @DisplayName("A pod skips its own broadcast instead of counting its events twice")
+    void ownMessagesAreSkipped() {
+        podA.record("phone-1", "phones", BehaviorEventType.PURCHASE);
+        podB.record("phone-1", "phones", BehaviorEventType.VIEW);
+
+        podA.publish();
+        podB.publish();
+
+        assertThat(published).hasSize(2);
+        assertThat(podA.snapshot()).containsOnly(Map.entry("phone-1", 11));
+        assertThat(podB.snapshot()).containsOnly(Map.entry("phone-1", 11));
+    }
+
+    @Test
+    @DisplayName("Published deltas are drained: a quiet interval sends nothing")
+    void publishDrainsOutbound() {
+        podA.record("phone-1", "phones", BehaviorEventType.VIEW);
+        podA.publish();
+        podA.publish();
+
+        assertThat(published).hasSize(1);
+        assertThat(podB.snapshot()).containsOnly(Map.entry("phone-1", 1));
+    }
+
+    @Test
+    @DisplayName("More than 5000 deltas are split across messages, none lost")
+    void largeBatchesAreSplit() {
+        for (int i = 0; i < 5_001; i++) podA.record("p" + i, "c", BehaviorEventType.VIEW);
+
+        podA.publish();
+
+        assertThat(published).hasSize(2);
+        assertThat(podB.snapshot()).hasSize(5_001).containsEntry("p5000", 1);
+    }
+
+    @Test
+    @DisplayName("Deltas count at the sender's minute; ones already out of the window are dropped")
+    void senderMinuteIsKept() {
+        long now = System.currentTimeMillis() / 60_000;
+        LiveTrendingService pod = pod(mock(StringRedisTemplate.class), now - 100, List.of());
+
+        deliver(pod, "other|" + (now - 5) + "|recent:c:4");
+        deliver(pod, "other|" + (now - 90) + "|stale:c:4");
+
+        assertThat(pod.snapshot()).containsOnly(Map.entry("recent", 4));
+    }
+
+    @Test
+    @DisplayName("Warm-up replays the minutes before its cutoff; live counting takes the cutoff on")
+    void warmUpAndLiveCountsNeverOverlap() {
+        long now = System.currentTimeMillis() / 60_000;
+        UserBehaviorLog stored = UserBehaviorLog.builder()
+                .productId("phone-1").categoryId("phones").eventType(BehaviorEventType.VIEW)
+                .timestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli((now - 2) * 60_000), ZoneId.systemDefault()))
+                .build();
+        LiveTrendingService pod = pod(mock(StringRedisTemplate.class), now, List.of(stored));
+
+        // A late delta for an already replayed minute would count the stored view twice
+        deliver(pod, "other|" + (now - 2) + "|phone-1:phones:1");
+        deliver(pod, "other|" + now + "|phone-1:phones:5");
+        pod.record("phone-1", "phones", BehaviorEventType.VIEW);
+
+        assertThat(pod.snapshot()).containsOnly(Map.entry("phone-1", 7));
+    }
+
+    @Test
+    @DisplayName("Before the warm-up starts live events are left to it, but still broadcast")
+    void liveEventsWaitForTheWarmUp() {
+        LiveTrendingService pod = new LiveTrendingService(mock(MongoTemplate.class), mock(StringRedisTemplate.class),
+                mock(RedisMessageListenerContainer.class), new SimpleMeterRegistry(), Duration.ofHours(1), 100);
+
+        pod.record("phone-1", "phones", BehaviorEventType.VIEW);
+        deliver(pod, "other|" + System.currentTimeMillis() / 60_000 + "|phone-2:phones:1");
+
+        assertThat(pod.snapshot()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Malformed messages and deltas are ignored without failing the listener")
+    void malformedMessagesAreIgnored() {
+        long now = System.currentTimeMillis() / 60_000;
+
+        for (String body : List.of(
+                "",
+                "no separators at all",
+                "other|" + now,
+                "other|not-a-minute|phone-1:phones:3",
+                "other|" + now + "|phone-1:phones:many",
+                "other|" + now + "|phone-1:phones")) {
+            assertThatCode(() -> deliver(podB, body)).as(body).doesNotThrowAnyException();
+        }
+        assertThat(podB.snapshot()).isEmpty();
+
+        // One bad delta is skipped; the well-formed ones around it still count
+        deliver(podB, "other|" + now + "|phone-1:phones:2,garbage,case:c:many,:c:1,gift-card::3");
+        assertThat(podB.snapshot()).containsOnly(Map.entry("phone-1", 2), Map.entry("gift-card", 3));
+        assertThat(podB.topIn(List.of("phones"), 10)).containsExactly("phone-1");
+    }
+
+    @Test
+    @DisplayName("A failed broadcast is logged; local counts are unaffected")
+    void failedBroadcastIsBestEffort() {
+        StringRedisTemplate broken = mock(StringRedisTemplate.class);
+        when(broken.convertAndSend(anyString(), anyString()))
+                .thenThrow(new RedisConnectionFailureException("down"));
+        LiveTrendingService pod = pod(broken);
+        pod.record("phone-1", "phones", BehaviorEventType.VIEW);
+
+        assertThatCode(pod::publish).doesNotThrowAnyException();
+        assertThat(pod.snapshot()).containsOnly(Map.entry("phone-1", 1));
+    }
+
+    // =========================================================================
+    // HELPER METHODS
+    // =========================================================================
+
+    /** A warmed pod subscribed to the shared channel. */
+    private LiveTrendingService pod() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        when(redis.convertAndSend(eq(LiveTrendingService.CHANNEL), anyString())).thenAnswer(inv -> {
+            String body = inv.getArgument(1);
+            published.add(body);
+            List.copyOf(subscribers).forEach(listener -> deliver(listener, body));
+            return (long) subscribers.size();
+        });
+        return pod(redis);
+    }
+
+    private LiveTrendingService pod(StringRedisTemplate redis) {
+        return pod(redis, System.currentTimeMillis() / 60_000, List.of());
+    }
+
+    /** A pod warmed with cutoffMinute from the given stored events. */
+    private LiveTrendingService pod(StringRedisTemplate redis, long cutoffMinute, List<UserBehaviorLog> stored) {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.stream(any(Query.class), eq(UserBehaviorLog.class))).thenAnswer(inv -> stored.stream());
+        RedisMessageListenerContainer container = mock(RedisMessageListenerContainer.class);
+        doAnswer(inv -> subscribers.add(inv.getArgument(0)))
+                .when(container).addMessageListener(any(MessageListener.class), any(Topic.class));
+
+        LiveTrendingService pod = new LiveTrendingService(mongoTemplate, redis, container,
+                new SimpleMeterRegistry(), Duration.ofHours(1), 100);
+        pod.registerListenerAndMetrics();
+        pod.warm(cutoffMinute);
+        return pod;
+    }
+
+    private static void deliver(MessageListener listener, String body) {
+        listener.onMessage(new DefaultMessage(
+                LiveTrendingService.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8)), null);
+    }
+}
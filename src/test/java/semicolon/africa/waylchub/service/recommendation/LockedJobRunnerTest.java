@@ -0,0 +1,106 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.SimpleLock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("LockedJobRunner")
+class LockedJobRunnerTest {
+
+    @Mock LockProvider lockProvider;
+    @Mock SimpleLock lock;
+
+    final List<Runnable> queued = new ArrayList<>();
+    LockedJobRunner jobs;
+
+    @BeforeEach
+    void setUp() {
+        jobs = new LockedJobRunner(lockProvider, queued::add);
+        when(lockProvider.lock(any(LockConfiguration.class))).thenReturn(Optional.of(lock));
+    }
+
+    @Test
+    @DisplayName("Runs the job under the named lock and releases it")
+    void runsUnderLock() {
+        AtomicInteger runs = new AtomicInteger();
+        Instant before = Instant.now();
+
+        assertThat(jobs.run("contentSimilarity", Duration.ofHours(1), "[Test] Job", runs::incrementAndGet)).isTrue();
+
+        ArgumentCaptor<LockConfiguration> config = ArgumentCaptor.forClass(LockConfiguration.class);
+        verify(lockProvider).lock(config.capture());
+        assertThat(config.getValue().getName()).isEqualTo("contentSimilarity");
+        assertThat(config.getValue().getLockAtMostUntil()).isAfterOrEqualTo(before.plus(Duration.ofHours(1)));
+        assertThat(runs).hasValue(1);
+        verify(lock).unlock();
+    }
+
+    @Test
+    @DisplayName("A held lock skips the job and reports false")
+    void heldLockSkips() {
+        when(lockProvider.lock(any(LockConfiguration.class))).thenReturn(Optional.empty());
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThat(jobs.run("alsTraining", Duration.ofHours(3), "[Test] Job", runs::incrementAndGet)).isFalse();
+
+        assertThat(runs).hasValue(0);
+    }
+
+    @Test
+    @DisplayName("A failing job is logged, still releases the lock and counts as run")
+    void failureReleasesLock() {
+        boolean ran = jobs.run("collaborativeFiltering", Duration.ofHours(2), "[Test] Job", () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThat(ran).isTrue();
+        verify(lock).unlock();
+    }
+
+    @Test
+    @DisplayName("submit only queues the run on the offline executor")
+    void submitQueues() {
+        AtomicInteger runs = new AtomicInteger();
+
+        jobs.submit(runs::incrementAndGet);
+
+        assertThat(runs).hasValue(0);
+        assertThat(queued).hasSize(1);
+        queued.get(0).run();
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("submit on a full executor skips the run instead of throwing")
+    void submitOnFullExecutorSkips() {
+        LockedJobRunner full = new LockedJobRunner(lockProvider, task -> {
+            throw new RejectedExecutionException("full");
+        });
+
+        assertThatCode(() -> full.submit(() -> { })).doesNotThrowAnyException();
+    }
+}
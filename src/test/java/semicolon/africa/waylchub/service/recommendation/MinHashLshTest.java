@@ -0,0 +1,132 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarEntry;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinHashLshTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(2);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void identicalFeatureSetsScoreOne() {
+        MinHashLsh lsh = new MinHashLsh(20, 3);
+        lsh.add("a", List.of("l:shoes", "b:nike", "t:running"));
+        lsh.add("b", List.of("t:running", "b:nike", "l:shoes", "l:shoes"));
+
+        Map<String, List<SimilarEntry>> top = lsh.topSimilar(5, pool);
+
+        assertEquals(1, top.get("a").size());
+        assertEquals("b", top.get("a").get(0).getProductId());
+        assertEquals(1.0, top.get("a").get(0).getScore(), 1e-9);
+        assertEquals(3, top.get("a").get(0).getCoOccurrenceCount());
+    }
+
+    @Test
+    void disjointProductsHaveNoNeighbours() {
+        MinHashLsh lsh = new MinHashLsh(20, 3);
+        lsh.add("a", List.of("l:shoes", "b:nike"));
+        lsh.add("b", List.of("l:bags", "b:gucci"));
+        lsh.add("empty", List.of());
+
+        assertTrue(lsh.topSimilar(5, pool).isEmpty());
+        assertEquals(2, lsh.productCount());
+    }
+
+    @Test
+    void ranksByExactJaccard() {
+        MinHashLsh lsh = new MinHashLsh(32, 2);
+        lsh.add("src", List.of("l:1", "l:2", "b:x", "t:a", "t:b"));
+        lsh.add("close", List.of("l:1", "l:2", "b:x", "t:a"));        // 4/5
+        lsh.add("mid", List.of("l:1", "l:2", "b:x", "t:z"));          // 3/6
+        lsh.add("far", List.of("l:1", "b:y", "t:q", "t:r"));          // 1/8
+
+        List<SimilarEntry> neighbours = lsh.topSimilar(5, pool).get("src");
+
+        assertEquals("close", neighbours.get(0).getProductId());
+        assertEquals(0.8, neighbours.get(0).getScore(), 1e-9);
+        assertEquals("mid", neighbours.get(1).getProductId());
+        assertEquals(0.5, neighbours.get(1).getScore(), 1e-9);
+        for (int i = 1; i < neighbours.size(); i++) {
+            assertTrue(neighbours.get(i - 1).getScore() >= neighbours.get(i).getScore());
+        }
+    }
+
+    @Test
+    void recallOfHighlySimilarPairsMatchesBruteForce() {
+        // 2,000 products in 40 categories × 10 brands with random tags
+        Random random = new Random(7);
+        MinHashLsh lsh = new MinHashLsh(20, 3);
+        Map<String, Set<String>> features = new LinkedHashMap<>();
+        for (int i = 0; i < 2_000; i++) {
+            Set<String> f = new HashSet<>();
+            int category = random.nextInt(40);
+            f.add("l:root" + category / 10);
+            f.add("l:" + category);
+            f.add("b:" + random.nextInt(10));
+            for (int t = 0; t < 3; t++) f.add("t:" + random.nextInt(60));
+            features.put("p" + i, f);
+            lsh.add("p" + i, f);
+        }
+
+        Map<String, List<SimilarEntry>> top = lsh.topSimilar(10, pool);
+
+        // Pairs at Jaccard ≥ 0.5 that belong in the top 10: at least 90% are found
+        int expected = 0, found = 0;
+        List<String> ids = new ArrayList<>(features.keySet());
+        for (int a = 0; a < 200; a++) {
+            Set<String> fa = features.get(ids.get(a));
+            Set<String> neighbours = new HashSet<>();
+            top.getOrDefault(ids.get(a), List.of()).forEach(e -> neighbours.add(e.getProductId()));
+            double tenth = top.getOrDefault(ids.get(a), List.of()).stream()
+                    .mapToDouble(SimilarEntry::getScore).min().orElse(0);
+            for (String b : ids) {
+                if (b.equals(ids.get(a))) continue;
+                double jaccard = jaccard(fa, features.get(b));
+                if (jaccard >= 0.5 && jaccard > tenth) {
+                    expected++;
+                    if (neighbours.contains(b)) found++;
+                }
+            }
+        }
+        assertTrue(expected == 0 || found >= expected * 0.9,
+                "found " + found + " of " + expected + " pairs above 0.5");
+    }
+
+    @Test
+    void closeMatchInALargeBucketIsFoundWhereverItWasInserted() {
+        // 600 fillers share most features with src and land in its bucket in most bands;
+        // the exact twin is added last, far beyond any window around src
+        MinHashLsh lsh = new MinHashLsh(20, 1);
+        lsh.add("src", List.of("l:shoes", "b:nike", "t:running"));
+        for (int i = 0; i < 600; i++) lsh.add("f" + i, List.of("l:shoes", "b:nike", "t:running", "t:" + i));
+        lsh.add("twin", List.of("l:shoes", "b:nike", "t:running"));
+
+        List<SimilarEntry> neighbours = lsh.topSimilar(10, pool).get("src");
+
+        assertEquals("twin", neighbours.get(0).getProductId());
+        assertEquals(1.0, neighbours.get(0).getScore(), 1e-9);
+    }
+
+    @Test
+    void intersectionOfSortedArrays() {
+        assertEquals(2, MinHashLsh.intersection(new int[]{1, 3, 5, 7}, new int[]{2, 3, 7, 9}));
+        assertEquals(0, MinHashLsh.intersection(new int[]{}, new int[]{1}));
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        Set<String> shared = new HashSet<>(a);
+        shared.retainAll(b);
+        return (double) shared.size() / (a.size() + b.size() - shared.size());
+    }
+}
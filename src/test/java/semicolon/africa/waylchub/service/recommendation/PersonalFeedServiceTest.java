@@ -0,0 +1,287 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarEntry;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarityType;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+import semicolon.africa.waylchub.repository.recommendationRepository.UserBehaviorRepository;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("PersonalFeedService")
+class PersonalFeedServiceTest {
+
+    @Mock StringRedisTemplate redisTemplate;
+    @Mock ValueOperations<String, String> values;
+    @Mock MongoTemplate mongoTemplate;
+    @Mock BehaviorTrackingService trackingService;
+    @Mock UserBehaviorRepository behaviorRepository;
+    @Mock FactorModelService factorModels;
+
+    SimpleMeterRegistry meterRegistry;
+    PersonalFeedService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(behaviorRepository.findByUserIdAndEventType(anyString(), eq(BehaviorEventType.PURCHASE), any(Pageable.class)))
+                .thenReturn(List.of());
+        service = new PersonalFeedService(redisTemplate, mongoTemplate, trackingService, behaviorRepository,
+                factorModels, Runnable::run, meterRegistry, Duration.ofDays(1), Duration.ofHours(2), 200, 3);
+    }
+
+    @Test
+    @DisplayName("encode/decode round-trips a feed; foreign values decode as a miss")
+    void encodeDecodeRoundTrip() {
+        PersonalFeedService.Feed feed = new PersonalFeedService.Feed(
+                List.of("p1", "p2"), new LinkedHashSet<>(List.of("seen")), 7);
+
+        PersonalFeedService.Feed decoded = PersonalFeedService.decode(PersonalFeedService.encode(feed));
+
+        assertThat(decoded).isEqualTo(feed);
+        assertThat(PersonalFeedService.decode(PersonalFeedService.encode(PersonalFeedService.Feed.EMPTY)))
+                .isEqualTo(PersonalFeedService.Feed.EMPTY);
+        assertThat(PersonalFeedService.decode("not-a-feed")).isNull();
+        assertThat(PersonalFeedService.decode("x|p1|")).isNull();
+    }
+
+    @Test
+    @DisplayName("Users own their feed across sessions; anonymous shoppers per session")
+    void ownerOfPrefersUser() {
+        assertThat(PersonalFeedService.ownerOf("u1", "s1")).isEqualTo("u:u1");
+        assertThat(PersonalFeedService.ownerOf(null, "s1")).isEqualTo("s:s1");
+        assertThat(PersonalFeedService.ownerOf(null, " ")).isNull();
+        assertThat(PersonalFeedService.ownerOf(null, null)).isNull();
+    }
+
+    @Test
+    @DisplayName("Hit — served from Redis without touching MongoDB")
+    void hitIsOneLookup() {
+        stored("u:u1", "3|p1,p2|seen", "3");
+
+        PersonalFeedService.Feed feed = service.feedFor("u1", "s1");
+
+        assertThat(feed.productIds()).containsExactly("p1", "p2");
+        assertThat(feed.excluded()).containsExactly("seen");
+        verifyNoInteractions(mongoTemplate, trackingService);
+        assertThat(reads("hit")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Miss — built inline from similarities, scored by signal weight, and stored")
+    void missBuildsAndStores() {
+        stored("u:u1", null, "4");
+        seeds("u1", "seed");
+        similarities(
+                similarity("seed", SimilarityType.CO_VIEW, entry("a", 0.9), entry("b", 0.2)),
+                similarity("seed", SimilarityType.CO_PURCHASE, entry("b", 0.5), entry("seed", 1.0)));
+
+        PersonalFeedService.Feed feed = service.feedFor("u1", null);
+
+        // b = 0.2 + 0.5 × 2 = 1.2 beats a = 0.9; the seed itself is excluded
+        assertThat(feed.productIds()).containsExactly("b", "a");
+        assertThat(feed.excluded()).containsExactly("seed");
+        assertThat(feed.generation()).isEqualTo(4);
+        verify(values).set("exploreaba:feed:u:u1", "4|b,a|seed", Duration.ofDays(1));
+        assertThat(reads("miss")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Purchased products never appear in a user's feed")
+    void purchasesAreExcluded() {
+        stored("u:u1", null, "0");
+        seeds("u1", "seed");
+        similarities(similarity("seed", SimilarityType.CO_VIEW, entry("bought", 0.9), entry("new", 0.1)));
+        when(behaviorRepository.findByUserIdAndEventType(eq("u1"), eq(BehaviorEventType.PURCHASE), any(Pageable.class)))
+                .thenReturn(List.of(UserBehaviorLog.builder().productId("bought").build()));
+
+        PersonalFeedService.Feed feed = service.feedFor("u1", null);
+
+        assertThat(feed.productIds()).containsExactly("new");
+        assertThat(feed.excluded()).containsExactly("seed", "bought");
+    }
+
+    @Test
+    @DisplayName("Slots the similarity lists cannot fill are topped up from the ALS model")
+    void topsUpFromFactorModel() {
+        stored("u:u1", null, "0");
+        seeds("u1", "seed");
+        similarities(similarity("seed", SimilarityType.CO_VIEW, entry("a", 0.9)));
+        when(behaviorRepository.findByUserIdAndEventType(eq("u1"), eq(BehaviorEventType.PURCHASE), any(Pageable.class)))
+                .thenReturn(List.of(UserBehaviorLog.builder().productId("bought").build()));
+        when(factorModels.recommend(anyMap(), anyInt(), anySet())).thenReturn(List.of("tail1", "tail2"));
+
+        PersonalFeedService.Feed feed = service.feedFor("u1", null);
+
+        assertThat(feed.productIds()).containsExactly("a", "tail1", "tail2");
+        verify(factorModels).recommend(eq(Map.of("seed", 1f, "bought", 10f)),
+                eq(PersonalFeedService.FEED_SIZE - 1), eq(Set.of("seed", "bought", "a")));
+    }
+
+    @Test
+    @DisplayName("Stale generation — old feed is served now and rebuilt once on the next flush")
+    void staleGenerationServesAndQueues() {
+        stored("s:s1", "1|old|", "2");
+        when(values.get(PersonalFeedService.GENERATION_KEY)).thenReturn("2");
+        seeds(null, "seed");
+        similarities(similarity("seed", SimilarityType.CO_VIEW, entry("fresh", 0.5)));
+
+        PersonalFeedService.Feed served = service.feedFor(null, "s1");
+        service.feedFor(null, "s1");
+        storedFeeds("s:s1");
+
+        assertThat(served.productIds()).containsExactly("old");
+        assertThat(reads("stale")).isEqualTo(2.0);
+
+        service.rebuildStale();
+
+        verify(values, times(1)).set("exploreaba:feed:s:s1", "2|fresh|seed", Duration.ofHours(2));
+        service.rebuildStale();
+        verify(trackingService, times(1)).getRecentlyViewed(null, "s1", 5);
+    }
+
+    @Test
+    @DisplayName("Many behaviour events for one shopper coalesce into a single rebuild")
+    void markStaleCoalesces() {
+        storedFeeds("u:u1");
+        seeds("u1", "seed");
+        similarities(similarity("seed", SimilarityType.CO_VIEW, entry("a", 0.5)));
+
+        for (int i = 0; i < 10; i++) service.markStale("u1", "s1");
+        service.rebuildStale();
+
+        verify(trackingService, times(1)).getRecentlyViewed("u1", null, 5);
+        verify(values, times(1)).set(eq("exploreaba:feed:u:u1"), anyString(), eq(Duration.ofDays(1)));
+    }
+
+    @Test
+    @DisplayName("A rejected drain keeps the queue and retries on the next tick")
+    void rejectedDrainRetriesOnNextTick() {
+        boolean[] busy = {true};
+        service = new PersonalFeedService(redisTemplate, mongoTemplate, trackingService, behaviorRepository,
+                factorModels, task -> {
+                    if (busy[0]) throw new RejectedExecutionException("busy");
+                    task.run();
+                }, meterRegistry, Duration.ofDays(1), Duration.ofHours(2), 200, 3);
+        storedFeeds("u:u1");
+        seeds("u1", "seed");
+        similarities(similarity("seed", SimilarityType.CO_VIEW, entry("a", 0.5)));
+
+        service.markStale("u1", null);
+        service.rebuildStale();
+        verify(trackingService, never()).getRecentlyViewed(any(), any(), anyInt());
+
+        busy[0] = false;
+        service.rebuildStale();
+        verify(trackingService, times(1)).getRecentlyViewed("u1", null, 5);
+    }
+
+    @Test
+    @DisplayName("Queued owners without a stored feed are skipped — no Mongo reads for them")
+    void ownersWithoutStoredFeedAreSkipped() {
+        storedFeeds("u:u1");
+        seeds("u1", "seed");
+        similarities(similarity("seed", SimilarityType.CO_VIEW, entry("a", 0.5)));
+
+        service.markStale("u1", null);
+        service.markStale(null, "anonymous-browser");
+        service.rebuildStale();
+
+        verify(trackingService, times(1)).getRecentlyViewed(any(), any(), anyInt());
+        verify(trackingService, never()).getRecentlyViewed(null, "anonymous-browser", 5);
+        verify(values, never()).set(eq("exploreaba:feed:s:anonymous-browser"), anyString(), any(Duration.class));
+        assertThat(meterRegistry.counter("recommendation.feed.skipped").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("The queue is bounded — past max-pending, new owners are dropped and counted")
+    void queueIsBounded() {
+        for (int i = 0; i < 5; i++) service.markStale(null, "s" + i);
+        service.markStale(null, "s0");
+
+        assertThat(meterRegistry.get("recommendation.feed.queue.depth").gauge().value()).isEqualTo(3.0);
+        assertThat(meterRegistry.counter("recommendation.feed.queue.dropped").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Redis down — the feed is still built inline")
+    void redisDownBuildsInline() {
+        when(values.multiGet(anyCollection())).thenThrow(new IllegalStateException("connection refused"));
+        seeds("u1", "seed");
+        similarities(similarity("seed", SimilarityType.CO_VIEW, entry("a", 0.5)));
+
+        assertThat(service.feedFor("u1", null).productIds()).containsExactly("a");
+    }
+
+    @Test
+    @DisplayName("New similarities bump the shared generation")
+    void similaritiesChangedBumpsGeneration() {
+        service.similaritiesChanged();
+
+        verify(values).increment(PersonalFeedService.GENERATION_KEY);
+    }
+
+    // =========================================================================
+    // HELPER METHODS
+    // =========================================================================
+
+    private void stored(String owner, String feed, String generation) {
+        when(values.multiGet(List.of(PersonalFeedService.KEY_PREFIX + owner, PersonalFeedService.GENERATION_KEY)))
+                .thenReturn(Arrays.asList(feed, generation));
+    }
+
+    /** Owners whose feed key exists; every other key reads as missing. */
+    private void storedFeeds(String... owners) {
+        Set<String> keys = new HashSet<>();
+        for (String owner : owners) keys.add(PersonalFeedService.KEY_PREFIX + owner);
+        when(values.multiGet(argThat((Collection<String> requested) -> requested != null
+                && !requested.contains(PersonalFeedService.GENERATION_KEY))))
+                .thenAnswer(inv -> inv.<Collection<String>>getArgument(0).stream()
+                        .map(key -> keys.contains(key) ? "0||" : null)
+                        .toList());
+    }
+
+    private void seeds(String userId, String... productIds) {
+        when(trackingService.getRecentlyViewed(eq(userId), any(), anyInt())).thenReturn(List.of(productIds));
+    }
+
+    private void similarities(ItemSimilarity... lists) {
+        when(mongoTemplate.find(any(Query.class), eq(ItemSimilarity.class))).thenReturn(List.of(lists));
+    }
+
+    private static ItemSimilarity similarity(String source, SimilarityType type, SimilarEntry... entries) {
+        return ItemSimilarity.builder().sourceProductId(source).type(type).similar(List.of(entries)).build();
+    }
+
+    private static SimilarEntry entry(String productId, double score) {
+        return SimilarEntry.builder().productId(productId).score(score).build();
+    }
+
+    private double reads(String result) {
+        return meterRegistry.counter("recommendation.feed.reads", "result", result).count();
+    }
+}
@@ -0,0 +1,236 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import semicolon.africa.waylchub.dto.productDto.ProductFilterRequest;
+import semicolon.africa.waylchub.model.product.Category;
+import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.model.recommendation.ProductPopularity;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("ProductSearchIndex")
+class ProductSearchIndexTest {
+
+    @Mock MongoTemplate mongoTemplate;
+    @Mock StringRedisTemplate redisTemplate;
+    @Mock RedisMessageListenerContainer listenerContainer;
+
+    ProductSearchIndex index;
+
+    private final Category jeans = category("cat-jeans", "Jeans", "jeans");
+    private final Category skinny = category("cat-skinny", "Skinny", "skinny");
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex(mongoTemplate, redisTemplate, listenerContainer,
+                new SimpleMeterRegistry(), Runnable::run, true);
+        index.registerListenerAndMetrics();
+
+        when(mongoTemplate.find(any(Query.class), eq(Category.class))).thenReturn(List.of(jeans, skinny));
+        when(mongoTemplate.stream(any(Query.class), eq(ProductPopularity.class))).thenAnswer(inv -> Stream.of(
+                ProductPopularity.builder().productId("p-levi").popularityScore(50.0).build(),
+                ProductPopularity.builder().productId("p-wrangler").popularityScore(90.0).build()));
+        when(mongoTemplate.stream(any(Query.class), eq(Product.class))).thenAnswer(inv -> Stream.of(
+                product("p-levi", "Levi 511 Slim", "Levi's", "79.99", skinny, jeans),
+                product("p-wrangler", "Wrangler Classic", "Wrangler", "59.99", jeans),
+                product("p-dress", "Summer Dresses Jeans Look", "Zara", "39.99")));
+    }
+
+    @Test
+    @DisplayName("is not ready until the first build completes")
+    void notReadyBeforeBuild() {
+        assertThat(index.isReady()).isFalse();
+        index.rebuild();
+        assertThat(index.isReady()).isTrue();
+    }
+
+    @Test
+    @DisplayName("a parent category name finds products of its sub-categories")
+    void lineageNamesAreIndexed() {
+        index.rebuild();
+
+        assertThat(index.search("skinny", null, 10)).containsExactly("p-levi");
+        assertThat(index.search("jeans", null, 10)).contains("p-levi", "p-wrangler");
+    }
+
+    @Test
+    @DisplayName("ranks by popularity first, then relevance")
+    void ranksByPopularityThenRelevance() {
+        index.rebuild();
+
+        // Wrangler (90) above Levi (50) above the dress (no score, name match only)
+        assertThat(index.search("jeans", null, 10)).containsExactly("p-wrangler", "p-levi", "p-dress");
+
+        index.updatePopularity(Map.of("p-dress", 100.0));
+        assertThat(index.search("jeans", null, 10)).containsExactly("p-dress", "p-wrangler", "p-levi");
+    }
+
+    @Test
+    @DisplayName("misspelled terms are rewritten to the nearest indexed term")
+    void typosAreCorrected() {
+        index.rebuild();
+
+        assertThat(index.search("wranglr", null, 10)).containsExactly("p-wrangler");
+        assertThat(index.search("classci", null, 10)).containsExactly("p-wrangler");
+        // Known terms are never rewritten
+        assertThat(index.search("slim", null, 10)).containsExactly("p-levi");
+    }
+
+    @Test
+    @DisplayName("applies the category and price filters to every match")
+    void filtersApply() {
+        index.rebuild();
+
+        ProductFilterRequest bySkinny = new ProductFilterRequest();
+        bySkinny.setCategorySlug("skinny");
+        assertThat(index.search("jeans", bySkinny, 10)).containsExactly("p-levi");
+
+        ProductFilterRequest byPrice = new ProductFilterRequest();
+        byPrice.setMaxPrice(new BigDecimal("60"));
+        assertThat(index.search("jeans", byPrice, 10)).containsExactly("p-wrangler", "p-dress");
+
+        // Unknown slug is ignored, as the Mongo path does
+        ProductFilterRequest unknown = new ProductFilterRequest();
+        unknown.setCategorySlug("no-such-category");
+        assertThat(index.search("jeans", unknown, 10)).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("a dirty product is re-read, re-indexed in place and broadcast")
+    void incrementalUpdateReindexesAndBroadcasts() {
+        index.rebuild();
+        Product renamed = product("p-levi", "Levi Trucker Jacket", "Levi's", "99.99");
+        Product deactivated = product("p-wrangler", "Wrangler Classic", "Wrangler", "59.99", jeans);
+        deactivated.setActive(false);
+        when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenReturn(List.of(renamed, deactivated));
+
+        index.markDirty("p-levi");
+        index.markDirty("p-wrangler");
+        index.flushDirty();
+
+        assertThat(index.search("slim", null, 10)).isEmpty();
+        assertThat(index.search("jacket", null, 10)).containsExactly("p-levi");
+        assertThat(index.search("wrangler", null, 10)).isEmpty();
+        verify(redisTemplate).convertAndSend(eq(ProductSearchIndex.CHANNEL), anyString());
+    }
+
+    @Test
+    @DisplayName("a write that leaves every indexed field alone keeps the generation")
+    void unchangedContentKeepsGeneration() {
+        index.rebuild();
+        long built = index.generation();
+        when(mongoTemplate.find(any(Query.class), eq(Product.class)))
+                .thenReturn(List.of(product("p-wrangler", "Wrangler Classic", "Wrangler", "59.990", jeans)));
+
+        index.markDirty("p-wrangler");
+        index.flushDirty();
+        assertThat(index.generation()).isEqualTo(built);
+
+        when(mongoTemplate.find(any(Query.class), eq(Product.class)))
+                .thenReturn(List.of(product("p-wrangler", "Wrangler Classic", "Wrangler", "49.99", jeans)));
+        index.markDirty("p-wrangler");
+        index.flushDirty();
+        assertThat(index.generation()).isEqualTo(built + 1);
+    }
+
+    @Test
+    @DisplayName("IDs announced by another pod are re-indexed but not re-broadcast")
+    void remoteUpdateIsNotRebroadcast() {
+        index.rebuild();
+        when(mongoTemplate.find(any(Query.class), eq(Product.class)))
+                .thenReturn(List.of(product("p-levi", "Levi Trucker Jacket", "Levi's", "99.99")));
+
+        index.onMessage(new DefaultMessage(
+                ProductSearchIndex.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "other-pod|p-levi".getBytes(StandardCharsets.UTF_8)), null);
+        index.flushDirty();
+
+        assertThat(index.search("jacket", null, 10)).containsExactly("p-levi");
+        verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("a product flushed while a rebuild streams past it keeps its update after the swap")
+    void flushDuringRebuildIsReplayed() {
+        index.rebuild();
+        Product renamed = product("p-levi", "Levi Trucker Jacket", "Levi's", "99.99");
+        when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenReturn(List.of(renamed));
+
+        // The cursor has already returned the old Levi document when the write is flushed
+        when(mongoTemplate.stream(any(Query.class), eq(Product.class))).thenAnswer(inv -> Stream.of(
+                product("p-levi", "Levi 511 Slim", "Levi's", "79.99", skinny, jeans),
+                product("p-wrangler", "Wrangler Classic", "Wrangler", "59.99", jeans))
+                .peek(p -> {
+                    if (p.getId().equals("p-wrangler")) {
+                        index.markDirty("p-levi");
+                        index.flushDirty();
+                    }
+                }));
+        index.rebuild();
+
+        assertThat(index.search("slim", null, 10)).isEmpty();
+        assertThat(index.search("jacket", null, 10)).containsExactly("p-levi");
+        assertThat(index.search("wrangler", null, 10)).containsExactly("p-wrangler");
+    }
+
+    @Test
+    @DisplayName("tokenizer folds plurals and drops stop words")
+    void tokenizerNormalises() {
+        assertThat(SearchTokenizer.tokenize("Men's Slim-Fit JEANS")).containsExactly("men", "slim", "fit", "jean");
+        assertThat(SearchTokenizer.tokenize("Dresses and Accessories")).containsExactly("dress", "accessory");
+        assertThat(SearchTokenizer.tokenize("glass boxes bus")).containsExactly("glass", "box", "bus");
+        assertThat(SearchTokenizer.tokenize("PS5 consoles")).containsExactly("ps5", "console");
+    }
+
+    // =============================================================================
+    // HELPER METHODS
+    // =============================================================================
+
+    private static Category category(String id, String name, String slug) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(name);
+        category.setSlug(slug);
+        return category;
+    }
+
+    private static Product product(String id, String name, String brand, String price, Category... lineage) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setBrandName(brand);
+        product.setMinPrice(new BigDecimal(price));
+        product.setMaxPrice(new BigDecimal(price));
+        product.setActive(true);
+        product.setCategoryLineageIds(Arrays.stream(lineage).map(Category::getId).toList());
+        if (lineage.length > 0) {
+            product.setCategoryName(lineage[0].getName());
+            product.setCategorySlug(lineage[0].getSlug());
+        }
+        return product;
+    }
+}
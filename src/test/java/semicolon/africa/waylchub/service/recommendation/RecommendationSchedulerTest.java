@@ -0,0 +1,194 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import com.mongodb.DBRef;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("RecommendationScheduler — popularity bulk-upsert fallback")
+class RecommendationSchedulerTest {
+
+    // Operators the fallback may send: nothing newer than MongoDB 4.0
+    private static final Set<String> PRE_MERGE_OPERATORS = Set.of(
+            "$match", "$group", "$addFields", "$and", "$or", "$ne", "$in", "$gte",
+            "$sum", "$cond", "$eq", "$add", "$multiply");
+
+    private static final String CATEGORY_ID = new ObjectId().toHexString();
+    private static final String BRAND_ID = new ObjectId().toHexString();
+
+    @Mock MongoTemplate mongoTemplate;
+    @Mock ProductSearchIndex searchIndex;
+    @Mock LiveTrendingService liveTrending;
+    @Mock BulkOperations bulkOps;
+
+    RecommendationScheduler scheduler;
+
+    List<Document> counted = List.of();
+    final Map<String, Document> products = new HashMap<>();
+    final List<TypedAggregation<?>> streamed = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new RecommendationScheduler(mongoTemplate, searchIndex, liveTrending);
+        ReflectionTestUtils.setField(scheduler, "mergeEnabled", false);
+
+        when(liveTrending.snapshot()).thenReturn(Map.of());
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(RecommendationScheduler.POPULARITY_COLLECTION)))
+                .thenReturn(bulkOps);
+        when(bulkOps.upsert(any(Query.class), any(Update.class))).thenReturn(bulkOps);
+        when(mongoTemplate.aggregateStream(any(TypedAggregation.class), eq(Document.class))).thenAnswer(inv -> {
+            streamed.add(inv.getArgument(0));
+            return counted.stream();
+        });
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("products"))).thenAnswer(inv -> {
+            Collection<?> ids = (Collection<?>) ((Document) ((Query) inv.getArgument(0))
+                    .getQueryObject().get("_id")).get("$in");
+            return ids.stream().map(id -> products.get(id.toString())).filter(Objects::nonNull).toList();
+        });
+    }
+
+    @Test
+    @DisplayName("Streams a pipeline without $replaceWith, $unset, $set or $getField")
+    void fallbackPipelineAvoidsNewerOperators() {
+        counted = List.of(row(new ObjectId().toHexString(), 18.0));
+
+        scheduler.refreshPopularityScores();
+
+        assertThat(streamed).hasSize(1);
+        List<Document> pipeline = streamed.get(0).toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertThat(pipeline).extracting(stage -> stage.keySet().iterator().next())
+                .containsExactly("$match", "$group", "$addFields");
+        assertThat(operators(pipeline)).isSubsetOf(PRE_MERGE_OPERATORS);
+    }
+
+    @Test
+    @DisplayName("Joins categorySlug and the category/brand DBRef ids in Java")
+    void fallbackWritesProductMetadata() {
+        String productId = new ObjectId().toHexString();
+        counted = List.of(row(productId, 18.0));
+        product(productId, "phones");
+
+        scheduler.refreshPopularityScores();
+
+        Document set = upserted().get(0);
+        assertThat(set.get("popularityScore")).isEqualTo(18.0);
+        assertThat(set.get("views24h")).isEqualTo(2);
+        assertThat(set.get("categorySlug")).isEqualTo("phones");
+        assertThat(set.get("categoryId")).isEqualTo(CATEGORY_ID);
+        assertThat(set.get("brandId")).isEqualTo(BRAND_ID);
+        assertThat(set).doesNotContainKey("_id");
+        verify(searchIndex).updatePopularity(Map.of(productId, 18.0));
+    }
+
+    @Test
+    @DisplayName("Products that are gone or not ObjectIds get counters only")
+    void missingProductsKeepCountersOnly() {
+        String deleted = new ObjectId().toHexString();
+        counted = List.of(row(deleted, 3.0), row("legacy-sku", 5.0));
+
+        scheduler.refreshPopularityScores();
+
+        assertThat(upserted()).hasSize(2).allSatisfy(set -> {
+            assertThat(set).containsKey("popularityScore");
+            assertThat(set).doesNotContainKeys("categorySlug", "categoryId", "brandId");
+        });
+        verify(searchIndex).updatePopularity(Map.of(deleted, 3.0, "legacy-sku", 5.0));
+    }
+
+    @Test
+    @DisplayName("One product lookup and one bulk write per batch of 1000 rows")
+    void batchesLookupsAndWrites() {
+        counted = IntStream.range(0, 1_001).mapToObj(i -> row(new ObjectId().toHexString(), i)).toList();
+
+        scheduler.refreshPopularityScores();
+
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(Document.class), eq("products"));
+        verify(bulkOps, times(2)).execute();
+        verify(bulkOps, times(1_001)).upsert(any(Query.class), any(Update.class));
+    }
+
+    @Test
+    @DisplayName("A failed $merge falls back to the bulk path")
+    void failedMergeFallsBack() {
+        ReflectionTestUtils.setField(scheduler, "mergeEnabled", true);
+        when(mongoTemplate.aggregate(any(TypedAggregation.class), eq(Document.class)))
+                .thenThrow(new UncategorizedMongoDbException("Unrecognized pipeline stage name: '$merge'", null));
+        String productId = new ObjectId().toHexString();
+        counted = List.of(row(productId, 7.0));
+        product(productId, "phones");
+
+        scheduler.refreshPopularityScores();
+
+        assertThat(streamed).hasSize(1);
+        assertThat(upserted()).singleElement().satisfies(set -> assertThat(set.get("categoryId")).isEqualTo(CATEGORY_ID));
+    }
+
+    // =========================================================================
+    // HELPER METHODS
+    // =========================================================================
+
+    /** A row as the counting pipeline returns it. */
+    private static Document row(String productId, double score) {
+        return new Document("_id", productId)
+                .append("views24h", 2).append("carts24h", 0).append("purchases24h", 0)
+                .append("wishlists24h", 0).append("carts7d", 0).append("purchases7d", 0)
+                .append("popularityScore", score)
+                .append("lastRefreshed", new Date());
+    }
+
+    /** A raw products document, DBRefs and all, as the fallback's find returns it. */
+    private void product(String id, String categorySlug) {
+        products.put(id, new Document("_id", new ObjectId(id))
+                .append("categorySlug", categorySlug)
+                .append("category", new DBRef("categories", new ObjectId(CATEGORY_ID)))
+                .append("brand", new DBRef("brands", new ObjectId(BRAND_ID))));
+    }
+
+    /** The $set body of every upsert sent to product_popularity, in order. */
+    private List<Document> upserted() {
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOps, atLeastOnce()).upsert(any(Query.class), updates.capture());
+        return updates.getAllValues().stream()
+                .map(u -> (Document) u.getUpdateObject().get("$set"))
+                .toList();
+    }
+
+    /** Every $-prefixed key anywhere in the pipeline. */
+    private static Set<String> operators(Object node) {
+        Set<String> found = new TreeSet<>();
+        if (node instanceof Map<?, ?> map) {
+            map.forEach((k, v) -> {
+                if (k.toString().startsWith("$")) found.add(k.toString());
+                found.addAll(operators(v));
+            });
+        } else if (node instanceof Collection<?> items) {
+            items.forEach(item -> found.addAll(operators(item)));
+        }
+        return found;
+    }
+}
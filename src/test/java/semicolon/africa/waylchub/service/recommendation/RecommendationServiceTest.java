@@ -0,0 +1,267 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import semicolon.africa.waylchub.dto.recommendation.ProductPageCandidates;
+import semicolon.africa.waylchub.dto.recommendation.RecommendationResponse;
+import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarEntry;
+import semicolon.africa.waylchub.model.recommendation.ItemSimilarity.SimilarityType;
+import semicolon.africa.waylchub.model.recommendation.ProductPopularity;
+import semicolon.africa.waylchub.repository.recommendationRepository.ProductPopularityRepository;
+import semicolon.africa.waylchub.service.productService.CatalogTermDictionary;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static semicolon.africa.waylchub.config.CacheConfig.RECOMMENDATION_CANDIDATES_CACHE;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("RecommendationService — product page bundle")
+class RecommendationServiceTest {
+
+    @Mock MongoTemplate mongoTemplate;
+    @Mock ProductPopularityRepository popularityRepository;
+    @Mock PersonalFeedService feedService;
+    @Mock FactorModelService factorModels;
+    @Mock CatalogTermDictionary termDictionary;
+    @Mock LiveTrendingService liveTrending;
+    @Mock CacheManager cacheManager;
+    @Mock Cache candidateCache;
+
+    RecommendationService service;
+
+    // Every product the fake catalogue knows, by id
+    final Map<String, Product> catalogue = new HashMap<>();
+    List<String> contentCandidates = List.of();
+
+    @BeforeEach
+    void setUp() {
+        service = new RecommendationService(mongoTemplate, popularityRepository, feedService,
+                factorModels, termDictionary, liveTrending, cacheManager, Runnable::run);
+
+        when(cacheManager.getCache(RECOMMENDATION_CANDIDATES_CACHE)).thenReturn(candidateCache);
+        // A cold cache: every get runs its loader
+        when(candidateCache.get(any(), any(Callable.class)))
+                .thenAnswer(inv -> ((Callable<?>) inv.getArgument(1)).call());
+        when(termDictionary.categoryIdForSlug(any())).thenReturn(Optional.empty());
+        when(mongoTemplate.find(any(Query.class), eq(ItemSimilarity.class))).thenReturn(List.of());
+        when(mongoTemplate.findOne(any(Query.class), eq(Product.class)))
+                .thenAnswer(inv -> catalogue.get(idOf(inv.getArgument(0))));
+        when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenAnswer(inv -> {
+            Document q = ((Query) inv.getArgument(0)).getQueryObject();
+            if (q.containsKey("$or")) {
+                return contentCandidates.stream().map(catalogue::get).toList();
+            }
+            Collection<?> ids = (Collection<?>) ((Document) q.get("id")).get("$in");
+            return ids.stream().map(catalogue::get).filter(Objects::nonNull).toList();
+        });
+    }
+
+    @Test
+    @DisplayName("Hydrates every strategy's IDs in one projected query")
+    void oneHydrationForTheWholeBundle() {
+        product("src", "shoes", "Nike");
+        product("c1", "shoes", "Nike");
+        product("c2", "shoes", "Adidas");
+        product("b1", "socks", "Puma");
+        product("v1", "bags", "Puma");
+        contentCandidates = List.of("c2", "c1");
+        similarities("src",
+                list(SimilarityType.CO_PURCHASE, entry("b1", 0.9), entry("c1", 0.4)),
+                list(SimilarityType.CO_VIEW, entry("v1", 0.7), entry("src", 1.0)));
+
+        RecommendationResponse bundle = service.getProductPageRecommendations("src", null, null);
+
+        assertThat(ids(bundle.getSimilarProducts())).containsExactly("c1", "c2");
+        assertThat(ids(bundle.getCustomersAlsoBought())).containsExactly("b1", "c1");
+        assertThat(ids(bundle.getCustomersAlsoViewed())).containsExactly("v1");
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(queries.capture(), eq(Product.class));
+        Query hydration = queries.getAllValues().get(1);
+        assertThat((Collection<Object>) ((Document) hydration.getQueryObject().get("id")).get("$in"))
+                .containsExactlyInAnyOrder("c1", "c2", "b1", "v1");
+        assertThat(hydration.getFieldsObject()).containsKeys(RecommendationService.CARD_FIELDS);
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(ItemSimilarity.class));
+    }
+
+    @Test
+    @DisplayName("Pre-computed CONTENT list — no live content query")
+    void usesPrecomputedContentList() {
+        product("src", "shoes", "Nike");
+        product("c1", "shoes", "Nike");
+        product("c2", "bags", "Nike");
+        similarities("src", list(SimilarityType.CONTENT, entry("c2", 0.3), entry("c1", 0.8)));
+
+        RecommendationResponse bundle = service.getProductPageRecommendations("src", null, null);
+
+        assertThat(ids(bundle.getSimilarProducts())).containsExactly("c1", "c2");
+        // Only the hydration touched products
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Product.class));
+    }
+
+    @Test
+    @DisplayName("No content matches and no CO_PURCHASE list — both fall back to category popularity")
+    void fallsBackToPopularity() {
+        product("src", "shoes", "Nike");
+        product("p1", "shoes", "Puma");
+        when(termDictionary.categoryAndDescendantIds("shoes")).thenReturn(Set.of("cat-shoes"));
+        when(popularityRepository.findByCategoryIdInOrderByPopularityScoreDesc(anyCollection(), any(Pageable.class)))
+                .thenReturn(List.of(popularity("src"), popularity("p1")));
+
+        RecommendationResponse bundle = service.getProductPageRecommendations("src", null, null);
+
+        assertThat(ids(bundle.getSimilarProducts())).containsExactly("p1");
+        assertThat(ids(bundle.getCustomersAlsoBought())).containsExactly("p1");
+        assertThat(bundle.getCustomersAlsoViewed()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("No CO_VIEW list — also-viewed comes from the ALS factor neighbours")
+    void alsoViewedFallsBackToFactorModel() {
+        product("src", "shoes", "Nike");
+        product("f1", "bags", "Puma");
+        similarities("src", list(SimilarityType.CONTENT, entry("f1", 0.2)));
+        when(factorModels.similarIds(eq("src"), anyInt(), anySet())).thenReturn(List.of("f1"));
+
+        RecommendationResponse bundle = service.getProductPageRecommendations("src", null, null);
+
+        assertThat(ids(bundle.getCustomersAlsoViewed())).containsExactly("f1");
+        verify(factorModels).similarIds("src", 10, Set.of("src"));
+    }
+
+    @Test
+    @DisplayName("Unknown product — empty bundle, no hydration")
+    void unknownProductIsEmpty() {
+        RecommendationResponse bundle = service.getProductPageRecommendations("missing", null, null);
+
+        assertThat(bundle.getSimilarProducts()).isEmpty();
+        assertThat(bundle.getSimilarProducts()).isInstanceOf(ArrayList.class);
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Product.class));
+    }
+
+    @Test
+    @DisplayName("Cached candidates are hydrated on every request — no similarity or source reads")
+    void cachedCandidatesAreHydratedPerRequest() {
+        product("c1", "shoes", "Nike");
+        product("b1", "socks", "Puma");
+        when(candidateCache.get(eq("src"), any(Callable.class))).thenReturn(ProductPageCandidates.builder()
+                .similarIds(new ArrayList<>(List.of("c1", "gone")))
+                .alsoBoughtIds(new ArrayList<>(List.of("b1")))
+                .alsoViewedIds(new ArrayList<>())
+                .build());
+
+        RecommendationResponse bundle = service.getProductPageRecommendations("src", null, null);
+
+        // "gone" was deactivated after the candidates were cached
+        assertThat(ids(bundle.getSimilarProducts())).containsExactly("c1");
+        assertThat(ids(bundle.getCustomersAlsoBought())).containsExactly("b1");
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Product.class));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(ItemSimilarity.class));
+        verify(mongoTemplate, never()).findOne(any(Query.class), eq(Product.class));
+    }
+
+    @Test
+    @DisplayName("Only candidate IDs are cached, in mutable lists")
+    void cachesCandidateIdsOnly() {
+        product("src", "shoes", "Nike");
+        product("c1", "shoes", "Nike");
+        similarities("src", list(SimilarityType.CONTENT, entry("c1", 0.8)));
+        ArgumentCaptor<Callable<ProductPageCandidates>> loader = ArgumentCaptor.forClass(Callable.class);
+
+        service.getProductPageRecommendations("src", null, null);
+
+        verify(candidateCache).get(eq("src"), loader.capture());
+        ProductPageCandidates cached = callQuietly(loader.getValue());
+        assertThat(cached.getSimilarIds()).containsExactly("c1").isInstanceOf(ArrayList.class);
+        assertThat(cached.getAlsoBoughtIds()).containsExactly("c1").isInstanceOf(ArrayList.class);
+        assertThat(cached.getAlsoViewedIds()).isInstanceOf(ArrayList.class);
+    }
+
+    @Test
+    @DisplayName("An unreachable cache computes the candidates uncached")
+    void cacheOutageComputesUncached() {
+        product("src", "shoes", "Nike");
+        product("c1", "shoes", "Nike");
+        similarities("src", list(SimilarityType.CONTENT, entry("c1", 0.8)));
+        when(candidateCache.get(any(), any(Callable.class)))
+                .thenThrow(new IllegalStateException("Redis connection refused"));
+
+        RecommendationResponse bundle = service.getProductPageRecommendations("src", null, null);
+
+        assertThat(ids(bundle.getSimilarProducts())).containsExactly("c1");
+    }
+
+    @Test
+    @DisplayName("Rewritten similarity lists evict their candidates; a full rebuild clears the cache")
+    void evictsCandidates() {
+        service.evictProductPageCandidates(List.of("a", "b"));
+        verify(candidateCache).evict("a");
+        verify(candidateCache).evict("b");
+        verify(candidateCache, never()).clear();
+
+        service.evictProductPageCandidates(null);
+        verify(candidateCache).clear();
+    }
+
+    // =========================================================================
+    // HELPER METHODS
+    // =========================================================================
+
+    private void product(String id, String categorySlug, String brand) {
+        catalogue.put(id, Product.builder().id(id).categorySlug(categorySlug).brandName(brand)
+                .tags(new HashSet<>()).isActive(true).build());
+    }
+
+    private void similarities(String source, ItemSimilarity... lists) {
+        for (ItemSimilarity list : lists) list.setSourceProductId(source);
+        when(mongoTemplate.find(any(Query.class), eq(ItemSimilarity.class))).thenReturn(List.of(lists));
+    }
+
+    private static ItemSimilarity list(SimilarityType type, SimilarEntry... entries) {
+        return ItemSimilarity.builder().type(type).similar(List.of(entries)).build();
+    }
+
+    private static SimilarEntry entry(String productId, double score) {
+        return SimilarEntry.builder().productId(productId).score(score).build();
+    }
+
+    private static ProductPopularity popularity(String productId) {
+        return ProductPopularity.builder().productId(productId).build();
+    }
+
+    private static <T> T callQuietly(Callable<T> callable) {
+        try {
+            return callable.call();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String idOf(Query query) {
+        return (String) query.getQueryObject().get("id");
+    }
+
+    private static List<String> ids(List<Product> products) {
+        return products.stream().map(Product::getId).toList();
+    }
+}
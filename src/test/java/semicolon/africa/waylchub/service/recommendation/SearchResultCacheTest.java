@@ -0,0 +1,222 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import semicolon.africa.waylchub.dto.productDto.ProductFilterRequest;
+import semicolon.africa.waylchub.service.recommendation.SearchResultCache.QueryReport;
+import semicolon.africa.waylchub.service.recommendation.SearchResultCache.RankedIds;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("SearchResultCache")
+class SearchResultCacheTest {
+
+    @Mock ProductSearchIndex searchIndex;
+
+    final ExecutorService pool = Executors.newCachedThreadPool();
+
+    SimpleMeterRegistry meterRegistry;
+    SearchResultCache cache;
+
+    final AtomicInteger rankings = new AtomicInteger();
+    final List<String> ids = objectIds(50);
+    final Supplier<RankedIds> ranker = () -> {
+        rankings.incrementAndGet();
+        return RankedIds.of(ids);
+    };
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new SearchResultCache(searchIndex, meterRegistry, true, Duration.ofMinutes(2), 1_000);
+        when(searchIndex.generation()).thenReturn(7L);
+        when(searchIndex.isReady()).thenReturn(true);
+    }
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("repeat searches and later pages reuse one ranking")
+    void repeatSearchesHitTheCache() {
+        RankedIds first = cache.rankedIds("jeans", null, ranker);
+        RankedIds again = cache.rankedIds("  JEANS ", null, ranker);
+
+        assertThat(rankings.get()).isEqualTo(1);
+        assertThat(again.size()).isEqualTo(50);
+        assertThat(again.slice(24, 48)).isEqualTo(ids.subList(24, 48));
+        assertThat(first.slice(0, 24)).isEqualTo(ids.subList(0, 24));
+        assertThat(meterRegistry.get("search.result_cache.requests").tag("result", "hit").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("a new index generation ranks again")
+    void generationChangeMisses() {
+        cache.rankedIds("jeans", null, ranker);
+        when(searchIndex.generation()).thenReturn(8L);
+        cache.rankedIds("jeans", null, ranker);
+
+        assertThat(rankings.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("filters are part of the key; equal prices at different scales are one key")
+    void filtersAreKeyed() {
+        cache.rankedIds("jeans", priceFilter("100"), ranker);
+        cache.rankedIds("jeans", priceFilter("100.00"), ranker);
+        assertThat(rankings.get()).isEqualTo(1);
+
+        cache.rankedIds("jeans", priceFilter("50"), ranker);
+        assertThat(rankings.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("a partial ranking is returned but not stored")
+    void partialRankingsAreNotCached() {
+        Supplier<RankedIds> partialRanker = () -> {
+            rankings.incrementAndGet();
+            return RankedIds.partial(ids.subList(0, 10));
+        };
+
+        assertThat(cache.rankedIds("jeans", null, partialRanker).isPartial()).isTrue();
+        RankedIds complete = cache.rankedIds("jeans", null, ranker);
+
+        assertThat(complete.isPartial()).isFalse();
+        assertThat(complete.size()).isEqualTo(50);
+        assertThat(rankings.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("concurrent misses for one key share a single ranking")
+    void concurrentMissesShareOneRanking() throws Exception {
+        CountDownLatch ranking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<RankedIds> first = pool.submit(() -> cache.rankedIds("jeans", null, () -> {
+            ranking.countDown();
+            await(release);
+            return ranker.get();
+        }));
+        assertThat(ranking.await(5, TimeUnit.SECONDS)).isTrue();
+        List<Future<RankedIds>> waiters = List.of(
+                pool.submit(() -> cache.rankedIds("jeans", null, ranker)),
+                pool.submit(() -> cache.rankedIds("jeans", null, ranker)));
+
+        release.countDown();
+
+        RankedIds ranked = first.get(5, TimeUnit.SECONDS);
+        for (Future<RankedIds> waiter : waiters) {
+            assertThat(waiter.get(5, TimeUnit.SECONDS)).isSameAs(ranked);
+        }
+        assertThat(rankings.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("a slow ranking does not hold up other queries")
+    void slowRankingDoesNotBlockOtherKeys() throws Exception {
+        CountDownLatch ranking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<RankedIds> slow = pool.submit(() -> cache.rankedIds("slow", null, () -> {
+            ranking.countDown();
+            await(release);
+            return ranker.get();
+        }));
+        assertThat(ranking.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Enough keys that some share the slow key's hash bin
+        Future<?> others = pool.submit(() -> {
+            for (int i = 0; i < 2_000; i++) cache.rankedIds("query " + i, null, ranker);
+        });
+        try {
+            others.get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+        }
+
+        assertThat(slow.get(5, TimeUnit.SECONDS).size()).isEqualTo(50);
+    }
+
+    @Test
+    @DisplayName("a failed ranking propagates and the next search ranks again")
+    void failedRankingIsRetried() {
+        assertThatThrownBy(() -> cache.rankedIds("jeans", null, () -> {
+            throw new IllegalStateException("index down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.rankedIds("jeans", null, ranker).size()).isEqualTo(50);
+        assertThat(rankings.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("non-ObjectId IDs round-trip unpacked")
+    void plainIdsRoundTrip() {
+        RankedIds ranked = RankedIds.of(List.of("p-1", "p-2", "p-3"));
+        assertThat(ranked.slice(1, 3)).containsExactly("p-2", "p-3");
+    }
+
+    @Test
+    @DisplayName("per-query report shows how much of each query was served from cache")
+    void perQueryHitRates() {
+        for (int i = 0; i < 4; i++) cache.rankedIds("jeans", null, ranker);
+        cache.rankedIds("sneakers", null, ranker);
+
+        List<QueryReport> top = cache.topQueries(10);
+        assertThat(top).extracting(QueryReport::query).containsExactly("jeans", "sneakers");
+        assertThat(top.get(0).requests()).isEqualTo(4);
+        assertThat(top.get(0).hitRate()).isEqualTo(0.75);
+        assertThat(top.get(1).hitRate()).isZero();
+    }
+
+    // =============================================================================
+    // HELPER METHODS
+    // =============================================================================
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ProductFilterRequest priceFilter(String maxPrice) {
+        ProductFilterRequest filter = new ProductFilterRequest();
+        filter.setMaxPrice(new BigDecimal(maxPrice));
+        return filter;
+    }
+
+    private static List<String> objectIds(int n) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < n; i++) ids.add(new ObjectId().toHexString());
+        return ids;
+    }
+}
@@ -0,0 +1,191 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import semicolon.africa.waylchub.dto.recommendation.SearchSuggestion;
+import semicolon.africa.waylchub.dto.recommendation.SearchSuggestion.Type;
+import semicolon.africa.waylchub.service.recommendation.SearchSuggestIndex.Candidate;
+import semicolon.africa.waylchub.service.recommendation.SearchSuggestIndex.Snapshot;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("SearchSuggestIndex")
+class SearchSuggestIndexTest {
+
+    @Mock MongoTemplate mongoTemplate;
+    @Mock ProductSearchIndex searchIndex;
+
+    SearchSuggestIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        index = new SearchSuggestIndex(mongoTemplate, searchIndex, new SimpleMeterRegistry(), Runnable::run, Duration.ofMinutes(15));
+        install(Snapshot.build(List.of(
+                new Candidate("Levi 511 Slim Jeans", Type.PRODUCT, "levi-511-slim-jeans", 50),
+                new Candidate("Wrangler Classic Jeans", Type.PRODUCT, "wrangler-classic-jeans", 90),
+                new Candidate("Jeans", Type.CATEGORY, "jeans", 140),
+                new Candidate("Levi's", Type.BRAND, null, 50),
+                new Candidate("jean jacket", Type.QUERY, null, 20),
+                new Candidate("levis", Type.QUERY, null, 80))));
+    }
+
+    @Test
+    @DisplayName("ranks every candidate under the prefix by score")
+    void ranksByScore() {
+        assertThat(texts(index.suggest("jea", 10)))
+                .containsExactly("Jeans", "Wrangler Classic Jeans", "Levi 511 Slim Jeans", "jean jacket");
+    }
+
+    @Test
+    @DisplayName("matches at any word start, not only the first")
+    void matchesLaterWords() {
+        assertThat(texts(index.suggest("slim", 10))).containsExactly("Levi 511 Slim Jeans");
+        assertThat(texts(index.suggest("classic j", 10))).containsExactly("Wrangler Classic Jeans");
+    }
+
+    @Test
+    @DisplayName("one- and two-character prefixes rank like longer ones")
+    void shortPrefixes() {
+        assertThat(texts(index.suggest("j", 2))).containsExactly("Jeans", "Wrangler Classic Jeans");
+        assertThat(texts(index.suggest("LE", 10))).containsExactly("levis", "Levi 511 Slim Jeans", "Levi's");
+    }
+
+    @Test
+    @DisplayName("one row per normalised text, the highest score wins")
+    void dedupesByText() {
+        Snapshot snapshot = Snapshot.build(List.of(
+                new Candidate("Nike", Type.BRAND, null, 10),
+                new Candidate("nike", Type.QUERY, null, 30)));
+        List<SearchSuggestion> rows = SearchSuggestIndex.topK(snapshot, "nik", 10);
+        assertThat(rows).containsExactly(new SearchSuggestion("nike", Type.QUERY, null));
+    }
+
+    @Test
+    @DisplayName("a prefix covering thousands of keys still finds the best, wherever they sort")
+    void largeRangesAreRankedExactly() throws Exception {
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            candidates.add(new Candidate(String.format("samsung accessory %05d", i), Type.PRODUCT, null, i % 100));
+        }
+        candidates.add(new Candidate("Samsung Zoom Tripod", Type.PRODUCT, null, 500));
+        candidates.add(new Candidate("Samsung Zz Flip", Type.PRODUCT, null, 400));
+        install(Snapshot.build(candidates));
+
+        assertThat(texts(index.suggest("sam", 3)))
+                .containsExactly("Samsung Zoom Tripod", "Samsung Zz Flip", "samsung accessory 00099");
+        assertThat(texts(index.suggest("samsung z", 2))).containsExactly("Samsung Zoom Tripod", "Samsung Zz Flip");
+    }
+
+    @Test
+    @DisplayName("matches agree with a full scan of the range, ties in key order")
+    void agreesWithFullScan() {
+        Random random = new Random(7);
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            String text = (char) ('a' + random.nextInt(3)) + "" + (char) ('a' + random.nextInt(3))
+                    + (char) ('a' + random.nextInt(26)) + " " + (char) ('a' + random.nextInt(3)) + i;
+            candidates.add(new Candidate(text, Type.QUERY, null, random.nextInt(50)));
+        }
+        Snapshot snapshot = Snapshot.build(candidates);
+
+        for (String prefix : List.of("a", "ab", "abc", "c", "ba", "zz")) {
+            assertThat(SearchSuggestIndex.topK(snapshot, prefix, 10)).as(prefix)
+                    .isEqualTo(scan(snapshot, prefix, 10));
+        }
+    }
+
+    @Test
+    @DisplayName("blank input and unknown prefixes return nothing")
+    void emptyCases() {
+        assertThat(index.suggest("  ", 8)).isEmpty();
+        assertThat(index.suggest(null, 8)).isEmpty();
+        assertThat(index.suggest("zzz", 8)).isEmpty();
+        assertThat(index.suggest("zz", 8)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("normalisation collapses punctuation and case")
+    void normalises() {
+        assertThat(SearchSuggestIndex.normalize("  Levi's  511-Slim ")).isEqualTo("levi s 511 slim");
+    }
+
+    @Test
+    @DisplayName("a stale index is rebuilt on the offline executor, one build in flight at a time")
+    void rebuildIfStaleHandsOffOnce() {
+        List<Runnable> queued = new ArrayList<>();
+        index = new SearchSuggestIndex(mongoTemplate, searchIndex, new SimpleMeterRegistry(), queued::add, Duration.ofMinutes(15));
+        when(searchIndex.generation()).thenReturn(1L);
+
+        index.rebuildIfStale();
+        index.rebuildIfStale();
+        assertThat(queued).hasSize(1);
+
+        queued.remove(0).run();
+        index.rebuildIfStale();
+        assertThat(queued).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("a rejected rebuild releases the in-flight flag for the next check")
+    void rejectedRebuildRetriesOnNextCheck() {
+        List<Runnable> queued = new ArrayList<>();
+        boolean[] full = {true};
+        index = new SearchSuggestIndex(mongoTemplate, searchIndex, new SimpleMeterRegistry(), task -> {
+            if (full[0]) throw new RejectedExecutionException("full");
+            queued.add(task);
+        }, Duration.ofMinutes(15));
+        when(searchIndex.generation()).thenReturn(1L);
+
+        index.rebuildIfStale();
+        assertThat(queued).isEmpty();
+
+        full[0] = false;
+        index.rebuildIfStale();
+        assertThat(queued).hasSize(1);
+    }
+
+    // =============================================================================
+    // HELPER METHODS
+    // =============================================================================
+
+    private void install(Snapshot snapshot) throws Exception {
+        var field = SearchSuggestIndex.class.getDeclaredField("snapshot");
+        field.setAccessible(true);
+        field.set(index, snapshot);
+    }
+
+    /** Reference answer: every key in order, best k distinct entries, earlier keys first on ties. */
+    private static List<SearchSuggestion> scan(Snapshot snapshot, String prefix, int k) {
+        List<SearchSuggestIndex.Entry> matches = new ArrayList<>();
+        for (int i = 0; i < snapshot.keys.length; i++) {
+            SearchSuggestIndex.Entry e = snapshot.entries[i];
+            if (snapshot.keys[i].startsWith(prefix) && matches.stream().noneMatch(m -> m == e)) matches.add(e);
+        }
+        matches.sort(Comparator.comparingDouble(SearchSuggestIndex.Entry::score).reversed());
+        return matches.stream().limit(k).map(SearchSuggestIndex.Entry::suggestion).toList();
+    }
+
+    private static List<String> texts(List<SearchSuggestion> rows) {
+        List<String> texts = new ArrayList<>();
+        rows.forEach(r -> texts.add(r.text()));
+        return texts;
+    }
+}
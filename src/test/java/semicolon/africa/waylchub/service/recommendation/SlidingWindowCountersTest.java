@@ -0,0 +1,76 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("SlidingWindowCounters")
+class SlidingWindowCountersTest {
+
+    @Test
+    @DisplayName("ranks by weighted total, globally and per category")
+    void ranksGloballyAndPerCategory() {
+        SlidingWindowCounters counters = new SlidingWindowCounters(60, 10);
+        counters.add("A", "phones", 1, 100);
+        counters.add("B", "phones", 5, 100);
+        counters.add("C", "shoes", 10, 101);
+        counters.add("A", "phones", 1, 101);
+
+        assertThat(counters.top(10)).containsExactly("C", "B", "A");
+        assertThat(counters.topIn(List.of("phones"), 10)).containsExactly("B", "A");
+        assertThat(counters.topIn(List.of("phones", "shoes"), 2)).containsExactly("C", "B");
+        assertThat(counters.topIn(List.of("unknown"), 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("buckets leave the window as minutes advance")
+    void bucketsExpire() {
+        SlidingWindowCounters counters = new SlidingWindowCounters(5, 10);
+        counters.add("A", null, 10, 100);
+        counters.add("B", null, 3, 103);
+
+        counters.advanceTo(104);
+        assertThat(counters.top(10)).containsExactly("A", "B");
+
+        counters.advanceTo(105);                    // minute 100 is out
+        assertThat(counters.top(10)).containsExactly("B");
+        assertThat(counters.totals()).containsOnly(Map.entry("B", 3));
+
+        counters.advanceTo(500);                    // a long quiet spell clears everything
+        assertThat(counters.top(10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("events older than the window are ignored")
+    void lateEventsOutsideWindow() {
+        SlidingWindowCounters counters = new SlidingWindowCounters(5, 10);
+        counters.add("A", null, 1, 100);
+        counters.add("B", null, 1, 95);
+        counters.add("C", null, 1, 96);
+
+        assertThat(counters.top(10)).containsExactly("A", "C");
+    }
+
+    @Test
+    @DisplayName("the live top K matches a full sort of the totals")
+    void liveTopKMatchesFullSort() {
+        SlidingWindowCounters counters = new SlidingWindowCounters(10, 20);
+        Random random = new Random(3);
+        for (int e = 0; e < 50_000; e++) {
+            long minute = 1_000 + e / 2_000;
+            counters.add("p" + random.nextInt(500), "c" + random.nextInt(5), 1 + random.nextInt(10), minute);
+        }
+
+        Map<String, Integer> totals = counters.totals();
+        List<Integer> expected = totals.values().stream()
+                .sorted((a, b) -> b - a).limit(20).collect(Collectors.toList());
+
+        assertThat(counters.top(20)).extracting(totals::get).isEqualTo(expected);
+    }
+}
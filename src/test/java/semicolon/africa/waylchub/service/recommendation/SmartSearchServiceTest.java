@@ -0,0 +1,195 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import semicolon.africa.waylchub.dto.productDto.CursorPage;
+import semicolon.africa.waylchub.dto.recommendation.SearchPage;
+import semicolon.africa.waylchub.model.product.Product;
+import semicolon.africa.waylchub.repository.recommendationRepository.ProductPopularityRepository;
+import semicolon.africa.waylchub.service.productService.CatalogTermDictionary;
+import semicolon.africa.waylchub.service.productService.KeysetPagination;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("SmartSearchService")
+class SmartSearchServiceTest {
+
+    @Mock MongoTemplate mongoTemplate;
+    @Mock CatalogTermDictionary termDictionary;
+    @Mock ProductPopularityRepository popularityRepository;
+    @Mock ProductSearchIndex searchIndex;
+
+    SimpleMeterRegistry meterRegistry;
+    ExecutorService executor;
+    SmartSearchService service;
+
+    final AtomicInteger brandQueries = new AtomicInteger();
+    volatile long brandDelayMs = 0;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = Executors.newFixedThreadPool(3);
+        SearchResultCache resultCache = new SearchResultCache(searchIndex, meterRegistry, true, Duration.ofMinutes(2), 100);
+        service = new SmartSearchService(mongoTemplate, termDictionary, popularityRepository, searchIndex,
+                resultCache, executor, meterRegistry, Duration.ofMillis(200));
+
+        when(searchIndex.isReady()).thenReturn(false);
+        when(termDictionary.categoryIdsMatching(anyCollection())).thenReturn(Set.of("c-jeans"));
+        when(termDictionary.brandNamesMatching(anyCollection())).thenReturn(Set.of("Levi's"));
+        when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenAnswer(inv -> answer(inv.getArgument(0)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("merges every strategy when all answer in time")
+    void completeWhenAllStrategiesAnswer() {
+        SearchPage<Product> page = service.search("levi jeans", null, PageRequest.of(0, 24));
+
+        assertThat(page.isPartial()).isFalse();
+        assertThat(page.getContent()).extracting(Product::getId).containsExactly("p-text", "p-category", "p-brand");
+    }
+
+    @Test
+    @DisplayName("a strategy past the deadline is left out and the result is flagged partial")
+    void slowStrategyYieldsPartialResult() {
+        brandDelayMs = 2_000;
+
+        long started = System.nanoTime();
+        SearchPage<Product> page = service.search("levi jeans", null, PageRequest.of(0, 24));
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertThat(page.isPartial()).isTrue();
+        assertThat(page.getContent()).extracting(Product::getId).containsExactly("p-text", "p-category");
+        assertThat(elapsedMs).isLessThan(1_500);
+        assertThat(meterRegistry.get("search.strategy.timeouts").tag("strategy", "brand").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("search.partial_results").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("partial rankings are not cached, so the next search tries every strategy again")
+    void partialRankingIsRetried() {
+        brandDelayMs = 2_000;
+        CursorPage<Product> first = service.searchByCursor("levi jeans", null,
+                KeysetPagination.SortKey.NEWEST, null, 24, false);
+        assertThat(first.getPartial()).isTrue();
+
+        brandDelayMs = 0;
+        CursorPage<Product> second = service.searchByCursor("levi jeans", null,
+                KeysetPagination.SortKey.NEWEST, null, 24, false);
+
+        assertThat(second.getPartial()).isFalse();
+        assertThat(second.getContent()).extracting(Product::getId).contains("p-brand");
+        assertThat(brandQueries.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("page 2 of a keyword cursor continues from the cached ranking")
+    void keywordCursorPageTwo() {
+        CursorPage<Product> page1 = service.searchByCursor("levi jeans", null,
+                KeysetPagination.SortKey.NEWEST, null, 2, true);
+        CursorPage<Product> page2 = service.searchByCursor("levi jeans", null,
+                KeysetPagination.SortKey.NEWEST, page1.getNextCursor(), 2, true);
+
+        assertThat(page1.getContent()).extracting(Product::getId).containsExactly("p-text", "p-category");
+        assertThat(page1.isHasNext()).isTrue();
+        assertThat(page2.getContent()).extracting(Product::getId).containsExactly("p-brand");
+        assertThat(page2.isHasNext()).isFalse();
+        assertThat(page2.getNextCursor()).isNull();
+        assertThat(page2.getTotalElements()).isEqualTo(3L);
+        assertThat(page2.getTotalExact()).isTrue();
+        assertThat(brandQueries.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("a keyword cursor past the end of the ranking returns an empty last slice")
+    void keywordCursorPastTheEnd() {
+        CursorPage<Product> page = service.searchByCursor("levi jeans", null,
+                KeysetPagination.SortKey.NEWEST, KeysetPagination.encodeOffset(10), 2, false);
+
+        assertThat(page.getContent()).isEmpty();
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("a keyset cursor cannot page a keyword search")
+    void keysetCursorRejectedForKeywordSearch() {
+        Product last = product("p-1");
+        last.setCreatedAt(Instant.parse("2026-05-01T00:00:00Z"));
+        String keysetCursor = KeysetPagination.slice(List.of(last, product("p-2")),
+                KeysetPagination.SortKey.NEWEST, 1).getNextCursor();
+
+        assertThatThrownBy(() -> service.searchByCursor("levi jeans", null,
+                KeysetPagination.SortKey.NEWEST, keysetCursor, 2, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid cursor");
+    }
+
+    @Test
+    @DisplayName("records a duration per strategy")
+    void timesEachStrategy() {
+        service.search("levi jeans", null, PageRequest.of(0, 24));
+
+        for (String strategy : List.of("text", "category", "brand")) {
+            assertThat(meterRegistry.get("search.strategy.duration").tag("strategy", strategy).timer().count())
+                    .isEqualTo(1);
+        }
+    }
+
+    // =============================================================================
+    // HELPER METHODS
+    // =============================================================================
+
+    /** One ID per strategy, told apart by the criterion each one queries on. */
+    private List<Product> answer(Query query) throws InterruptedException {
+        Document criteria = query.getQueryObject();
+        if (criteria.containsKey("$text")) return List.of(product("p-text"));
+        if (criteria.containsKey("categoryLineageIds")) return List.of(product("p-category"));
+        if (criteria.containsKey("brandName")) {
+            brandQueries.incrementAndGet();
+            Thread.sleep(brandDelayMs);
+            return List.of(product("p-brand"));
+        }
+        // fetchOrdered
+        return List.of(product("p-text"), product("p-category"), product("p-brand"));
+    }
+
+    private static Product product(String id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setActive(true);
+        return product;
+    }
+}
@@ -0,0 +1,199 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import semicolon.africa.waylchub.config.LoadSheddingPolicy;
+import semicolon.africa.waylchub.config.LoadSheddingPolicy.Mode;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+import semicolon.africa.waylchub.repository.recommendationRepository.UserBehaviorRepository;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Product pages call trackView on every request. These runs saturate a small
+ * tracking pool whose dedup store hangs (slow) or hangs and then fails (down)
+ * until the page traffic is over, and check where the tracking work ran.
+ *
+ * The store blocks the tracking threads on a latch, so the pool accepts exactly
+ * POOL_SIZE + QUEUE_CAPACITY tasks and every other one reaches the overload
+ * policy. The assertions are on those counts — how many tasks were dropped and
+ * how many ran on a page thread — never on wall-clock latency.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("Tracking executor under load")
+class TrackingLoadSheddingLoadTest {
+
+    private static final int POOL_SIZE = 2;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final int ACCEPTED = POOL_SIZE + QUEUE_CAPACITY;
+    private static final int PAGE_THREADS = 16;
+    private static final int REQUESTS_PER_THREAD = 20;
+    private static final int REQUESTS = PAGE_THREADS * REQUESTS_PER_THREAD;
+
+    @Mock UserBehaviorRepository behaviorRepository;
+    @Mock BehaviorEventBuffer eventBuffer;
+    @Mock ViewDeduplicator viewDeduplicator;
+
+    SimpleMeterRegistry meterRegistry;
+    ThreadPoolTaskExecutor trackingExecutor;
+    ExecutorService pageThreads;
+
+    // Held shut while the pages run: a tracking thread in the store stays there
+    final CountDownLatch storeReleased = new CountDownLatch(1);
+    // Store calls made on a page thread — tracking work the shopper waited for
+    final AtomicInteger storeCallsOnPages = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        pageThreads = Executors.newFixedThreadPool(PAGE_THREADS);
+        when(eventBuffer.offer(any())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storeReleased.countDown();
+        pageThreads.shutdownNow();
+        if (trackingExecutor != null) trackingExecutor.shutdown();
+    }
+
+    @Test
+    @DisplayName("SAMPLE: with the store slow, views beyond the pool are dropped, none run on a page")
+    void sampleKeepsTrackingOffPagesWhenStoreIsSlow() throws Exception {
+        hangingStore(false);
+        BehaviorTrackingService tracking = tracking(Mode.SAMPLE);
+
+        productPages(tracking);
+
+        assertThat(storeCallsOnPages.get()).isZero();
+        assertThat(rejected("VIEW", "dropped")).isEqualTo(REQUESTS - ACCEPTED);
+        assertThat(rejected("VIEW", "caller_runs")).isZero();
+    }
+
+    @Test
+    @DisplayName("DROP: with the store down, views beyond the pool are dropped, none run on a page")
+    void dropKeepsTrackingOffPagesWhenStoreIsDown() throws Exception {
+        hangingStore(true);
+        BehaviorTrackingService tracking = tracking(Mode.DROP);
+
+        productPages(tracking);
+        drainTrackingPool();
+
+        assertThat(storeCallsOnPages.get()).isZero();
+        assertThat(rejected("VIEW", "dropped")).isEqualTo(REQUESTS - ACCEPTED);
+        // The accepted views reached the failing store and were given up on, not retried on a page
+        verify(viewDeduplicator, times(ACCEPTED)).isDuplicate(any(), any(), anyString(), any(BehaviorEventType.class));
+        verify(eventBuffer, never()).offer(any());
+    }
+
+    @Test
+    @DisplayName("CALLER_RUNS (the old policy): every view beyond the pool runs the store call on a page thread")
+    void callerRunsPutsTheStoreOnThePage() throws Exception {
+        hangingStore(false);
+        BehaviorTrackingService tracking = tracking(Mode.CALLER_RUNS);
+
+        productPages(tracking);
+
+        assertThat(storeCallsOnPages.get()).isEqualTo(REQUESTS - ACCEPTED);
+        assertThat(rejected("VIEW", "caller_runs")).isEqualTo(REQUESTS - ACCEPTED);
+        assertThat(rejected("VIEW", "dropped")).isZero();
+    }
+
+    @Test
+    @DisplayName("Purchases submitted into a saturated pool are never dropped")
+    void purchasesSurviveSaturation() throws Exception {
+        hangingStore(false);
+        BehaviorTrackingService tracking = tracking(Mode.SAMPLE);
+
+        List<Future<?>> pages = new ArrayList<>();
+        for (int t = 0; t < PAGE_THREADS; t++) {
+            int thread = t;
+            pages.add(pageThreads.submit(() -> {
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    tracking.trackView("u" + thread, "s" + thread, "p" + i);
+                    tracking.trackPurchases("u" + thread, "s" + thread, List.of("p" + i), List.of(10.0));
+                }
+            }));
+        }
+        for (Future<?> page : pages) page.get(30, TimeUnit.SECONDS);
+        drainTrackingPool();
+
+        verify(eventBuffer, times(REQUESTS))
+                .offer(argThat(e -> e.getEventType() == BehaviorEventType.PURCHASE));
+        assertThat(rejected("PURCHASE", "dropped")).isZero();
+        assertThat(storeCallsOnPages.get()).isZero();
+    }
+
+    // =========================================================================
+    // HELPER METHODS
+    // =========================================================================
+
+    private BehaviorTrackingService tracking(Mode mode) {
+        // The production pool shape, scaled down so 16 page threads saturate it
+        trackingExecutor = new ThreadPoolTaskExecutor();
+        trackingExecutor.setCorePoolSize(POOL_SIZE);
+        trackingExecutor.setMaxPoolSize(POOL_SIZE);
+        trackingExecutor.setQueueCapacity(QUEUE_CAPACITY);
+        trackingExecutor.setThreadNamePrefix("tracking-");
+        trackingExecutor.setRejectedExecutionHandler(new LoadSheddingPolicy("tracking", mode,
+                LoadSheddingPolicy.parseSampleRates("ADD_TO_CART:1.0,WISHLIST:0.5"), meterRegistry));
+        trackingExecutor.initialize();
+        return new BehaviorTrackingService(behaviorRepository, eventBuffer, viewDeduplicator, trackingExecutor);
+    }
+
+    /** Tracking threads wait in the store until the pages are done; a page thread never waits here. */
+    private void hangingStore(boolean down) {
+        when(viewDeduplicator.isDuplicate(any(), any(), anyString(), any(BehaviorEventType.class))).thenAnswer(inv -> {
+            if (!Thread.currentThread().getName().startsWith("tracking-")) {
+                storeCallsOnPages.incrementAndGet();
+                return false;
+            }
+            storeReleased.await(30, TimeUnit.SECONDS);
+            if (down) throw new IllegalStateException("dedup store unavailable");
+            return false;
+        });
+    }
+
+    /** Every page thread tracks a view per request; the store is released once they are all done. */
+    private void productPages(BehaviorTrackingService tracking) throws Exception {
+        List<Future<?>> pages = new ArrayList<>();
+        for (int t = 0; t < PAGE_THREADS; t++) {
+            int thread = t;
+            pages.add(pageThreads.submit(() -> {
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    tracking.trackView("u" + thread, "s" + thread, "p" + i);
+                }
+            }));
+        }
+        for (Future<?> page : pages) page.get(30, TimeUnit.SECONDS);
+        storeReleased.countDown();
+    }
+
+    private void drainTrackingPool() throws InterruptedException {
+        storeReleased.countDown();
+        trackingExecutor.getThreadPoolExecutor().shutdown();
+        assertThat(trackingExecutor.getThreadPoolExecutor().awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private double rejected(String tag, String outcome) {
+        var counter = meterRegistry.find("executor.rejected")
+                .tags("executor", "tracking", "tag", tag, "outcome", outcome).counter();
+        return counter == null ? 0.0 : counter.count();
+    }
+}
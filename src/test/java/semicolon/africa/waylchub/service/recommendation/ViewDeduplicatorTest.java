@@ -0,0 +1,116 @@
+package semicolon.africa.waylchub.service.recommendation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import semicolon.africa.waylchub.model.recommendation.UserBehaviorLog.BehaviorEventType;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("ViewDeduplicator")
+class ViewDeduplicatorTest {
+
+    private static final Duration WINDOW = Duration.ofMinutes(30);
+
+    @Mock StringRedisTemplate redisTemplate;
+    @Mock ValueOperations<String, String> values;
+
+    SimpleMeterRegistry meterRegistry;
+
+    // Keys "claimed" in the fake Redis — shared by every pod in a test
+    final Set<String> redisKeys = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(inv -> redisKeys.add(inv.getArgument(0)));
+    }
+
+    @Test
+    @DisplayName("A repeat within the window is a duplicate — per shopper, product and type")
+    void repeatsAreDuplicates() {
+        ViewDeduplicator dedup = dedup(false);
+
+        assertThat(dedup.isDuplicate("u1", "s1", "p1", BehaviorEventType.VIEW)).isFalse();
+        assertThat(dedup.isDuplicate("u1", "s2", "p1", BehaviorEventType.VIEW)).isTrue();
+        assertThat(dedup.isDuplicate("u1", "s1", "p2", BehaviorEventType.VIEW)).isFalse();
+        assertThat(dedup.isDuplicate("u2", "s1", "p1", BehaviorEventType.VIEW)).isFalse();
+        assertThat(dedup.isDuplicate("u1", "s1", "p1", BehaviorEventType.WISHLIST)).isFalse();
+
+        assertThat(result("first")).isEqualTo(4.0);
+        assertThat(result("duplicate")).isEqualTo(1.0);
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    @DisplayName("Guests are keyed by session; shoppers without either are never deduplicated")
+    void guestsBySession() {
+        ViewDeduplicator dedup = dedup(false);
+
+        assertThat(dedup.isDuplicate(null, "s1", "p1", BehaviorEventType.VIEW)).isFalse();
+        assertThat(dedup.isDuplicate(null, "s1", "p1", BehaviorEventType.VIEW)).isTrue();
+        assertThat(dedup.isDuplicate(null, "s2", "p1", BehaviorEventType.VIEW)).isFalse();
+        assertThat(dedup.isDuplicate(null, null, "p1", BehaviorEventType.VIEW)).isFalse();
+        assertThat(dedup.isDuplicate(null, null, "p1", BehaviorEventType.VIEW)).isFalse();
+
+        assertThat(ViewDeduplicator.keyOf("u1", "s1", "p1", BehaviorEventType.VIEW)).isEqualTo("u:u1|p1|VIEW");
+        assertThat(ViewDeduplicator.keyOf(" ", "s1", "p1", BehaviorEventType.VIEW)).isEqualTo("s:s1|p1|VIEW");
+        assertThat(ViewDeduplicator.keyOf("u1", "s1", null, BehaviorEventType.VIEW)).isNull();
+    }
+
+    @Test
+    @DisplayName("With Redis enabled, a refresh on another pod is still a duplicate")
+    void crossPodDuplicates() {
+        ViewDeduplicator podA = dedup(true);
+        ViewDeduplicator podB = dedup(true);
+
+        assertThat(podA.isDuplicate("u1", "s1", "p1", BehaviorEventType.VIEW)).isFalse();
+        assertThat(podB.isDuplicate("u1", "s1", "p1", BehaviorEventType.VIEW)).isTrue();
+        // Pod B remembers locally: its next refresh needs no Redis round trip
+        assertThat(podB.isDuplicate("u1", "s1", "p1", BehaviorEventType.VIEW)).isTrue();
+
+        verify(values, times(2)).setIfAbsent(ViewDeduplicator.KEY_PREFIX + "u:u1|p1|VIEW", "1", WINDOW);
+    }
+
+    @Test
+    @DisplayName("A Redis failure allows the event rather than suppressing it")
+    void redisFailureAllowsEvent() {
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+        ViewDeduplicator dedup = dedup(true);
+
+        assertThat(dedup.isDuplicate("u1", "s1", "p1", BehaviorEventType.VIEW)).isFalse();
+        assertThat(dedup.isDuplicate("u1", "s1", "p1", BehaviorEventType.VIEW)).isTrue();
+    }
+
+    // =========================================================================
+    // HELPER METHODS
+    // =========================================================================
+
+    private ViewDeduplicator dedup(boolean redisEnabled) {
+        return new ViewDeduplicator(redisTemplate, meterRegistry, WINDOW, 1_000, redisEnabled);
+    }
+
+    private double result(String result) {
+        return meterRegistry.get("tracking.dedup").tag("result", result).counter().count();
+    }
+}